@@ -0,0 +1,326 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazon.auth;
+
+import java.io.UnsupportedEncodingException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signing primitives shared by the Amazon connectors. The class is built as its own artifact, which
+ * each Amazon connector depends on and ships in its lib directory. Placing the jar in the components/lib
+ * directory of the ESB lets every connector load the same class, and with it a single signing key cache.
+ *
+ * Mac, MessageDigest and date format instances are kept per thread, the percent-encoding of the
+ * canonical request uses a precomputed table, and derived Signature Version 4 signing keys are cached,
+ * since a signing key only changes with the secret, date, region and service.
+ */
+public final class AWSSigner {
+
+    /**
+     * Signature Version 4 algorithm name.
+     */
+    public static final String AWS4_HMAC_SHA256 = "AWS4-HMAC-SHA256";
+
+    /**
+     * Signature Version 4 date time format.
+     */
+    public static final String ISO8601_BASIC_DATE_FORMAT = "yyyyMMdd'T'HHmmss'Z'";
+
+    /**
+     * Length of the date part of a Signature Version 4 date time.
+     */
+    public static final int SHORT_DATE_LENGTH = 8;
+
+    /**
+     * Maximum number of cached signing keys.
+     */
+    private static final int MAX_CACHED_KEYS = Integer.getInteger("aws.signer.maxCachedKeys", 128);
+
+    private static final String HMAC_SHA256 = "HmacSHA256";
+
+    private static final String HMAC_SHA1 = "HmacSHA1";
+
+    private static final String SHA_256 = "SHA-256";
+
+    private static final String UTF_8 = "UTF-8";
+
+    private static final String AWS4 = "AWS4";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final char[] UPPER_HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Percent-encoded form of each byte, null for the unreserved characters of RFC 3986.
+     */
+    private static final char[][] PERCENT_ENCODED = new char[256][];
+
+    private static final ThreadLocal<Map<String, Mac>> MACS = new ThreadLocal<Map<String, Mac>>() {
+        protected Map<String, Mac> initialValue() {
+            return new HashMap<String, Mac>();
+        }
+    };
+
+    private static final ThreadLocal<MessageDigest> SHA_256_DIGEST = new ThreadLocal<MessageDigest>();
+
+    private static final ThreadLocal<Map<String, DateFormat>> DATE_FORMATS =
+            new ThreadLocal<Map<String, DateFormat>>() {
+                protected Map<String, DateFormat> initialValue() {
+                    return new HashMap<String, DateFormat>();
+                }
+            };
+
+    /**
+     * Derived signing keys in least recently used order.
+     */
+    private static final Map<String, byte[]> SIGNING_KEYS = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(final Map.Entry<String, byte[]> eldest) {
+            return size() > MAX_CACHED_KEYS;
+        }
+    };
+
+    static {
+        for (int value = 0; value < PERCENT_ENCODED.length; value++) {
+            final char character = (char) value;
+            if (!((character >= 'A' && character <= 'Z') || (character >= 'a' && character <= 'z')
+                    || (character >= '0' && character <= '9') || character == '-' || character == '_'
+                    || character == '.' || character == '~')) {
+                PERCENT_ENCODED[value] = new char[] { '%', UPPER_HEX_DIGITS[value >>> 4], UPPER_HEX_DIGITS[value & 0x0F] };
+            }
+        }
+    }
+
+    private AWSSigner() {
+
+    }
+
+    /**
+     * Formats a date in GMT with a date format kept for the calling thread.
+     *
+     * @param date date to be formatted
+     * @param pattern SimpleDateFormat pattern
+     * @return formatted date
+     */
+    public static String formatDate(final Date date, final String pattern) {
+
+        final Map<String, DateFormat> formats = DATE_FORMATS.get();
+        DateFormat format = formats.get(pattern);
+        if (format == null) {
+            format = new SimpleDateFormat(pattern);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            formats.put(pattern, format);
+        }
+        return format.format(date);
+    }
+
+    /**
+     * Returns the Signature Version 4 signing key of the given scope, deriving it only when it is not
+     * cached.
+     *
+     * @param secretAccessKey secret access key
+     * @param shortDate date of the request in yyyyMMdd format
+     * @param region region name
+     * @param service service name
+     * @param terminationString termination string of the scope
+     * @return signing key
+     * @throws UnsupportedEncodingException Unsupported Encoding Exception
+     * @throws NoSuchAlgorithmException No Such Algorithm Exception
+     * @throws InvalidKeyException Invalid Key Exception
+     */
+    public static byte[] getSigningKey(final String secretAccessKey, final String shortDate, final String region,
+            final String service, final String terminationString) throws UnsupportedEncodingException,
+            NoSuchAlgorithmException, InvalidKeyException {
+
+        final String cacheKey =
+                shortDate + '/' + region + '/' + service + '/' + terminationString + '/' + secretAccessKey;
+        byte[] signingKey;
+        synchronized (SIGNING_KEYS) {
+            signingKey = SIGNING_KEYS.get(cacheKey);
+        }
+        if (signingKey == null) {
+            final byte[] kSecret = (AWS4 + secretAccessKey).getBytes(UTF_8);
+            final byte[] kDate = hmacSHA256(kSecret, shortDate);
+            final byte[] kRegion = hmacSHA256(kDate, region);
+            final byte[] kService = hmacSHA256(kRegion, service);
+            signingKey = hmacSHA256(kService, terminationString);
+            synchronized (SIGNING_KEYS) {
+                SIGNING_KEYS.put(cacheKey, signingKey);
+            }
+        }
+        return signingKey;
+    }
+
+    /**
+     * Provides the HMAC SHA 256 value of the given data, using a Mac kept for the calling thread.
+     *
+     * @param key key to use for signing
+     * @param data data to be signed
+     * @return HMAC SHA 256 value
+     * @throws UnsupportedEncodingException Unsupported Encoding Exception
+     * @throws NoSuchAlgorithmException No Such Algorithm Exception
+     * @throws InvalidKeyException Invalid Key Exception
+     */
+    public static byte[] hmacSHA256(final byte[] key, final String data) throws UnsupportedEncodingException,
+            NoSuchAlgorithmException, InvalidKeyException {
+
+        return hmac(HMAC_SHA256, key, data.getBytes(UTF_8));
+    }
+
+    /**
+     * Provides the HMAC SHA 1 value of the given data, using a Mac kept for the calling thread.
+     *
+     * @param key key to use for signing
+     * @param data data to be signed
+     * @return HMAC SHA 1 value
+     * @throws NoSuchAlgorithmException No Such Algorithm Exception
+     * @throws InvalidKeyException Invalid Key Exception
+     */
+    public static byte[] hmacSHA1(final byte[] key, final byte[] data) throws NoSuchAlgorithmException,
+            InvalidKeyException {
+
+        return hmac(HMAC_SHA1, key, data);
+    }
+
+    private static byte[] hmac(final String algorithm, final byte[] key, final byte[] data)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+
+        final Map<String, Mac> macs = MACS.get();
+        Mac mac = macs.get(algorithm);
+        if (mac == null) {
+            mac = Mac.getInstance(algorithm);
+            macs.put(algorithm, mac);
+        }
+        mac.init(new SecretKeySpec(key, algorithm));
+        return mac.doFinal(data);
+    }
+
+    /**
+     * Hashes the string contents as UTF-8 using the SHA-256 algorithm.
+     *
+     * @param text text to be hashed
+     * @return lower case hex encoded hash
+     * @throws UnsupportedEncodingException Unsupported Encoding Exception
+     * @throws NoSuchAlgorithmException No Such Algorithm Exception
+     */
+    public static String sha256Hex(final String text) throws UnsupportedEncodingException,
+            NoSuchAlgorithmException {
+
+        return toHex(sha256(text.getBytes(UTF_8)));
+    }
+
+    /**
+     * Hashes the given bytes using the SHA-256 algorithm.
+     *
+     * @param data bytes to be hashed
+     * @return hash
+     * @throws NoSuchAlgorithmException No Such Algorithm Exception
+     */
+    public static byte[] sha256(final byte[] data) throws NoSuchAlgorithmException {
+
+        MessageDigest messageDigest = SHA_256_DIGEST.get();
+        if (messageDigest == null) {
+            messageDigest = MessageDigest.getInstance(SHA_256);
+            SHA_256_DIGEST.set(messageDigest);
+        }
+        return messageDigest.digest(data);
+    }
+
+    /**
+     * Hex encodes the given bytes in lower case.
+     *
+     * @param bytes bytes to be hex encoded
+     * @return hex encoded String of the given byte array
+     */
+    public static String toHex(final byte[] bytes) {
+
+        final char[] hexChars = new char[bytes.length * 2];
+        for (int index = 0; index < bytes.length; index++) {
+            final int byteVal = bytes[index] & 0xFF;
+            hexChars[index * 2] = HEX_DIGITS[byteVal >>> 4];
+            hexChars[index * 2 + 1] = HEX_DIGITS[byteVal & 0x0F];
+        }
+        return new String(hexChars);
+    }
+
+    /**
+     * Percent-encodes the UTF-8 bytes of a value as required by the canonical request, keeping only the
+     * unreserved characters of RFC 3986.
+     *
+     * @param value value to be encoded
+     * @return encoded value
+     * @throws UnsupportedEncodingException Unsupported Encoding Exception
+     */
+    public static String percentEncode(final String value) throws UnsupportedEncodingException {
+
+        final StringBuilder builder = new StringBuilder(value.length() + 16);
+        percentEncode(builder, value, true);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the percent-encoded UTF-8 bytes of a value to the builder, keeping only the unreserved
+     * characters of RFC 3986 and, optionally, the asterisk.
+     *
+     * @param builder builder the encoded value is appended to
+     * @param value value to be encoded
+     * @param encodeAsterisk whether the asterisk is encoded
+     * @throws UnsupportedEncodingException Unsupported Encoding Exception
+     */
+    public static void percentEncode(final StringBuilder builder, final String value, final boolean encodeAsterisk)
+            throws UnsupportedEncodingException {
+
+        final int length = value.length();
+        int index = 0;
+        // Plain ASCII needs no byte conversion
+        while (index < length && value.charAt(index) < 0x80) {
+            appendEncoded(builder, value.charAt(index), encodeAsterisk);
+            index++;
+        }
+        if (index < length) {
+            final byte[] bytes = value.substring(index).getBytes(UTF_8);
+            for (int byteIndex = 0; byteIndex < bytes.length; byteIndex++) {
+                appendEncoded(builder, bytes[byteIndex] & 0xFF, encodeAsterisk);
+            }
+        }
+    }
+
+    private static void appendEncoded(final StringBuilder builder, final int value, final boolean encodeAsterisk) {
+
+        final char[] encoded = PERCENT_ENCODED[value];
+        if (encoded == null || (value == '*' && !encodeAsterisk)) {
+            builder.append((char) value);
+        } else {
+            builder.append(encoded);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazon.auth.benchmark;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.connector.amazon.auth.AWSSigner;
+
+/**
+ * Compares signing an Amazon SQS request the way the auth connectors do it with AWSSigner against the
+ * signing the connectors did before, on several threads so that the thread local instances and the shared
+ * signing key cache are exercised as they are in the ESB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class AWSSignerBenchmark {
+
+    /**
+     * Size of the message body in characters.
+     */
+    @Param({ "64", "4096" })
+    private int messageSize;
+
+    private SignedRequest request;
+
+    private Date date;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        request = new SignedRequest("wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY", messageSize);
+        date = new Date();
+        final String legacy = LegacySignatureV4.sign(request, date);
+        final String signer = sign(request, date);
+        if (!legacy.equals(signer)) {
+            throw new IllegalStateException("Signatures differ: " + legacy + " and " + signer);
+        }
+    }
+
+    @Benchmark
+    public String legacy() throws Exception {
+        return LegacySignatureV4.sign(request, date);
+    }
+
+    @Benchmark
+    public String signer() throws Exception {
+        return sign(request, date);
+    }
+
+    /**
+     * Signs the request as AmazonSQSAuthConnector does.
+     */
+    private static String sign(final SignedRequest request, final Date date) throws Exception {
+
+        final String amzDate = AWSSigner.formatDate(date, AWSSigner.ISO8601_BASIC_DATE_FORMAT);
+        final String shortDate = amzDate.substring(0, AWSSigner.SHORT_DATE_LENGTH);
+
+        final StringBuilder canonicalRequest = new StringBuilder(512);
+        canonicalRequest.append(request.getMethod()).append('\n');
+        canonicalRequest.append('/');
+        AWSSigner.percentEncode(canonicalRequest, AWSSigner.percentEncode(request.getQueueId()), true);
+        canonicalRequest.append('/');
+        AWSSigner.percentEncode(canonicalRequest, AWSSigner.percentEncode(request.getQueueName()), true);
+        canonicalRequest.append('/');
+        canonicalRequest.append('\n');
+
+        final StringBuilder payloadBuilder = new StringBuilder();
+        for (Map.Entry<String, String> entry : request.getParameters().entrySet()) {
+            if (payloadBuilder.length() > 0) {
+                payloadBuilder.append('&');
+            }
+            AWSSigner.percentEncode(payloadBuilder, entry.getKey(), false);
+            payloadBuilder.append('=');
+            AWSSigner.percentEncode(payloadBuilder, entry.getValue(), false);
+        }
+        canonicalRequest.append('\n');
+
+        final StringBuilder signedHeader = new StringBuilder();
+        for (Map.Entry<String, String> entry : request.getHeaders().entrySet()) {
+            canonicalRequest.append(entry.getKey()).append(':').append(entry.getValue()).append('\n');
+            if (signedHeader.length() > 0) {
+                signedHeader.append(';');
+            }
+            signedHeader.append(entry.getKey());
+        }
+        canonicalRequest.append('\n');
+        canonicalRequest.append(signedHeader);
+        canonicalRequest.append('\n');
+        canonicalRequest.append(AWSSigner.sha256Hex(payloadBuilder.toString()));
+
+        final String stringToSign =
+                AWSSigner.AWS4_HMAC_SHA256 + '\n' + amzDate + '\n' + shortDate + '/' + request.getRegion() + '/'
+                        + request.getService() + '/' + request.getTerminationString() + '\n'
+                        + AWSSigner.sha256Hex(canonicalRequest.toString());
+        final byte[] signingKey =
+                AWSSigner.getSigningKey(request.getSecretAccessKey(), shortDate, request.getRegion(),
+                        request.getService(), request.getTerminationString());
+        return AWSSigner.toHex(AWSSigner.hmacSHA256(signingKey, stringToSign));
+    }
+}
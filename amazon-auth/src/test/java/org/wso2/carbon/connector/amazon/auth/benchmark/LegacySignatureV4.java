@@ -0,0 +1,145 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazon.auth.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signature Version 4 signing as the Amazon auth connectors did it before AWSSigner: date formats,
+ * MessageDigest and Mac instances are created on every call, the canonical request is encoded with
+ * URLEncoder and fixed up afterwards, and the signing key is derived for every request.
+ */
+final class LegacySignatureV4 {
+
+    private static final String UTF_8 = "UTF-8";
+
+    private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
+
+    private LegacySignatureV4() {
+
+    }
+
+    /**
+     * Signs the request and returns the signature.
+     *
+     * @param request request to be signed
+     * @param date date of the request
+     * @return lower case hex encoded signature
+     * @throws Exception if the request could not be signed
+     */
+    static String sign(final SignedRequest request, final Date date) throws Exception {
+
+        final TimeZone timeZone = TimeZone.getTimeZone("GMT");
+        final DateFormat dateFormat = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
+        dateFormat.setTimeZone(timeZone);
+        final String amzDate = dateFormat.format(date);
+        final DateFormat shortDateFormat = new SimpleDateFormat("yyyyMMdd");
+        shortDateFormat.setTimeZone(timeZone);
+        final String shortDate = shortDateFormat.format(date);
+
+        final StringBuilder canonicalRequest = new StringBuilder();
+        canonicalRequest.append(request.getMethod()).append('\n');
+        final String encodedQueueID = URLEncoder.encode(request.getQueueId(), UTF_8);
+        final String encodedQueueName = URLEncoder.encode(request.getQueueName(), UTF_8);
+        canonicalRequest.append(("/" + URLEncoder.encode(encodedQueueID, UTF_8) + "/"
+                + URLEncoder.encode(encodedQueueName, UTF_8) + "/").replaceAll("\\*", "%2A"));
+        canonicalRequest.append('\n');
+
+        final StringBuilder payloadBuilder = new StringBuilder();
+        for (Map.Entry<String, String> entry : request.getParameters().entrySet()) {
+            payloadBuilder.append(URLEncoder.encode(entry.getKey(), UTF_8));
+            payloadBuilder.append('=');
+            payloadBuilder.append(URLEncoder.encode(entry.getValue(), UTF_8));
+            payloadBuilder.append('&');
+        }
+        canonicalRequest.append("");
+        canonicalRequest.append('\n');
+
+        final StringBuilder canonicalHeaders = new StringBuilder();
+        final StringBuilder signedHeader = new StringBuilder();
+        for (Map.Entry<String, String> entry : request.getHeaders().entrySet()) {
+            canonicalHeaders.append(entry.getKey());
+            canonicalHeaders.append(':');
+            canonicalHeaders.append(entry.getValue().trim().replaceAll("\\s+", " "));
+            canonicalHeaders.append('\n');
+            signedHeader.append(entry.getKey());
+            signedHeader.append(';');
+        }
+        canonicalRequest.append(canonicalHeaders.toString());
+        canonicalRequest.append('\n');
+        final String signedHeaders = signedHeader.substring(0, signedHeader.length() - 1);
+        canonicalRequest.append(signedHeaders);
+        canonicalRequest.append('\n');
+        final String requestPayload =
+                payloadBuilder.substring(0, payloadBuilder.length() - 1).replace("+", "%20").replace("%7E", "~");
+        canonicalRequest.append(bytesToHex(hash(requestPayload)).toLowerCase());
+
+        final StringBuilder stringToSign = new StringBuilder();
+        stringToSign.append("AWS4-HMAC-SHA256").append('\n');
+        stringToSign.append(amzDate).append('\n');
+        stringToSign.append(shortDate).append('/').append(request.getRegion()).append('/');
+        stringToSign.append(request.getService()).append('/').append(request.getTerminationString()).append('\n');
+        stringToSign.append(bytesToHex(hash(canonicalRequest.toString())).toLowerCase());
+
+        final byte[] kSecret = ("AWS4" + request.getSecretAccessKey()).getBytes(UTF_8);
+        final byte[] kDate = hmacSHA256(kSecret, shortDate);
+        final byte[] kRegion = hmacSHA256(kDate, request.getRegion());
+        final byte[] kService = hmacSHA256(kRegion, request.getService());
+        final byte[] signingKey = hmacSHA256(kService, request.getTerminationString());
+        return bytesToHex(hmacSHA256(signingKey, stringToSign.toString())).toLowerCase();
+    }
+
+    private static byte[] hash(final String text) throws NoSuchAlgorithmException, UnsupportedEncodingException {
+
+        final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        messageDigest.update(text.getBytes(UTF_8));
+        return messageDigest.digest();
+    }
+
+    private static byte[] hmacSHA256(final byte[] key, final String data) throws NoSuchAlgorithmException,
+            InvalidKeyException, UnsupportedEncodingException {
+
+        final Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        return mac.doFinal(data.getBytes(UTF_8));
+    }
+
+    private static String bytesToHex(final byte[] bytes) {
+
+        final char[] hexChars = new char[bytes.length * 2];
+        for (int j = 0; j < bytes.length; j++) {
+            final int byteVal = bytes[j] & 0xFF;
+            hexChars[j * 2] = HEX_ARRAY[byteVal >>> 4];
+            hexChars[j * 2 + 1] = HEX_ARRAY[byteVal & 0x0F];
+        }
+        return new String(hexChars);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazon.auth.benchmark;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Amazon SQS SendMessage request signed by the benchmark.
+ */
+final class SignedRequest {
+
+    private final String secretAccessKey;
+
+    private final SortedMap<String, String> parameters = new TreeMap<String, String>();
+
+    private final SortedMap<String, String> headers = new TreeMap<String, String>();
+
+    SignedRequest(final String secretAccessKey, final int messageSize) {
+
+        this.secretAccessKey = secretAccessKey;
+        final StringBuilder messageBody = new StringBuilder(messageSize);
+        while (messageBody.length() < messageSize) {
+            messageBody.append("Order 42 for Ann & Bob (café) ~ shipped, ");
+        }
+        messageBody.setLength(messageSize);
+        parameters.put("Action", "SendMessage");
+        parameters.put("Version", "2012-11-05");
+        parameters.put("DelaySeconds", "0");
+        parameters.put("MessageBody", messageBody.toString());
+        headers.put("content-type", "application/x-www-form-urlencoded");
+        headers.put("host", "sqs.us-east-1.amazonaws.com");
+    }
+
+    String getMethod() {
+        return "POST";
+    }
+
+    String getQueueId() {
+        return "123456789012";
+    }
+
+    String getQueueName() {
+        return "orders-queue";
+    }
+
+    String getRegion() {
+        return "us-east-1";
+    }
+
+    String getService() {
+        return "sqs";
+    }
+
+    String getTerminationString() {
+        return "aws4_request";
+    }
+
+    String getSecretAccessKey() {
+        return secretAccessKey;
+    }
+
+    Map<String, String> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+}
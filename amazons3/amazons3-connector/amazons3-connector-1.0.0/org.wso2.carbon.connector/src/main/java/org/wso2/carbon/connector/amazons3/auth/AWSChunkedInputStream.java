@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved. WSO2 Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.connector.amazons3.auth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.wso2.carbon.connector.amazon.auth.AWSSigner;
+
+/**
+ * Class AWSChunkedInputStream encodes a payload in the aws-chunked content encoding, signing every chunk with
+ * the signature of the previous one as required by STREAMING-AWS4-HMAC-SHA256-PAYLOAD requests. Only one chunk
+ * is held in memory, and the chunk digests are computed over the bytes as they are read.
+ *
+ * @see http://docs.aws.amazon.com/AmazonS3/latest/API/sigv4-streaming.html
+ */
+public class AWSChunkedInputStream extends InputStream {
+    
+    /**
+     * Default size of the chunks.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 65536;
+    
+    /**
+     * Minimum size of the chunks accepted by the API, except for the last one.
+     */
+    public static final int MIN_CHUNK_SIZE = 8192;
+    
+    private static final String CHUNK_STRING_TO_SIGN_PREFIX = "AWS4-HMAC-SHA256-PAYLOAD";
+    
+    private static final String CHUNK_SIGNATURE = ";chunk-signature=";
+    
+    private static final String CRLF = "\r\n";
+    
+    private static final String EMPTY_STRING_SHA256 =
+            "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    
+    /**
+     * Length of a hex encoded signature.
+     */
+    private static final int SIGNATURE_LENGTH = 64;
+    
+    private final InputStream source;
+    
+    private final byte[] signingKey;
+    
+    private final String amzDate;
+    
+    private final String credentialScope;
+    
+    private final byte[] chunkData;
+    
+    private final MessageDigest digest;
+    
+    private String previousSignature;
+    
+    /**
+     * The encoded chunk which is being read.
+     */
+    private final byte[] chunk;
+    
+    private int chunkLength;
+    
+    private int position;
+    
+    private boolean finished;
+    
+    /**
+     * Constructor for AWSChunkedInputStream class.
+     *
+     * @param source stream of the payload
+     * @param chunkSize size of the payload chunks
+     * @param signingKey Signature Version 4 signing key of the request
+     * @param amzDate date of the request
+     * @param credentialScope credential scope of the request
+     * @param seedSignature signature of the request headers
+     * @throws NoSuchAlgorithmException No Such Algorithm Exception
+     */
+    public AWSChunkedInputStream(final InputStream source, final int chunkSize, final byte[] signingKey,
+            final String amzDate, final String credentialScope, final String seedSignature)
+            throws NoSuchAlgorithmException {
+            
+        this.source = source;
+        this.signingKey = signingKey;
+        this.amzDate = amzDate;
+        this.credentialScope = credentialScope;
+        this.previousSignature = seedSignature;
+        this.chunkData = new byte[Math.max(chunkSize, MIN_CHUNK_SIZE)];
+        this.chunk = new byte[getChunkOverhead(chunkData.length) + chunkData.length];
+        this.digest = MessageDigest.getInstance("SHA-256");
+    }
+    
+    /**
+     * Returns the length of the encoded payload, which is sent as the Content-Length of the request.
+     *
+     * @param decodedLength length of the payload
+     * @param chunkSize size of the payload chunks
+     * @return encoded length
+     */
+    public static long getEncodedLength(final long decodedLength, final int chunkSize) {
+    
+        final int size = Math.max(chunkSize, MIN_CHUNK_SIZE);
+        final long fullChunks = decodedLength / size;
+        final int remainder = (int) (decodedLength % size);
+        long length = fullChunks * getChunkOverhead(size) + decodedLength;
+        if (remainder > 0) {
+            length += getChunkOverhead(remainder);
+        }
+        return length + getChunkOverhead(0);
+    }
+    
+    private static int getChunkOverhead(final int dataLength) {
+    
+        return Integer.toHexString(dataLength).length() + CHUNK_SIGNATURE.length() + SIGNATURE_LENGTH
+                + CRLF.length() * 2;
+    }
+    
+    public int read() throws IOException {
+    
+        final byte[] single = new byte[1];
+        final int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+    
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+    
+        if (length == 0) {
+            return 0;
+        }
+        if (position == chunkLength) {
+            if (finished) {
+                return -1;
+            }
+            nextChunk();
+        }
+        final int count = Math.min(length, chunkLength - position);
+        System.arraycopy(chunk, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+    
+    public void close() throws IOException {
+    
+        source.close();
+    }
+    
+    /**
+     * Reads the next chunk of the payload, the final chunk is empty.
+     */
+    private void nextChunk() throws IOException {
+    
+        int dataLength = 0;
+        while (dataLength < chunkData.length) {
+            final int read = source.read(chunkData, dataLength, chunkData.length - dataLength);
+            if (read == -1) {
+                break;
+            }
+            dataLength += read;
+        }
+        if (dataLength == 0) {
+            finished = true;
+        }
+        
+        final String signature = signChunk(dataLength);
+        final byte[] header =
+                (Integer.toHexString(dataLength) + CHUNK_SIGNATURE + signature + CRLF).getBytes("US-ASCII");
+        System.arraycopy(header, 0, chunk, 0, header.length);
+        System.arraycopy(chunkData, 0, chunk, header.length, dataLength);
+        chunkLength = header.length + dataLength;
+        chunk[chunkLength++] = '\r';
+        chunk[chunkLength++] = '\n';
+        position = 0;
+        previousSignature = signature;
+    }
+    
+    private String signChunk(final int dataLength) throws IOException {
+    
+        digest.update(chunkData, 0, dataLength);
+        final StringBuilder stringToSign = new StringBuilder(CHUNK_STRING_TO_SIGN_PREFIX.length() + 256);
+        stringToSign.append(CHUNK_STRING_TO_SIGN_PREFIX).append('\n');
+        stringToSign.append(amzDate).append('\n');
+        stringToSign.append(credentialScope).append('\n');
+        stringToSign.append(previousSignature).append('\n');
+        stringToSign.append(EMPTY_STRING_SHA256).append('\n');
+        stringToSign.append(AWSSigner.toHex(digest.digest()));
+        try {
+            return AWSSigner.toHex(AWSSigner.hmacSHA256(signingKey, stringToSign.toString()));
+        } catch (GeneralSecurityException gse) {
+            final IOException ioe = new IOException("Unable to sign the payload chunk: " + gse.getMessage());
+            ioe.initCause(gse);
+            throw ioe;
+        }
+    }
+}
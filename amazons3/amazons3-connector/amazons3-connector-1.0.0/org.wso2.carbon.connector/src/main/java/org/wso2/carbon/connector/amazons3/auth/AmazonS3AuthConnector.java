@@ -11,6 +11,8 @@
 package org.wso2.carbon.connector.amazons3.auth;
 
 import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
@@ -20,10 +22,12 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TimeZone;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.wso2.carbon.connector.amazons3.util.AmazonS3Constants;
 import org.wso2.carbon.connector.core.AbstractConnector;
 
@@ -39,8 +43,13 @@ public class AmazonS3AuthConnector extends AbstractConnector {
      */
     public final void connect(final MessageContext messageContext) {
     
-        final StringBuilder builder = new StringBuilder();
         final Map<String, String> parametersMap = getParametersMap(messageContext);
+        if (AmazonS3Constants.SIGNATURE_V4.equals(parametersMap.get(AmazonS3Constants.SIGNATURE_VERSION))) {
+            connectV4(messageContext, parametersMap);
+            return;
+        }
+        
+        final StringBuilder builder = new StringBuilder();
         final Locale defaultLocale = Locale.getDefault();
         
         final SimpleDateFormat dateFormat = new SimpleDateFormat(AmazonS3Constants.CURR_DATE_FORMAT, defaultLocale);
@@ -118,12 +127,175 @@ public class AmazonS3AuthConnector extends AbstractConnector {
         messageContext.setProperty(AmazonS3Constants.DATE, currentDate);
     }
     
+    /**
+     * Generates the Signature Version 4 authentication of the request. The payload is not signed unless its hash was
+     * generated by AmazonS3ContentMD5Builder, since most operations build their payload after the authentication.
+     * 
+     * @param messageContext ESB messageContext.
+     * @param parametersMap parameter values passed in via proxy.
+     */
+    private void connectV4(final MessageContext messageContext, final Map<String, String> parametersMap) {
+    
+        String payloadHash = (String) messageContext.getProperty(AmazonS3Constants.PAYLOAD_SHA256);
+        messageContext.setProperty(AmazonS3Constants.PAYLOAD_SHA256, null);
+        if (payloadHash == null || payloadHash.isEmpty()) {
+            final String methodType = parametersMap.get(AmazonS3Constants.METHOD_TYPE);
+            if ("PUT".equalsIgnoreCase(methodType) || "POST".equalsIgnoreCase(methodType)) {
+                payloadHash = AmazonS3Constants.UNSIGNED_PAYLOAD;
+            } else {
+                payloadHash = AmazonS3SignatureV4.EMPTY_PAYLOAD;
+            }
+        }
+        try {
+            signV4(messageContext, parametersMap, new HashMap<String, String>(), payloadHash);
+        } catch (InvalidKeyException ike) {
+            log.error("Invalid key", ike);
+            storeErrorResponseStatus(messageContext, ike, AmazonS3Constants.INVALID_KEY_ERROR_CODE);
+            handleException("Invalid key", ike, messageContext);
+        } catch (NoSuchAlgorithmException iae) {
+            log.error("Invalid Algorithm", iae);
+            storeErrorResponseStatus(messageContext, iae, AmazonS3Constants.NOSUCH_ALGORITHM_ERROR_CODE);
+            handleException("Invalid Algorithm", iae, messageContext);
+        } catch (UnsupportedEncodingException uee) {
+            log.error("Encoding Not Supported", uee);
+            storeErrorResponseStatus(messageContext, uee, AmazonS3Constants.UNSUPPORTED_ENCORDING_ERROR_CODE);
+            handleException("Encoding Not Supported", uee, messageContext);
+        } catch (Exception exc) {
+            log.error("Error occured in connector", exc);
+            storeErrorResponseStatus(messageContext, exc, AmazonS3Constants.ERROR_CODE_EXCEPTION);
+            handleException("Error occured in connector", exc, messageContext);
+        }
+    }
+    
+    /**
+     * Signs the request with Signature Version 4, sets the authentication properties and sets the signed headers which
+     * are not set by the templates as transport headers.
+     * 
+     * @param messageContext ESB messageContext.
+     * @param parametersMap parameter values passed in via proxy.
+     * @param additionalHeaders headers to be signed and sent in addition to the headers of the parameters.
+     * @param payloadHash hex encoded SHA-256 hash of the payload, UNSIGNED-PAYLOAD or STREAMING_PAYLOAD.
+     * @return the signature, which holds the signing key and seed signature of a chunked payload.
+     * @throws UnsupportedEncodingException This exception is thrown when the Character Encoding is not supported.
+     * @throws NoSuchAlgorithmException This exception is thrown when a particular cryptographic algorithm is requested
+     *         but is not available in the environment.
+     * @throws InvalidKeyException This is the exception for invalid Keys.
+     */
+    static AmazonS3SignatureV4 signV4(final MessageContext messageContext, final Map<String, String> parametersMap,
+            final Map<String, String> additionalHeaders, final String payloadHash) throws UnsupportedEncodingException,
+            NoSuchAlgorithmException, InvalidKeyException {
+            
+        final Date date = new Date();
+        final AmazonS3SignatureV4 signatureV4 =
+                new AmazonS3SignatureV4(parametersMap.get(AmazonS3Constants.ACCESS_KEY_ID),
+                        parametersMap.get(AmazonS3Constants.SECRET_ACCESS_KEY),
+                        parametersMap.get(AmazonS3Constants.REGION), date);
+        
+        signatureV4.addHeader(AmazonS3Constants.HD_CONTENT_MD5, parametersMap.get(AmazonS3Constants.CONTENT_MD5));
+        signatureV4.addHeader(AmazonS3Constants.HD_CONTENT_TYPE, parametersMap.get(AmazonS3Constants.CONTENT_TYPE));
+        final Map<String, String> amzHeaderKeysMap = getAmzHeaderKeysMap();
+        for (Map.Entry<String, String> entry : amzHeaderKeysMap.entrySet()) {
+            signatureV4.addHeader(entry.getValue(), parametersMap.get(entry.getKey()));
+        }
+        for (Map.Entry<String, String> entry : additionalHeaders.entrySet()) {
+            signatureV4.addHeader(entry.getKey(), entry.getValue());
+        }
+        
+        // The path and host are the ones of the bucket URL, or of the bucket name when only the authorization is
+        // requested.
+        String path = AmazonS3Constants.EMPTY_STR;
+        String query = AmazonS3Constants.EMPTY_STR;
+        final String urlRemainder = (String) messageContext.getProperty(AmazonS3Constants.URI_REMAINDER);
+        if (urlRemainder != null && !urlRemainder.isEmpty()) {
+            final int queryIndex = urlRemainder.indexOf('?');
+            path = queryIndex == -1 ? urlRemainder : urlRemainder.substring(0, queryIndex);
+            query = queryIndex == -1 ? AmazonS3Constants.EMPTY_STR : urlRemainder.substring(queryIndex + 1);
+        }
+        String host = parametersMap.get(AmazonS3Constants.HOST);
+        final URL bucketUrl = getBucketUrl(messageContext);
+        if (bucketUrl != null) {
+            if (host.isEmpty()) {
+                host = bucketUrl.getHost();
+                if (bucketUrl.getPort() != -1) {
+                    host += AmazonS3Constants.COLON + bucketUrl.getPort();
+                }
+            }
+            path = bucketUrl.getPath() + path;
+        } else {
+            if (host.isEmpty()) {
+                host = AmazonS3Constants.DEFAULT_HOST;
+            }
+            final String bucketName = parametersMap.get(AmazonS3Constants.BUCKET_NAME);
+            if (!bucketName.isEmpty() && !host.startsWith(bucketName + '.')) {
+                path = AmazonS3Constants.FORWARD_SLASH + bucketName + path;
+            }
+        }
+        
+        final String authorization =
+                signatureV4.sign(parametersMap.get(AmazonS3Constants.METHOD_TYPE), host, path, query, payloadHash);
+        messageContext.setProperty(AmazonS3Constants.AUTH_CODE, authorization);
+        messageContext.setProperty(AmazonS3Constants.IS_XAMZ_DATE_VAL, signatureV4.getAmzDate());
+        messageContext.setProperty(AmazonS3Constants.XAMZ_CONTENT_SHA256_VAL, payloadHash);
+        
+        final Map<String, Object> transportHeaders = getTransportHeaders(messageContext);
+        transportHeaders.put(AmazonS3SignatureV4.HD_XAMZ_CONTENT_SHA256, payloadHash);
+        transportHeaders.putAll(additionalHeaders);
+        
+        final SimpleDateFormat dateFormat =
+                new SimpleDateFormat(AmazonS3Constants.CURR_DATE_FORMAT, Locale.getDefault());
+        dateFormat.setTimeZone(TimeZone.getTimeZone(AmazonS3Constants.TIME_ZONE));
+        messageContext.setProperty(AmazonS3Constants.DATE, dateFormat.format(date));
+        return signatureV4;
+    }
+    
+    /**
+     * getBucketUrl method used to return the bucket URL set by the template.
+     * 
+     * @param messageContext ESB messageContext.
+     * @return the bucket URL, or null if it is not set or not valid.
+     */
+    private static URL getBucketUrl(final MessageContext messageContext) {
+    
+        final String bucketUrl = (String) messageContext.getProperty(AmazonS3Constants.BUCKET_URL);
+        if (bucketUrl == null || bucketUrl.isEmpty()) {
+            return null;
+        }
+        try {
+            return new URL(bucketUrl);
+        } catch (MalformedURLException mue) {
+            // Sign with the bucket name as for getAuthorization.
+            return null;
+        }
+    }
+    
+    /**
+     * getTransportHeaders method used to return the transport headers of the outgoing request.
+     * 
+     * @param messageContext ESB messageContext.
+     * @return the transport headers Map.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> getTransportHeaders(final MessageContext messageContext) {
+    
+        final org.apache.axis2.context.MessageContext axis2MessageContext =
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+        Map<String, Object> transportHeaders =
+                (Map<String, Object>) axis2MessageContext
+                        .getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+        if (transportHeaders == null) {
+            transportHeaders = new TreeMap<String, Object>(String.CASE_INSENSITIVE_ORDER);
+            axis2MessageContext.setProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS,
+                    transportHeaders);
+        }
+        return transportHeaders;
+    }
+    
     /**
      * getKeys method used to return list of predefined parameter keys.
      * 
      * @return list of parameter key value.
      */
-    private String[] getKeys() {
+    private static String[] getKeys() {
     
         return new String[] { AmazonS3Constants.ACCESS_KEY_ID, AmazonS3Constants.SECRET_ACCESS_KEY,
                 AmazonS3Constants.METHOD_TYPE, AmazonS3Constants.CONTENT_MD5, AmazonS3Constants.CONTENT_TYPE,
@@ -136,7 +308,9 @@ public class AmazonS3AuthConnector extends AbstractConnector {
                 AmazonS3Constants.XAMZ_COPY_SOURCE, AmazonS3Constants.XAMZ_METADATA_DIRECTIVE,
                 AmazonS3Constants.XAMZ_COPY_SOURCE_IF_MATCH, AmazonS3Constants.XAMZ_COPY_SOURCE_IF_NONE_MATCH,
                 AmazonS3Constants.XAMZ_COPY_SOURCE_IF_UNMODIFIED_SINCE,
-                AmazonS3Constants.XAMZ_COPY_SOURCE_IF_MODIFIED_SINCE };
+                AmazonS3Constants.XAMZ_COPY_SOURCE_IF_MODIFIED_SINCE, AmazonS3Constants.SIGNATURE_VERSION,
+                AmazonS3Constants.REGION, AmazonS3Constants.HOST, AmazonS3Constants.CONTENT_LENGTH,
+                AmazonS3Constants.CHUNK_SIZE };
     }
     
     /**
@@ -145,7 +319,7 @@ public class AmazonS3AuthConnector extends AbstractConnector {
      * @param messageContext ESB messageContext.
      * @return assigned parameter values as a HashMap.
      */
-    private Map<String, String> getParametersMap(final MessageContext messageContext) {
+    public static Map<String, String> getParametersMap(final MessageContext messageContext) {
     
         String[] keys = getKeys();
         Map<String, String> parametersMap = new HashMap<String, String>();
@@ -163,7 +337,7 @@ public class AmazonS3AuthConnector extends AbstractConnector {
      * 
      * @return list of Amz header keys and values Map.
      */
-    private Map<String, String> getAmzHeaderKeysMap() {
+    private static Map<String, String> getAmzHeaderKeysMap() {
     
         Map<String, String> amzHeaderKeysMap = new HashMap<String, String>();
         
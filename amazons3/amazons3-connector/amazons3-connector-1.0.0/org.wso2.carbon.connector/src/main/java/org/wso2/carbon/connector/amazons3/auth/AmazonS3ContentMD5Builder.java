@@ -10,18 +10,21 @@
 
 package org.wso2.carbon.connector.amazons3.auth;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.axiom.om.OMElement;
 import org.apache.axiom.soap.SOAPBody;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseConstants;
+import org.wso2.carbon.connector.amazon.auth.AWSSigner;
 import org.wso2.carbon.connector.amazons3.util.AmazonS3Constants;
 import org.wso2.carbon.connector.core.AbstractConnector;
 
@@ -39,13 +42,14 @@ public class AmazonS3ContentMD5Builder extends AbstractConnector {
      */
     public final void connect(final MessageContext messageContext) {
     
-        String contentMD5Header = null;
         try {
             final SOAPBody body = messageContext.getEnvelope().getBody();
-            contentMD5Header = getContentMD5Header(body.getFirstElement().toString());
-            if (contentMD5Header != null) {
-                messageContext.setProperty(AmazonS3Constants.CONTENT_MD5, contentMD5Header);
-            }
+            final MessageDigest md5Digest = MessageDigest.getInstance(AmazonS3Constants.MD5);
+            final MessageDigest sha256Digest = MessageDigest.getInstance(AmazonS3Constants.SHA_256);
+            digest(body.getFirstElement(), md5Digest, sha256Digest);
+            messageContext.setProperty(AmazonS3Constants.CONTENT_MD5,
+                    new String(Base64.encodeBase64(md5Digest.digest()), Charset.defaultCharset()));
+            messageContext.setProperty(AmazonS3Constants.PAYLOAD_SHA256, AWSSigner.toHex(sha256Digest.digest()));
         } catch (IOException ioe) {
             log.error("Error reading MD5 digest: ", ioe);
             storeErrorResponseStatus(messageContext, ioe, AmazonS3Constants.IO_EXCEPTION_ERROR_CODE);
@@ -62,28 +66,31 @@ public class AmazonS3ContentMD5Builder extends AbstractConnector {
     }
     
     /**
-     * Consume the string type delete configuration and returns its Base-64 encoded MD5 checksum as a string.
+     * Serializes the delete configuration into the given digests, so that the MD5 checksum and the SHA-256 hash used by
+     * Signature Version 4 are computed in one pass without building the configuration as a string.
      * 
-     * @param deleteConfig gets delete configuration as a string.
-     * @return String type base-64 encoded MD5 checksum.
-     * @throws IOException if an I/O error occurs when reading bytes of data from input stream.
-     * @throws NoSuchAlgorithmException if no implementation for the specified algorithm.
+     * @param deleteConfig delete configuration element.
+     * @param digests digests to be updated with the UTF-8 bytes of the configuration.
+     * @throws IOException if an I/O error occurs when writing the configuration.
+     * @throws XMLStreamException if the configuration cannot be serialized.
      */
-    private String getContentMD5Header(final String deleteConfig) throws IOException, NoSuchAlgorithmException {
-    
-        String contentHeader = null;
-        // convert String into InputStream
-        final InputStream inputStream = new ByteArrayInputStream(deleteConfig.getBytes(Charset.defaultCharset()));
-        final DigestInputStream digestInputStream =
-                new DigestInputStream(inputStream, MessageDigest.getInstance(AmazonS3Constants.MD5));
-        
-        final byte[] buffer = new byte[AmazonS3Constants.BUFFER_SIZE];
-        while (digestInputStream.read(buffer) > 0) {
-            contentHeader =
-                    new String(Base64.encodeBase64(digestInputStream.getMessageDigest().digest()),
-                            Charset.defaultCharset());
+    private void digest(final OMElement deleteConfig, final MessageDigest... digests) throws IOException,
+            XMLStreamException {
+            
+        OutputStream outputStream = new OutputStream() {
+            public void write(final int data) {
+            
+            }
+            
+            public void write(final byte[] data, final int offset, final int length) {
+            
+            }
+        };
+        for (MessageDigest digest : digests) {
+            outputStream = new DigestOutputStream(outputStream, digest);
         }
-        return contentHeader;
+        deleteConfig.serialize(outputStream);
+        outputStream.flush();
     }
     
     /**
@@ -96,7 +103,7 @@ public class AmazonS3ContentMD5Builder extends AbstractConnector {
      */
     public static void storeErrorResponseStatus(final MessageContext ctxt, final Throwable throwable,
             final int errorCode) {
-    
+            
         ctxt.setProperty(SynapseConstants.ERROR_CODE, errorCode);
         ctxt.setProperty(SynapseConstants.ERROR_MESSAGE, throwable.getMessage());
         ctxt.setFaultResponse(true);
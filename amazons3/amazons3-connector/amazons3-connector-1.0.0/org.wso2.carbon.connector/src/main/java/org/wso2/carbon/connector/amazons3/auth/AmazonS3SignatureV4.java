@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved. WSO2 Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.connector.amazons3.auth;
+
+import java.io.UnsupportedEncodingException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.wso2.carbon.connector.amazon.auth.AWSSigner;
+
+/**
+ * Class AmazonS3SignatureV4 to generate the Signature Version 4 authorization header of an Amazon S3 request.
+ *
+ * @see http://docs.aws.amazon.com/AmazonS3/latest/API/sig-v4-header-based-auth.html
+ */
+public class AmazonS3SignatureV4 {
+    
+    /**
+     * Service name of the credential scope.
+     */
+    public static final String SERVICE = "s3";
+    
+    /**
+     * Termination string of the credential scope.
+     */
+    public static final String TERMINATION_STRING = "aws4_request";
+    
+    /**
+     * Payload hash of requests whose payload is sent in signed aws-chunked chunks.
+     */
+    public static final String STREAMING_PAYLOAD = "STREAMING-AWS4-HMAC-SHA256-PAYLOAD";
+    
+    /**
+     * Payload hash of requests without a payload.
+     */
+    public static final String EMPTY_PAYLOAD = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    
+    /**
+     * Header carrying the payload hash.
+     */
+    public static final String HD_XAMZ_CONTENT_SHA256 = "x-amz-content-sha256";
+    
+    /**
+     * Default region of the credential scope.
+     */
+    public static final String DEFAULT_REGION = "us-east-1";
+    
+    private static final String HD_HOST = "host";
+    
+    private static final String HD_XAMZ_DATE = "x-amz-date";
+    
+    /**
+     * Headers to be signed, by lower case name.
+     */
+    private final Map<String, String> headers = new TreeMap<String, String>();
+    
+    private final String accessKeyId;
+    
+    private final String secretAccessKey;
+    
+    private final String amzDate;
+    
+    private final String credentialScope;
+    
+    private byte[] signingKey;
+    
+    private String signature;
+    
+    /**
+     * Constructor for AmazonS3SignatureV4 class.
+     *
+     * @param awsAccessKeyId - accessKeyId passed in the as request parameter.
+     * @param awsSecretAccessKey - secretAccessKey passed in the as request parameter.
+     * @param region - region of the bucket, us-east-1 when empty.
+     * @param date - date of the request.
+     */
+    public AmazonS3SignatureV4(final String awsAccessKeyId, final String awsSecretAccessKey, final String region,
+            final Date date) {
+            
+        this.accessKeyId = awsAccessKeyId;
+        this.secretAccessKey = awsSecretAccessKey;
+        this.amzDate = AWSSigner.formatDate(date, AWSSigner.ISO8601_BASIC_DATE_FORMAT);
+        this.credentialScope =
+                amzDate.substring(0, AWSSigner.SHORT_DATE_LENGTH) + '/'
+                        + (region == null || region.isEmpty() ? DEFAULT_REGION : region) + '/' + SERVICE + '/'
+                        + TERMINATION_STRING;
+    }
+    
+    /**
+     * Adds a header to be signed. Empty values are ignored.
+     *
+     * @param name name of the header
+     * @param value value of the header
+     */
+    public final void addHeader(final String name, final String value) {
+    
+        if (value != null && !value.trim().isEmpty()) {
+            headers.put(name.toLowerCase(), value.trim().replaceAll("\\s+", " "));
+        }
+    }
+    
+    /**
+     * Signs the request and returns the value of its Authorization header. The host, x-amz-date and
+     * x-amz-content-sha256 headers are always signed.
+     *
+     * @param method HTTP method of the request
+     * @param host host the request is sent to
+     * @param path path of the request, without the query string
+     * @param query query string of the request, may be empty
+     * @param payloadHash hex encoded SHA-256 hash of the payload, or STREAMING_PAYLOAD
+     * @return generated authorization header as String
+     * @throws UnsupportedEncodingException This exception is thrown when the Character Encoding is not supported
+     * @throws NoSuchAlgorithmException This exception is thrown when a particular cryptographic algorithm is requested
+     *         but is not available in the environment.
+     * @throws InvalidKeyException This is the exception for invalid Keys.
+     */
+    public final String sign(final String method, final String host, final String path, final String query,
+            final String payloadHash) throws UnsupportedEncodingException, NoSuchAlgorithmException,
+            InvalidKeyException {
+            
+        addHeader(HD_HOST, host);
+        addHeader(HD_XAMZ_DATE, amzDate);
+        addHeader(HD_XAMZ_CONTENT_SHA256, payloadHash);
+        
+        final StringBuilder canonicalRequest = new StringBuilder(512);
+        canonicalRequest.append(method).append('\n');
+        appendCanonicalUri(canonicalRequest, path);
+        canonicalRequest.append('\n');
+        appendCanonicalQueryString(canonicalRequest, query);
+        canonicalRequest.append('\n');
+        final StringBuilder signedHeaders = new StringBuilder();
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            canonicalRequest.append(entry.getKey()).append(':').append(entry.getValue()).append('\n');
+            if (signedHeaders.length() > 0) {
+                signedHeaders.append(';');
+            }
+            signedHeaders.append(entry.getKey());
+        }
+        canonicalRequest.append('\n').append(signedHeaders).append('\n').append(payloadHash);
+        
+        final String stringToSign =
+                AWSSigner.AWS4_HMAC_SHA256 + '\n' + amzDate + '\n' + credentialScope + '\n'
+                        + AWSSigner.sha256Hex(canonicalRequest.toString());
+        final String[] scope = credentialScope.split("/");
+        signingKey = AWSSigner.getSigningKey(secretAccessKey, scope[0], scope[1], SERVICE, TERMINATION_STRING);
+        signature = AWSSigner.toHex(AWSSigner.hmacSHA256(signingKey, stringToSign));
+        
+        return AWSSigner.AWS4_HMAC_SHA256 + " Credential=" + accessKeyId + '/' + credentialScope
+                + ",SignedHeaders=" + signedHeaders + ",Signature=" + signature;
+    }
+    
+    /**
+     * Appends the path with every segment percent-encoded.
+     */
+    private static void appendCanonicalUri(final StringBuilder builder, final String path)
+            throws UnsupportedEncodingException {
+            
+        if (path == null || path.isEmpty()) {
+            builder.append('/');
+            return;
+        }
+        if (path.charAt(0) != '/') {
+            builder.append('/');
+        }
+        int start = 0;
+        int slash;
+        while ((slash = path.indexOf('/', start)) != -1) {
+            AWSSigner.percentEncode(builder, path.substring(start, slash), true);
+            builder.append('/');
+            start = slash + 1;
+        }
+        AWSSigner.percentEncode(builder, path.substring(start), true);
+    }
+    
+    /**
+     * Appends the query parameters sorted by name with the names and values percent-encoded.
+     */
+    private static void appendCanonicalQueryString(final StringBuilder builder, final String query)
+            throws UnsupportedEncodingException {
+            
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        final Map<String, String> parameters = new TreeMap<String, String>();
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            final int equals = parameter.indexOf('=');
+            final String name = equals == -1 ? parameter : parameter.substring(0, equals);
+            final String value = equals == -1 ? "" : parameter.substring(equals + 1);
+            parameters.put(AWSSigner.percentEncode(name), AWSSigner.percentEncode(value));
+        }
+        boolean first = true;
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            if (!first) {
+                builder.append('&');
+            }
+            builder.append(entry.getKey()).append('=').append(entry.getValue());
+            first = false;
+        }
+    }
+    
+    /**
+     * @return the date of the request in the x-amz-date format
+     */
+    public final String getAmzDate() {
+    
+        return amzDate;
+    }
+    
+    /**
+     * @return the credential scope of the request
+     */
+    public final String getCredentialScope() {
+    
+        return credentialScope;
+    }
+    
+    /**
+     * @return the signing key, available once the request is signed
+     */
+    public final byte[] getSigningKey() {
+    
+        return signingKey;
+    }
+    
+    /**
+     * @return the signature of the request, which is the seed signature of a chunked payload
+     */
+    public final String getSignature() {
+    
+        return signature;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved. WSO2 Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.connector.amazons3.auth;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.activation.DataHandler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.wso2.carbon.connector.amazons3.util.AmazonS3Constants;
+import org.wso2.carbon.connector.amazons3.util.AmazonS3PayloadHelper;
+import org.wso2.carbon.connector.core.AbstractConnector;
+
+/**
+ * Class AmazonS3StreamingUpload which signs an object upload with Signature Version 4 and sends the payload in signed
+ * aws-chunked chunks for Amazon S3 WSO2 ESB Connector. A binary payload is read from the incoming request while it is
+ * sent, so the object is never held in memory; when the length of the object is not known it is spooled to a temporary
+ * file first, since Amazon S3 requires the decoded length to be signed.
+ */
+public class AmazonS3StreamingUpload extends AbstractConnector {
+    
+    /**
+     * Connect method which is replacing the payload with the signed aws-chunked payload and generating the
+     * authentication of the upload.
+     *
+     * @param messageContext ESB messageContext.
+     */
+    public final void connect(final MessageContext messageContext) {
+    
+        final Map<String, String> parametersMap = AmazonS3AuthConnector.getParametersMap(messageContext);
+        InputStream payload = null;
+        try {
+            final int chunkSize = getChunkSize(parametersMap.get(AmazonS3Constants.CHUNK_SIZE));
+            final DataHandler dataHandler = AmazonS3PayloadHelper.getBinaryPayload(messageContext);
+            long decodedLength;
+            if (dataHandler == null) {
+                final byte[] content = AmazonS3PayloadHelper.serializePayload(messageContext);
+                payload = new ByteArrayInputStream(content);
+                decodedLength = content.length;
+            } else {
+                payload = dataHandler.getInputStream();
+                decodedLength = getDecodedLength(messageContext, parametersMap);
+                if (decodedLength < 0) {
+                    final File spoolFile = spool(payload);
+                    payload = new SpoolFileInputStream(spoolFile);
+                    decodedLength = spoolFile.length();
+                }
+            }
+            
+            final long encodedLength = AWSChunkedInputStream.getEncodedLength(decodedLength, chunkSize);
+            final Map<String, String> streamingHeaders = new HashMap<String, String>();
+            streamingHeaders.put(AmazonS3Constants.HD_CONTENT_ENCODING, AmazonS3Constants.AWS_CHUNKED);
+            streamingHeaders.put(AmazonS3Constants.HD_XAMZ_DECODED_CONTENT_LENGTH, String.valueOf(decodedLength));
+            streamingHeaders.put(AmazonS3Constants.HD_CONTENT_LENGTH, String.valueOf(encodedLength));
+            final AmazonS3SignatureV4 signatureV4 =
+                    AmazonS3AuthConnector.signV4(messageContext, parametersMap, streamingHeaders,
+                            AmazonS3SignatureV4.STREAMING_PAYLOAD);
+            
+            final InputStream chunkedPayload =
+                    new AWSChunkedInputStream(payload, chunkSize, signatureV4.getSigningKey(),
+                            signatureV4.getAmzDate(), signatureV4.getCredentialScope(), signatureV4.getSignature());
+            setPayload(messageContext, chunkedPayload, parametersMap.get(AmazonS3Constants.CONTENT_TYPE),
+                    encodedLength);
+            payload = null;
+        } catch (IOException ioe) {
+            log.error("Error reading the object content: ", ioe);
+            storeErrorResponseStatus(messageContext, ioe, AmazonS3Constants.IO_EXCEPTION_ERROR_CODE);
+            handleException("Error reading the object content: ", ioe, messageContext);
+        } catch (InvalidKeyException ike) {
+            log.error("Invalid key", ike);
+            storeErrorResponseStatus(messageContext, ike, AmazonS3Constants.INVALID_KEY_ERROR_CODE);
+            handleException("Invalid key", ike, messageContext);
+        } catch (NoSuchAlgorithmException iae) {
+            log.error("Invalid Algorithm", iae);
+            storeErrorResponseStatus(messageContext, iae, AmazonS3Constants.NOSUCH_ALGORITHM_ERROR_CODE);
+            handleException("Invalid Algorithm", iae, messageContext);
+        } catch (Exception exc) {
+            log.error("Error occured in connector", exc);
+            storeErrorResponseStatus(messageContext, exc, AmazonS3Constants.ERROR_CODE_EXCEPTION);
+            handleException("Error occured in connector", exc, messageContext);
+        } finally {
+            if (payload != null) {
+                closeQuietly(payload);
+            }
+        }
+    }
+    
+    /**
+     * getChunkSize method used to return the chunk size parameter, or the default chunk size when it is not valid.
+     *
+     * @param chunkSize chunk size parameter.
+     * @return size of the payload chunks.
+     */
+    private int getChunkSize(final String chunkSize) {
+    
+        if (!chunkSize.isEmpty()) {
+            try {
+                return Math.max(Integer.parseInt(chunkSize.trim()), AWSChunkedInputStream.MIN_CHUNK_SIZE);
+            } catch (NumberFormatException nfe) {
+                log.warn("Invalid chunk size " + chunkSize + ", using " + AWSChunkedInputStream.DEFAULT_CHUNK_SIZE);
+            }
+        }
+        return AWSChunkedInputStream.DEFAULT_CHUNK_SIZE;
+    }
+    
+    /**
+     * getDecodedLength method used to return the length of a binary payload, given as the contentLength parameter or
+     * by the Content-Length of the incoming request.
+     *
+     * @param messageContext ESB messageContext.
+     * @param parametersMap parameter values passed in via proxy.
+     * @return the length of the payload, or -1 if it is not known.
+     */
+    private long getDecodedLength(final MessageContext messageContext, final Map<String, String> parametersMap) {
+    
+        String contentLength = parametersMap.get(AmazonS3Constants.CONTENT_LENGTH);
+        if (contentLength.isEmpty()) {
+            final Object incomingLength =
+                    AmazonS3AuthConnector.getTransportHeaders(messageContext).get(AmazonS3Constants.HD_CONTENT_LENGTH);
+            contentLength = incomingLength == null ? AmazonS3Constants.EMPTY_STR : incomingLength.toString();
+        }
+        try {
+            return contentLength.isEmpty() ? -1 : Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException nfe) {
+            log.warn("Invalid content length " + contentLength + ", spooling the object to find its length");
+            return -1;
+        }
+    }
+    
+    /**
+     * spool method used to copy a payload of unknown length to a temporary file.
+     *
+     * @param payload stream of the payload.
+     * @return the temporary file.
+     * @throws IOException if an I/O error occurs when copying the payload.
+     */
+    private File spool(final InputStream payload) throws IOException {
+    
+        final File spoolFile = File.createTempFile(AmazonS3Constants.SPOOL_FILE_PREFIX, null);
+        spoolFile.deleteOnExit();
+        final OutputStream outputStream = new FileOutputStream(spoolFile);
+        boolean completed = false;
+        try {
+            final byte[] buffer = new byte[AmazonS3Constants.BUFFER_SIZE];
+            int read;
+            while ((read = payload.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            completed = true;
+        } finally {
+            closeQuietly(payload);
+            outputStream.close();
+            if (!completed && !spoolFile.delete()) {
+                log.warn("Unable to delete the temporary file " + spoolFile);
+            }
+        }
+        return spoolFile;
+    }
+    
+    /**
+     * setPayload method used to replace the payload with a binary payload read from the given stream when the message
+     * is sent.
+     *
+     * @param messageContext ESB messageContext.
+     * @param payload stream of the payload.
+     * @param contentType content type of the object.
+     * @param length length of the payload.
+     */
+    private void setPayload(final MessageContext messageContext, final InputStream payload, final String contentType,
+            final long length) {
+            
+        AmazonS3PayloadHelper.setBinaryPayload(messageContext, new AmazonS3PayloadHelper.StreamDataSource(payload,
+                contentType, AmazonS3Constants.AWS_CHUNKED));
+        
+        final org.apache.axis2.context.MessageContext axis2MessageContext =
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+        // Sent as the Content-Length by the template, which copies the content length instead of buffering the
+        // payload.
+        axis2MessageContext.setProperty(AmazonS3Constants.ORIGINAL_CONTENT_LENGTH, String.valueOf(length));
+    }
+    
+    private void closeQuietly(final InputStream inputStream) {
+    
+        try {
+            inputStream.close();
+        } catch (IOException ioe) {
+            log.warn("Unable to close the object content", ioe);
+        }
+    }
+    
+    /**
+     * Add a Throwable to a message context, the message from the throwable is embedded as the Synapse Constant
+     * ERROR_MESSAGE.
+     *
+     * @param ctxt message context to which the error tags need to be added
+     * @param throwable Throwable that needs to be parsed and added
+     * @param errorCode errorCode mapped to the exception
+     */
+    public void storeErrorResponseStatus(final MessageContext ctxt, final Throwable throwable, final int errorCode) {
+    
+        ctxt.setProperty(SynapseConstants.ERROR_CODE, errorCode);
+        ctxt.setProperty(SynapseConstants.ERROR_MESSAGE, throwable.getMessage());
+        ctxt.setFaultResponse(true);
+    }
+    
+    /**
+     * Stream of a spooled payload which deletes the temporary file when it is closed.
+     */
+    private static final class SpoolFileInputStream extends FileInputStream {
+    
+        private final File file;
+        
+        private SpoolFileInputStream(final File file) throws IOException {
+        
+            super(file);
+            this.file = file;
+        }
+        
+        public void close() throws IOException {
+        
+            try {
+                super.close();
+            } finally {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+    }
+}
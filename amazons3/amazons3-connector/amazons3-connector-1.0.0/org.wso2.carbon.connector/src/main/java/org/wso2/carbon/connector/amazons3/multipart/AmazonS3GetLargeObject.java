@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved. WSO2 Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.connector.amazons3.multipart;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import javax.activation.DataSource;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.wso2.carbon.connector.amazons3.util.AmazonS3Constants;
+import org.wso2.carbon.connector.amazons3.util.AmazonS3PayloadHelper;
+import org.wso2.carbon.connector.core.AbstractConnector;
+
+/**
+ * Class AmazonS3GetLargeObject which downloads an object in parallel ranges for Amazon S3 WSO2 ESB Connector. The
+ * object is written to the target given as a VFS URI, otherwise it replaces the message payload and is downloaded
+ * while the message is sent.
+ */
+public class AmazonS3GetLargeObject extends AbstractConnector {
+    
+    /**
+     * Connect method which is downloading the object.
+     *
+     * @param messageContext ESB messageContext.
+     */
+    public final void connect(final MessageContext messageContext) {
+    
+        final String bucketUrl = (String) messageContext.getProperty(AmazonS3Constants.BUCKET_URL);
+        final String objectName = (String) messageContext.getProperty(AmazonS3Constants.OBJECT_NAME);
+        final String target = (String) messageContext.getProperty(AmazonS3Constants.TARGET);
+        final String contentType = (String) messageContext.getProperty(AmazonS3Constants.CONTENT_TYPE);
+        try {
+            final AmazonS3MultipartTransfer transfer = AmazonS3MultipartTransfer.create(messageContext);
+            if (target != null && !target.trim().isEmpty()) {
+                final long size = download(transfer, bucketUrl, objectName, target.trim());
+                final OMFactory factory = OMAbstractFactory.getOMFactory();
+                final OMElement response = factory.createOMElement(AmazonS3Constants.GET_LARGE_OBJECT_RESPONSE, null);
+                factory.createOMElement("target", null, response).setText(target.trim());
+                factory.createOMElement("size", null, response).setText(String.valueOf(size));
+                AmazonS3PayloadHelper.setXmlPayload(messageContext, response);
+            } else {
+                AmazonS3PayloadHelper.setBinaryPayload(messageContext, new DownloadDataSource(transfer, bucketUrl,
+                        objectName, contentType));
+            }
+        } catch (IOException ioe) {
+            log.error("Error downloading the object: ", ioe);
+            storeErrorResponseStatus(messageContext, ioe, AmazonS3Constants.IO_EXCEPTION_ERROR_CODE);
+            handleException("Error downloading the object: ", ioe, messageContext);
+        } catch (Exception exc) {
+            log.error("Error occured in connector", exc);
+            storeErrorResponseStatus(messageContext, exc, AmazonS3Constants.ERROR_CODE_EXCEPTION);
+            handleException("Error occured in connector", exc, messageContext);
+        }
+    }
+    
+    /**
+     * download method used to write the object to a file, which is deleted if the download fails.
+     *
+     * @return the size of the object.
+     */
+    private long download(final AmazonS3MultipartTransfer transfer, final String bucketUrl, final String objectName,
+            final String target) throws IOException {
+            
+        final FileObject targetFile = VFS.getManager().resolveFile(target);
+        boolean completed = false;
+        try {
+            final OutputStream outputStream = targetFile.getContent().getOutputStream();
+            try {
+                final long size = transfer.download(bucketUrl, objectName, outputStream);
+                completed = true;
+                return size;
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            try {
+                if (!completed) {
+                    targetFile.delete();
+                }
+                targetFile.close();
+            } catch (IOException ioe) {
+                log.warn("Unable to clean up " + target, ioe);
+            }
+        }
+    }
+    
+    /**
+     * Add a Throwable to a message context, the message from the throwable is embedded as the Synapse Constant
+     * ERROR_MESSAGE.
+     *
+     * @param ctxt message context to which the error tags need to be added
+     * @param throwable Throwable that needs to be parsed and added
+     * @param errorCode errorCode mapped to the exception
+     */
+    public void storeErrorResponseStatus(final MessageContext ctxt, final Throwable throwable, final int errorCode) {
+    
+        ctxt.setProperty(SynapseConstants.ERROR_CODE, errorCode);
+        ctxt.setProperty(SynapseConstants.ERROR_MESSAGE, throwable.getMessage());
+        ctxt.setFaultResponse(true);
+    }
+    
+    /**
+     * Data source of a payload which starts downloading the object when the message is sent. The ranges are written
+     * to a pipe by a download thread, and an error of the download fails the read of the payload so that a partial
+     * object is never sent as a complete one.
+     */
+    private static final class DownloadDataSource implements DataSource {
+    
+        private final AmazonS3MultipartTransfer transfer;
+        
+        private final String bucketUrl;
+        
+        private final String objectName;
+        
+        private final String contentType;
+        
+        private DownloadDataSource(final AmazonS3MultipartTransfer transfer, final String bucketUrl,
+                final String objectName, final String contentType) {
+                
+            this.transfer = transfer;
+            this.bucketUrl = bucketUrl;
+            this.objectName = objectName;
+            this.contentType =
+                    contentType == null || contentType.isEmpty() ? AmazonS3Constants.OCTET_STREAM : contentType;
+        }
+        
+        public String getContentType() {
+        
+            return contentType;
+        }
+        
+        public InputStream getInputStream() throws IOException {
+        
+            final PipedInputStream pipe = new PipedInputStream(AmazonS3Constants.BUFFER_SIZE * 8);
+            final PipedOutputStream pipeOutput = new PipedOutputStream(pipe);
+            final DownloadInputStream inputStream = new DownloadInputStream(pipe);
+            final Thread downloader = new Thread(new Runnable() {
+                public void run() {
+                
+                    try {
+                        transfer.download(bucketUrl, objectName, pipeOutput);
+                    } catch (IOException ioe) {
+                        inputStream.failure = ioe;
+                    } finally {
+                        try {
+                            pipeOutput.close();
+                        } catch (IOException ioe) {
+                            // The reader has closed the pipe.
+                        }
+                    }
+                }
+            }, "amazons3-download-" + objectName);
+            downloader.setDaemon(true);
+            downloader.start();
+            return inputStream;
+        }
+        
+        public String getName() {
+        
+            return objectName;
+        }
+        
+        public OutputStream getOutputStream() throws IOException {
+        
+            throw new IOException("The payload is read only");
+        }
+    }
+    
+    /**
+     * Stream of a downloaded object which reports the failure of the download at the end of the pipe. Closing the
+     * stream closes the pipe, which stops the download.
+     */
+    private static final class DownloadInputStream extends FilterInputStream {
+    
+        private volatile IOException failure;
+        
+        private DownloadInputStream(final PipedInputStream pipe) {
+        
+            super(pipe);
+        }
+        
+        public int read() throws IOException {
+        
+            final int read = super.read();
+            if (read == -1) {
+                checkFailure();
+            }
+            return read;
+        }
+        
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        
+            final int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                checkFailure();
+            }
+            return read;
+        }
+        
+        private void checkFailure() throws IOException {
+        
+            if (failure != null) {
+                final IOException ioe = new IOException("Error downloading the object: " + failure.getMessage());
+                ioe.initCause(failure);
+                throw ioe;
+            }
+        }
+    }
+}
@@ -0,0 +1,632 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved. WSO2 Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.connector.amazons3.multipart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.MessageContext;
+import org.wso2.carbon.connector.amazon.auth.AWSSigner;
+import org.wso2.carbon.connector.amazons3.auth.AmazonS3AuthConnector;
+import org.wso2.carbon.connector.amazons3.auth.AmazonS3SignatureV4;
+import org.wso2.carbon.connector.amazons3.util.AmazonS3Constants;
+
+/**
+ * Class AmazonS3MultipartTransfer uploads and downloads large objects in parts on a bounded pool of workers.
+ *
+ * An upload reads the source one part at a time, uploads the parts concurrently with the multipart upload API and
+ * completes the upload with the ETags of the parts in order, or aborts it when a part cannot be uploaded. A download
+ * fetches ranges of the object concurrently and writes them to the target in order. Only as many parts as there are
+ * workers, and the part being read or written, are held in memory. Every part is retried on its own when the request
+ * fails with an I/O error or a server error. The requests are signed with Signature Version 4.
+ */
+public class AmazonS3MultipartTransfer {
+    
+    /**
+     * Minimum size of the parts accepted by the multipart upload API, except for the last one.
+     */
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    
+    /**
+     * Default size of the parts.
+     */
+    public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    
+    /**
+     * Default number of parts transferred at the same time.
+     */
+    public static final int DEFAULT_THREADS = 4;
+    
+    /**
+     * Default number of times a part is retried.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    
+    /**
+     * Maximum number of parts of a multipart upload.
+     */
+    private static final int MAX_PARTS = 10000;
+    
+    /**
+     * Delay before the first retry of a part, doubled for every further retry.
+     */
+    private static final long RETRY_DELAY = 500;
+    
+    private static final int CONNECT_TIMEOUT = 30000;
+    
+    private static final int READ_TIMEOUT = 300000;
+    
+    private static final String S3_NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+    
+    private static final String HD_ETAG = "ETag";
+    
+    private static final String HD_RANGE = "Range";
+    
+    private static final String HD_IF_MATCH = "If-Match";
+    
+    private static final String HD_AUTHORIZATION = "Authorization";
+    
+    private static final String HD_XAMZ_DATE = "x-amz-date";
+    
+    private static Log log = LogFactory.getLog(AmazonS3MultipartTransfer.class);
+    
+    private final String accessKeyId;
+    
+    private final String secretAccessKey;
+    
+    private final String region;
+    
+    private final String securityToken;
+    
+    private final int partSize;
+    
+    private final int threads;
+    
+    private final int maxRetries;
+    
+    /**
+     * Constructor for AmazonS3MultipartTransfer class.
+     *
+     * @param accessKeyId AWS access key ID.
+     * @param secretAccessKey AWS secret access key.
+     * @param region region of the bucket, us-east-1 when empty.
+     * @param securityToken security token of temporary credentials, may be empty.
+     * @param partSize size of the parts, at least MIN_PART_SIZE.
+     * @param threads number of parts transferred at the same time.
+     * @param maxRetries number of times a part is retried.
+     */
+    public AmazonS3MultipartTransfer(final String accessKeyId, final String secretAccessKey, final String region,
+            final String securityToken, final int partSize, final int threads, final int maxRetries) {
+            
+        this.accessKeyId = accessKeyId;
+        this.secretAccessKey = secretAccessKey;
+        this.region = region;
+        this.securityToken = securityToken;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.threads = threads > 0 ? threads : DEFAULT_THREADS;
+        this.maxRetries = Math.max(maxRetries, 0);
+    }
+    
+    /**
+     * Creates the transfer of a large object operation from the credentials and the template parameters.
+     *
+     * @param messageContext ESB messageContext.
+     * @return the transfer.
+     */
+    static AmazonS3MultipartTransfer create(final MessageContext messageContext) {
+    
+        final Map<String, String> parametersMap = AmazonS3AuthConnector.getParametersMap(messageContext);
+        return new AmazonS3MultipartTransfer(parametersMap.get(AmazonS3Constants.ACCESS_KEY_ID),
+                parametersMap.get(AmazonS3Constants.SECRET_ACCESS_KEY), parametersMap.get(AmazonS3Constants.REGION),
+                parametersMap.get(AmazonS3Constants.XAMZ_SECURITY_TOKEN), getIntProperty(messageContext,
+                        AmazonS3Constants.PART_SIZE, DEFAULT_PART_SIZE), getIntProperty(messageContext,
+                        AmazonS3Constants.THREADS, DEFAULT_THREADS), getIntProperty(messageContext,
+                        AmazonS3Constants.MAX_RETRIES, DEFAULT_MAX_RETRIES));
+    }
+    
+    /**
+     * Returns a template parameter as a number, or the default value when it is not given or not valid.
+     */
+    private static int getIntProperty(final MessageContext messageContext, final String name, final int defaultValue) {
+    
+        final Object value = messageContext.getProperty(name);
+        if (value == null || value.toString().trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException nfe) {
+            log.warn("Invalid value " + value + " of " + name + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * Uploads the content of the source as an object with the multipart upload API. The source is not closed.
+     *
+     * @param bucketUrl URL of the bucket.
+     * @param objectName name of the object.
+     * @param source content of the object.
+     * @param contentType content type of the object, may be empty.
+     * @return the CompleteMultipartUploadResult element returned by Amazon S3.
+     * @throws IOException if the object cannot be uploaded, in which case the multipart upload is aborted.
+     */
+    public final OMElement upload(final String bucketUrl, final String objectName, final InputStream source,
+            final String contentType) throws IOException {
+            
+        final ObjectLocation location = new ObjectLocation(bucketUrl, objectName);
+        final String uploadId = initiateUpload(location, contentType);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final LinkedList<Future<String>> pending = new LinkedList<Future<String>>();
+        final StringBuilder completeUpload = new StringBuilder("<CompleteMultipartUpload>");
+        boolean completed = false;
+        try {
+            int partNumber = 0;
+            byte[] part;
+            // An empty source is uploaded as a single empty part.
+            while ((part = readPart(source)) != null || partNumber == 0) {
+                if (++partNumber > MAX_PARTS) {
+                    throw new IOException("The object has more than " + MAX_PARTS
+                            + " parts, increase the part size");
+                }
+                pending.add(submitPart(executor, location, uploadId, partNumber, part == null ? new byte[0] : part));
+                while (pending.size() >= threads) {
+                    appendPart(completeUpload, partNumber - pending.size() + 1, waitFor(pending.removeFirst()));
+                }
+                if (part == null) {
+                    break;
+                }
+            }
+            while (!pending.isEmpty()) {
+                appendPart(completeUpload, partNumber - pending.size() + 1, waitFor(pending.removeFirst()));
+            }
+            completeUpload.append("</CompleteMultipartUpload>");
+            final OMElement result = completeUpload(location, uploadId, completeUpload.toString());
+            completed = true;
+            log.info("Uploaded " + partNumber + " parts to " + location.url);
+            return result;
+        } finally {
+            for (Future<String> future : pending) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+            if (!completed) {
+                abortUpload(location, uploadId);
+            }
+        }
+    }
+    
+    /**
+     * Downloads an object in ranges and writes it to the target in order. The target is not closed.
+     *
+     * @param bucketUrl URL of the bucket.
+     * @param objectName name of the object.
+     * @param target stream the object is written to.
+     * @return the size of the object.
+     * @throws IOException if the object cannot be downloaded.
+     */
+    public final long download(final String bucketUrl, final String objectName, final OutputStream target)
+            throws IOException {
+            
+        final ObjectLocation location = new ObjectLocation(bucketUrl, objectName);
+        final HttpURLConnection head = retry(new Callable<HttpURLConnection>() {
+            public HttpURLConnection call() throws IOException {
+                final HttpURLConnection connection =
+                        send("HEAD", location, AmazonS3Constants.EMPTY_STR, new HashMap<String, String>(), null);
+                connection.disconnect();
+                return connection;
+            }
+        }, "HEAD " + location.url);
+        final long length = Long.parseLong(head.getHeaderField(AmazonS3Constants.HD_CONTENT_LENGTH));
+        // The ranges are requested for the version of the object found first.
+        final String eTag = head.getHeaderField(HD_ETAG);
+        
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+        try {
+            for (long offset = 0; offset < length; offset += partSize) {
+                final long first = offset;
+                final long last = Math.min(offset + partSize, length) - 1;
+                pending.add(executor.submit(new Callable<byte[]>() {
+                    public byte[] call() throws IOException {
+                        return retry(new Callable<byte[]>() {
+                            public byte[] call() throws IOException {
+                                return getRange(location, first, last, eTag);
+                            }
+                        }, "GET " + location.url + " bytes " + first + "-" + last);
+                    }
+                }));
+                while (pending.size() > threads) {
+                    target.write(waitFor(pending.removeFirst()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                target.write(waitFor(pending.removeFirst()));
+            }
+            target.flush();
+            return length;
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Reads the next part of the source.
+     *
+     * @return the part, or null at the end of the source.
+     */
+    private byte[] readPart(final InputStream source) throws IOException {
+    
+        final byte[] buffer = new byte[partSize];
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = source.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        if (length == 0) {
+            return null;
+        }
+        if (length == buffer.length) {
+            return buffer;
+        }
+        final byte[] part = new byte[length];
+        System.arraycopy(buffer, 0, part, 0, length);
+        return part;
+    }
+    
+    private Future<String> submitPart(final ExecutorService executor, final ObjectLocation location,
+            final String uploadId, final int partNumber, final byte[] part) {
+            
+        return executor.submit(new Callable<String>() {
+            public String call() throws IOException {
+                return retry(new Callable<String>() {
+                    public String call() throws IOException {
+                        return uploadPart(location, uploadId, partNumber, part);
+                    }
+                }, "Part " + partNumber + " of " + location.url);
+            }
+        });
+    }
+    
+    private static void appendPart(final StringBuilder completeUpload, final int partNumber, final String eTag) {
+    
+        completeUpload.append("<Part><PartNumber>").append(partNumber).append("</PartNumber><ETag>")
+                .append(eTag.replace("&", "&amp;").replace("<", "&lt;")).append("</ETag></Part>");
+    }
+    
+    private String initiateUpload(final ObjectLocation location, final String contentType) throws IOException {
+    
+        final Map<String, String> headers = new HashMap<String, String>();
+        if (contentType != null && !contentType.isEmpty()) {
+            headers.put(AmazonS3Constants.HD_CONTENT_TYPE, contentType);
+        }
+        final OMElement result = retry(new Callable<OMElement>() {
+            public OMElement call() throws IOException {
+                return readXml(send("POST", location, "uploads", headers, new byte[0]));
+            }
+        }, "Initiating the multipart upload of " + location.url);
+        final OMElement uploadId = result.getFirstChildWithName(new QName(S3_NAMESPACE, "UploadId"));
+        if (uploadId == null) {
+            throw new IOException("No upload ID in the response of " + location.url);
+        }
+        return uploadId.getText();
+    }
+    
+    private String uploadPart(final ObjectLocation location, final String uploadId, final int partNumber,
+            final byte[] part) throws IOException {
+            
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put(AmazonS3Constants.HD_CONTENT_MD5, new String(Base64.encodeBase64(digest(AmazonS3Constants.MD5,
+                part)), AmazonS3Constants.UTF_8));
+        final HttpURLConnection connection =
+                send("PUT", location, "partNumber=" + partNumber + "&uploadId=" + uploadId, headers, part);
+        readFully(connection.getInputStream());
+        return connection.getHeaderField(HD_ETAG);
+    }
+    
+    private OMElement completeUpload(final ObjectLocation location, final String uploadId,
+            final String completeUpload) throws IOException {
+            
+        final byte[] body = completeUpload.getBytes(AmazonS3Constants.UTF_8);
+        return retry(new Callable<OMElement>() {
+            public OMElement call() throws IOException {
+                final OMElement result =
+                        readXml(send("POST", location, "uploadId=" + uploadId, new HashMap<String, String>(), body));
+                // Amazon S3 reports errors of the completion in the body of a successful response.
+                if ("Error".equals(result.getLocalName())) {
+                    throw new ResponseException("Completing the multipart upload of " + location.url + " failed: "
+                            + result.toString(), HttpURLConnection.HTTP_INTERNAL_ERROR);
+                }
+                return result;
+            }
+        }, "Completing the multipart upload of " + location.url);
+    }
+    
+    private void abortUpload(final ObjectLocation location, final String uploadId) {
+    
+        try {
+            send("DELETE", location, "uploadId=" + uploadId, new HashMap<String, String>(), null).disconnect();
+            log.info("Aborted the multipart upload " + uploadId + " of " + location.url);
+        } catch (IOException ioe) {
+            log.warn("Unable to abort the multipart upload " + uploadId + " of " + location.url, ioe);
+        }
+    }
+    
+    private byte[] getRange(final ObjectLocation location, final long first, final long last, final String eTag)
+            throws IOException {
+            
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HD_RANGE, "bytes=" + first + "-" + last);
+        if (eTag != null) {
+            headers.put(HD_IF_MATCH, eTag);
+        }
+        final byte[] range = readFully(send("GET", location, AmazonS3Constants.EMPTY_STR, headers, null)
+                .getInputStream());
+        if (range.length != last - first + 1) {
+            throw new IOException("Received " + range.length + " bytes instead of " + (last - first + 1)
+                    + " for bytes " + first + "-" + last + " of " + location.url);
+        }
+        return range;
+    }
+    
+    /**
+     * Signs and sends a request and checks that it succeeded.
+     *
+     * @param method HTTP method of the request.
+     * @param location location of the object.
+     * @param query query string of the request, not encoded.
+     * @param headers headers to be signed and sent.
+     * @param body body of the request, or null if the request has no body.
+     * @return the connection, with the response status read.
+     * @throws IOException if the request cannot be sent or does not succeed.
+     */
+    private HttpURLConnection send(final String method, final ObjectLocation location, final String query,
+            final Map<String, String> headers, final byte[] body) throws IOException {
+            
+        final String payloadHash =
+                body == null ? AmazonS3SignatureV4.EMPTY_PAYLOAD : AWSSigner.toHex(digest(AmazonS3Constants.SHA_256,
+                        body));
+        final AmazonS3SignatureV4 signatureV4 =
+                new AmazonS3SignatureV4(accessKeyId, secretAccessKey, region, new Date());
+        if (securityToken != null && !securityToken.isEmpty()) {
+            headers.put(AmazonS3Constants.HD_XAMZ_SECURITY_TOKEN, securityToken);
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            signatureV4.addHeader(header.getKey(), header.getValue());
+        }
+        final String authorization;
+        try {
+            authorization = signatureV4.sign(method, location.host, location.path, query, payloadHash);
+        } catch (GeneralSecurityException gse) {
+            final IOException ioe = new IOException("Unable to sign the request: " + gse.getMessage());
+            ioe.initCause(gse);
+            throw ioe;
+        }
+        
+        final URL url = query.isEmpty() ? location.url : new URL(location.url, location.url.getPath() + '?'
+                + encodeQuery(query));
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setUseCaches(false);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        connection.setRequestProperty(HD_XAMZ_DATE, signatureV4.getAmzDate());
+        connection.setRequestProperty(AmazonS3SignatureV4.HD_XAMZ_CONTENT_SHA256, payloadHash);
+        connection.setRequestProperty(HD_AUTHORIZATION, authorization);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            final OutputStream outputStream = connection.getOutputStream();
+            try {
+                outputStream.write(body);
+            } finally {
+                outputStream.close();
+            }
+        }
+        
+        final int status = connection.getResponseCode();
+        if (status < HttpURLConnection.HTTP_OK || status >= HttpURLConnection.HTTP_MULT_CHOICE) {
+            final InputStream errorStream = connection.getErrorStream();
+            final String error =
+                    errorStream == null ? AmazonS3Constants.EMPTY_STR : new String(readFully(errorStream),
+                            AmazonS3Constants.UTF_8);
+            throw new ResponseException(method + " " + url + " failed with HTTP " + status + ": " + error, status);
+        }
+        return connection;
+    }
+    
+    /**
+     * Runs a request, retrying it after a growing delay while it fails with an I/O error or a server error.
+     */
+    private <T> T retry(final Callable<T> request, final String description) throws IOException {
+    
+        for (int attempt = 0;; attempt++) {
+            try {
+                return request.call();
+            } catch (IOException ioe) {
+                final boolean retryable =
+                        !(ioe instanceof ResponseException)
+                                || ((ResponseException) ioe).statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+                if (attempt >= maxRetries || !retryable) {
+                    throw ioe;
+                }
+                log.warn(description + " failed, retrying: " + ioe.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY << attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while retrying: " + description);
+                }
+            } catch (Exception exc) {
+                final IOException ioe = new IOException(description + " failed: " + exc.getMessage());
+                ioe.initCause(exc);
+                throw ioe;
+            }
+        }
+    }
+    
+    private static <T> T waitFor(final Future<T> future) throws IOException {
+    
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while transferring the object");
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            final IOException ioe = new IOException("Error while transferring the object: " + ee.getCause());
+            ioe.initCause(ee.getCause());
+            throw ioe;
+        }
+    }
+    
+    private static OMElement readXml(final HttpURLConnection connection) throws IOException {
+    
+        final String response = new String(readFully(connection.getInputStream()), AmazonS3Constants.UTF_8);
+        try {
+            return AXIOMUtil.stringToOM(response);
+        } catch (XMLStreamException xse) {
+            final IOException ioe = new IOException("Invalid response from " + connection.getURL() + ": " + response);
+            ioe.initCause(xse);
+            throw ioe;
+        }
+    }
+    
+    private static byte[] readFully(final InputStream inputStream) throws IOException {
+    
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(AmazonS3Constants.BUFFER_SIZE);
+            final byte[] buffer = new byte[AmazonS3Constants.BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+    
+    private static byte[] digest(final String algorithm, final byte[] data) throws IOException {
+    
+        try {
+            return MessageDigest.getInstance(algorithm).digest(data);
+        } catch (GeneralSecurityException gse) {
+            final IOException ioe = new IOException("Unable to digest the part: " + gse.getMessage());
+            ioe.initCause(gse);
+            throw ioe;
+        }
+    }
+    
+    private static String encodeQuery(final String query) throws IOException {
+    
+        final StringBuilder encoded = new StringBuilder(query.length() + 16);
+        for (String parameter : query.split("&")) {
+            if (encoded.length() > 0) {
+                encoded.append('&');
+            }
+            final int equals = parameter.indexOf('=');
+            if (equals == -1) {
+                AWSSigner.percentEncode(encoded, parameter, true);
+            } else {
+                AWSSigner.percentEncode(encoded, parameter.substring(0, equals), true);
+                encoded.append('=');
+                AWSSigner.percentEncode(encoded, parameter.substring(equals + 1), true);
+            }
+        }
+        return encoded.toString();
+    }
+    
+    /**
+     * Location of an object, with the path as it is signed and the URL the path is encoded in.
+     */
+    private static final class ObjectLocation {
+    
+        private final URL url;
+        
+        private final String host;
+        
+        private final String path;
+        
+        private ObjectLocation(final String bucketUrl, final String objectName) throws IOException {
+        
+            final URL bucket;
+            try {
+                bucket = new URL(bucketUrl);
+            } catch (MalformedURLException mue) {
+                throw new IOException("Invalid bucket URL " + bucketUrl);
+            }
+            final String bucketPath = bucket.getPath().endsWith("/") ? bucket.getPath() : bucket.getPath() + '/';
+            final String objectPath = objectName.startsWith("/") ? objectName.substring(1) : objectName;
+            path = bucketPath + objectPath;
+            host = bucket.getPort() == -1 ? bucket.getHost() : bucket.getHost() + ':' + bucket.getPort();
+            
+            final StringBuilder encodedPath = new StringBuilder(bucketPath);
+            final String[] segments = objectPath.split("/", -1);
+            for (int index = 0; index < segments.length; index++) {
+                if (index > 0) {
+                    encodedPath.append('/');
+                }
+                AWSSigner.percentEncode(encodedPath, segments[index], true);
+            }
+            url = new URL(bucket, encodedPath.toString());
+        }
+    }
+    
+    /**
+     * Exception of a request which Amazon S3 answered with an error status.
+     */
+    private static final class ResponseException extends IOException {
+    
+        private static final long serialVersionUID = 1L;
+        
+        private final int statusCode;
+        
+        private ResponseException(final String message, final int statusCode) {
+        
+            super(message);
+            this.statusCode = statusCode;
+        }
+    }
+}
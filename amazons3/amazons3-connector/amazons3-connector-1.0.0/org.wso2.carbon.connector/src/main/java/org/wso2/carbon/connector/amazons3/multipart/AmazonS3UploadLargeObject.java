@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved. WSO2 Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.connector.amazons3.multipart;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.activation.DataHandler;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.wso2.carbon.connector.amazons3.util.AmazonS3Constants;
+import org.wso2.carbon.connector.amazons3.util.AmazonS3PayloadHelper;
+import org.wso2.carbon.connector.core.AbstractConnector;
+
+/**
+ * Class AmazonS3UploadLargeObject which uploads a file or the message payload as an object in parallel parts for
+ * Amazon S3 WSO2 ESB Connector. The source is given as a VFS URI, otherwise the message payload is uploaded. The
+ * payload is replaced with the CompleteMultipartUploadResult returned by Amazon S3.
+ */
+public class AmazonS3UploadLargeObject extends AbstractConnector {
+    
+    /**
+     * Connect method which is uploading the object.
+     *
+     * @param messageContext ESB messageContext.
+     */
+    public final void connect(final MessageContext messageContext) {
+    
+        final String bucketUrl = (String) messageContext.getProperty(AmazonS3Constants.BUCKET_URL);
+        final String objectName = (String) messageContext.getProperty(AmazonS3Constants.OBJECT_NAME);
+        final String source = (String) messageContext.getProperty(AmazonS3Constants.SOURCE);
+        final String contentType = (String) messageContext.getProperty(AmazonS3Constants.CONTENT_TYPE);
+        FileObject sourceFile = null;
+        InputStream inputStream = null;
+        try {
+            final AmazonS3MultipartTransfer transfer = AmazonS3MultipartTransfer.create(messageContext);
+            if (source != null && !source.trim().isEmpty()) {
+                sourceFile = VFS.getManager().resolveFile(source.trim());
+                inputStream = sourceFile.getContent().getInputStream();
+            } else {
+                final DataHandler dataHandler = AmazonS3PayloadHelper.getBinaryPayload(messageContext);
+                inputStream =
+                        dataHandler == null ? new ByteArrayInputStream(
+                                AmazonS3PayloadHelper.serializePayload(messageContext)) : dataHandler.getInputStream();
+            }
+            final OMElement result = transfer.upload(bucketUrl, objectName, inputStream, contentType);
+            AmazonS3PayloadHelper.setXmlPayload(messageContext, result);
+        } catch (IOException ioe) {
+            log.error("Error uploading the object: ", ioe);
+            storeErrorResponseStatus(messageContext, ioe, AmazonS3Constants.IO_EXCEPTION_ERROR_CODE);
+            handleException("Error uploading the object: ", ioe, messageContext);
+        } catch (Exception exc) {
+            log.error("Error occured in connector", exc);
+            storeErrorResponseStatus(messageContext, exc, AmazonS3Constants.ERROR_CODE_EXCEPTION);
+            handleException("Error occured in connector", exc, messageContext);
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException ioe) {
+                    log.warn("Unable to close the object content", ioe);
+                }
+            }
+            if (sourceFile != null) {
+                try {
+                    sourceFile.close();
+                } catch (IOException ioe) {
+                    log.warn("Unable to close " + source, ioe);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Add a Throwable to a message context, the message from the throwable is embedded as the Synapse Constant
+     * ERROR_MESSAGE.
+     *
+     * @param ctxt message context to which the error tags need to be added
+     * @param throwable Throwable that needs to be parsed and added
+     * @param errorCode errorCode mapped to the exception
+     */
+    public void storeErrorResponseStatus(final MessageContext ctxt, final Throwable throwable, final int errorCode) {
+    
+        ctxt.setProperty(SynapseConstants.ERROR_CODE, errorCode);
+        ctxt.setProperty(SynapseConstants.ERROR_MESSAGE, throwable.getMessage());
+        ctxt.setFaultResponse(true);
+    }
+}
@@ -118,6 +118,41 @@ public final class AmazonS3Constants {
      */
     public static final String DELETE_CONFIG = "uri.var.deleteConfig";
     
+    /**
+     * Constant for signatureVersion.
+     */
+    public static final String SIGNATURE_VERSION = "signatureVersion";
+    
+    /**
+     * Constant for region.
+     */
+    public static final String REGION = "region";
+    
+    /**
+     * Constant for host.
+     */
+    public static final String HOST = "host";
+    
+    /**
+     * Constant for contentLength.
+     */
+    public static final String CONTENT_LENGTH = "contentLength";
+    
+    /**
+     * Constant for chunkSize.
+     */
+    public static final String CHUNK_SIZE = "chunkSize";
+    
+    /**
+     * Constant for bucketUrl.
+     */
+    public static final String BUCKET_URL = "uri.var.bucketUrl";
+    
+    /**
+     * Constant for the SHA-256 hash of the payload generated by AmazonS3ContentMD5Builder.
+     */
+    public static final String PAYLOAD_SHA256 = "uri.var.payloadSHA256";
+    
     /**
      * Constant for xAmzDate.
      */
@@ -347,6 +382,11 @@ public final class AmazonS3Constants {
      */
     public static final String IS_XAMZ_DATE_VAL = "isXAmzDateValue";
     
+    /**
+     * Constant for xAmzContentSha256Value.
+     */
+    public static final String XAMZ_CONTENT_SHA256_VAL = "xAmzContentSha256Value";
+    
     /**
      * Constant for xAmzAclValue.
      */
@@ -440,11 +480,121 @@ public final class AmazonS3Constants {
      */
     public static final String GET_OBJECT_RESPONSE = "getObjectResponse";
     
+    /**
+     * Constant for getLargeObjectResponse.
+     */
+    public static final String GET_LARGE_OBJECT_RESPONSE = "getLargeObjectResponse";
+    
     /**
      * Constant for buffer size during MD5 conversion.
      */
     public static final int BUFFER_SIZE = 8192;
     
+    /**
+     * Constant for Signature Version 4.
+     */
+    public static final String SIGNATURE_V4 = "4";
+    
+    /**
+     * Constant for the host of path-style requests.
+     */
+    public static final String DEFAULT_HOST = "s3.amazonaws.com";
+    
+    /**
+     * Constant for the payload hash of requests whose payload is not signed.
+     */
+    public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    
+    /**
+     * Constant for standard SHA-256 algorithm name.
+     */
+    public static final String SHA_256 = "SHA-256";
+    
+    /**
+     * Constant for UTF-8 encoding.
+     */
+    public static final String UTF_8 = "UTF-8";
+    
+    /**
+     * Constant for the aws-chunked content encoding.
+     */
+    public static final String AWS_CHUNKED = "aws-chunked";
+    
+    /**
+     * Constant for Content-Length header.
+     */
+    public static final String HD_CONTENT_LENGTH = "Content-Length";
+    
+    /**
+     * Constant for Content-MD5 header.
+     */
+    public static final String HD_CONTENT_MD5 = "Content-MD5";
+    
+    /**
+     * Constant for Content-Type header.
+     */
+    public static final String HD_CONTENT_TYPE = "Content-Type";
+    
+    /**
+     * Constant for Content-Encoding header.
+     */
+    public static final String HD_CONTENT_ENCODING = "Content-Encoding";
+    
+    /**
+     * Constant for x-amz-decoded-content-length header.
+     */
+    public static final String HD_XAMZ_DECODED_CONTENT_LENGTH = "x-amz-decoded-content-length";
+    
+    /**
+     * Constant for the axis2 property holding the length the transport sends as Content-Length.
+     */
+    public static final String ORIGINAL_CONTENT_LENGTH = "ORIGINAL_CONTENT_LENGTH";
+    
+    /**
+     * Constant for the content type of binary payloads.
+     */
+    public static final String OCTET_STREAM = "application/octet-stream";
+    
+    /**
+     * Constant for the content type of XML payloads.
+     */
+    public static final String APPLICATION_XML = "application/xml";
+    
+    /**
+     * Constant for the prefix of the temporary files of uploads with an unknown length.
+     */
+    public static final String SPOOL_FILE_PREFIX = "amazons3-upload-";
+    
+    /**
+     * Constant for objectName.
+     */
+    public static final String OBJECT_NAME = "uri.var.objectName";
+    
+    /**
+     * Constant for source.
+     */
+    public static final String SOURCE = "uri.var.source";
+    
+    /**
+     * Constant for target.
+     */
+    public static final String TARGET = "uri.var.target";
+    
+    /**
+     * Constant for partSize.
+     */
+    public static final String PART_SIZE = "uri.var.partSize";
+    
+    /**
+     * Constant for threads.
+     */
+    public static final String THREADS = "uri.var.threads";
+    
+    /**
+     * Constant for maxRetries.
+     */
+    public static final String MAX_RETRIES = "uri.var.maxRetries";
+    
     // Error Constants
     /**
      * Constant errorCode for IOException.
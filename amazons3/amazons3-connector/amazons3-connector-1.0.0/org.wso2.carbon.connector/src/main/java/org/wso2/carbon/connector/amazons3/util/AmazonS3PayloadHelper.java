@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved. WSO2 Inc. licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.connector.amazons3.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNode;
+import org.apache.axiom.om.OMText;
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.axis2.Constants;
+import org.apache.axis2.transport.base.BaseConstants;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+
+/**
+ * Class AmazonS3PayloadHelper reads object content from the message payload and replaces the payload with object
+ * content which is streamed when the message is sent.
+ */
+public final class AmazonS3PayloadHelper {
+    
+    /**
+     * constructor for class AmazonS3PayloadHelper.
+     */
+    private AmazonS3PayloadHelper() {
+    
+    }
+    
+    /**
+     * getBinaryPayload method used to return the data handler of a binary payload.
+     *
+     * @param messageContext ESB messageContext.
+     * @return the data handler, or null if the payload is not binary.
+     */
+    public static DataHandler getBinaryPayload(final MessageContext messageContext) {
+    
+        final OMElement firstElement = messageContext.getEnvelope().getBody().getFirstElement();
+        if (firstElement != null) {
+            final OMNode child = firstElement.getFirstOMChild();
+            if (child instanceof OMText && ((OMText) child).isBinary()) {
+                return (DataHandler) ((OMText) child).getDataHandler();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * serializePayload method used to return the UTF-8 bytes of a text or XML payload, which is already in memory.
+     *
+     * @param messageContext ESB messageContext.
+     * @return the payload bytes.
+     * @throws IOException if the payload cannot be encoded.
+     * @throws XMLStreamException if the payload cannot be serialized.
+     */
+    public static byte[] serializePayload(final MessageContext messageContext) throws IOException,
+            XMLStreamException {
+            
+        final OMElement firstElement = messageContext.getEnvelope().getBody().getFirstElement();
+        if (firstElement == null) {
+            return new byte[0];
+        }
+        if (BaseConstants.DEFAULT_TEXT_WRAPPER.equals(firstElement.getQName())) {
+            return firstElement.getText().getBytes(AmazonS3Constants.UTF_8);
+        }
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(AmazonS3Constants.BUFFER_SIZE);
+        firstElement.serialize(outputStream);
+        return outputStream.toByteArray();
+    }
+    
+    /**
+     * setBinaryPayload method used to replace the payload with a binary payload read from the data source when the
+     * message is sent.
+     *
+     * @param messageContext ESB messageContext.
+     * @param dataSource source of the payload.
+     */
+    public static void setBinaryPayload(final MessageContext messageContext, final DataSource dataSource) {
+    
+        final OMFactory factory = OMAbstractFactory.getOMFactory();
+        final OMElement binary = factory.createOMElement(BaseConstants.DEFAULT_BINARY_WRAPPER);
+        binary.addChild(factory.createOMText(new DataHandler(dataSource), true));
+        replaceFirstElement(messageContext, binary);
+        
+        final org.apache.axis2.context.MessageContext axis2MessageContext =
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+        axis2MessageContext.setProperty(Constants.Configuration.MESSAGE_TYPE, AmazonS3Constants.OCTET_STREAM);
+        axis2MessageContext.setProperty(Constants.Configuration.CONTENT_TYPE, dataSource.getContentType());
+    }
+    
+    /**
+     * setXmlPayload method used to replace the payload with an XML element.
+     *
+     * @param messageContext ESB messageContext.
+     * @param payload the new payload.
+     */
+    public static void setXmlPayload(final MessageContext messageContext, final OMElement payload) {
+    
+        replaceFirstElement(messageContext, payload);
+        
+        final org.apache.axis2.context.MessageContext axis2MessageContext =
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+        axis2MessageContext.setProperty(Constants.Configuration.MESSAGE_TYPE, AmazonS3Constants.APPLICATION_XML);
+        axis2MessageContext.setProperty(Constants.Configuration.CONTENT_TYPE, AmazonS3Constants.APPLICATION_XML);
+    }
+    
+    private static void replaceFirstElement(final MessageContext messageContext, final OMElement element) {
+    
+        final SOAPBody body = messageContext.getEnvelope().getBody();
+        final OMElement firstElement = body.getFirstElement();
+        if (firstElement != null) {
+            firstElement.detach();
+        }
+        body.addChild(element);
+    }
+    
+    /**
+     * Data source of a payload which is read once, when the message is sent.
+     */
+    public static class StreamDataSource implements DataSource {
+    
+        private final InputStream inputStream;
+        
+        private final String contentType;
+        
+        private final String name;
+        
+        /**
+         * Constructor for StreamDataSource class.
+         *
+         * @param inputStream stream of the payload.
+         * @param contentType content type of the payload, application/octet-stream when empty.
+         * @param name name of the payload.
+         */
+        public StreamDataSource(final InputStream inputStream, final String contentType, final String name) {
+        
+            this.inputStream = inputStream;
+            this.contentType =
+                    contentType == null || contentType.isEmpty() ? AmazonS3Constants.OCTET_STREAM : contentType;
+            this.name = name;
+        }
+        
+        public String getContentType() {
+        
+            return contentType;
+        }
+        
+        public InputStream getInputStream() throws IOException {
+        
+            return inputStream;
+        }
+        
+        public String getName() {
+        
+            return name;
+        }
+        
+        public OutputStream getOutputStream() throws IOException {
+        
+            throw new IOException("The payload is read only");
+        }
+    }
+}
@@ -117,8 +117,10 @@ public class AmazonS3ConnectorIntegrationTest extends ESBIntegrationTest {
         
         final String proxyFilePath = "file:///" + pathToProxiesDirectory + "amazons3.xml";
         final String multipartProxyPath = "file:///" + pathToProxiesDirectory + "amazons3_multipart.xml";
+        final String multipartV4ProxyPath = "file:///" + pathToProxiesDirectory + "amazons3_multipart_v4.xml";
         
         proxyAdmin.addProxyService(new DataHandler(new URL(multipartProxyPath)));
+        proxyAdmin.addProxyService(new DataHandler(new URL(multipartV4ProxyPath)));
         proxyAdmin.addProxyService(new DataHandler(new URL(proxyFilePath)));
     }
     
@@ -761,6 +763,39 @@ public class AmazonS3ConnectorIntegrationTest extends ESBIntegrationTest {
         Assert.assertTrue(responseCode == 200);
     }
     
+    /**
+     * Positive test case for createObject method with Signature Version 4, which streams the object in signed chunks.
+     */
+    @Test(groups = { "wso2.esb" }, dependsOnMethods = { "testCreateBucketWithOptionalParameters" }, description = "AmazonS3 {createObject} integration test with Signature Version 4.")
+    public void testCreateObjectWithSignatureVersion4() throws Exception {
+    
+        final String objectName = amazons3ConnectorProperties.getProperty("objectName_7");
+        final String bucketUrl = amazons3ConnectorProperties.getProperty("bucketUrl_5");
+        
+        final Map<String, String> requestHeadersMap = new HashMap<String, String>();
+        requestHeadersMap.put("Action", "urn:createObject");
+        requestHeadersMap.put("Content-Type", "text/plain");
+        
+        // Call through the ESB.
+        final String requestString =
+                getProxyServiceURL("multipartV4") + "?accessKeyId="
+                        + amazons3ConnectorProperties.getProperty("accessKeyId") + "&secretAccessKey="
+                        + amazons3ConnectorProperties.getProperty("secretAccessKey") + "&region="
+                        + amazons3ConnectorProperties.getProperty("region_5") + "&objectName=" + objectName
+                        + "&bucketUrl=" + bucketUrl;
+        
+        final MultipartFormdataProcessor multipartProcessor =
+                new MultipartFormdataProcessor(requestString, requestHeadersMap, "PUT");
+        
+        final File file = new File(pathToResourcesDirectory + amazons3ConnectorProperties.getProperty("objectName"));
+        multipartProcessor.addFileToRequestPlain(file);
+        
+        final RestResponse<OMElement> esbRestResponse = multipartProcessor.process();
+        
+        Assert.assertTrue(esbRestResponse.getHttpStatusCode() == 200);
+        Assert.assertNotNull(esbRestResponse.getHeadersMap().get("ETag"));
+    }
+    
     /**
      * To test the method deleteMultipleObjects.
      */
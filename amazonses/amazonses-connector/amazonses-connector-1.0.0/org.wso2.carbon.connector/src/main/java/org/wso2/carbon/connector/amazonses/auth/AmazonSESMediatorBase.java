@@ -23,19 +23,15 @@ import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TimeZone;
 import java.util.TreeMap;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
 import org.apache.commons.codec.binary.Base64;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseConstants;
+import org.wso2.carbon.connector.amazon.auth.AWSSigner;
 import org.wso2.carbon.connector.amazonses.constants.AmazonSESConstants;
 import org.wso2.carbon.connector.core.AbstractConnector;
 
@@ -44,16 +40,6 @@ import org.wso2.carbon.connector.core.AbstractConnector;
  */
 public abstract class AmazonSESMediatorBase extends AbstractConnector {
     
-    /**
-     * The header date format.
-     */
-    private SimpleDateFormat headerDateFormat;
-    
-    /**
-     * The iso8601 date format.
-     */
-    private SimpleDateFormat iso8601DateFormat;
-    
     /**
      * Axis implementation of the javax SOAPMessageContext class.
      */
@@ -73,10 +59,6 @@ public abstract class AmazonSESMediatorBase extends AbstractConnector {
     
         this.messageContext = context;
         
-        headerDateFormat = new SimpleDateFormat(AmazonSESConstants.HEADER_DATE_FORMATTER);
-        headerDateFormat.setTimeZone(TimeZone.getTimeZone(AmazonSESConstants.GMT));
-        iso8601DateFormat = new SimpleDateFormat(AmazonSESConstants.ISO_8601_DATE_FORMATTER);
-        iso8601DateFormat.setTimeZone(TimeZone.getTimeZone(AmazonSESConstants.GMT));
         parameterMap = new TreeMap<String, String>();
         
         populateParameterMap();
@@ -169,12 +151,9 @@ public abstract class AmazonSESMediatorBase extends AbstractConnector {
     private byte[] hmacSHA1(final String value, final String key) {
     
         Charset charset = Charset.defaultCharset();
-        byte[] keyBytes = key.getBytes(charset);
-        final SecretKeySpec signingKey = new SecretKeySpec(keyBytes, AmazonSESConstants.HMAC_ALGORITHM);
-        Mac mac = null;
+        byte[] digest = null;
         try {
-            mac = Mac.getInstance(AmazonSESConstants.HMAC_ALGORITHM);
-            mac.init(signingKey);
+            digest = AWSSigner.hmacSHA1(key.getBytes(charset), value.getBytes(charset));
         } catch (NoSuchAlgorithmException nsa) {
             log.error(AmazonSESConstants.CONNECTOR_ERROR, nsa);
             storeErrorResponseStatus(messageContext, nsa, AmazonSESConstants.NOSUCH_ALGORITHM_ERROR_CODE);
@@ -185,7 +164,7 @@ public abstract class AmazonSESMediatorBase extends AbstractConnector {
             handleException(AmazonSESConstants.CONNECTOR_ERROR, ike, messageContext);
         }
         
-        return mac.doFinal(value.getBytes(charset));
+        return digest;
     }
     
     /**
@@ -194,10 +173,10 @@ public abstract class AmazonSESMediatorBase extends AbstractConnector {
     private void generateSignature() {
     
         final Date currentDate = new Date();
-        final String headerDate = headerDateFormat.format(currentDate);
+        final String headerDate = AWSSigner.formatDate(currentDate, AmazonSESConstants.HEADER_DATE_FORMATTER);
         messageContext.setProperty(AmazonSESConstants.ESB_X_AMZ_DATE_HEADER_SET, headerDate);
         
-        String iso8601Date = iso8601DateFormat.format(currentDate);
+        String iso8601Date = AWSSigner.formatDate(currentDate, AmazonSESConstants.ISO_8601_DATE_FORMATTER);
         parameterMap.put(AmazonSESConstants.BODY_PARAMETER_TIMESTAMP, iso8601Date);
         
         byte[] digest =
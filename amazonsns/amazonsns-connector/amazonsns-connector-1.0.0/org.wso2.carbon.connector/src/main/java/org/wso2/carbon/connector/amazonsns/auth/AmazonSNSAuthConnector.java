@@ -19,25 +19,17 @@
 package org.wso2.carbon.connector.amazonsns.auth;
 
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.nio.charset.Charset;
 import java.security.InvalidKeyException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.TimeZone;
 import java.util.TreeMap;
-
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.regex.Pattern;
 
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseConstants;
+import org.wso2.carbon.connector.amazon.auth.AWSSigner;
 import org.wso2.carbon.connector.amazonsns.constants.AmazonSNSConstants;
 import org.wso2.carbon.connector.core.AbstractConnector;
 
@@ -48,6 +40,11 @@ import org.wso2.carbon.connector.core.AbstractConnector;
 
 public class AmazonSNSAuthConnector extends AbstractConnector {
     
+    /**
+     * Pattern of the sequential spaces of header values, compiled once.
+     */
+    private static final Pattern TRIM_SPACE_PATTERN = Pattern.compile(AmazonSNSConstants.TRIM_SPACE_REGEX);
+    
     /**
      * Connect method which is generating authentication of the connector for each request.
      * 
@@ -55,22 +52,13 @@ public class AmazonSNSAuthConnector extends AbstractConnector {
      */
     public final void connect(final MessageContext messageContext) {
     
-        final StringBuilder canonicalRequest = new StringBuilder();
-        final StringBuilder stringToSign = new StringBuilder();
+        final StringBuilder canonicalRequest = new StringBuilder(512);
         final StringBuilder payloadBuilder = new StringBuilder();
         final StringBuilder payloadStrBuilder = new StringBuilder();
-        final StringBuilder authHeader = new StringBuilder();
         
         // Generate time-stamp which will be sent to API and to be used in Signature
-        final Date date = new Date();
-        final TimeZone timeZone = TimeZone.getTimeZone(AmazonSNSConstants.GMT);
-        final DateFormat dateFormat = new SimpleDateFormat(AmazonSNSConstants.ISO8601_BASIC_DATE_FORMAT);
-        dateFormat.setTimeZone(timeZone);
-        final String amzDate = dateFormat.format(date);
-        
-        final DateFormat shortDateFormat = new SimpleDateFormat(AmazonSNSConstants.SHORT_DATE_FORMAT);
-        shortDateFormat.setTimeZone(timeZone);
-        final String shortDate = shortDateFormat.format(date);
+        final String amzDate = AWSSigner.formatDate(new Date(), AmazonSNSConstants.ISO8601_BASIC_DATE_FORMAT);
+        final String shortDate = amzDate.substring(0, AWSSigner.SHORT_DATE_LENGTH);
         
         messageContext.setProperty(AmazonSNSConstants.AMZ_DATE, amzDate);
         final Map<String, String> parameterNamesMap = getParameterNamesMap();
@@ -81,14 +69,16 @@ public class AmazonSNSAuthConnector extends AbstractConnector {
             canonicalRequest.append(messageContext.getProperty(AmazonSNSConstants.HTTP_REQUEST_URI));
             canonicalRequest.append(AmazonSNSConstants.NEW_LINE);
             
-            final String charSet = Charset.defaultCharset().toString();
-            
+            // Encodes the payload preserving unreserved characters as per the API guide
+            // (http://docs.aws.amazon.com/general/latest/gr/sigv4-create-canonical-request.html)
             for (Map.Entry<String, String> entry : parametersMap.entrySet()) {
                 
-                payloadBuilder.append(URLEncoder.encode(entry.getKey(), charSet));
+                if (payloadBuilder.length() > 0) {
+                    payloadBuilder.append(AmazonSNSConstants.AMPERSAND);
+                }
+                AWSSigner.percentEncode(payloadBuilder, entry.getKey(), true);
                 payloadBuilder.append(AmazonSNSConstants.EQUAL);
-                payloadBuilder.append(URLEncoder.encode(entry.getValue(), charSet));
-                payloadBuilder.append(AmazonSNSConstants.AMPERSAND);
+                AWSSigner.percentEncode(payloadBuilder, entry.getValue(), true);
                 
                 // Generating XML Payload.
                 payloadStrBuilder.append(AmazonSNSConstants.LESS_THAN);
@@ -102,94 +92,62 @@ public class AmazonSNSAuthConnector extends AbstractConnector {
                 
             }
             
-            // Adds authorization header to message context, removes additionally appended comma at the end
+            // Adds the request payload to message context
             if (payloadStrBuilder.length() > 0) {
-                messageContext.setProperty(AmazonSNSConstants.REQUEST_PAYLOAD,
-                        payloadStrBuilder.substring(0, payloadStrBuilder.length()));
+                messageContext.setProperty(AmazonSNSConstants.REQUEST_PAYLOAD, payloadStrBuilder.toString());
             }
             
             // Appends empty string since no url parameters are used in POST API requests
-            canonicalRequest.append("");
             canonicalRequest.append(AmazonSNSConstants.NEW_LINE);
             
             final Map<String, String> headersMap = getSortedHeadersMap(messageContext, parameterNamesMap);
-            final StringBuilder canonicalHeaders = new StringBuilder();
             final StringBuilder signedHeader = new StringBuilder();
             
-            final Set<String> keysSet = headersMap.keySet();
-            for (String key : keysSet) {
+            for (Map.Entry<String, String> entry : headersMap.entrySet()) {
                 
-                canonicalHeaders.append(key);
-                canonicalHeaders.append(AmazonSNSConstants.COLON);
-                canonicalHeaders.append(headersMap.get(key));
-                canonicalHeaders.append(AmazonSNSConstants.NEW_LINE);
-                signedHeader.append(key);
-                signedHeader.append(AmazonSNSConstants.SEMI_COLON);
+                canonicalRequest.append(entry.getKey());
+                canonicalRequest.append(AmazonSNSConstants.COLON);
+                canonicalRequest.append(entry.getValue());
+                canonicalRequest.append(AmazonSNSConstants.NEW_LINE);
+                if (signedHeader.length() > 0) {
+                    signedHeader.append(AmazonSNSConstants.SEMI_COLON);
+                }
+                signedHeader.append(entry.getKey());
             }
             
-            canonicalRequest.append(canonicalHeaders.toString());
             canonicalRequest.append(AmazonSNSConstants.NEW_LINE);
             
-            // Remove unwanted semi-colon at the end of the signedHeader string
-            String signedHeaders = "";
-            if (signedHeader.length() > 0) {
-                signedHeaders = signedHeader.substring(0, signedHeader.length() - 1);
-            }
-            
+            final String signedHeaders = signedHeader.toString();
             canonicalRequest.append(signedHeaders);
             canonicalRequest.append(AmazonSNSConstants.NEW_LINE);
+            canonicalRequest.append(AWSSigner.sha256Hex(payloadBuilder.toString()));
             
-            String requestPayload = "";
-            if (payloadBuilder.length() > 0) {
-                /*
-                 * First removes the additional ampersand appended to the end of the payloadBuilder, then o
-                 * further modifications to preserve unreserved characters as per the API guide
-                 * (http://docs.aws.amazon.com/general/latest/gr/sigv4-create-canonical-request.html)
-                 */
-                requestPayload =
-                        payloadBuilder.substring(0, payloadBuilder.length() - 1)
-                                .replace(AmazonSNSConstants.PLUS, AmazonSNSConstants.URL_ENCODED_PLUS)
-                                .replace(AmazonSNSConstants.URL_ENCODED_TILT, AmazonSNSConstants.TILT)
-                                .replace(AmazonSNSConstants.ASTERISK, AmazonSNSConstants.URL_ENCODED_ASTERISK);
-            }
-            
-            canonicalRequest.append(bytesToHex(hash(messageContext, requestPayload)).toLowerCase());
+            final String region = messageContext.getProperty(AmazonSNSConstants.REGION).toString();
+            final String service = messageContext.getProperty(AmazonSNSConstants.SERVICE).toString();
+            final String terminationString =
+                    messageContext.getProperty(AmazonSNSConstants.TERMINATION_STRING).toString();
+            final String credentialScope =
+                    shortDate + AmazonSNSConstants.FORWARD_SLASH + region + AmazonSNSConstants.FORWARD_SLASH
+                            + service + AmazonSNSConstants.FORWARD_SLASH + terminationString;
             
-            stringToSign.append(AmazonSNSConstants.AWS4_HMAC_SHA_256);
-            stringToSign.append(AmazonSNSConstants.NEW_LINE);
-            stringToSign.append(amzDate);
-            stringToSign.append(AmazonSNSConstants.NEW_LINE);
-            
-            stringToSign.append(shortDate);
-            stringToSign.append(AmazonSNSConstants.FORWARD_SLASH);
-            stringToSign.append(messageContext.getProperty(AmazonSNSConstants.REGION));
-            stringToSign.append(AmazonSNSConstants.FORWARD_SLASH);
-            stringToSign.append(messageContext.getProperty(AmazonSNSConstants.SERVICE));
-            stringToSign.append(AmazonSNSConstants.FORWARD_SLASH);
-            stringToSign.append(messageContext.getProperty(AmazonSNSConstants.TERMINATION_STRING));
-            
-            stringToSign.append(AmazonSNSConstants.NEW_LINE);
-            stringToSign.append(bytesToHex(hash(messageContext, canonicalRequest.toString())).toLowerCase());
+            final String stringToSign =
+                    AmazonSNSConstants.AWS4_HMAC_SHA_256 + AmazonSNSConstants.NEW_LINE + amzDate
+                            + AmazonSNSConstants.NEW_LINE + credentialScope + AmazonSNSConstants.NEW_LINE
+                            + AWSSigner.sha256Hex(canonicalRequest.toString());
             
             final byte[] signingKey =
-                    getSignatureKey(messageContext, messageContext.getProperty(AmazonSNSConstants.SECRET_ACCESS_KEY)
-                            .toString(), shortDate, messageContext.getProperty(AmazonSNSConstants.REGION).toString(),
-                            messageContext.getProperty(AmazonSNSConstants.SERVICE).toString());
+                    AWSSigner.getSigningKey(messageContext.getProperty(AmazonSNSConstants.SECRET_ACCESS_KEY)
+                            .toString(), shortDate, region, service, terminationString);
             
             // Construction of authorization header value to be in cluded in API request
+            final StringBuilder authHeader = new StringBuilder(256);
             authHeader.append(AmazonSNSConstants.AWS4_HMAC_SHA_256);
             authHeader.append(AmazonSNSConstants.COMMA);
             authHeader.append(AmazonSNSConstants.CREDENTIAL);
             authHeader.append(AmazonSNSConstants.EQUAL);
             authHeader.append(messageContext.getProperty(AmazonSNSConstants.ACCESS_KEY_ID));
             authHeader.append(AmazonSNSConstants.FORWARD_SLASH);
-            authHeader.append(shortDate);
-            authHeader.append(AmazonSNSConstants.FORWARD_SLASH);
-            authHeader.append(messageContext.getProperty(AmazonSNSConstants.REGION));
-            authHeader.append(AmazonSNSConstants.FORWARD_SLASH);
-            authHeader.append(messageContext.getProperty(AmazonSNSConstants.SERVICE));
-            authHeader.append(AmazonSNSConstants.FORWARD_SLASH);
-            authHeader.append(messageContext.getProperty(AmazonSNSConstants.TERMINATION_STRING));
+            authHeader.append(credentialScope);
             authHeader.append(AmazonSNSConstants.COMMA);
             authHeader.append(AmazonSNSConstants.SIGNED_HEADERS);
             authHeader.append(AmazonSNSConstants.EQUAL);
@@ -197,7 +155,7 @@ public class AmazonSNSAuthConnector extends AbstractConnector {
             authHeader.append(AmazonSNSConstants.COMMA);
             authHeader.append(AmazonSNSConstants.API_SIGNATURE);
             authHeader.append(AmazonSNSConstants.EQUAL);
-            authHeader.append(bytesToHex(hmacSHA256(signingKey, stringToSign.toString())).toLowerCase());
+            authHeader.append(AWSSigner.toHex(AWSSigner.hmacSHA256(signingKey, stringToSign)));
             
             // Adds authorization header to message context
             messageContext.setProperty(AmazonSNSConstants.AUTHORIZATION_HEADER, authHeader.toString());
@@ -326,8 +284,8 @@ public class AmazonSNSAuthConnector extends AbstractConnector {
             final String key = headerKeys[index];
             // builds the parameter map only if provided by the user
             if (messageContext.getProperty(key) != null && !("").equals((String) messageContext.getProperty(key))) {
-                parametersMap.put(namesMap.get(key).toLowerCase(), messageContext.getProperty(key).toString().trim()
-                        .replaceAll(AmazonSNSConstants.TRIM_SPACE_REGEX, AmazonSNSConstants.SPACE));
+                parametersMap.put(namesMap.get(key).toLowerCase(), TRIM_SPACE_PATTERN.matcher(
+                        messageContext.getProperty(key).toString().trim()).replaceAll(AmazonSNSConstants.SPACE));
             }
         }
         return parametersMap;
@@ -405,96 +363,4 @@ public class AmazonSNSAuthConnector extends AbstractConnector {
         ctxt.setProperty(SynapseConstants.ERROR_MESSAGE, message);
         ctxt.setFaultResponse(true);
     }
-    
-    /**
-     * Hashes the string contents (assumed to be UTF-8) using the SHA-256 algorithm.
-     * 
-     * @param messageContext of the connector
-     * @param text text to be hashed
-     * @return SHA-256 hashed text
-     */
-    public final byte[] hash(final MessageContext messageContext, final String text) {
-    
-        MessageDigest messageDigest = null;
-        try {
-            messageDigest = MessageDigest.getInstance(AmazonSNSConstants.SHA_256);
-            messageDigest.update(text.getBytes(AmazonSNSConstants.UTF_8));
-        } catch (Exception exc) {
-            log.error(AmazonSNSConstants.CONNECTOR_ERROR, exc);
-            storeErrorResponseStatus(messageContext, exc, AmazonSNSConstants.ERROR_CODE_EXCEPTION);
-            handleException(AmazonSNSConstants.CONNECTOR_ERROR, exc, messageContext);
-        }
-        if (messageDigest == null) {
-            log.error(AmazonSNSConstants.CONNECTOR_ERROR);
-            storeErrorResponseStatus(messageContext, AmazonSNSConstants.CONNECTOR_ERROR,
-                    AmazonSNSConstants.ERROR_CODE_EXCEPTION);
-            handleException(AmazonSNSConstants.CONNECTOR_ERROR, messageContext);
-        }
-        return messageDigest.digest();
-    }
-    
-    /**
-     * bytesToHex method HexEncoded the received byte array.
-     * 
-     * @param bytes bytes to be hex encoded
-     * @return hex encoded String of the given byte array
-     */
-    public static String bytesToHex(final byte[] bytes) {
-    
-        final char[] hexArray = AmazonSNSConstants.HEX_ARRAY_STRING.toCharArray();
-        char[] hexChars = new char[bytes.length * 2];
-        
-        for (int j = 0; j < bytes.length; j++) {
-            final int byteVal = bytes[j] & 0xFF;
-            hexChars[j * 2] = hexArray[byteVal >>> 4];
-            hexChars[j * 2 + 1] = hexArray[byteVal & 0x0F];
-        }
-        
-        return new String(hexChars);
-    }
-    
-    /**
-     * Provides the HMAC SHA 256 encoded value(using the provided key) of the given data.
-     * 
-     * @param key to use for encoding
-     * @param data to be encoded
-     * @return HMAC SHA 256 encoded byte array
-     * @throws NoSuchAlgorithmException No such algorithm Exception
-     * @throws InvalidKeyException Invalid key Exception
-     * @throws UnsupportedEncodingException Unsupported Encoding Exception
-     * @throws IllegalStateException Illegal State Exception
-     */
-    private static byte[] hmacSHA256(final byte[] key, final String data) throws NoSuchAlgorithmException,
-            InvalidKeyException, IllegalStateException, UnsupportedEncodingException {
-    
-        final String algorithm = AmazonSNSConstants.HAMC_SHA_256;
-        final Mac mac = Mac.getInstance(algorithm);
-        mac.init(new SecretKeySpec(key, algorithm));
-        return mac.doFinal(data.getBytes(AmazonSNSConstants.UTF8));
-    }
-    
-    /**
-     * Returns the encoded signature key to be used for further encodings as per API doc.
-     * 
-     * @param ctx message context of the connector
-     * @param key key to be used for signing
-     * @param dateStamp current date stamp
-     * @param regionName region name given to the connector
-     * @param serviceName Name of the service being addressed
-     * @return Signature key
-     * @throws UnsupportedEncodingException Unsupported Encoding Exception
-     * @throws IllegalStateException Illegal Argument Exception
-     * @throws NoSuchAlgorithmException No Such Algorithm Exception
-     * @throws InvalidKeyException Invalid Key Exception
-     */
-    private static byte[] getSignatureKey(final MessageContext ctx, final String key, final String dateStamp,
-            final String regionName, final String serviceName) throws UnsupportedEncodingException,
-            InvalidKeyException, NoSuchAlgorithmException, IllegalStateException {
-    
-        final byte[] kSecret = (AmazonSNSConstants.AWS4 + key).getBytes(AmazonSNSConstants.UTF8);
-        final byte[] kDate = hmacSHA256(kSecret, dateStamp);
-        final byte[] kRegion = hmacSHA256(kDate, regionName);
-        final byte[] kService = hmacSHA256(kRegion, serviceName);
-        return hmacSHA256(kService, ctx.getProperty(AmazonSNSConstants.TERMINATION_STRING).toString());
-    }
 }
@@ -19,24 +19,17 @@
 package org.wso2.carbon.connector.amazonsqs.auth;
 
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.nio.charset.Charset;
 import java.security.InvalidKeyException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TimeZone;
 import java.util.TreeMap;
-
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.regex.Pattern;
 
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseConstants;
+import org.wso2.carbon.connector.amazon.auth.AWSSigner;
 import org.wso2.carbon.connector.amazonsqs.constants.AmazonSQSConstants;
 import org.wso2.carbon.connector.core.AbstractConnector;
 
@@ -45,29 +38,26 @@ import org.wso2.carbon.connector.core.AbstractConnector;
  * Connector.
  */
 public class AmazonSQSAuthConnector extends AbstractConnector {
+
+    /**
+     * Pattern of the sequential spaces of header values, compiled once.
+     */
+    private static final Pattern TRIM_SPACE_PATTERN = Pattern.compile(AmazonSQSConstants.TRIM_SPACE_REGEX);
+
     /**
      * Connect method which is generating authentication of the connector for each request.
      *
      * @param messageContext ESB messageContext.
      */
     public final void connect(final MessageContext messageContext) {
-        final StringBuilder canonicalRequest = new StringBuilder();
-        final StringBuilder stringToSign = new StringBuilder();
+        final StringBuilder canonicalRequest = new StringBuilder(512);
         final StringBuilder payloadBuilder = new StringBuilder();
         final StringBuilder payloadStrBuilder = new StringBuilder();
-        final StringBuilder authHeader = new StringBuilder();
-
-        // Generate time-stamp which will be sent to API and to be used in Signature
-        final Date date = new Date();
-        // API Recommends to use GMT Time zone
-        final TimeZone timeZone = TimeZone.getTimeZone(AmazonSQSConstants.GMT);
-        final DateFormat dateFormat = new SimpleDateFormat(AmazonSQSConstants.ISO8601_BASIC_DATE_FORMAT);
-        dateFormat.setTimeZone(timeZone);
-        final String amzDate = dateFormat.format(date);
 
-        final DateFormat shortDateFormat = new SimpleDateFormat(AmazonSQSConstants.SHORT_DATE_FORMAT);
-        shortDateFormat.setTimeZone(timeZone);
-        final String shortDate = shortDateFormat.format(date);
+        // Generate time-stamp which will be sent to API and to be used in Signature, API Recommends to use GMT
+        // Time zone
+        final String amzDate = AWSSigner.formatDate(new Date(), AmazonSQSConstants.ISO8601_BASIC_DATE_FORMAT);
+        final String shortDate = amzDate.substring(0, AWSSigner.SHORT_DATE_LENGTH);
 
         messageContext.setProperty(AmazonSQSConstants.AMZ_DATE, amzDate);
         final Map<String, String> parameterNamesMap = getParameterNamesMap();
@@ -75,7 +65,6 @@ public class AmazonSQSAuthConnector extends AbstractConnector {
         try {
             canonicalRequest.append(messageContext.getProperty(AmazonSQSConstants.HTTP_METHOD));
             canonicalRequest.append(AmazonSQSConstants.NEW_LINE);
-            final String charSet = Charset.defaultCharset().toString();
             if (messageContext.getProperty(AmazonSQSConstants.URL_QUEUE_NAME) != null
                     && !("").equals(messageContext.getProperty(AmazonSQSConstants.URL_QUEUE_NAME))
                     && messageContext.getProperty(AmazonSQSConstants.QUEUE_ID) != null
@@ -85,14 +74,15 @@ public class AmazonSQSAuthConnector extends AbstractConnector {
                 // Note that API it looks encodes the incoming URL once before creating the signature, SInce
                 // we send url encoded URLs, API signatures are twise encoded
                 final String encodedQueueID =
-                        URLEncoder.encode(messageContext.getProperty(AmazonSQSConstants.QUEUE_ID).toString(), charSet);
+                        AWSSigner.percentEncode(messageContext.getProperty(AmazonSQSConstants.QUEUE_ID).toString());
                 final String encodedQueueName =
-                        URLEncoder.encode(messageContext.getProperty(AmazonSQSConstants.URL_QUEUE_NAME).toString(),
-                                charSet);
-                canonicalRequest
-                        .append((AmazonSQSConstants.FORWARD_SLASH + URLEncoder.encode(encodedQueueID, charSet)
-                                + AmazonSQSConstants.FORWARD_SLASH + URLEncoder.encode(encodedQueueName, charSet) + AmazonSQSConstants.FORWARD_SLASH)
-                                .replaceAll(AmazonSQSConstants.REGEX_ASTERISK, AmazonSQSConstants.URL_ENCODED_ASTERISK));
+                        AWSSigner.percentEncode(messageContext.getProperty(AmazonSQSConstants.URL_QUEUE_NAME)
+                                .toString());
+                canonicalRequest.append(AmazonSQSConstants.FORWARD_SLASH);
+                AWSSigner.percentEncode(canonicalRequest, encodedQueueID, true);
+                canonicalRequest.append(AmazonSQSConstants.FORWARD_SLASH);
+                AWSSigner.percentEncode(canonicalRequest, encodedQueueName, true);
+                canonicalRequest.append(AmazonSQSConstants.FORWARD_SLASH);
                 // Sets the http request Uri to message context
                 messageContext.setProperty(AmazonSQSConstants.HTTP_REQUEST_URI, AmazonSQSConstants.FORWARD_SLASH
                         + encodedQueueID + AmazonSQSConstants.FORWARD_SLASH + encodedQueueName
@@ -103,12 +93,17 @@ public class AmazonSQSAuthConnector extends AbstractConnector {
 
             canonicalRequest.append(AmazonSQSConstants.NEW_LINE);
 
-            // Creates the payload Builder
+            // Creates the payload Builder, encoded as per the API guide
+            // (http://docs.aws.amazon.com/general/latest/gr/sigv4-create-canonical-request.html) except for the
+            // asterisk which the API expects as is in the request payload
             for (Map.Entry<String, String> entry : parametersMap.entrySet()) {
-                payloadBuilder.append(URLEncoder.encode(entry.getKey(), charSet));
+                if (payloadBuilder.length() > 0) {
+                    payloadBuilder.append(AmazonSQSConstants.AMPERSAND);
+                    payloadStrBuilder.append(AmazonSQSConstants.COMMA);
+                }
+                AWSSigner.percentEncode(payloadBuilder, entry.getKey(), false);
                 payloadBuilder.append(AmazonSQSConstants.EQUAL);
-                payloadBuilder.append(URLEncoder.encode(entry.getValue(), charSet));
-                payloadBuilder.append(AmazonSQSConstants.AMPERSAND);
+                AWSSigner.percentEncode(payloadBuilder, entry.getValue(), false);
                 payloadStrBuilder.append(AmazonSQSConstants.QUOTE);
                 payloadStrBuilder.append(entry.getKey());
                 payloadStrBuilder.append(AmazonSQSConstants.QUOTE);
@@ -116,84 +111,58 @@ public class AmazonSQSAuthConnector extends AbstractConnector {
                 payloadStrBuilder.append(AmazonSQSConstants.QUOTE);
                 payloadStrBuilder.append(entry.getValue());
                 payloadStrBuilder.append(AmazonSQSConstants.QUOTE);
-                payloadStrBuilder.append(AmazonSQSConstants.COMMA);
             }
 
-            // Adds authorization header to message context, removes additionally appended comma at the end
+            // Adds the request payload to message context
             if (payloadStrBuilder.length() > 0) {
-                messageContext.setProperty(AmazonSQSConstants.REQUEST_PAYLOAD,
-                        payloadStrBuilder.substring(0, payloadStrBuilder.length() - 1));
+                messageContext.setProperty(AmazonSQSConstants.REQUEST_PAYLOAD, payloadStrBuilder.toString());
             }
             // Appends empty string since no URL parameters are used in POST API requests
-            canonicalRequest.append("");
             canonicalRequest.append(AmazonSQSConstants.NEW_LINE);
             final Map<String, String> headersMap = getSortedHeadersMap(messageContext, parameterNamesMap);
-            final StringBuilder canonicalHeaders = new StringBuilder();
             final StringBuilder signedHeader = new StringBuilder();
             // Builds canonical headers.
             for (Map.Entry<String, String> entry : headersMap.entrySet()) {
-                canonicalHeaders.append(entry.getKey());
-                canonicalHeaders.append(AmazonSQSConstants.COLON);
-                canonicalHeaders.append(entry.getValue());
-                canonicalHeaders.append(AmazonSQSConstants.NEW_LINE);
+                canonicalRequest.append(entry.getKey());
+                canonicalRequest.append(AmazonSQSConstants.COLON);
+                canonicalRequest.append(entry.getValue());
+                canonicalRequest.append(AmazonSQSConstants.NEW_LINE);
+                if (signedHeader.length() > 0) {
+                    signedHeader.append(AmazonSQSConstants.SEMI_COLON);
+                }
                 signedHeader.append(entry.getKey());
-                signedHeader.append(AmazonSQSConstants.SEMI_COLON);
             }
-            canonicalRequest.append(canonicalHeaders.toString());
             canonicalRequest.append(AmazonSQSConstants.NEW_LINE);
-            // Remove unwanted semi-colon at the end of the signedHeader string
-            String signedHeaders = "";
-            if (signedHeader.length() > 0) {
-                signedHeaders = signedHeader.substring(0, signedHeader.length() - 1);
-            }
+            final String signedHeaders = signedHeader.toString();
             canonicalRequest.append(signedHeaders);
             canonicalRequest.append(AmazonSQSConstants.NEW_LINE);
             // HashedPayload = HexEncode(Hash(requestPayload))
-            String requestPayload = "";
-            if (payloadBuilder.length() > 0) {
-                /*
-                 * First removes the additional ampersand appended to the end of the payloadBuilder, then o
-                 * further modifications to preserve unreserved characters as per the API guide
-                 * (http://docs.aws.amazon.com/general/latest/gr/sigv4-create-canonical-request.html)
-                 */
-                requestPayload =
-                        payloadBuilder.substring(0, payloadBuilder.length() - 1).toString()
-                                .replace(AmazonSQSConstants.PLUS, AmazonSQSConstants.URL_ENCODED_PLUS)
-                                .replace(AmazonSQSConstants.URL_ENCODED_TILT, AmazonSQSConstants.TILT);
-            }
-            canonicalRequest.append(bytesToHex(hash(messageContext, requestPayload)).toLowerCase());
-            stringToSign.append(AmazonSQSConstants.AWS4_HMAC_SHA_256);
-            stringToSign.append(AmazonSQSConstants.NEW_LINE);
-            stringToSign.append(amzDate);
-            stringToSign.append(AmazonSQSConstants.NEW_LINE);
-            stringToSign.append(shortDate);
-            stringToSign.append(AmazonSQSConstants.FORWARD_SLASH);
-            stringToSign.append(messageContext.getProperty(AmazonSQSConstants.REGION));
-            stringToSign.append(AmazonSQSConstants.FORWARD_SLASH);
-            stringToSign.append(messageContext.getProperty(AmazonSQSConstants.SERVICE));
-            stringToSign.append(AmazonSQSConstants.FORWARD_SLASH);
-            stringToSign.append(messageContext.getProperty(AmazonSQSConstants.TERMINATION_STRING));
-            stringToSign.append(AmazonSQSConstants.NEW_LINE);
-            stringToSign.append(bytesToHex(hash(messageContext, canonicalRequest.toString())).toLowerCase());
+            canonicalRequest.append(AWSSigner.sha256Hex(payloadBuilder.toString()));
+
+            final String region = messageContext.getProperty(AmazonSQSConstants.REGION).toString();
+            final String service = messageContext.getProperty(AmazonSQSConstants.SERVICE).toString();
+            final String terminationString =
+                    messageContext.getProperty(AmazonSQSConstants.TERMINATION_STRING).toString();
+            final String credentialScope =
+                    shortDate + AmazonSQSConstants.FORWARD_SLASH + region + AmazonSQSConstants.FORWARD_SLASH
+                            + service + AmazonSQSConstants.FORWARD_SLASH + terminationString;
+            final String stringToSign =
+                    AmazonSQSConstants.AWS4_HMAC_SHA_256 + AmazonSQSConstants.NEW_LINE + amzDate
+                            + AmazonSQSConstants.NEW_LINE + credentialScope + AmazonSQSConstants.NEW_LINE
+                            + AWSSigner.sha256Hex(canonicalRequest.toString());
             final byte[] signingKey =
-                    getSignatureKey(messageContext, messageContext.getProperty(AmazonSQSConstants.SECRET_ACCESS_KEY)
-                            .toString(), shortDate, messageContext.getProperty(AmazonSQSConstants.REGION).toString(),
-                            messageContext.getProperty(AmazonSQSConstants.SERVICE).toString());
+                    AWSSigner.getSigningKey(messageContext.getProperty(AmazonSQSConstants.SECRET_ACCESS_KEY)
+                            .toString(), shortDate, region, service, terminationString);
 
             // Construction of authorization header value to be in cluded in API request
+            final StringBuilder authHeader = new StringBuilder(256);
             authHeader.append(AmazonSQSConstants.AWS4_HMAC_SHA_256);
             authHeader.append(AmazonSQSConstants.COMMA);
             authHeader.append(AmazonSQSConstants.CREDENTIAL);
             authHeader.append(AmazonSQSConstants.EQUAL);
             authHeader.append(messageContext.getProperty(AmazonSQSConstants.ACCESS_KEY_ID));
             authHeader.append(AmazonSQSConstants.FORWARD_SLASH);
-            authHeader.append(shortDate);
-            authHeader.append(AmazonSQSConstants.FORWARD_SLASH);
-            authHeader.append(messageContext.getProperty(AmazonSQSConstants.REGION));
-            authHeader.append(AmazonSQSConstants.FORWARD_SLASH);
-            authHeader.append(messageContext.getProperty(AmazonSQSConstants.SERVICE));
-            authHeader.append(AmazonSQSConstants.FORWARD_SLASH);
-            authHeader.append(messageContext.getProperty(AmazonSQSConstants.TERMINATION_STRING));
+            authHeader.append(credentialScope);
             authHeader.append(AmazonSQSConstants.COMMA);
             authHeader.append(AmazonSQSConstants.SIGNED_HEADERS);
             authHeader.append(AmazonSQSConstants.EQUAL);
@@ -201,7 +170,7 @@ public class AmazonSQSAuthConnector extends AbstractConnector {
             authHeader.append(AmazonSQSConstants.COMMA);
             authHeader.append(AmazonSQSConstants.API_SIGNATURE);
             authHeader.append(AmazonSQSConstants.EQUAL);
-            authHeader.append(bytesToHex(hmacSHA256(signingKey, stringToSign.toString())).toLowerCase());
+            authHeader.append(AWSSigner.toHex(AWSSigner.hmacSHA256(signingKey, stringToSign)));
             // Adds authorization header to message context
             messageContext.setProperty(AmazonSQSConstants.AUTHORIZATION_HEADER, authHeader.toString());
         } catch (InvalidKeyException exc) {
@@ -331,8 +300,8 @@ public class AmazonSQSAuthConnector extends AbstractConnector {
             final String key = headerKeys[index];
             // builds the parameter map only if provided by the user
             if (messageContext.getProperty(key) != null && !("").equals((String) messageContext.getProperty(key))) {
-                parametersMap.put(namesMap.get(key).toLowerCase(), messageContext.getProperty(key).toString().trim()
-                        .replaceAll(AmazonSQSConstants.TRIM_SPACE_REGEX, AmazonSQSConstants.SPACE));
+                parametersMap.put(namesMap.get(key).toLowerCase(), TRIM_SPACE_PATTERN.matcher(
+                        messageContext.getProperty(key).toString().trim()).replaceAll(AmazonSQSConstants.SPACE));
             }
         }
         return parametersMap;
@@ -401,95 +370,4 @@ public class AmazonSQSAuthConnector extends AbstractConnector {
         ctxt.setProperty(SynapseConstants.ERROR_MESSAGE, message);
         ctxt.setFaultResponse(true);
     }
-
-    /**
-     * Hashes the string contents (assumed to be UTF-8) using the SHA-256 algorithm.
-     *
-     * @param messageContext of the connector
-     * @param text text to be hashed
-     * @return SHA-256 hashed text
-     */
-    public final byte[] hash(final MessageContext messageContext, final String text) {
-
-        MessageDigest messageDigest = null;
-        try {
-            messageDigest = MessageDigest.getInstance(AmazonSQSConstants.SHA_256);
-            messageDigest.update(text.getBytes(AmazonSQSConstants.UTF_8));
-        } catch (Exception exc) {
-            log.error(AmazonSQSConstants.CONNECTOR_ERROR, exc);
-            storeErrorResponseStatus(messageContext, exc, AmazonSQSConstants.ERROR_CODE_EXCEPTION);
-            handleException(AmazonSQSConstants.CONNECTOR_ERROR, exc, messageContext);
-        }
-        if (messageDigest == null) {
-            log.error(AmazonSQSConstants.CONNECTOR_ERROR);
-            storeErrorResponseStatus(messageContext, AmazonSQSConstants.CONNECTOR_ERROR,
-                    AmazonSQSConstants.ERROR_CODE_EXCEPTION);
-            handleException(AmazonSQSConstants.CONNECTOR_ERROR, messageContext);
-        }
-        return messageDigest.digest();
-    }
-
-    /**
-     * bytesToHex method HexEncoded the received byte array.
-     *
-     * @param bytes bytes to be hex encoded
-     * @return hex encoded String of the given byte array
-     */
-    public static String bytesToHex(final byte[] bytes) {
-
-        final char[] hexArray = AmazonSQSConstants.HEX_ARRAY_STRING.toCharArray();
-        char[] hexChars = new char[bytes.length * 2];
-
-        for (int j = 0; j < bytes.length; j++) {
-            final int byteVal = bytes[j] & 0xFF;
-            hexChars[j * 2] = hexArray[byteVal >>> 4];
-            hexChars[j * 2 + 1] = hexArray[byteVal & 0x0F];
-        }
-        return new String(hexChars);
-    }
-
-    /**
-     * Returns the encoded signature key to be used for further encodings as per API doc.
-     *
-     * @param ctx message context of the connector
-     * @param key key to be used for signing
-     * @param dateStamp current date stamp
-     * @param regionName region name given to the connector
-     * @param serviceName Name of the service being addressed
-     * @return Signature key
-     * @throws UnsupportedEncodingException Unsupported Encoding Exception
-     * @throws IllegalStateException Illegal Argument Exception
-     * @throws NoSuchAlgorithmException No Such Algorithm Exception
-     * @throws InvalidKeyException Invalid Key Exception
-     */
-    private byte[] getSignatureKey(final MessageContext ctx, final String key, final String dateStamp,
-            final String regionName, final String serviceName) throws UnsupportedEncodingException,
-            InvalidKeyException, NoSuchAlgorithmException, IllegalStateException {
-
-        final byte[] kSecret = (AmazonSQSConstants.AWS4 + key).getBytes(AmazonSQSConstants.UTF8);
-        final byte[] kDate = hmacSHA256(kSecret, dateStamp);
-        final byte[] kRegion = hmacSHA256(kDate, regionName);
-        final byte[] kService = hmacSHA256(kRegion, serviceName);
-        return hmacSHA256(kService, ctx.getProperty(AmazonSQSConstants.TERMINATION_STRING).toString());
-    }
-
-    /**
-     * Provides the HMAC SHA 256 encoded value(using the provided key) of the given data.
-     *
-     * @param key to use for encoding
-     * @param data to be encoded
-     * @return HMAC SHA 256 encoded byte array
-     * @throws NoSuchAlgorithmException No such algorithm Exception
-     * @throws InvalidKeyException Invalid key Exception
-     * @throws UnsupportedEncodingException Unsupported Encoding Exception
-     * @throws IllegalStateException Illegal State Exception
-     */
-    private byte[] hmacSHA256(final byte[] key, final String data) throws NoSuchAlgorithmException,
-            InvalidKeyException, IllegalStateException, UnsupportedEncodingException {
-
-        final String algorithm = AmazonSQSConstants.HAMC_SHA_256;
-        final Mac mac = Mac.getInstance(algorithm);
-        mac.init(new SecretKeySpec(key, algorithm));
-        return mac.doFinal(data.getBytes(AmazonSQSConstants.UTF8));
-    }
 }
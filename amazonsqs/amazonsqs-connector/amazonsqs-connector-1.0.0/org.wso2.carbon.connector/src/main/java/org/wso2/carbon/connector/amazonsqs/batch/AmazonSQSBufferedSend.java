@@ -0,0 +1,155 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazonsqs.batch;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.axis2.Constants;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.wso2.carbon.connector.amazonsqs.client.AmazonSQSClient;
+import org.wso2.carbon.connector.amazonsqs.constants.AmazonSQSConstants;
+import org.wso2.carbon.connector.core.AbstractConnector;
+
+/**
+ * Class AmazonSQSBufferedSend which sends a message through the send buffer of its queue for Amazon SQS WSO2 ESB
+ * Connector, so that messages sent by concurrent mediations share SendMessageBatch requests. The payload is
+ * replaced with a SendMessageResponse built from the result of the message.
+ */
+public class AmazonSQSBufferedSend extends AbstractConnector {
+
+    /**
+     * Namespace of the Amazon SQS responses.
+     */
+    private static final String SQS_NAMESPACE = "http://queue.amazonaws.com/doc/2012-11-05/";
+
+    /**
+     * Connect method which is sending the message through the send buffer.
+     *
+     * @param messageContext ESB messageContext.
+     */
+    public final void connect(final MessageContext messageContext) {
+
+        try {
+            final AmazonSQSClient client = AmazonSQSClient.fromMessageContext(messageContext);
+            final String queuePath =
+                    AmazonSQSClient.getQueuePath((String) messageContext.getProperty(AmazonSQSConstants.QUEUE_ID),
+                            (String) messageContext.getProperty(AmazonSQSConstants.URL_QUEUE_NAME));
+            final AmazonSQSSendBuffer buffer =
+                    AmazonSQSSendBuffer.getBuffer(client, queuePath, getFlushInterval(messageContext));
+            final Map<String, String> result =
+                    buffer.send(client, (String) messageContext.getProperty(AmazonSQSConstants.MESSAGE_BODY),
+                            (String) messageContext.getProperty(AmazonSQSConstants.DELAY_SECONDS),
+                            getMessageAttributes(messageContext));
+            setResponse(messageContext, result);
+        } catch (IllegalArgumentException iae) {
+            log.error(AmazonSQSConstants.INVALID_PARAMETERS, iae);
+            storeErrorResponseStatus(messageContext, iae, AmazonSQSConstants.ILLEGAL_ARGUMENT_ERROR_CODE);
+            handleException(AmazonSQSConstants.INVALID_PARAMETERS, iae, messageContext);
+        } catch (IOException ioe) {
+            log.error("Error sending the message: ", ioe);
+            storeErrorResponseStatus(messageContext, ioe, AmazonSQSConstants.IO_EXCEPTION_ERROR_CODE);
+            handleException("Error sending the message: ", ioe, messageContext);
+        }
+    }
+
+    /**
+     * getFlushInterval method used to return the flush interval parameter, or the default when it is not valid.
+     */
+    private long getFlushInterval(final MessageContext messageContext) {
+
+        final String flushInterval = (String) messageContext.getProperty(AmazonSQSConstants.FLUSH_INTERVAL);
+        if (flushInterval != null && !flushInterval.trim().isEmpty()) {
+            try {
+                return Math.max(Long.parseLong(flushInterval.trim()), 0);
+            } catch (NumberFormatException nfe) {
+                log.warn("Invalid flush interval " + flushInterval + ", using "
+                        + AmazonSQSSendBuffer.DEFAULT_FLUSH_INTERVAL);
+            }
+        }
+        return AmazonSQSSendBuffer.DEFAULT_FLUSH_INTERVAL;
+    }
+
+    /**
+     * getMessageAttributes method used to split the message attributes parameter, given in the same form as for
+     * the sendMessage operation.
+     */
+    private Map<String, String> getMessageAttributes(final MessageContext messageContext) {
+
+        final Map<String, String> attributes = new LinkedHashMap<String, String>();
+        final String messageAttributes = (String) messageContext.getProperty(AmazonSQSConstants.MESSAGE_ATTRIBUTES);
+        if (messageAttributes != null && !messageAttributes.isEmpty()) {
+            for (String keyValue : messageAttributes.split(AmazonSQSConstants.AMPERSAND)) {
+                final String[] pair = keyValue.split(AmazonSQSConstants.EQUAL);
+                if (pair.length != AmazonSQSConstants.TWO) {
+                    throw new IllegalArgumentException(AmazonSQSConstants.INVALID_PARAMETERS + keyValue);
+                }
+                attributes.put(pair[0], pair[1]);
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * setResponse method used to replace the payload with the SendMessageResponse of the message.
+     */
+    private void setResponse(final MessageContext messageContext, final Map<String, String> result) {
+
+        final OMFactory factory = OMAbstractFactory.getOMFactory();
+        final OMNamespace namespace = factory.createOMNamespace(SQS_NAMESPACE, "");
+        final OMElement response = factory.createOMElement("SendMessageResponse", namespace);
+        final OMElement sendMessageResult = factory.createOMElement("SendMessageResult", namespace, response);
+        for (Map.Entry<String, String> field : result.entrySet()) {
+            factory.createOMElement(field.getKey(), namespace, sendMessageResult).setText(field.getValue());
+        }
+
+        final SOAPBody body = messageContext.getEnvelope().getBody();
+        final OMElement firstElement = body.getFirstElement();
+        if (firstElement != null) {
+            firstElement.detach();
+        }
+        body.addChild(response);
+        ((Axis2MessageContext) messageContext).getAxis2MessageContext().setProperty(
+                Constants.Configuration.MESSAGE_TYPE, "application/xml");
+    }
+
+    /**
+     * Add a Throwable to a message context, the message from the throwable is embedded as the Synapse.
+     * Constant ERROR_MESSAGE.
+     *
+     * @param ctxt message context to which the error tags need to be added
+     * @param throwable Throwable that needs to be parsed and added
+     * @param errorCode errorCode mapped to the exception
+     */
+    public final void storeErrorResponseStatus(final MessageContext ctxt, final Throwable throwable,
+            final int errorCode) {
+
+        ctxt.setProperty(SynapseConstants.ERROR_CODE, errorCode);
+        ctxt.setProperty(SynapseConstants.ERROR_MESSAGE, throwable.getMessage());
+        ctxt.setFaultResponse(true);
+    }
+}
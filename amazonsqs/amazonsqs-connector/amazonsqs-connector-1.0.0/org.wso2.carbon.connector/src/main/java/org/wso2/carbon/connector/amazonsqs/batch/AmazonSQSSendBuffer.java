@@ -0,0 +1,356 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazonsqs.batch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.connector.amazonsqs.client.AmazonSQSClient;
+
+/**
+ * Class AmazonSQSSendBuffer accumulates the messages sent to a queue by concurrent mediations and sends them with
+ * SendMessageBatch. A batch is sent as soon as it holds 10 messages or adding a message would take it over 256 KB,
+ * and otherwise when the flush interval has passed since its first message was added. Every caller waits for the
+ * result of its own message, so a failed entry is reported to the mediation which sent it. A batch is signed with
+ * the client of the last message added to it, so refreshed temporary credentials are used as soon as a caller
+ * passes them, and buffers which have not been used for the idle timeout are dropped.
+ */
+public final class AmazonSQSSendBuffer {
+
+    /**
+     * Maximum number of entries of a SendMessageBatch request.
+     */
+    public static final int MAX_BATCH_ENTRIES = 10;
+
+    /**
+     * Maximum total size of the messages of a SendMessageBatch request.
+     */
+    public static final int MAX_BATCH_BYTES = 256 * 1024;
+
+    /**
+     * Default time a batch waits for more messages.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 200;
+
+    /**
+     * Time after which a buffer which has not been used is dropped.
+     */
+    public static final long IDLE_TIMEOUT = 300000;
+
+    private static final String ENTRY_PREFIX = "SendMessageBatchRequestEntry.";
+
+    private static Log log = LogFactory.getLog(AmazonSQSSendBuffer.class);
+
+    /**
+     * Buffers by the access key ID, endpoint and path of their queue.
+     */
+    private static final ConcurrentMap<String, AmazonSQSSendBuffer> BUFFERS =
+            new ConcurrentHashMap<String, AmazonSQSSendBuffer>();
+
+    private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "amazonsqs-send-buffer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private static final ScheduledExecutorService FLUSH_TIMER =
+            Executors.newSingleThreadScheduledExecutor(DAEMON_THREADS);
+
+    private static final ExecutorService SENDERS = Executors.newCachedThreadPool(DAEMON_THREADS);
+
+    static {
+        FLUSH_TIMER.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                evictIdleBuffers();
+            }
+        }, IDLE_TIMEOUT, IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private final String key;
+
+    private final String queuePath;
+
+    private final long flushInterval;
+
+    private final List<Entry> entries = new ArrayList<Entry>(MAX_BATCH_ENTRIES);
+
+    private int batchBytes;
+
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * Client of the last message added to the batch.
+     */
+    private AmazonSQSClient client;
+
+    private long lastUsed = System.currentTimeMillis();
+
+    private AmazonSQSSendBuffer(final String key, final String queuePath, final long flushInterval) {
+
+        this.key = key;
+        this.queuePath = queuePath;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Returns the buffer of a queue, creating it on first use. The flush interval of a buffer is the one given
+     * when it was created.
+     *
+     * @param client client of the credentials and the endpoint of the queue.
+     * @param queuePath path of the queue.
+     * @param flushInterval time in milliseconds a batch waits for more messages.
+     * @return the buffer.
+     */
+    public static AmazonSQSSendBuffer getBuffer(final AmazonSQSClient client, final String queuePath,
+            final long flushInterval) {
+
+        final String key = client.getKey() + queuePath;
+        AmazonSQSSendBuffer buffer = BUFFERS.get(key);
+        if (buffer == null) {
+            final AmazonSQSSendBuffer newBuffer = new AmazonSQSSendBuffer(key, queuePath, flushInterval);
+            buffer = BUFFERS.putIfAbsent(key, newBuffer);
+            if (buffer == null) {
+                buffer = newBuffer;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Drops the buffers which have no messages waiting and have not been used for the idle timeout.
+     */
+    private static void evictIdleBuffers() {
+
+        final long expiry = System.currentTimeMillis() - IDLE_TIMEOUT;
+        for (AmazonSQSSendBuffer buffer : BUFFERS.values()) {
+            if (buffer.isIdleSince(expiry)) {
+                // A caller which still holds the buffer can use it, its next caller creates a new one.
+                BUFFERS.remove(buffer.key, buffer);
+            }
+        }
+    }
+
+    private synchronized boolean isIdleSince(final long expiry) {
+
+        return entries.isEmpty() && lastUsed < expiry;
+    }
+
+    /**
+     * Adds a message to the batch and waits until the batch is sent.
+     *
+     * @param client client of the credentials of the caller, which signs the batch if it is the last one added.
+     * @param messageBody body of the message.
+     * @param delaySeconds delay of the message, may be null.
+     * @param messageAttributes attributes of the message as MessageAttribute.N.* parameters.
+     * @return the fields of the SendMessageBatchResultEntry of the message, such as MessageId.
+     * @throws IOException if the batch cannot be sent or Amazon SQS rejects the message.
+     */
+    public Map<String, String> send(final AmazonSQSClient client, final String messageBody,
+            final String delaySeconds, final Map<String, String> messageAttributes) throws IOException {
+
+        final Entry entry = new Entry(messageBody, delaySeconds, messageAttributes);
+        synchronized (this) {
+            if (!entries.isEmpty() && batchBytes + entry.size > MAX_BATCH_BYTES) {
+                flushLocked();
+            }
+            this.client = client;
+            lastUsed = System.currentTimeMillis();
+            entries.add(entry);
+            batchBytes += entry.size;
+            if (entries.size() == MAX_BATCH_ENTRIES) {
+                flushLocked();
+            } else if (flushTask == null) {
+                flushTask = FLUSH_TIMER.schedule(new Runnable() {
+                    public void run() {
+                        flush();
+                    }
+                }, flushInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+        return entry.await();
+    }
+
+    /**
+     * Sends the entries added since the last batch, called when the flush interval has passed.
+     */
+    private synchronized void flush() {
+
+        if (!entries.isEmpty()) {
+            flushLocked();
+        }
+        flushTask = null;
+    }
+
+    /**
+     * Hands the current batch to a sender thread, the caller holds the lock of the buffer.
+     */
+    private void flushLocked() {
+
+        final List<Entry> batch = new ArrayList<Entry>(entries);
+        final AmazonSQSClient batchClient = client;
+        entries.clear();
+        batchBytes = 0;
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        SENDERS.execute(new Runnable() {
+            public void run() {
+                sendBatch(batchClient, batch);
+            }
+        });
+    }
+
+    private void sendBatch(final AmazonSQSClient batchClient, final List<Entry> batch) {
+
+        final Map<String, String> parameters = new HashMap<String, String>();
+        final Map<String, Entry> entriesById = new HashMap<String, Entry>();
+        for (int index = 0; index < batch.size(); index++) {
+            final Entry entry = batch.get(index);
+            final String id = String.valueOf(index);
+            final String prefix = ENTRY_PREFIX + (index + 1) + '.';
+            parameters.put(prefix + "Id", id);
+            parameters.put(prefix + "MessageBody", entry.messageBody);
+            if (entry.delaySeconds != null && !entry.delaySeconds.isEmpty()) {
+                parameters.put(prefix + "DelaySeconds", entry.delaySeconds);
+            }
+            for (Map.Entry<String, String> attribute : entry.messageAttributes.entrySet()) {
+                parameters.put(prefix + attribute.getKey(), attribute.getValue());
+            }
+            entriesById.put(id, entry);
+        }
+        try {
+            final String response = batchClient.invoke(queuePath, "SendMessageBatch", parameters);
+            for (Map<String, String> result : AmazonSQSClient.getElements(response, "SendMessageBatchResultEntry")) {
+                final Entry entry = entriesById.remove(result.get("Id"));
+                if (entry != null) {
+                    result.remove("Id");
+                    entry.complete(result, null);
+                }
+            }
+            for (Map<String, String> error : AmazonSQSClient.getElements(response, "BatchResultErrorEntry")) {
+                final Entry entry = entriesById.remove(error.get("Id"));
+                if (entry != null) {
+                    entry.complete(null, new IOException(error.get("Code") + ": " + error.get("Message")));
+                }
+            }
+            for (Entry entry : entriesById.values()) {
+                entry.complete(null, new IOException("No result for the message in the SendMessageBatch response"));
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Sent a batch of " + batch.size() + " messages to " + queuePath);
+            }
+        } catch (IOException ioe) {
+            log.error("Unable to send a batch of " + batch.size() + " messages to " + queuePath, ioe);
+            for (Entry entry : batch) {
+                entry.complete(null, ioe);
+            }
+        } catch (RuntimeException re) {
+            final IOException ioe = new IOException("Unable to send the batch: " + re.getMessage());
+            ioe.initCause(re);
+            for (Entry entry : batch) {
+                entry.complete(null, ioe);
+            }
+        }
+    }
+
+    /**
+     * A message waiting in a batch, and its result once the batch is sent.
+     */
+    private static final class Entry {
+
+        private final String messageBody;
+
+        private final String delaySeconds;
+
+        private final Map<String, String> messageAttributes;
+
+        /**
+         * Size of the message counted against the size limit of a batch.
+         */
+        private final int size;
+
+        private final CountDownLatch sent = new CountDownLatch(1);
+
+        private volatile Map<String, String> result;
+
+        private volatile IOException failure;
+
+        private Entry(final String messageBody, final String delaySeconds, final Map<String, String> messageAttributes)
+                throws UnsupportedEncodingException {
+
+            this.messageBody = messageBody;
+            this.delaySeconds = delaySeconds;
+            this.messageAttributes = new LinkedHashMap<String, String>(messageAttributes);
+            int attributesSize = 0;
+            for (Map.Entry<String, String> attribute : messageAttributes.entrySet()) {
+                attributesSize += attribute.getValue().getBytes("UTF-8").length;
+            }
+            this.size = messageBody.getBytes("UTF-8").length + attributesSize;
+        }
+
+        /**
+         * Sets the result of the message, only the first result of a message is kept.
+         */
+        private synchronized void complete(final Map<String, String> result, final IOException failure) {
+
+            if (sent.getCount() == 0) {
+                return;
+            }
+            this.result = result;
+            this.failure = failure;
+            sent.countDown();
+        }
+
+        private Map<String, String> await() throws IOException {
+
+            try {
+                sent.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the batch to be sent");
+            }
+            if (failure != null) {
+                final IOException ioe = new IOException(failure.getMessage());
+                ioe.initCause(failure);
+                throw ioe;
+            }
+            return result;
+        }
+    }
+}
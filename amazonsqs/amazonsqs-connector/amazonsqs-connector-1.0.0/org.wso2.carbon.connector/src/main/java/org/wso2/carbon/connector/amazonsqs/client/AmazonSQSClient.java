@@ -0,0 +1,326 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazonsqs.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.synapse.MessageContext;
+import org.wso2.carbon.connector.amazon.auth.AWSSigner;
+import org.wso2.carbon.connector.amazonsqs.constants.AmazonSQSConstants;
+
+/**
+ * Class AmazonSQSClient sends signed Query API requests to Amazon SQS outside of the mediation flow, for the
+ * operations of the connector which send requests on their own threads.
+ */
+public class AmazonSQSClient {
+
+    /**
+     * Content type of the Query API requests.
+     */
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    private static final String UTF_8 = "UTF-8";
+
+    private static final int CONNECT_TIMEOUT = 10000;
+
+    /**
+     * Read timeout, longer than the longest long poll of a ReceiveMessage request.
+     */
+    private static final int READ_TIMEOUT = 60000;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private final String accessKeyId;
+
+    private final String secretAccessKey;
+
+    private final String securityToken;
+
+    private final String region;
+
+    private final String version;
+
+    private final URL endpoint;
+
+    /**
+     * Host header of the requests, with the port only when it is not the default port of the endpoint.
+     */
+    private final String host;
+
+    /**
+     * Constructor for AmazonSQSClient class.
+     *
+     * @param accessKeyId AWS access key ID.
+     * @param secretAccessKey AWS secret access key.
+     * @param securityToken security token of temporary credentials, may be null.
+     * @param region region of the queues.
+     * @param apiUrl regional endpoint, such as http://sqs.us-east-1.amazonaws.com.
+     * @param version API version, may be null.
+     * @throws IOException if the endpoint is not a valid URL.
+     */
+    public AmazonSQSClient(final String accessKeyId, final String secretAccessKey, final String securityToken,
+            final String region, final String apiUrl, final String version) throws IOException {
+
+        this.accessKeyId = accessKeyId;
+        this.secretAccessKey = secretAccessKey;
+        this.securityToken = securityToken;
+        this.region = region;
+        this.version = version;
+        this.endpoint = new URL(apiUrl);
+        this.host =
+                endpoint.getPort() == -1 || endpoint.getPort() == endpoint.getDefaultPort() ? endpoint.getHost()
+                        : endpoint.getHost() + ':' + endpoint.getPort();
+    }
+
+    /**
+     * Creates a client with the credentials and the endpoint set by the init operation.
+     *
+     * @param messageContext ESB messageContext.
+     * @return the client.
+     * @throws IOException if the endpoint is not a valid URL.
+     */
+    public static AmazonSQSClient fromMessageContext(final MessageContext messageContext) throws IOException {
+
+        return new AmazonSQSClient((String) messageContext.getProperty(AmazonSQSConstants.ACCESS_KEY_ID),
+                (String) messageContext.getProperty(AmazonSQSConstants.SECRET_ACCESS_KEY),
+                (String) messageContext.getProperty(AmazonSQSConstants.SECURITY_TOKEN),
+                (String) messageContext.getProperty(AmazonSQSConstants.REGION),
+                (String) messageContext.getProperty(AmazonSQSConstants.API_URL),
+                (String) messageContext.getProperty(AmazonSQSConstants.VERSION));
+    }
+
+    /**
+     * Returns the path of a queue.
+     *
+     * @param queueId the AWS account number of the queue owner.
+     * @param queueName the name of the queue.
+     * @return the path of the queue.
+     */
+    public static String getQueuePath(final String queueId, final String queueName) {
+
+        return AmazonSQSConstants.FORWARD_SLASH + queueId + AmazonSQSConstants.FORWARD_SLASH + queueName
+                + AmazonSQSConstants.FORWARD_SLASH;
+    }
+
+    /**
+     * @return a key identifying the credentials and the endpoint of the client
+     */
+    public final String getKey() {
+
+        return accessKeyId + '@' + endpoint;
+    }
+
+    /**
+     * Sends an action to a queue and returns the response document.
+     *
+     * @param queuePath path of the queue, or "/" for actions which are not sent to a queue.
+     * @param action name of the action.
+     * @param parameters parameters of the action.
+     * @return the response document.
+     * @throws IOException if the request cannot be sent or Amazon SQS returns an error.
+     */
+    public final String invoke(final String queuePath, final String action, final Map<String, String> parameters)
+            throws IOException {
+
+        final Map<String, String> sortedParameters = new TreeMap<String, String>(parameters);
+        sortedParameters.put(AmazonSQSConstants.API_ACTION, action);
+        if (version != null && !version.isEmpty()) {
+            sortedParameters.put(AmazonSQSConstants.API_VERSION, version);
+        }
+        if (securityToken != null && !securityToken.isEmpty()) {
+            sortedParameters.put(AmazonSQSConstants.API_SECURITY_TOKEN, securityToken);
+        }
+        final StringBuilder payload = new StringBuilder(256);
+        for (Map.Entry<String, String> parameter : sortedParameters.entrySet()) {
+            if (payload.length() > 0) {
+                payload.append(AmazonSQSConstants.AMPERSAND);
+            }
+            AWSSigner.percentEncode(payload, parameter.getKey(), true);
+            payload.append(AmazonSQSConstants.EQUAL);
+            AWSSigner.percentEncode(payload, parameter.getValue(), true);
+        }
+        final byte[] body = payload.toString().getBytes(UTF_8);
+        final String amzDate = AWSSigner.formatDate(new Date(), AWSSigner.ISO8601_BASIC_DATE_FORMAT);
+
+        final HttpURLConnection connection = (HttpURLConnection) new URL(endpoint, queuePath).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("Content-Type", FORM_CONTENT_TYPE);
+        connection.setRequestProperty("X-Amz-Date", amzDate);
+        connection.setRequestProperty("Authorization", sign(queuePath, payload.toString(), amzDate));
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        final OutputStream outputStream = connection.getOutputStream();
+        try {
+            outputStream.write(body);
+        } finally {
+            outputStream.close();
+        }
+
+        final int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            final InputStream errorStream = connection.getErrorStream();
+            final String error = errorStream == null ? "" : read(errorStream);
+            throw new IOException(action + " failed with HTTP " + status + ": " + error);
+        }
+        return read(connection.getInputStream());
+    }
+
+    /**
+     * Returns the Signature Version 4 authorization header of a request.
+     */
+    private String sign(final String queuePath, final String payload, final String amzDate) throws IOException {
+
+        final String shortDate = amzDate.substring(0, AWSSigner.SHORT_DATE_LENGTH);
+        final String service = "sqs";
+        final String terminationString = "aws4_request";
+        final String signedHeaders = "content-type;host;x-amz-date";
+        try {
+            final StringBuilder canonicalRequest = new StringBuilder(512);
+            canonicalRequest.append("POST").append(AmazonSQSConstants.NEW_LINE);
+            canonicalRequest.append(queuePath).append(AmazonSQSConstants.NEW_LINE);
+            canonicalRequest.append(AmazonSQSConstants.NEW_LINE);
+            canonicalRequest.append("content-type:").append(FORM_CONTENT_TYPE).append(AmazonSQSConstants.NEW_LINE);
+            canonicalRequest.append("host:").append(host).append(AmazonSQSConstants.NEW_LINE);
+            canonicalRequest.append("x-amz-date:").append(amzDate).append(AmazonSQSConstants.NEW_LINE);
+            canonicalRequest.append(AmazonSQSConstants.NEW_LINE);
+            canonicalRequest.append(signedHeaders).append(AmazonSQSConstants.NEW_LINE);
+            canonicalRequest.append(AWSSigner.sha256Hex(payload));
+
+            final String credentialScope =
+                    shortDate + AmazonSQSConstants.FORWARD_SLASH + region + AmazonSQSConstants.FORWARD_SLASH + service
+                            + AmazonSQSConstants.FORWARD_SLASH + terminationString;
+            final String stringToSign =
+                    AWSSigner.AWS4_HMAC_SHA256 + AmazonSQSConstants.NEW_LINE + amzDate + AmazonSQSConstants.NEW_LINE
+                            + credentialScope + AmazonSQSConstants.NEW_LINE
+                            + AWSSigner.sha256Hex(canonicalRequest.toString());
+            final byte[] signingKey =
+                    AWSSigner.getSigningKey(secretAccessKey, shortDate, region, service, terminationString);
+            return AWSSigner.AWS4_HMAC_SHA256 + ' ' + AmazonSQSConstants.CREDENTIAL + AmazonSQSConstants.EQUAL
+                    + accessKeyId + AmazonSQSConstants.FORWARD_SLASH + credentialScope + AmazonSQSConstants.COMMA
+                    + AmazonSQSConstants.SIGNED_HEADERS + AmazonSQSConstants.EQUAL + signedHeaders
+                    + AmazonSQSConstants.COMMA + AmazonSQSConstants.API_SIGNATURE + AmazonSQSConstants.EQUAL
+                    + AWSSigner.toHex(AWSSigner.hmacSHA256(signingKey, stringToSign));
+        } catch (GeneralSecurityException gse) {
+            final IOException ioe = new IOException("Unable to sign the request: " + gse.getMessage());
+            ioe.initCause(gse);
+            throw ioe;
+        }
+    }
+
+    /**
+     * Returns the text of the child elements of every element with the given name in a response document, by
+     * the names of the child elements. Nested elements are not included.
+     *
+     * @param response the response document.
+     * @param elementName the local name of the elements.
+     * @return a map of the child element text per element, in document order.
+     * @throws IOException if the response is not a valid XML document.
+     */
+    public static List<Map<String, String>> getElements(final String response, final String elementName)
+            throws IOException {
+
+        final List<Map<String, String>> elements = new ArrayList<Map<String, String>>();
+        try {
+            final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(response));
+            try {
+                Map<String, String> element = null;
+                int depth = 0;
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if (element == null) {
+                            if (elementName.equals(reader.getLocalName())) {
+                                element = new HashMap<String, String>();
+                                depth = 0;
+                            }
+                        } else if (++depth == 1) {
+                            final String name = reader.getLocalName();
+                            final StringBuilder text = new StringBuilder();
+                            int nested = 0;
+                            // Reads the text of the child, skipping the elements nested in it.
+                            while (true) {
+                                final int childEvent = reader.next();
+                                if (childEvent == XMLStreamConstants.START_ELEMENT) {
+                                    nested++;
+                                } else if (childEvent == XMLStreamConstants.END_ELEMENT) {
+                                    if (nested-- == 0) {
+                                        break;
+                                    }
+                                } else if (nested == 0 && (childEvent == XMLStreamConstants.CHARACTERS
+                                        || childEvent == XMLStreamConstants.CDATA)) {
+                                    text.append(reader.getText());
+                                }
+                            }
+                            depth--;
+                            if (!element.containsKey(name)) {
+                                element.put(name, text.toString());
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && element != null && depth-- == 0) {
+                        elements.add(element);
+                        element = null;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException xse) {
+            final IOException ioe = new IOException("Invalid response from Amazon SQS: " + xse.getMessage());
+            ioe.initCause(xse);
+            throw ioe;
+        }
+        return elements;
+    }
+
+    private static String read(final InputStream inputStream) throws IOException {
+
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toString(UTF_8);
+        } finally {
+            inputStream.close();
+        }
+    }
+}
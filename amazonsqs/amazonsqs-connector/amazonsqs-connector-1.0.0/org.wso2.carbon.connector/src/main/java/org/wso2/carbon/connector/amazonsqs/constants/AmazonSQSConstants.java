@@ -658,6 +658,46 @@ public class AmazonSQSConstants {
      */
     public static final String API_DELAY_SECONDS = "DelaySeconds";
     
+    /**
+     * Constant for the flush interval of the send buffer.
+     */
+    public static final String FLUSH_INTERVAL = "uri.var.flushInterval";
+    
+    /**
+     * Constant for the action of the consumer operations.
+     */
+    public static final String CONSUMER_ACTION = "uri.var.consumerAction";
+    
+    /**
+     * Constant for the sequence the consumed messages are mediated through.
+     */
+    public static final String SEQUENCE = "uri.var.sequence";
+    
+    /**
+     * Constant for the number of concurrent long-poll receivers of a consumer.
+     */
+    public static final String CONSUMERS = "uri.var.consumers";
+    
+    /**
+     * Constant for the number of messages a consumer mediates at the same time.
+     */
+    public static final String WORKERS = "uri.var.workers";
+    
+    /**
+     * Constant for the acknowledge mode of a consumer, auto or client.
+     */
+    public static final String ACKNOWLEDGE_MODE = "uri.var.acknowledgeMode";
+    
+    /**
+     * Constant for the time in seconds a consumed message waits for its acknowledgement.
+     */
+    public static final String ACKNOWLEDGE_TIMEOUT = "uri.var.acknowledgeTimeout";
+    
+    /**
+     * Constant for whether an acknowledged message has been delivered.
+     */
+    public static final String DELIVERED = "uri.var.delivered";
+    
     /**
      * Constant fot Invalid Key Error.
      */
@@ -0,0 +1,575 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazonsqs.consumer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+import javax.xml.namespace.QName;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.Mediator;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.wso2.carbon.connector.amazonsqs.client.AmazonSQSClient;
+
+/**
+ * Class AmazonSQSConsumer consumes a queue with concurrent long-poll receivers and mediates every message through
+ * a sequence on a pool of workers. A message is deleted once the sequence has returned true without an error, with
+ * the deletes of concurrent workers grouped in DeleteMessageBatch requests; a message whose mediation fails or is
+ * stopped is left on the queue to be received again when its visibility timeout expires. The visibility timeout of a
+ * message whose mediation runs long is extended until the mediation completes.
+ * <p>
+ * A sequence which hands the message to a non-blocking send completes before the message is delivered. With client
+ * acknowledgement the message is instead deleted only when the flow acknowledges it through the
+ * {@link AmazonSQSDelivery} of the message, and it keeps its worker until then, or until the acknowledge timeout
+ * expires and it is left to be received again.
+ */
+public final class AmazonSQSConsumer implements AmazonSQSConsumerMBean {
+
+    /**
+     * Maximum number of entries of a batch request.
+     */
+    private static final int MAX_BATCH_ENTRIES = 10;
+
+    /**
+     * Delay before a receiver retries after a failed ReceiveMessage request.
+     */
+    private static final long RECEIVE_RETRY_DELAY = 5000;
+
+    /**
+     * Namespace of the text payload of messages which are not XML.
+     */
+    private static final QName TEXT_WRAPPER = new QName("http://ws.apache.org/commons/ns/payload", "text");
+
+    /**
+     * Property of the message context holding the delivery of a message acknowledged by its flow.
+     */
+    public static final String DELIVERY = "sqsDelivery";
+
+    /**
+     * Interval at which a stopping consumer checks for the acknowledgement of the messages still in flight.
+     */
+    private static final long STOP_POLL_INTERVAL = 100;
+
+    private static Log log = LogFactory.getLog(AmazonSQSConsumer.class);
+
+    private final AmazonSQSClient client;
+
+    private final String queuePath;
+
+    private final String sequenceName;
+
+    private final SynapseEnvironment synapseEnvironment;
+
+    private final int consumers;
+
+    private final int maxNumberOfMessages;
+
+    private final int waitTimeSeconds;
+
+    private final int visibilityTimeout;
+
+    /**
+     * Whether the messages are deleted when their flow acknowledges them rather than when the sequence returns.
+     */
+    private final boolean clientAcknowledge;
+
+    private final int acknowledgeTimeout;
+
+    /**
+     * Permits of the workers, a receiver requests only as many messages as there are idle workers.
+     */
+    private final Semaphore idleWorkers;
+
+    /**
+     * Messages being mediated or waiting for their acknowledgement by their receipt handles. A message holds a worker
+     * permit while it is in flight, which is released by the one who removes it.
+     */
+    private final ConcurrentMap<String, InFlightMessage> inFlight = new ConcurrentHashMap<String, InFlightMessage>();
+
+    private final LinkedBlockingQueue<String> pendingDeletes = new LinkedBlockingQueue<String>();
+
+    private final ExecutorService receivers;
+
+    private final ExecutorService workers;
+
+    private final ScheduledExecutorService heartbeat;
+
+    private final Thread deleter;
+
+    private final AtomicLong receiveCount = new AtomicLong();
+
+    private final AtomicLong emptyReceiveCount = new AtomicLong();
+
+    private final AtomicLong receiveLatency = new AtomicLong();
+
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    private final AtomicLong processedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong deletedCount = new AtomicLong();
+
+    private final AtomicLong extendedCount = new AtomicLong();
+
+    private volatile boolean running;
+
+    private ObjectName objectName;
+
+    /**
+     * Constructor for AmazonSQSConsumer class.
+     *
+     * @param client client of the credentials and the endpoint of the queue.
+     * @param queuePath path of the queue.
+     * @param sequenceName name of the sequence the messages are mediated through.
+     * @param synapseEnvironment environment the messages are created in.
+     * @param consumers number of concurrent long-poll receivers.
+     * @param workerCount number of messages mediated at the same time.
+     * @param maxNumberOfMessages maximum number of messages of a ReceiveMessage request, at most 10.
+     * @param waitTimeSeconds long poll time of a ReceiveMessage request, at most 20.
+     * @param visibilityTimeout visibility timeout of the received messages in seconds.
+     * @param clientAcknowledge whether the messages are deleted when their flow acknowledges them.
+     * @param acknowledgeTimeout time in seconds a message waits for its acknowledgement.
+     */
+    public AmazonSQSConsumer(final AmazonSQSClient client, final String queuePath, final String sequenceName,
+            final SynapseEnvironment synapseEnvironment, final int consumers, final int workerCount,
+            final int maxNumberOfMessages, final int waitTimeSeconds, final int visibilityTimeout,
+            final boolean clientAcknowledge, final int acknowledgeTimeout) {
+
+        this.client = client;
+        this.queuePath = queuePath;
+        this.sequenceName = sequenceName;
+        this.synapseEnvironment = synapseEnvironment;
+        this.consumers = consumers;
+        this.maxNumberOfMessages = Math.min(Math.max(maxNumberOfMessages, 1), MAX_BATCH_ENTRIES);
+        this.waitTimeSeconds = Math.min(Math.max(waitTimeSeconds, 0), 20);
+        this.visibilityTimeout = Math.max(visibilityTimeout, 2);
+        this.clientAcknowledge = clientAcknowledge;
+        this.acknowledgeTimeout = Math.max(acknowledgeTimeout, 1);
+        this.idleWorkers = new Semaphore(workerCount);
+        this.receivers = Executors.newFixedThreadPool(consumers, namedThreads("amazonsqs-receiver"));
+        this.workers = Executors.newFixedThreadPool(workerCount, namedThreads("amazonsqs-worker"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(namedThreads("amazonsqs-heartbeat"));
+        this.deleter = namedThreads("amazonsqs-deleter").newThread(new Runnable() {
+            public void run() {
+                deleteMessages();
+            }
+        });
+    }
+
+    /**
+     * Starts the receivers, the heartbeat and the deleter, and registers the metrics MBean.
+     */
+    public synchronized void start() {
+
+        running = true;
+        for (int index = 0; index < consumers; index++) {
+            receivers.execute(new Runnable() {
+                public void run() {
+                    receiveMessages();
+                }
+            });
+        }
+        final long heartbeatPeriod = Math.max(visibilityTimeout / 3, 1);
+        heartbeat.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                extendVisibility();
+            }
+        }, heartbeatPeriod, heartbeatPeriod, TimeUnit.SECONDS);
+        deleter.start();
+        try {
+            objectName =
+                    new ObjectName("org.wso2.carbon.connector.amazonsqs:type=Consumer,queue="
+                            + ObjectName.quote(queuePath) + ",sequence=" + ObjectName.quote(sequenceName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (Exception exc) {
+            log.warn("Unable to register the metrics of the consumer of " + queuePath, exc);
+            objectName = null;
+        }
+        log.info("Started " + consumers + " consumers of " + queuePath + " for the sequence " + sequenceName);
+    }
+
+    /**
+     * Stops receiving messages, waits up to the visibility timeout for the messages in flight and deletes the mediated
+     * messages. The messages which are still in flight afterwards are received again when their visibility timeout
+     * expires.
+     */
+    public synchronized void stop() {
+
+        running = false;
+        receivers.shutdownNow();
+        workers.shutdown();
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(visibilityTimeout);
+        try {
+            workers.awaitTermination(visibilityTimeout, TimeUnit.SECONDS);
+            while (!inFlight.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(STOP_POLL_INTERVAL);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        inFlight.clear();
+        heartbeat.shutdown();
+        try {
+            deleter.join(Math.max(deadline - System.currentTimeMillis(), 1));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception exc) {
+                log.warn("Unable to unregister the metrics of the consumer of " + queuePath, exc);
+            }
+        }
+        log.info("Stopped the consumers of " + queuePath);
+    }
+
+    private void receiveMessages() {
+
+        while (running) {
+            int permits = 0;
+            try {
+                idleWorkers.acquire();
+                permits = 1;
+                while (permits < maxNumberOfMessages && idleWorkers.tryAcquire()) {
+                    permits++;
+                }
+                final Map<String, String> parameters = new HashMap<String, String>();
+                parameters.put("MaxNumberOfMessages", String.valueOf(permits));
+                parameters.put("WaitTimeSeconds", String.valueOf(waitTimeSeconds));
+                parameters.put("VisibilityTimeout", String.valueOf(visibilityTimeout));
+                final long start = System.currentTimeMillis();
+                final String response = client.invoke(queuePath, "ReceiveMessage", parameters);
+                receiveLatency.addAndGet(System.currentTimeMillis() - start);
+                receiveCount.incrementAndGet();
+
+                final List<Map<String, String>> messages = AmazonSQSClient.getElements(response, "Message");
+                if (messages.isEmpty()) {
+                    emptyReceiveCount.incrementAndGet();
+                }
+                for (final Map<String, String> message : messages) {
+                    final String receiptHandle = message.get("ReceiptHandle");
+                    inFlight.put(receiptHandle, new InFlightMessage());
+                    receivedCount.incrementAndGet();
+                    try {
+                        workers.execute(new Runnable() {
+                            public void run() {
+                                mediate(message);
+                            }
+                        });
+                    } catch (RejectedExecutionException ree) {
+                        // Workers are shut down while the consumer stops, the permit is released below.
+                        inFlight.remove(receiptHandle);
+                        log.warn("Receiver of " + queuePath + " stopped, " + message.get("MessageId")
+                                + " is received again when its visibility timeout expires");
+                        return;
+                    }
+                    permits--;
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException ioe) {
+                log.error("Unable to receive messages from " + queuePath, ioe);
+                idleWorkers.release(permits);
+                permits = 0;
+                try {
+                    Thread.sleep(RECEIVE_RETRY_DELAY);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } catch (RuntimeException re) {
+                log.error("Receiver of " + queuePath + " stopped", re);
+                return;
+            } finally {
+                idleWorkers.release(permits);
+            }
+        }
+    }
+
+    /**
+     * Mediates a message through the sequence and deletes it if the sequence returns true without an error, or with
+     * client acknowledgement, leaves it in flight until its flow acknowledges it.
+     */
+    private void mediate(final Map<String, String> message) {
+
+        final String receiptHandle = message.get("ReceiptHandle");
+        boolean mediated = false;
+        try {
+            final MessageContext messageContext = synapseEnvironment.createMessageContext();
+            final SOAPEnvelope envelope = OMAbstractFactory.getSOAP11Factory().getDefaultEnvelope();
+            envelope.getBody().addChild(toPayload(message.get("Body")));
+            messageContext.setEnvelope(envelope);
+            messageContext.setProperty("sqsMessageId", message.get("MessageId"));
+            messageContext.setProperty("sqsReceiptHandle", receiptHandle);
+            messageContext.setProperty("sqsMD5OfBody", message.get("MD5OfBody"));
+            messageContext.setProperty("sqsQueue", queuePath);
+            if (clientAcknowledge) {
+                messageContext.setProperty(DELIVERY, new AmazonSQSDelivery(this, receiptHandle));
+            }
+
+            final Mediator sequence = messageContext.getSequence(sequenceName);
+            if (sequence == null) {
+                throw new IllegalStateException("Sequence " + sequenceName + " is not found");
+            }
+            mediated = sequence.mediate(messageContext);
+            if (!mediated) {
+                log.warn("Mediation of the message " + message.get("MessageId") + " from " + queuePath
+                        + " was stopped, it is received again when its visibility timeout expires");
+            }
+        } catch (Exception exc) {
+            log.error("Mediation of the message " + message.get("MessageId") + " from " + queuePath
+                    + " failed, it is received again when its visibility timeout expires", exc);
+        }
+        if (!mediated || !clientAcknowledge) {
+            complete(receiptHandle, mediated);
+            return;
+        }
+        final InFlightMessage inFlightMessage = inFlight.get(receiptHandle);
+        if (inFlightMessage != null) {
+            inFlightMessage.awaitAcknowledgement(acknowledgeTimeout);
+        }
+    }
+
+    /**
+     * Completes a message in flight, deleting it when it succeeded, and releases its worker.
+     *
+     * @param receiptHandle receipt handle of the message.
+     * @param success whether the message is deleted.
+     * @return false if the message is no longer in flight.
+     */
+    boolean complete(final String receiptHandle, final boolean success) {
+
+        if (inFlight.remove(receiptHandle) == null) {
+            return false;
+        }
+        if (success) {
+            processedCount.incrementAndGet();
+            pendingDeletes.add(receiptHandle);
+        } else {
+            failedCount.incrementAndGet();
+        }
+        idleWorkers.release();
+        return true;
+    }
+
+    /**
+     * Returns the body of a message as its XML element, or in a text element when it is not XML.
+     */
+    private static OMElement toPayload(final String body) {
+
+        if (body.trim().startsWith("<")) {
+            try {
+                return AXIOMUtil.stringToOM(body);
+            } catch (Exception exc) {
+                // Sent as text.
+            }
+        }
+        final OMElement text = OMAbstractFactory.getOMFactory().createOMElement(TEXT_WRAPPER);
+        text.setText(body);
+        return text;
+    }
+
+    /**
+     * Extends the visibility timeout of the messages whose visibility timeout is half expired, and gives up the
+     * messages whose acknowledgement has not come in time.
+     */
+    private void extendVisibility() {
+
+        final long now = System.currentTimeMillis();
+        final long threshold = TimeUnit.SECONDS.toMillis(visibilityTimeout) / 2;
+        final List<String> receiptHandles = new ArrayList<String>();
+        for (Map.Entry<String, InFlightMessage> message : inFlight.entrySet()) {
+            if (now >= message.getValue().deadline) {
+                if (complete(message.getKey(), false)) {
+                    log.warn("A message from " + queuePath + " was not acknowledged within " + acknowledgeTimeout
+                            + " seconds, it is received again when its visibility timeout expires");
+                }
+            } else if (now - message.getValue().extended >= threshold) {
+                receiptHandles.add(message.getKey());
+            }
+        }
+        for (int start = 0; start < receiptHandles.size(); start += MAX_BATCH_ENTRIES) {
+            final List<String> batch =
+                    receiptHandles.subList(start, Math.min(start + MAX_BATCH_ENTRIES, receiptHandles.size()));
+            final Map<String, String> parameters = new HashMap<String, String>();
+            for (int index = 0; index < batch.size(); index++) {
+                final String prefix = "ChangeMessageVisibilityBatchRequestEntry." + (index + 1) + '.';
+                parameters.put(prefix + "Id", String.valueOf(index));
+                parameters.put(prefix + "ReceiptHandle", batch.get(index));
+                parameters.put(prefix + "VisibilityTimeout", String.valueOf(visibilityTimeout));
+            }
+            try {
+                client.invoke(queuePath, "ChangeMessageVisibilityBatch", parameters);
+                for (String receiptHandle : batch) {
+                    // Only the messages still in flight are counted.
+                    final InFlightMessage message = inFlight.get(receiptHandle);
+                    if (message != null) {
+                        message.extended = now;
+                        extendedCount.incrementAndGet();
+                    }
+                }
+            } catch (IOException ioe) {
+                log.warn("Unable to extend the visibility timeout of " + batch.size() + " messages of " + queuePath,
+                        ioe);
+            }
+        }
+    }
+
+    /**
+     * Deletes the mediated messages in batches until the consumer is stopped and all of them are deleted.
+     */
+    private void deleteMessages() {
+
+        final List<String> batch = new ArrayList<String>(MAX_BATCH_ENTRIES);
+        while (running || !pendingDeletes.isEmpty() || !workers.isTerminated() || !inFlight.isEmpty()) {
+            try {
+                final String first = pendingDeletes.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pendingDeletes.drainTo(batch, MAX_BATCH_ENTRIES - 1);
+                final Map<String, String> parameters = new HashMap<String, String>();
+                for (int index = 0; index < batch.size(); index++) {
+                    final String prefix = "DeleteMessageBatchRequestEntry." + (index + 1) + '.';
+                    parameters.put(prefix + "Id", String.valueOf(index));
+                    parameters.put(prefix + "ReceiptHandle", batch.get(index));
+                }
+                final String response = client.invoke(queuePath, "DeleteMessageBatch", parameters);
+                final int failed = AmazonSQSClient.getElements(response, "BatchResultErrorEntry").size();
+                deletedCount.addAndGet(batch.size() - failed);
+                if (failed > 0) {
+                    log.warn("Unable to delete " + failed + " messages of " + queuePath + ": " + response);
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException ioe) {
+                log.error("Unable to delete " + batch.size() + " messages of " + queuePath
+                        + ", they are received again when their visibility timeout expires", ioe);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * A message in flight, with the time its visibility timeout was last set.
+     */
+    private static final class InFlightMessage {
+
+        private volatile long extended = System.currentTimeMillis();
+
+        /**
+         * Time the message is given up unless it has been completed, none while it is being mediated.
+         */
+        private volatile long deadline = Long.MAX_VALUE;
+
+        private void awaitAcknowledgement(final int timeout) {
+
+            deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeout);
+        }
+    }
+
+    private static ThreadFactory namedThreads(final String name) {
+
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, name + '-' + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public int getConsumerCount() {
+
+        return consumers;
+    }
+
+    public int getInFlightCount() {
+
+        return inFlight.size();
+    }
+
+    public long getReceivedCount() {
+
+        return receivedCount.get();
+    }
+
+    public long getProcessedCount() {
+
+        return processedCount.get();
+    }
+
+    public long getFailedCount() {
+
+        return failedCount.get();
+    }
+
+    public long getDeletedCount() {
+
+        return deletedCount.get();
+    }
+
+    public long getExtendedCount() {
+
+        return extendedCount.get();
+    }
+
+    public double getAverageReceiveLatency() {
+
+        final long receives = receiveCount.get();
+        return receives == 0 ? 0 : (double) receiveLatency.get() / receives;
+    }
+
+    public double getEmptyReceiveRatio() {
+
+        final long receives = receiveCount.get();
+        return receives == 0 ? 0 : (double) emptyReceiveCount.get() / receives;
+    }
+}
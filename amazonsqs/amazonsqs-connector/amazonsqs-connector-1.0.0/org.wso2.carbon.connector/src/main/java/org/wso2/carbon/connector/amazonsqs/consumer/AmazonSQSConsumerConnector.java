@@ -0,0 +1,290 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazonsqs.consumer;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.axis2.Constants;
+import org.apache.synapse.ManagedLifecycle;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.wso2.carbon.connector.amazonsqs.client.AmazonSQSClient;
+import org.wso2.carbon.connector.amazonsqs.constants.AmazonSQSConstants;
+import org.wso2.carbon.connector.core.AbstractConnector;
+
+/**
+ * Class AmazonSQSConsumerConnector which starts, stops and reports the metrics of the consumers of a queue for Amazon
+ * SQS WSO2 ESB Connector, and acknowledges the messages of consumers with client acknowledgement. A consumer is
+ * identified by the credentials, the queue and the sequence, so starting a consumer which is already running only
+ * reports its metrics. The consumers are stopped when the last of the consumer operations is undeployed.
+ */
+public class AmazonSQSConsumerConnector extends AbstractConnector implements ManagedLifecycle {
+
+    /**
+     * Running consumers by the credentials, endpoint and path of their queue and their sequence.
+     */
+    private static final ConcurrentMap<String, AmazonSQSConsumer> CONSUMERS =
+            new ConcurrentHashMap<String, AmazonSQSConsumer>();
+
+    private static final String START = "start";
+
+    private static final String STOP = "stop";
+
+    private static final String METRICS = "metrics";
+
+    private static final String ACKNOWLEDGE = "acknowledge";
+
+    private static final String CLIENT_ACKNOWLEDGE = "client";
+
+    /**
+     * Number of deployed consumer operations.
+     */
+    private static int instances;
+
+    private static final String RESPONSE_NAMESPACE = "http://org.wso2.esbconnectors.amazonsqs";
+
+    /**
+     * Counts a deployed consumer operation.
+     *
+     * @param synapseEnvironment environment the operation is deployed in.
+     */
+    public final void init(final SynapseEnvironment synapseEnvironment) {
+
+        synchronized (CONSUMERS) {
+            instances++;
+        }
+    }
+
+    /**
+     * Stops all the consumers when the last consumer operation is undeployed.
+     */
+    public final void destroy() {
+
+        synchronized (CONSUMERS) {
+            if (--instances > 0) {
+                return;
+            }
+            for (AmazonSQSConsumer consumer : CONSUMERS.values()) {
+                consumer.stop();
+            }
+            CONSUMERS.clear();
+        }
+    }
+
+    /**
+     * Connect method which is starting, stopping or reporting the consumer given by the consumer action, or
+     * acknowledging the consumed message of the message context.
+     *
+     * @param messageContext ESB messageContext.
+     */
+    public final void connect(final MessageContext messageContext) {
+
+        try {
+            final String action = (String) messageContext.getProperty(AmazonSQSConstants.CONSUMER_ACTION);
+            if (ACKNOWLEDGE.equals(action)) {
+                acknowledge(messageContext);
+                return;
+            }
+            final String sequence = (String) messageContext.getProperty(AmazonSQSConstants.SEQUENCE);
+            if (sequence == null || sequence.trim().isEmpty()) {
+                throw new IllegalArgumentException(AmazonSQSConstants.INVALID_PARAMETERS + "sequence");
+            }
+            final AmazonSQSClient client = AmazonSQSClient.fromMessageContext(messageContext);
+            final String queuePath =
+                    AmazonSQSClient.getQueuePath((String) messageContext.getProperty(AmazonSQSConstants.QUEUE_ID),
+                            (String) messageContext.getProperty(AmazonSQSConstants.URL_QUEUE_NAME));
+            final String key = client.getKey() + queuePath + '\n' + sequence.trim();
+
+            AmazonSQSConsumer consumer;
+            if (START.equals(action)) {
+                consumer = startConsumer(messageContext, client, queuePath, sequence.trim(), key);
+            } else if (STOP.equals(action)) {
+                consumer = CONSUMERS.remove(key);
+                if (consumer != null) {
+                    consumer.stop();
+                }
+            } else if (METRICS.equals(action)) {
+                consumer = CONSUMERS.get(key);
+            } else {
+                throw new IllegalArgumentException(AmazonSQSConstants.INVALID_PARAMETERS + action);
+            }
+            setResponse(messageContext, queuePath, sequence.trim(), consumer,
+                    !STOP.equals(action) && consumer != null);
+        } catch (IllegalArgumentException iae) {
+            log.error(AmazonSQSConstants.INVALID_PARAMETERS, iae);
+            storeErrorResponseStatus(messageContext, iae, AmazonSQSConstants.ILLEGAL_ARGUMENT_ERROR_CODE);
+            handleException(AmazonSQSConstants.INVALID_PARAMETERS, iae, messageContext);
+        } catch (IOException ioe) {
+            log.error("Error controlling the consumer: ", ioe);
+            storeErrorResponseStatus(messageContext, ioe, AmazonSQSConstants.IO_EXCEPTION_ERROR_CODE);
+            handleException("Error controlling the consumer: ", ioe, messageContext);
+        }
+    }
+
+    /**
+     * startConsumer method used to start the consumer of the key unless it is already running.
+     */
+    private AmazonSQSConsumer startConsumer(final MessageContext messageContext, final AmazonSQSClient client,
+            final String queuePath, final String sequence, final String key) {
+
+        AmazonSQSConsumer consumer = CONSUMERS.get(key);
+        if (consumer != null) {
+            return consumer;
+        }
+        synchronized (CONSUMERS) {
+            consumer = CONSUMERS.get(key);
+            if (consumer == null) {
+                consumer =
+                        new AmazonSQSConsumer(client, queuePath, sequence, messageContext.getEnvironment(),
+                                getInteger(messageContext, AmazonSQSConstants.CONSUMERS, 1, 1),
+                                getInteger(messageContext, AmazonSQSConstants.WORKERS, 10, 1),
+                                getInteger(messageContext, AmazonSQSConstants.MAX_NO_OF_MESSAGES, 10, 1),
+                                getInteger(messageContext, AmazonSQSConstants.WAIT_TIME_SECONDS, 20, 0),
+                                getInteger(messageContext, AmazonSQSConstants.VISIBILITY_TIMEOUT, 30, 1),
+                                isClientAcknowledge(messageContext),
+                                getInteger(messageContext, AmazonSQSConstants.ACKNOWLEDGE_TIMEOUT, 300, 1));
+                consumer.start();
+                CONSUMERS.put(key, consumer);
+            }
+        }
+        return consumer;
+    }
+
+    /**
+     * acknowledge method used to acknowledge the consumed message of the message context to its consumer.
+     */
+    private void acknowledge(final MessageContext messageContext) {
+
+        final Object delivery = messageContext.getProperty(AmazonSQSConsumer.DELIVERY);
+        if (!(delivery instanceof AmazonSQSDelivery)) {
+            throw new IllegalArgumentException(AmazonSQSConstants.INVALID_PARAMETERS
+                    + "no message of a consumer with client acknowledgement");
+        }
+        final String delivered = (String) messageContext.getProperty(AmazonSQSConstants.DELIVERED);
+        if (!((AmazonSQSDelivery) delivery).acknowledge(delivered == null || delivered.trim().isEmpty()
+                || Boolean.parseBoolean(delivered.trim()))) {
+            log.warn("The message " + messageContext.getProperty("sqsMessageId")
+                    + " was acknowledged after it timed out or its consumer stopped");
+        }
+    }
+
+    /**
+     * isClientAcknowledge method used to return whether the acknowledge mode is client, auto is the default.
+     */
+    private boolean isClientAcknowledge(final MessageContext messageContext) {
+
+        final String mode = (String) messageContext.getProperty(AmazonSQSConstants.ACKNOWLEDGE_MODE);
+        if (mode == null || mode.trim().isEmpty() || "auto".equals(mode.trim())) {
+            return false;
+        }
+        if (CLIENT_ACKNOWLEDGE.equals(mode.trim())) {
+            return true;
+        }
+        throw new IllegalArgumentException(AmazonSQSConstants.INVALID_PARAMETERS + "acknowledgeMode=" + mode);
+    }
+
+    /**
+     * getInteger method used to return an integer parameter of at least the minimum, or the default when it is not
+     * given.
+     */
+    private int getInteger(final MessageContext messageContext, final String name, final int defaultValue,
+            final int minimum) {
+
+        final String value = (String) messageContext.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            final int number = Integer.parseInt(value.trim());
+            if (number >= minimum) {
+                return number;
+            }
+        } catch (NumberFormatException nfe) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException(AmazonSQSConstants.INVALID_PARAMETERS + name + "=" + value);
+    }
+
+    /**
+     * setResponse method used to replace the payload with the state and the metrics of the consumer.
+     */
+    private void setResponse(final MessageContext messageContext, final String queuePath, final String sequence,
+            final AmazonSQSConsumerMBean consumer, final boolean running) {
+
+        final OMFactory factory = OMAbstractFactory.getOMFactory();
+        final OMNamespace namespace = factory.createOMNamespace(RESPONSE_NAMESPACE, "");
+        final OMElement response = factory.createOMElement("consumer", namespace);
+        factory.createOMElement("queue", namespace, response).setText(queuePath);
+        factory.createOMElement("sequence", namespace, response).setText(sequence);
+        factory.createOMElement("running", namespace, response).setText(String.valueOf(running));
+        if (consumer != null) {
+            factory.createOMElement("consumers", namespace, response).setText(
+                    String.valueOf(consumer.getConsumerCount()));
+            factory.createOMElement("inFlight", namespace, response).setText(
+                    String.valueOf(consumer.getInFlightCount()));
+            factory.createOMElement("received", namespace, response).setText(
+                    String.valueOf(consumer.getReceivedCount()));
+            factory.createOMElement("processed", namespace, response).setText(
+                    String.valueOf(consumer.getProcessedCount()));
+            factory.createOMElement("failed", namespace, response).setText(String.valueOf(consumer.getFailedCount()));
+            factory.createOMElement("deleted", namespace, response).setText(
+                    String.valueOf(consumer.getDeletedCount()));
+            factory.createOMElement("extended", namespace, response).setText(
+                    String.valueOf(consumer.getExtendedCount()));
+            factory.createOMElement("averageReceiveLatency", namespace, response).setText(
+                    String.valueOf(consumer.getAverageReceiveLatency()));
+            factory.createOMElement("emptyReceiveRatio", namespace, response).setText(
+                    String.valueOf(consumer.getEmptyReceiveRatio()));
+        }
+
+        final SOAPBody body = messageContext.getEnvelope().getBody();
+        final OMElement firstElement = body.getFirstElement();
+        if (firstElement != null) {
+            firstElement.detach();
+        }
+        body.addChild(response);
+        ((Axis2MessageContext) messageContext).getAxis2MessageContext().setProperty(
+                Constants.Configuration.MESSAGE_TYPE, "application/xml");
+    }
+
+    /**
+     * Add a Throwable to a message context, the message from the throwable is embedded as the Synapse.
+     * Constant ERROR_MESSAGE.
+     *
+     * @param ctxt message context to which the error tags need to be added
+     * @param throwable Throwable that needs to be parsed and added
+     * @param errorCode errorCode mapped to the exception
+     */
+    public final void storeErrorResponseStatus(final MessageContext ctxt, final Throwable throwable,
+            final int errorCode) {
+
+        ctxt.setProperty(SynapseConstants.ERROR_CODE, errorCode);
+        ctxt.setProperty(SynapseConstants.ERROR_MESSAGE, throwable.getMessage());
+        ctxt.setFaultResponse(true);
+    }
+}
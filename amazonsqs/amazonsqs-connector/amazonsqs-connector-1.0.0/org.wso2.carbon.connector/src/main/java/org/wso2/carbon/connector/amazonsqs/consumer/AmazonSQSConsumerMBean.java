@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazonsqs.consumer;
+
+/**
+ * Metrics of a queue consumer, registered with the platform MBean server.
+ */
+public interface AmazonSQSConsumerMBean {
+
+    /**
+     * @return the number of concurrent long-poll receivers
+     */
+    int getConsumerCount();
+
+    /**
+     * @return the number of messages received and not yet mediated
+     */
+    int getInFlightCount();
+
+    /**
+     * @return the number of messages received
+     */
+    long getReceivedCount();
+
+    /**
+     * @return the number of messages mediated successfully
+     */
+    long getProcessedCount();
+
+    /**
+     * @return the number of messages whose mediation failed, left on the queue to be received again
+     */
+    long getFailedCount();
+
+    /**
+     * @return the number of messages deleted from the queue
+     */
+    long getDeletedCount();
+
+    /**
+     * @return the number of visibility timeouts extended for messages whose mediation runs long
+     */
+    long getExtendedCount();
+
+    /**
+     * @return the average time in milliseconds of the ReceiveMessage requests
+     */
+    double getAverageReceiveLatency();
+
+    /**
+     * @return the ratio of the ReceiveMessage requests which returned no messages
+     */
+    double getEmptyReceiveRatio();
+}
@@ -0,0 +1,55 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.amazonsqs.consumer;
+
+/**
+ * Class AmazonSQSDelivery is the delivery callback of a message consumed with client acknowledgement. It is set on
+ * the message context of the message, and is carried over to the response of a non-blocking send, so that the flow
+ * acknowledges the message once it has been delivered.
+ */
+public final class AmazonSQSDelivery {
+
+    private final AmazonSQSConsumer consumer;
+
+    private final String receiptHandle;
+
+    /**
+     * Constructor for AmazonSQSDelivery class.
+     *
+     * @param consumer consumer which received the message.
+     * @param receiptHandle receipt handle of the message.
+     */
+    AmazonSQSDelivery(final AmazonSQSConsumer consumer, final String receiptHandle) {
+
+        this.consumer = consumer;
+        this.receiptHandle = receiptHandle;
+    }
+
+    /**
+     * Acknowledges the message, which is deleted when it has been delivered and otherwise received again when its
+     * visibility timeout expires.
+     *
+     * @param delivered whether the message has been delivered.
+     * @return false if the message has already been acknowledged, timed out or its consumer stopped.
+     */
+    public boolean acknowledge(final boolean delivered) {
+
+        return consumer.complete(receiptHandle, delivered);
+    }
+}
@@ -19,6 +19,8 @@ package org.wso2.carbon.connector.apns;
 
 import java.io.InputStream;
 
+import javax.net.ssl.SSLContext;
+
 /**
  * This class represents certificate information which is needed to access push
  * notification service.
@@ -40,6 +42,18 @@ public class Certificate {
      */
     private String password;
 
+    /**
+     * Fingerprint of the certificate content and password, when the
+     * certificate has been decoded already.
+     */
+    private String fingerprint;
+
+    /**
+     * SSL context with the decoded certificate, if it has been decoded
+     * already.
+     */
+    private SSLContext sslContext;
+
     /**
      * Constructor of {@link Certificate}.
      * 
@@ -113,6 +127,37 @@ public class Certificate {
 	this.password = password;
     }
 
+    /**
+     * Returns the fingerprint of the certificate content and password.
+     * 
+     * @return Fingerprint, or null if the certificate has not been decoded.
+     */
+    public String getFingerprint() {
+	return fingerprint;
+    }
+
+    /**
+     * Returns the SSL context with the decoded certificate.
+     * 
+     * @return SSL context, or null if the certificate has not been decoded.
+     */
+    public SSLContext getSSLContext() {
+	return sslContext;
+    }
+
+    /**
+     * Sets the decoded certificate.
+     * 
+     * @param fingerprint
+     *            Fingerprint of the certificate content and password.
+     * @param sslContext
+     *            SSL context with the decoded certificate.
+     */
+    public void setDecoded(String fingerprint, SSLContext sslContext) {
+	this.fingerprint = fingerprint;
+	this.sslContext = sslContext;
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Object#toString()
      */
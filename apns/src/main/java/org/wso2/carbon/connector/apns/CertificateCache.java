@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.apns;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.connector.apns.Utils.Errors;
+import org.wso2.carbon.mediation.registry.WSO2Registry;
+import org.wso2.carbon.registry.api.RegistryException;
+import org.wso2.carbon.registry.api.Resource;
+
+/**
+ * Cache of decoded certificates. Decrypting a PKCS12 file is expensive, so
+ * certificates are decoded once into an SSL context which is reused as long
+ * as the certificate does not change.
+ * 
+ * Registry certificates are cached by registry path and are decoded again
+ * when the last modified time of the resource changes. The time is checked at
+ * most once per revalidation interval, so most requests do not go to the
+ * registry at all. Attachment certificates are cached by the hash of their
+ * content. The least recently used certificates are dropped when the cache is
+ * full.
+ * 
+ * The limits can be changed with the system properties
+ * apns.connector.maxCachedCertificates and
+ * apns.connector.certificateRevalidateInterval (in milliseconds).
+ */
+public class CertificateCache {
+
+    private static final Log log = LogFactory.getLog(CertificateCache.class);
+
+    private static final String KEY_STORE_TYPE = "PKCS12";
+
+    private static final String SSL_PROTOCOL = "TLS";
+
+    private static final CertificateCache INSTANCE = new CertificateCache();
+
+    private final int maxCachedCertificates = Integer.getInteger(
+	    "apns.connector.maxCachedCertificates", 64);
+
+    private final long revalidateInterval = Long.getLong(
+	    "apns.connector.certificateRevalidateInterval", 30000);
+
+    private final Map<String, DecodedCertificate> certificates = new LinkedHashMap<String, DecodedCertificate>(
+	    16, 0.75f, true) {
+
+	private static final long serialVersionUID = -3489244390178215524L;
+
+	@Override
+	protected boolean removeEldestEntry(
+		Map.Entry<String, DecodedCertificate> eldest) {
+	    return size() > maxCachedCertificates;
+	}
+    };
+
+    private CertificateCache() {
+    }
+
+    /**
+     * Returns the cache instance.
+     * 
+     * @return The cache.
+     */
+    public static CertificateCache getInstance() {
+	return INSTANCE;
+    }
+
+    /**
+     * Returns the decoded certificate of a registry resource.
+     * 
+     * @param registry
+     *            Registry of the resource.
+     * @param path
+     *            Registry resource path of the certificate.
+     * @param password
+     *            Password of the certificate.
+     * @return Decoded certificate.
+     * @throws PushNotificationException
+     *             When the certificate cannot be read or decoded.
+     */
+    public Certificate getRegistryCertificate(WSO2Registry registry,
+	    String path, String password) throws PushNotificationException {
+
+	String key = "registry:" + path + ":" + hash(password);
+	long now = System.currentTimeMillis();
+	DecodedCertificate cached = get(key);
+	if (cached != null && now - cached.validatedAt < revalidateInterval) {
+	    return cached.toCertificate(path);
+	}
+
+	Resource resource = registry.getResource(path);
+	if (resource == null) {
+	    throw new PushNotificationException(String.format(
+		    "No certificate in registry path %s", path),
+		    Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO);
+	}
+
+	long lastModified = resource.getLastModified() == null ? 0 : resource
+		.getLastModified().getTime();
+	if (cached != null && cached.lastModified == lastModified) {
+	    cached.validatedAt = now;
+	    return cached.toCertificate(path);
+	}
+
+	byte[] content;
+	try {
+	    content = read(resource.getContentStream());
+	} catch (RegistryException e) {
+	    throw new PushNotificationException(String.format(
+		    "Certificate content in registry, <%s> cannot be read",
+		    path), Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO, e);
+	} catch (IOException e) {
+	    throw new PushNotificationException(String.format(
+		    "Certificate content in registry, <%s> cannot be read",
+		    path), Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO, e);
+	}
+
+	if (log.isDebugEnabled()) {
+	    log.debug(String.format("Decoding the certificate in registry path %s",
+		    path));
+	}
+	DecodedCertificate decoded = decode(path, content, password);
+	decoded.lastModified = lastModified;
+	decoded.validatedAt = now;
+	put(key, decoded);
+	return decoded.toCertificate(path);
+    }
+
+    /**
+     * Returns the decoded certificate of an attachment.
+     * 
+     * @param name
+     *            Name of the attachment.
+     * @param content
+     *            Content of the attachment, which is read and closed.
+     * @param password
+     *            Password of the certificate.
+     * @return Decoded certificate.
+     * @throws PushNotificationException
+     *             When the certificate cannot be read or decoded.
+     */
+    public Certificate getAttachmentCertificate(String name,
+	    InputStream content, String password)
+	    throws PushNotificationException {
+
+	byte[] bytes;
+	try {
+	    bytes = read(content);
+	} catch (IOException e) {
+	    throw new PushNotificationException(String.format(
+		    "Cannot read the certificate attachment %s", name),
+		    Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO, e);
+	}
+
+	String fingerprint = fingerprint(bytes, password);
+	String key = "attachment:" + fingerprint;
+	DecodedCertificate cached = get(key);
+	if (cached != null) {
+	    return cached.toCertificate(name);
+	}
+
+	if (log.isDebugEnabled()) {
+	    log.debug(String.format("Decoding the certificate attachment %s",
+		    name));
+	}
+	DecodedCertificate decoded = decode(name, bytes, password);
+	put(key, decoded);
+	return decoded.toCertificate(name);
+    }
+
+    /**
+     * Returns the fingerprint of a certificate, which identifies its content
+     * and password.
+     * 
+     * @param content
+     *            Content of the certificate.
+     * @param password
+     *            Password of the certificate.
+     * @return Hex encoded SHA-256 hash.
+     * @throws PushNotificationException
+     *             When the hash cannot be computed.
+     */
+    public static String fingerprint(byte[] content, String password)
+	    throws PushNotificationException {
+	MessageDigest digest = newDigest();
+	digest.update(content);
+	if (password != null) {
+	    digest.update(toBytes(password));
+	}
+	return toHex(digest.digest());
+    }
+
+    private DecodedCertificate get(String key) {
+	synchronized (certificates) {
+	    return certificates.get(key);
+	}
+    }
+
+    private void put(String key, DecodedCertificate decoded) {
+	synchronized (certificates) {
+	    certificates.put(key, decoded);
+	}
+    }
+
+    /**
+     * Decrypts the PKCS12 file and builds the SSL context of the APNs
+     * connections.
+     */
+    private static DecodedCertificate decode(String name, byte[] content,
+	    String password) throws PushNotificationException {
+
+	char[] passwordChars = password == null ? new char[0] : password
+		.toCharArray();
+	try {
+	    KeyStore keyStore = KeyStore.getInstance(KEY_STORE_TYPE);
+	    keyStore.load(new ByteArrayInputStream(content), passwordChars);
+
+	    KeyManagerFactory keyManagerFactory = KeyManagerFactory
+		    .getInstance(KeyManagerFactory.getDefaultAlgorithm());
+	    keyManagerFactory.init(keyStore, passwordChars);
+
+	    SSLContext sslContext = SSLContext.getInstance(SSL_PROTOCOL);
+	    sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+	    return new DecodedCertificate(fingerprint(content, password),
+		    sslContext);
+	} catch (GeneralSecurityException e) {
+	    throw new PushNotificationException(String.format(
+		    "Cannot decrypt the PCSK12 file in %s", name),
+		    Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO, e);
+	} catch (IOException e) {
+	    throw new PushNotificationException(String.format(
+		    "Cannot decrypt the PCSK12 file in %s", name),
+		    Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO, e);
+	}
+    }
+
+    private static byte[] read(InputStream content) throws IOException {
+	try {
+	    ByteArrayOutputStream out = new ByteArrayOutputStream();
+	    byte[] buffer = new byte[4096];
+	    int read;
+	    while ((read = content.read(buffer)) != -1) {
+		out.write(buffer, 0, read);
+	    }
+	    return out.toByteArray();
+	} finally {
+	    content.close();
+	}
+    }
+
+    private static String hash(String password)
+	    throws PushNotificationException {
+	if (password == null) {
+	    return "";
+	}
+	MessageDigest digest = newDigest();
+	return toHex(digest.digest(toBytes(password)));
+    }
+
+    private static MessageDigest newDigest() throws PushNotificationException {
+	try {
+	    return MessageDigest.getInstance("SHA-256");
+	} catch (NoSuchAlgorithmException e) {
+	    throw new PushNotificationException("Cannot hash the certificate",
+		    Errors.ERROR_CODE_UNKNOWN_ERROR, e);
+	}
+    }
+
+    private static byte[] toBytes(String value) {
+	try {
+	    return value.getBytes("UTF-8");
+	} catch (IOException e) {
+	    // UTF-8 is always supported.
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    private static String toHex(byte[] bytes) {
+	StringBuilder hex = new StringBuilder();
+	for (byte b : bytes) {
+	    hex.append(String.format("%02x", b));
+	}
+	return hex.toString();
+    }
+
+    /**
+     * A decoded certificate.
+     */
+    private static class DecodedCertificate {
+
+	private final String fingerprint;
+	private final SSLContext sslContext;
+	private volatile long lastModified;
+	private volatile long validatedAt;
+
+	private DecodedCertificate(String fingerprint, SSLContext sslContext) {
+	    this.fingerprint = fingerprint;
+	    this.sslContext = sslContext;
+	}
+
+	private Certificate toCertificate(String name) {
+	    Certificate certificate = new Certificate(name, null, null);
+	    certificate.setDecoded(fingerprint, sslContext);
+	    return certificate;
+	}
+    }
+}
@@ -29,8 +29,6 @@ import org.wso2.carbon.connector.apns.provider.ProviderRegistry;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.mediation.registry.WSO2Registry;
-import org.wso2.carbon.registry.api.RegistryException;
-import org.wso2.carbon.registry.api.Resource;
 
 /**
  * Connector which sends a push notification request to Apple Push Notification
@@ -91,7 +89,7 @@ public class DispatchToDevice extends AbstractConnector {
 
 	    // Build and set a SOAP envelope in the message context.
 	    try {
-		Utils.setResultEnvelope(messageContext, response);
+		setResult(messageContext, response);
 	    } catch (IOException e) {
 		String errorMessage = "Error building the response envelope";
 		throw new PushNotificationException(errorMessage,
@@ -207,33 +205,16 @@ public class DispatchToDevice extends AbstractConnector {
 	String certificateRegistryPath = Utils.getMandatoryPropertyAsString(
 		messageContext, PropertyNames.CERTIFICATE_REGISTRY_PATH);
 
-	// Get content from the registry resource.
-	Registry registry = messageContext.getConfiguration().getRegistry();
-	WSO2Registry wso2Registry = (WSO2Registry) registry;
-	Resource resource = wso2Registry.getResource(certificateRegistryPath);
-
-	if (resource == null) {
-	    throw new PushNotificationException(String.format(
-		    "No certificate in registry path %s",
-		    certificateRegistryPath),
-		    Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO);
-	}
-
-	InputStream content = null;
-	try {
-	    content = resource.getContentStream();
-	} catch (RegistryException e) {
-	    throw new PushNotificationException(String.format(
-		    "Certificate content in registry, <%s> cannot be read",
-		    certificateRegistryPath),
-		    Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO);
-	}
-
 	// Get the password.
 	String password = Utils.getMandatoryPropertyAsString(messageContext,
 		Utils.PropertyNames.PASSWORD);
 
-	return new Certificate(certificateRegistryPath, content, password);
+	// Get the decoded certificate of the registry resource.
+	Registry registry = messageContext.getConfiguration().getRegistry();
+	WSO2Registry wso2Registry = (WSO2Registry) registry;
+
+	return CertificateCache.getInstance().getRegistryCertificate(
+		wso2Registry, certificateRegistryPath, password);
     }
 
     /**
@@ -269,7 +250,8 @@ public class DispatchToDevice extends AbstractConnector {
 	String password = Utils.getMandatoryPropertyAsString(messageContext,
 		Utils.PropertyNames.PASSWORD);
 
-	return new Certificate(certificateName, content, password);
+	return CertificateCache.getInstance().getAttachmentCertificate(
+		certificateName, content, password);
     }
 
     /**
@@ -299,7 +281,25 @@ public class DispatchToDevice extends AbstractConnector {
 		Utils.PropertyNames.BADGE);
 	pushNotification.setBadge(badge);
 
-	// Set device token.
+	// Set device tokens.
+	addDeviceTokens(messageContext, pushNotification);
+
+	return pushNotification;
+    }
+
+    /**
+     * Adds the device token in the message context to the push notification.
+     * 
+     * @param messageContext
+     *            Synapse message context.
+     * @param pushNotification
+     *            Push notification to add the device token to.
+     * @throws PushNotificationException
+     *             When device token is missing or empty.
+     */
+    protected void addDeviceTokens(MessageContext messageContext,
+	    PushNotification pushNotification) throws PushNotificationException {
+
 	String deviceToken = Utils.getMandatoryPropertyAsString(messageContext,
 		Utils.PropertyNames.DEVICE_TOKEN);
 	if (!deviceToken.trim().isEmpty()) {
@@ -308,8 +308,21 @@ public class DispatchToDevice extends AbstractConnector {
 	    throw new PushNotificationException("Device token is empty",
 		    Utils.Errors.ERROR_CODE_ILLEGAL_PARAMETER);
 	}
+    }
 
-	return pushNotification;
+    /**
+     * Sets the result of the dispatch in the message context.
+     * 
+     * @param messageContext
+     *            Synapse message context.
+     * @param response
+     *            Push notification response.
+     * @throws IOException
+     *             When the envelope cannot be created.
+     */
+    protected void setResult(MessageContext messageContext,
+	    PushNotificationResponse response) throws IOException {
+	Utils.setResultEnvelope(messageContext, response);
     }
 
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.apns;
+
+import java.io.IOException;
+
+import org.apache.synapse.MessageContext;
+
+/**
+ * Connector which sends one push notification to all device tokens in the
+ * connector configuration. The device tokens are separated by commas or white
+ * space, and are pushed over the pooled connections of the APNs service.
+ */
+public class DispatchToDevices extends DispatchToDevice {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.wso2.carbon.connector.apns.DispatchToDevice#addDeviceTokens(org.apache
+     * .synapse.MessageContext,
+     * org.wso2.carbon.connector.apns.PushNotification)
+     */
+    @Override
+    protected void addDeviceTokens(MessageContext messageContext,
+	    PushNotification pushNotification) throws PushNotificationException {
+
+	String deviceTokens = Utils.getMandatoryPropertyAsString(
+		messageContext, Utils.PropertyNames.DEVICE_TOKENS);
+
+	for (String deviceToken : deviceTokens.split("[,\\s]+")) {
+	    if (!deviceToken.isEmpty()) {
+		pushNotification.addDeviceToken(deviceToken);
+	    }
+	}
+
+	if (pushNotification.getDeviceTokens().isEmpty()) {
+	    throw new PushNotificationException("Device tokens are empty",
+		    Utils.Errors.ERROR_CODE_ILLEGAL_PARAMETER);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.wso2.carbon.connector.apns.DispatchToDevice#setResult(org.apache.synapse
+     * .MessageContext, org.wso2.carbon.connector.apns.PushNotificationResponse)
+     */
+    @Override
+    protected void setResult(MessageContext messageContext,
+	    PushNotificationResponse response) throws IOException {
+	Utils.setBatchResultEnvelope(messageContext, response);
+    }
+
+}
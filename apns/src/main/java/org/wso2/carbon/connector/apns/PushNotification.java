@@ -17,7 +17,7 @@
  */
 package org.wso2.carbon.connector.apns;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -26,14 +26,19 @@ import java.util.Set;
  */
 public class PushNotification {
 
+    /**
+     * Maximum number of device tokens listed by {@link #toString()}.
+     */
+    private static final int MAX_LOGGED_DEVICE_TOKENS = 10;
+
     /**
      * Payload of the push notification.
      */
     private Payload payload;
 
     /**
-     * Set of the device tokens which the payload should be sent to. NOTE : Only
-     * one device token is considered as of now.
+     * Set of the device tokens which the payload should be sent to, in the
+     * order they were added.
      */
     private Set<String> deviceTokens;
 
@@ -42,7 +47,7 @@ public class PushNotification {
      */
     public PushNotification() {
 	payload = new Payload();
-	deviceTokens = new HashSet<String>();
+	deviceTokens = new LinkedHashSet<String>();
     }
 
     /**
@@ -132,15 +137,15 @@ public class PushNotification {
     }
 
     /**
-     * Returns a random device token from the device tokens.
+     * Returns the first device token of the device tokens.
      * 
-     * @return A random device token if there are more then zero device tokens,
-     *         null otherwise.
+     * @return The first device token if there are more then zero device
+     *         tokens, null otherwise.
      */
     public String getSingleDeviceToken() {
 
 	if (!deviceTokens.isEmpty()) {
-	    return (String) deviceTokens.toArray()[0];
+	    return deviceTokens.iterator().next();
 	} else {
 	    return null;
 	}
@@ -152,7 +157,10 @@ public class PushNotification {
      */
     @Override
     public String toString() {
+	// Batches can hold many thousands of device tokens, only count them.
+	Object tokens = deviceTokens.size() > MAX_LOGGED_DEVICE_TOKENS ? deviceTokens
+		.size() + " device tokens" : deviceTokens;
 	return "PushNotification{" + "payload=" + payload + ", deviceTokens="
-		+ deviceTokens + '}';
+		+ tokens + '}';
     }
 }
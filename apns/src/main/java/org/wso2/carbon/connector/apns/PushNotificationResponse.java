@@ -43,6 +43,11 @@ public class PushNotificationResponse {
      */
     private String sound;
 
+    /**
+     * Number of devices the notification was dispatched to.
+     */
+    private int dispatchedCount = 1;
+
     /**
      * Returns the device token which the notification sent to.
      * 
@@ -114,4 +119,22 @@ public class PushNotificationResponse {
     public void setSound(String sound) {
 	this.sound = sound;
     }
+
+    /**
+     * Returns the number of devices the notification was dispatched to.
+     * 
+     * @return Number of devices.
+     */
+    public int getDispatchedCount() {
+	return dispatchedCount;
+    }
+
+    /**
+     * Sets the number of devices the notification was dispatched to.
+     * 
+     * @param dispatchedCount Number of devices.
+     */
+    public void setDispatchedCount(int dispatchedCount) {
+	this.dispatchedCount = dispatchedCount;
+    }
 }
@@ -209,6 +209,46 @@ public class Utils {
 		.setEnvelope(TransportUtils.createSOAPEnvelope(resultTag));
     }
 
+    /**
+     * Constructs a SOAP envelop using the given response of a dispatch to
+     * several devices, and sets it in the message context.
+     * 
+     * @param messageContext
+     *            Synapse message context.
+     * @param response
+     *            Push notification response.
+     * @throws AxisFault
+     *             When the envelope cannot be created.
+     */
+    public static void setBatchResultEnvelope(MessageContext messageContext,
+	    PushNotificationResponse response) throws AxisFault {
+
+	messageContext.getEnvelope().detach();
+
+	OMFactory factory = OMAbstractFactory.getOMFactory();
+	OMNamespace ns = factory.createOMNamespace(
+		SOAPResponseConstants.NS_URI_APNS,
+		SOAPResponseConstants.NS_APNS);
+	OMElement resultTag = factory.createOMElement(
+		SOAPResponseConstants.TAG_DISPATCH_TO_DEVICES_RESULT, ns);
+
+	// Add 'successful' tag.
+	OMElement resultChild = factory.createOMElement(
+		SOAPResponseConstants.TAG_SUCCESSFUL, ns);
+	resultChild.addChild(factory.createOMText("true"));
+	resultTag.addChild(resultChild);
+
+	// Add 'dispatchedCount' tag.
+	OMElement countChild = factory.createOMElement(
+		SOAPResponseConstants.TAG_DISPATCHED_COUNT, ns);
+	countChild.addChild(factory.createOMText(String.valueOf(response
+		.getDispatchedCount())));
+	resultTag.addChild(countChild);
+
+	messageContext
+		.setEnvelope(TransportUtils.createSOAPEnvelope(resultTag));
+    }
+
     /**
      * Returns the attachment in the message context for the given attachment
      * name.
@@ -321,6 +361,11 @@ public class Utils {
 	 */
 	public static final String DEVICE_TOKEN = "apns.deviceToken";
 
+	/**
+	 * Key for the device tokens of a dispatch to several devices.
+	 */
+	public static final String DEVICE_TOKENS = "apns.deviceTokens";
+
 	/**
 	 * Key for alert message.
 	 */
@@ -377,11 +422,22 @@ public class Utils {
 	 */
 	public static final String TAG_DISPATCH_TO_DEVICE_RESULT = "dispatchToDeviceResult";
 
+	/**
+	 * Name of the result tag of a dispatch to several devices.
+	 */
+	public static final String TAG_DISPATCH_TO_DEVICES_RESULT = "dispatchToDevicesResult";
+
 	/**
 	 * Name of the successful tag.
 	 */
 	public static final String TAG_SUCCESSFUL = "successful";
 
+	/**
+	 * Name of the tag with the number of devices the notification was
+	 * dispatched to.
+	 */
+	public static final String TAG_DISPATCHED_COUNT = "dispatchedCount";
+
 	/**
 	 * Name of the error code tag.
 	 */
@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.apns.provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.connector.apns.Certificate;
+import org.wso2.carbon.connector.apns.CertificateCache;
+import org.wso2.carbon.connector.apns.PushNotificationException;
+import org.wso2.carbon.connector.apns.Utils;
+
+import com.notnoop.apns.APNS;
+import com.notnoop.apns.ApnsService;
+import com.notnoop.apns.ApnsServiceBuilder;
+
+/**
+ * Keeps the APNs services alive between push notification requests. Building
+ * a service decrypts the certificate and opens a new TLS connection to APNs,
+ * so the services are shared by all requests with the same certificate,
+ * password and destination. Certificates decoded by {@link CertificateCache}
+ * are not decrypted again when a service is built.
+ * 
+ * Every entry holds a single connection service, used for single device
+ * dispatches so that APNs errors are reported to the caller, and a pooled
+ * service, used to push batches over several connections. The services are
+ * built when first needed, stopped after they have been idle for too long,
+ * and the least recently used entry is stopped when there are too many.
+ * Services are borrowed with {@link #getService(Certificate, boolean, boolean)}
+ * and given back with {@link #release(ApnsService)}. An entry which is
+ * evicted or invalidated while its services are borrowed is only stopped once
+ * the last of them has been given back.
+ * 
+ * The limits can be changed with the system properties
+ * apns.connector.connectionsPerService, apns.connector.maxServices and
+ * apns.connector.idleTimeout (in milliseconds).
+ */
+public class ApnsServicePool {
+
+    private static final Log log = LogFactory.getLog(ApnsServicePool.class);
+
+    private static final ApnsServicePool INSTANCE = new ApnsServicePool();
+
+    private final int connectionsPerService = Integer.getInteger(
+	    "apns.connector.connectionsPerService", 4);
+    private final int maxServices = Integer.getInteger(
+	    "apns.connector.maxServices", 32);
+    private final long idleTimeout = Long.getLong(
+	    "apns.connector.idleTimeout", 300000);
+
+    /**
+     * Entries in access order, so that the first one is the least recently
+     * used.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(
+	    16, 0.75f, true);
+
+    /**
+     * Entries by the services they have built, including evicted entries whose
+     * services are still borrowed. Guarded by the entries.
+     */
+    private final IdentityHashMap<ApnsService, Entry> owners = new IdentityHashMap<ApnsService, Entry>();
+
+    private ApnsServicePool() {
+	ScheduledExecutorService evictor = Executors
+		.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		    public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable,
+				"apns-service-pool-evictor");
+			thread.setDaemon(true);
+			return thread;
+		    }
+		});
+	long interval = Math.max(1000, idleTimeout / 2);
+	evictor.scheduleWithFixedDelay(new Runnable() {
+	    public void run() {
+		try {
+		    evictIdleEntries();
+		} catch (Throwable t) {
+		    log.error("Error while evicting idle APNs services", t);
+		}
+	    }
+	}, interval, interval, TimeUnit.MILLISECONDS);
+	Runtime.getRuntime().addShutdownHook(
+		new Thread("apns-service-pool-shutdown") {
+		    public void run() {
+			stopAll();
+		    }
+		});
+    }
+
+    /**
+     * Returns the pool instance.
+     * 
+     * @return The pool.
+     */
+    public static ApnsServicePool getInstance() {
+	return INSTANCE;
+    }
+
+    /**
+     * Borrows the service for the certificate and destination, building it if
+     * there is none yet. The service has to be given back with
+     * {@link #release(ApnsService)}.
+     * 
+     * @param certificate
+     *            Certificate of the service. Its content is read.
+     * @param production
+     *            <code>true</code> for the production destination,
+     *            <code>false</code> for the sandbox.
+     * @param pooled
+     *            <code>true</code> for the service which pushes over several
+     *            connections.
+     * @return The service.
+     * @throws PushNotificationException
+     *             When the certificate cannot be read.
+     */
+    public ApnsService getService(Certificate certificate, boolean production,
+	    boolean pooled) throws PushNotificationException {
+
+	// Decoded certificates are identified by their fingerprint, others are
+	// read to compute it.
+	SSLContext sslContext = certificate.getSSLContext();
+	byte[] content = null;
+	String fingerprint = certificate.getFingerprint();
+	if (sslContext == null || fingerprint == null) {
+	    sslContext = null;
+	    content = readContent(certificate);
+	    fingerprint = CertificateCache.fingerprint(content,
+		    certificate.getPassword());
+	}
+	String key = (production ? "production:" : "sandbox:") + fingerprint;
+
+	while (true) {
+	    Entry entry;
+	    List<Entry> evicted = new ArrayList<Entry>();
+	    synchronized (entries) {
+		entry = entries.get(key);
+		if (entry == null) {
+		    entry = new Entry(key, sslContext, content,
+			    certificate.getPassword(), production);
+		    entries.put(key, entry);
+		    Iterator<Entry> iterator = entries.values().iterator();
+		    while (entries.size() > maxServices && iterator.hasNext()) {
+			evicted.add(iterator.next());
+			iterator.remove();
+		    }
+		}
+		entry.lastUsed = System.currentTimeMillis();
+	    }
+	    for (Entry stale : evicted) {
+		stale.retire();
+	    }
+
+	    ApnsService service = entry.borrow(pooled);
+	    // The entry is retired when it was evicted in the meantime, look
+	    // it up again.
+	    if (service != null) {
+		return service;
+	    }
+	}
+    }
+
+    /**
+     * Gives back a service borrowed with
+     * {@link #getService(Certificate, boolean, boolean)}, stopping it if its
+     * entry has been evicted or invalidated while it was borrowed.
+     * 
+     * @param service
+     *            The borrowed service.
+     */
+    public void release(ApnsService service) {
+	Entry owner;
+	synchronized (entries) {
+	    owner = owners.get(service);
+	}
+	if (owner != null) {
+	    owner.giveBack();
+	}
+    }
+
+    /**
+     * Removes the services of the certificate and destination, for example
+     * after a connection failure, so that the next request builds new ones.
+     * The services are stopped once they are no longer borrowed.
+     * 
+     * @param service
+     *            A service of the entry to be removed.
+     */
+    public void invalidate(ApnsService service) {
+	Entry invalidated;
+	synchronized (entries) {
+	    invalidated = owners.get(service);
+	    if (invalidated != null && entries.get(invalidated.key) == invalidated) {
+		entries.remove(invalidated.key);
+	    }
+	}
+	if (invalidated != null) {
+	    invalidated.retire();
+	}
+    }
+
+    /**
+     * Stops all services.
+     */
+    public void stopAll() {
+	List<Entry> stopped;
+	synchronized (entries) {
+	    stopped = new ArrayList<Entry>(entries.values());
+	    entries.clear();
+	}
+	for (Entry entry : stopped) {
+	    entry.retire();
+	}
+    }
+
+    private void evictIdleEntries() {
+	long now = System.currentTimeMillis();
+	List<Entry> evicted = new ArrayList<Entry>();
+	synchronized (entries) {
+	    for (Iterator<Entry> iterator = entries.values().iterator(); iterator
+		    .hasNext();) {
+		Entry entry = iterator.next();
+		if (now - entry.lastUsed >= idleTimeout) {
+		    evicted.add(entry);
+		    iterator.remove();
+		}
+	    }
+	}
+	for (Entry entry : evicted) {
+	    if (log.isDebugEnabled()) {
+		log.debug(String.format("Stopping idle APNs service <%s>",
+			entry.key));
+	    }
+	    entry.retire();
+	}
+    }
+
+    private static byte[] readContent(Certificate certificate)
+	    throws PushNotificationException {
+
+	InputStream content = certificate.getContent();
+	if (content == null) {
+	    throw new PushNotificationException(String.format(
+		    "No content in certificate %s", certificate.getName()),
+		    Utils.Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO);
+	}
+	try {
+	    ByteArrayOutputStream out = new ByteArrayOutputStream();
+	    byte[] buffer = new byte[4096];
+	    int read;
+	    while ((read = content.read(buffer)) != -1) {
+		out.write(buffer, 0, read);
+	    }
+	    byte[] bytes = out.toByteArray();
+	    // Leave the certificate readable for anyone else.
+	    certificate.setContent(new ByteArrayInputStream(bytes));
+	    return bytes;
+	} catch (IOException e) {
+	    throw new PushNotificationException(String.format(
+		    "Cannot read the certificate %s", certificate.getName()),
+		    Utils.Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO, e);
+	} finally {
+	    try {
+		content.close();
+	    } catch (IOException ignored) {
+		// Nothing to do, the content has been read.
+	    }
+	}
+    }
+
+    /**
+     * Services of one certificate and destination.
+     */
+    private class Entry {
+
+	private final String key;
+	private final SSLContext sslContext;
+	private final byte[] content;
+	private final String password;
+	private final boolean production;
+	private volatile long lastUsed = System.currentTimeMillis();
+	private ApnsService service;
+	private ApnsService pooledService;
+	private int borrowed;
+	private boolean retired;
+
+	private Entry(String key, SSLContext sslContext, byte[] content,
+		String password, boolean production) {
+	    this.key = key;
+	    this.sslContext = sslContext;
+	    this.content = content;
+	    this.password = password;
+	    this.production = production;
+	}
+
+	/**
+	 * Borrows the single connection or the pooled service, building it if
+	 * needed.
+	 * 
+	 * @return The service, or <code>null</code> if the entry is retired.
+	 */
+	private synchronized ApnsService borrow(boolean pooled) {
+	    if (retired) {
+		return null;
+	    }
+	    if (pooled && pooledService == null) {
+		pooledService = build(newBuilder().asPool(connectionsPerService));
+	    } else if (!pooled && service == null) {
+		service = build(newBuilder());
+	    }
+	    borrowed++;
+	    return pooled ? pooledService : service;
+	}
+
+	private void giveBack() {
+	    synchronized (this) {
+		if (--borrowed > 0 || !retired) {
+		    return;
+		}
+	    }
+	    stop();
+	}
+
+	/**
+	 * Stops the services now if none is borrowed, or else when the last one
+	 * is given back.
+	 */
+	private void retire() {
+	    synchronized (this) {
+		retired = true;
+		if (borrowed > 0) {
+		    return;
+		}
+	    }
+	    stop();
+	}
+
+	private ApnsServiceBuilder newBuilder() {
+	    ApnsServiceBuilder builder = APNS.newService();
+	    if (sslContext != null) {
+		builder.withSSLContext(sslContext);
+	    } else {
+		builder.withCert(new ByteArrayInputStream(content), password);
+	    }
+	    return production ? builder.withProductionDestination() : builder
+		    .withSandboxDestination();
+	}
+
+	private ApnsService build(ApnsServiceBuilder builder) {
+	    ApnsService built = builder.build();
+	    built.start();
+	    synchronized (entries) {
+		owners.put(built, this);
+	    }
+	    if (log.isDebugEnabled()) {
+		log.debug(String.format("Started APNs service <%s>", key));
+	    }
+	    return built;
+	}
+
+	private void stop() {
+	    ApnsService stoppedService;
+	    ApnsService stoppedPooledService;
+	    synchronized (this) {
+		stoppedService = service;
+		stoppedPooledService = pooledService;
+		service = null;
+		pooledService = null;
+	    }
+	    stop(stoppedService);
+	    stop(stoppedPooledService);
+	}
+
+	private void stop(ApnsService apnsService) {
+	    if (apnsService == null) {
+		return;
+	    }
+	    synchronized (entries) {
+		owners.remove(apnsService);
+	    }
+	    try {
+		apnsService.stop();
+	    } catch (RuntimeException e) {
+		log.warn(String.format("Cannot stop the APNs service <%s>", key),
+			e);
+	    }
+	}
+    }
+}
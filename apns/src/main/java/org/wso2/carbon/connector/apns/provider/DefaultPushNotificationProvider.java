@@ -17,8 +17,10 @@
  */
 package org.wso2.carbon.connector.apns.provider;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,7 +37,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.notnoop.apns.APNS;
 import com.notnoop.apns.ApnsNotification;
 import com.notnoop.apns.ApnsService;
-import com.notnoop.apns.ApnsServiceBuilder;
 import com.notnoop.apns.PayloadBuilder;
 import com.notnoop.apns.internal.Utilities;
 import com.notnoop.exceptions.InvalidSSLConfig;
@@ -61,8 +62,7 @@ public class DefaultPushNotificationProvider extends
     @Override
     protected PushNotificationResponse sendToSandboxDestination(
 	    PushNotificationRequest request) throws PushNotificationException {
-	ApnsServiceBuilder builder = APNS.newService().withSandboxDestination();
-	return doSend(builder, request);
+	return doSend(false, request);
     }
 
     /*
@@ -75,16 +75,16 @@ public class DefaultPushNotificationProvider extends
     @Override
     protected PushNotificationResponse sendToProductionDestination(
 	    PushNotificationRequest request) throws PushNotificationException {
-	ApnsServiceBuilder builder = APNS.newService()
-		.withProductionDestination();
-	return doSend(builder, request);
+	return doSend(true, request);
     }
 
     /**
-     * Send the push notification to the push notification service.
+     * Send the push notification to the push notification service. A single
+     * device token is pushed synchronously, several device tokens are pushed
+     * over the pooled connections of the service.
      * 
-     * @param builder
-     *            Apns service build with relevant destination.
+     * @param production
+     *            Whether the notification goes to the production destination.
      * @param request
      *            Push notification request
      * @return Push notification response
@@ -92,26 +92,17 @@ public class DefaultPushNotificationProvider extends
      *             When there are certificate errors or when APNs gives an
      *             error.
      */
-    private PushNotificationResponse doSend(ApnsServiceBuilder builder,
+    private PushNotificationResponse doSend(boolean production,
 	    PushNotificationRequest request) throws PushNotificationException {
 
-	ApnsService apnsService = null;
-	Certificate certificate = request.getCertificate();
+	PushNotification pushNotification = request.getPushNotification();
+	Set<String> deviceTokens = pushNotification.getDeviceTokens();
 
-	// Build app service with certificate info
-	try {
-	    apnsService = builder.withCert(certificate.getContent(),
-		    certificate.getPassword()).build();
-	} catch (InvalidSSLConfig e) {
-	    String errorMessage = String.format(
-		    "<apns:%s> Cannot decrypt the PCSK12 file in %s",
-		    request.getId(), certificate.getName());
-	    throw new PushNotificationException(errorMessage,
-		    Utils.Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO, e);
+	if (deviceTokens.isEmpty()) {
+	    log.error("No device tokens in the push notification request");
+	    return null;
 	}
 
-	PushNotification pushNotification = request.getPushNotification();
-
 	// Build the payload
 	String payload = getPayload(pushNotification);
 
@@ -120,34 +111,80 @@ public class DefaultPushNotificationProvider extends
 		    payload));
 	}
 
-	String deviceToken = pushNotification.getSingleDeviceToken();
+	boolean batch = deviceTokens.size() > 1;
+	ApnsService apnsService = getService(request, production, batch);
 
-	ApnsNotification result = null;
-	if (deviceToken != null) {
+	try {
+	    if (!batch) {
+		String deviceToken = pushNotification.getSingleDeviceToken();
 
-	    if (log.isDebugEnabled()) {
-		log.debug(String
-			.format("<apns:%s> Sending push notification to device token : <%s>",
-				request.getId(), deviceToken));
+		if (log.isDebugEnabled()) {
+		    log.debug(String
+			    .format("<apns:%s> Sending push notification to device token : <%s>",
+				    request.getId(), deviceToken));
 
-	    }
+		}
 
-	    try {
-		result = apnsService.push(deviceToken, payload);
+		ApnsNotification result = apnsService.push(deviceToken, payload);
 		return buildResponse(result.getDeviceToken(),
 			result.getPayload());
-	    } catch (NetworkIOException e) {
-		throw new PushNotificationException("Cannot connect to APNs",
-			Utils.Errors.ERROR_CODE_APNS_IO_FAILURE, e);
 	    }
 
-	} else {
-	    log.error("No device tokens in the push notification request");
-	    return null;
+	    if (log.isDebugEnabled()) {
+		log.debug(String.format(
+			"<apns:%s> Sending push notification to %s devices",
+			request.getId(), deviceTokens.size()));
+	    }
+
+	    Collection<? extends ApnsNotification> results = apnsService.push(
+		    deviceTokens, payload);
+	    PushNotificationResponse response = buildResponse(null, results
+		    .iterator().next().getPayload());
+	    response.setDispatchedCount(results.size());
+	    return response;
+	} catch (NetworkIOException e) {
+	    // The connection may be broken for good, build a new one next time.
+	    ApnsServicePool.getInstance().invalidate(apnsService);
+	    throw new PushNotificationException("Cannot connect to APNs",
+		    Utils.Errors.ERROR_CODE_APNS_IO_FAILURE, e);
+	} finally {
+	    ApnsServicePool.getInstance().release(apnsService);
 	}
 
     }
 
+    /**
+     * Borrows the pooled service for the certificate and destination of the
+     * request.
+     * 
+     * @param request
+     *            Push notification request.
+     * @param production
+     *            Whether the notification goes to the production destination.
+     * @param pooled
+     *            Whether the service pushes over several connections.
+     * @return Apns service.
+     * @throws PushNotificationException
+     *             When the certificate cannot be decrypted.
+     */
+    private ApnsService getService(PushNotificationRequest request,
+	    boolean production, boolean pooled)
+	    throws PushNotificationException {
+
+	Certificate certificate = request.getCertificate();
+
+	try {
+	    return ApnsServicePool.getInstance().getService(certificate,
+		    production, pooled);
+	} catch (InvalidSSLConfig e) {
+	    String errorMessage = String.format(
+		    "<apns:%s> Cannot decrypt the PCSK12 file in %s",
+		    request.getId(), certificate.getName());
+	    throw new PushNotificationException(errorMessage,
+		    Utils.Errors.ERROR_CODE_INVALID_CERTIFICATE_INFO, e);
+	}
+    }
+
     /**
      * Builds and returns the payload to be sent from the push notification.
      * 
@@ -191,7 +228,8 @@ public class DefaultPushNotificationProvider extends
      * Build and returns push notification response from the response of APNs
      * 
      * @param deviceToken
-     *            Device token which the push notification sent to.
+     *            Device token which the push notification sent to, null for
+     *            a notification sent to several devices.
      * @param payload
      *            Dispatched payload to APNs
      * @return Push notification response.
@@ -203,7 +241,9 @@ public class DefaultPushNotificationProvider extends
 
 	PushNotificationResponse response = new PushNotificationResponse();
 
-	response.setDeviceToken(Utilities.encodeHex(deviceToken));
+	if (deviceToken != null) {
+	    response.setDeviceToken(Utilities.encodeHex(deviceToken));
+	}
 
 	try {
 	    @SuppressWarnings("unchecked")
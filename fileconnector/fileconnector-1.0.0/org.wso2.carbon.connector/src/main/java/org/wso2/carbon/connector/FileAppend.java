@@ -28,16 +28,13 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.FileSystemOptions;
 import org.apache.commons.vfs2.Selectors;
-import org.apache.commons.vfs2.VFS;
 import org.apache.synapse.MessageContext;
 import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
-import org.wso2.carbon.connector.util.FTPSiteUtils;
+import org.wso2.carbon.connector.util.FileConnectionManager;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileAppend extends AbstractConnector implements Connector {
@@ -141,37 +138,40 @@ public class FileAppend extends AbstractConnector implements Connector {
 		InputStream in = null;
 		boolean resultStatus = false;
 
-		FileSystemManager manager = VFS.getManager();
-		// if the file does not exist, this method creates it
-		FileSystemOptions opts = FTPSiteUtils.createDefaultOptions();
-		FileObject fileObj = manager.resolveFile(fileLocation + filename, opts);
-
-		if (!filebeforepprocess.equals("")) {
-			FileObject fBeforeProcess = manager.resolveFile(filebeforepprocess + filename, opts);
-			fBeforeProcess.copyFrom(fileObj, Selectors.SELECT_SELF);
-			if (fBeforeProcess != null) {
-				fBeforeProcess.close();
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		try {
+			// if the file does not exist, this method creates it
+			FileObject fileObj = session.resolveFile(fileLocation + filename);
+
+			if (!filebeforepprocess.equals("")) {
+				FileObject fBeforeProcess = session.resolveFile(filebeforepprocess + filename);
+				fBeforeProcess.copyFrom(fileObj, Selectors.SELECT_SELF);
+				if (fBeforeProcess != null) {
+					fBeforeProcess.close();
+				}
 			}
-		}
 
-		out = fileObj.getContent().getOutputStream(true);
+			out = fileObj.getContent().getOutputStream(true);
 
-		if (encoding.equals("")) {
-			IOUtils.write(content, out, DEFAULT_ENCODING);
-		} else {
-			IOUtils.write(content, out, encoding);
-		}
+			if (encoding.equals("")) {
+				IOUtils.write(content, out, DEFAULT_ENCODING);
+			} else {
+				IOUtils.write(content, out, encoding);
+			}
 
-		if (!fileafterprocsess.equals("")) {
-			FileObject fAfterProcess = manager.resolveFile(fileafterprocsess + filename, opts);
+			if (!fileafterprocsess.equals("")) {
+				FileObject fAfterProcess = session.resolveFile(fileafterprocsess + filename);
 
-			fAfterProcess.copyFrom(fileObj, Selectors.SELECT_SELF);
-			if (fAfterProcess != null) {
-				fAfterProcess.close();
+				fAfterProcess.copyFrom(fileObj, Selectors.SELECT_SELF);
+				if (fAfterProcess != null) {
+					fAfterProcess.close();
+				}
 			}
-		}
-		if (fileObj != null) {
-			fileObj.close();
+			if (fileObj != null) {
+				fileObj.close();
+			}
+		} finally {
+			session.close();
 		}
 
 		resultStatus = true;
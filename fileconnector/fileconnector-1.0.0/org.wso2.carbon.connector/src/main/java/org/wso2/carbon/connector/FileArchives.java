@@ -26,23 +26,27 @@ import javax.xml.stream.XMLStreamException;
 
 import org.apache.axiom.om.OMElement;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.AndFileFilter;
+import org.apache.commons.io.filefilter.IOFileFilter;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileObject;
 import org.apache.synapse.MessageContext;
 import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
 import org.wso2.carbon.connector.util.ArchiveType;
-import org.wso2.carbon.connector.util.FileCompressUtil;
+import org.wso2.carbon.connector.util.FileArchiveEngine;
+import org.wso2.carbon.connector.util.FileConnectionManager;
 import org.wso2.carbon.connector.util.FilePattenMatcher;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileArchives extends AbstractConnector implements Connector {
 
-	private static String FILE_PATTERN = "[A-Za-z][a-z]+";
-	private static String DIR_PATTERN = "[A-Za-z][a-z]+";
+	private static final String DEFAULT_PATTERN = "[A-Za-z][a-z]+";
 	private static Log log = LogFactory.getLog(FileArchives.class);
 
 	public void connect(MessageContext messageContext) throws ConnectException {
@@ -86,62 +90,40 @@ public class FileArchives extends AbstractConnector implements Connector {
 			log.info("File content..." + suffixs.toString());
 		}
 
-		boolean resultStatus = false;
+		FileArchiveEngine engine =
+		                           FileArchiveEngine.create(getParameter(messageContext, "buffersize"),
+		                                                    getParameter(messageContext, "archivethreads"));
 
-		File file = new File(newFileName.toString());
+		boolean resultStatus = false;
 
 		File inputDirectory = new File(fileLocation.toString());
-
-		File[] subdirs = inputDirectory.listFiles();
-		Collection<File> fileList = new ArrayList<File>();
-		if (suffixs.equals("")) {
-			if (archivedirectory) {
-				for (File f : subdirs) {
-					fileList.add(f);
-				}
-			} else {
-				fileList =
-				           FileUtils.listFiles(inputDirectory, TrueFileFilter.INSTANCE,
-				                               TrueFileFilter.INSTANCE);
-			}
-
-		} else {
-
-			final String[] SUFFIX = suffixs.split(",".toString());// { "xls" };
-			fileList = FileUtils.listFiles(inputDirectory, SUFFIX, true);
-		}
-
-		Collection<File> filteredList = new ArrayList<File>();
-		if (filepattern.equals("") && dirpattern.equals("")) {
-			filteredList = fileList;
-		} else {
-			if (!filepattern.equals("")) {
-				FILE_PATTERN = filepattern;
-			}
-			if (!dirpattern.equals("")) {
-				DIR_PATTERN = dirpattern;
-			}
-			for (File filterFile : fileList) {
-				if (new FilePattenMatcher(FILE_PATTERN).validate(filterFile.getName())) {
-					filteredList.add(filterFile);
-				} else if (filterFile.isDirectory() &&
-				           new FilePattenMatcher(DIR_PATTERN).validate(filterFile.getName())) {
-					filteredList.add(filterFile);
-				}
-			}
+		if (!inputDirectory.isDirectory()) {
+			handleException(fileLocation + " is not a directory", messageContext);
 		}
+		ArchiveType type =
+		                   archiveType.equals(ArchiveType.TAR_GZIP.toString()) ? ArchiveType.TAR_GZIP
+		                                                                       : ArchiveType.ZIP;
+		Collection<File> fileList =
+		                            selectFiles(inputDirectory, suffixs, filepattern, dirpattern,
+		                                        archivedirectory);
+		FileConnectionManager.Session session = null;
 		try {
-			if (archiveType.equals(ArchiveType.TAR_GZIP.toString())) {
-				new FileCompressUtil().compressFiles(filteredList, file, ArchiveType.TAR_GZIP);
-			} else {
-				new FileCompressUtil().compressFiles(filteredList, file, ArchiveType.ZIP);
-			}
+			session = FileConnectionManager.getInstance().openSession();
+			String targetName =
+			                    FileArchiveEngine.toResolvableName(newFileName.toString() +
+			                                                       FileArchiveEngine.getExtension(type));
+			FileObject target = session.resolveFile(targetName);
+			engine.compress(fileList, inputDirectory, target, type);
 			resultStatus = true;
 		} catch (IOException e) {
 
 			handleException(e.getMessage(), messageContext);
 			log.error(e.getMessage());
 			resultStatus = false;
+		} finally {
+			if (session != null) {
+				session.close();
+			}
 		}
 		generateResults(messageContext, resultStatus);
 		if (log.isDebugEnabled()) {
@@ -150,6 +132,67 @@ public class FileArchives extends AbstractConnector implements Connector {
 
 	}
 
+	/**
+	 * Select the files to archive. Without a suffix the whole tree is archived, or only the direct
+	 * children if the directory is archived as it is. The patterns are applied while the tree is
+	 * listed.
+	 * 
+	 * @param inputDirectory
+	 * @param suffixs
+	 * @param filepattern
+	 * @param dirpattern
+	 * @param archivedirectory
+	 * @return the files
+	 */
+	private Collection<File> selectFiles(File inputDirectory, String suffixs, String filepattern,
+	                                     String dirpattern, boolean archivedirectory) {
+		IOFileFilter patternFilter = TrueFileFilter.INSTANCE;
+		if (!filepattern.equals("") || !dirpattern.equals("")) {
+			final FilePattenMatcher fileMatcher =
+			                                      FilePattenMatcher.getInstance(filepattern.equals("") ? DEFAULT_PATTERN
+			                                                                                         : filepattern);
+			final FilePattenMatcher dirMatcher =
+			                                     FilePattenMatcher.getInstance(dirpattern.equals("") ? DEFAULT_PATTERN
+			                                                                                       : dirpattern);
+			patternFilter = new IOFileFilter() {
+
+				public boolean accept(File file, String s) {
+					return accept(new File(file, s));
+				}
+
+				public boolean accept(File file) {
+					return fileMatcher.validate(file.getName()) ||
+					       (file.isDirectory() && dirMatcher.validate(file.getName()));
+				}
+
+			};
+		}
+
+		if (suffixs.equals("") && archivedirectory) {
+			Collection<File> fileList = new ArrayList<File>();
+			for (File f : inputDirectory.listFiles()) {
+				if (patternFilter.accept(f)) {
+					fileList.add(f);
+				}
+			}
+			return fileList;
+		}
+		IOFileFilter fileFilter = patternFilter;
+		if (!suffixs.equals("")) {
+			final String[] SUFFIX = suffixs.split(",".toString());// { "xls" };
+			fileFilter = new AndFileFilter(new SuffixFileFilter(toSuffixes(SUFFIX)), patternFilter);
+		}
+		return FileUtils.listFiles(inputDirectory, fileFilter, TrueFileFilter.INSTANCE);
+	}
+
+	private static String[] toSuffixes(String[] extensions) {
+		String[] suffixes = new String[extensions.length];
+		for (int i = 0; i < extensions.length; i++) {
+			suffixes[i] = "." + extensions[i];
+		}
+		return suffixes;
+	}
+
 	/**
 	 * Generate the results
 	 * 
@@ -18,26 +18,20 @@
 package org.wso2.carbon.connector;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 
 import javax.xml.stream.XMLStreamException;
 
 import org.apache.axiom.om.OMElement;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.FileSystemOptions;
-import org.apache.commons.vfs2.Selectors;
-import org.apache.commons.vfs2.VFS;
 import org.apache.synapse.MessageContext;
 import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
-import org.wso2.carbon.connector.util.FTPSiteUtils;
+import org.wso2.carbon.connector.util.FileConnectionManager;
+import org.wso2.carbon.connector.util.FileCopyEngine;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileCopy extends AbstractConnector implements Connector {
@@ -63,25 +57,30 @@ public class FileCopy extends AbstractConnector implements Connector {
 		                                                                                                     messageContext,
 		                                                                                                     "newfilelocation").toString();
 		boolean isFolder =
-		                   getParameter(messageContext, "isfolder") == null ? false : Boolean.getBoolean(getParameter(
+		                   getParameter(messageContext, "isfolder") == null ? false : Boolean.parseBoolean(getParameter(
 		                                                                                                              messageContext,
 		                                                                                                              "isfolder").toString());
+		FileCopyEngine engine =
+		                        FileCopyEngine.create(getParameter(messageContext, "buffersize"),
+		                                              getParameter(messageContext, "copythreads"),
+		                                              getParameter(messageContext, "resume"),
+		                                              getParameter(messageContext, "verifychecksum"));
 		if (log.isDebugEnabled()) {
 			log.info("File creation started..." + filename.toString());
 			log.info("File Location..." + fileLocation.toString());
 			log.info("File content..." + fileBeforeProcess.toString());
 		}
 
-		boolean resultStatus = false;
+		FileCopyEngine.CopyResult copyResult = null;
 		try {
-			resultStatus = copyFile(fileLocation, filename, newFileLocation, isFolder);
+			copyResult = copyFile(engine, fileLocation, filename, newFileLocation, isFolder);
 		} catch (IOException e) {
 			handleException(e.getMessage(), messageContext);
 		}
 
 		ResultPayloadCreater resultPayload = new ResultPayloadCreater();
 
-		generateResults(messageContext, resultStatus, resultPayload);
+		generateResults(messageContext, copyResult, resultPayload);
 
 	}
 
@@ -89,15 +88,19 @@ public class FileCopy extends AbstractConnector implements Connector {
 	 * Generate the results
 	 * 
 	 * @param messageContext
-	 * @param resultStatus
+	 * @param copyResult
 	 * @param resultPayload
 	 */
-	private void generateResults(MessageContext messageContext, boolean resultStatus,
+	private void generateResults(MessageContext messageContext,
+	                             FileCopyEngine.CopyResult copyResult,
 	                             ResultPayloadCreater resultPayload) {
-		String responce = "<result><copy>" + resultStatus + "</copy></result>";
+		String responce = "<result><copy>" + (copyResult != null) + "</copy></result>";
 		OMElement element;
 		try {
 			element = resultPayload.performSearchMessages(responce);
+			if (copyResult != null) {
+				copyResult.addTo(element);
+			}
 			resultPayload.preparePayload(messageContext, element);
 		} catch (XMLStreamException e) {
 			log.error(e.getMessage());
@@ -115,34 +118,32 @@ public class FileCopy extends AbstractConnector implements Connector {
 	/**
 	 * Copy files
 	 * 
+	 * @param engine
 	 * @param fileLocation
 	 * @param filename
 	 * @param newFileLocation
-	 * @return
+	 * @param isFolder
+	 * @return the copy statistics
 	 */
-	private boolean copyFile(String fileLocation, String filename, String newFileLocation,
-	                         boolean isFolder) throws IOException {
-		boolean resultStatus = false;
+	private FileCopyEngine.CopyResult copyFile(FileCopyEngine engine, String fileLocation,
+	                                           String filename, String newFileLocation,
+	                                           boolean isFolder) throws IOException {
+		FileCopyEngine.CopyResult copyResult;
 
 		String sftpURL = newFileLocation + filename.toString();
-		FileSystemOptions opts = FTPSiteUtils.createDefaultOptions();
-
-		FileSystemManager manager = VFS.getManager();
-		FileObject localFile = manager.resolveFile(fileLocation + filename,opts);
-		FileObject remoteFile = manager.resolveFile(sftpURL, opts);
-		if (isFolder) {
-			remoteFile.copyFrom(localFile, Selectors.SELECT_SELF_AND_CHILDREN);
-		} else {
-			InputStream fin = localFile.getContent().getInputStream();
-			OutputStream fout = remoteFile.getContent().getOutputStream();
-
-			IOUtils.copy(fin, fout);
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		try {
+			FileObject localFile = session.resolveFile(fileLocation + filename);
+			FileObject remoteFile = session.resolveFile(sftpURL);
+			copyResult = engine.copy(localFile, remoteFile, isFolder);
+		} finally {
+			session.close();
 		}
 
-		resultStatus = true;
 		if (log.isDebugEnabled()) {
-			log.info("File copying completed..." + filename.toString());
+			log.info("File copying completed..." + filename.toString() + " " + copyResult.getBytes() +
+			         " bytes in " + copyResult.getTime() + " ms");
 		}
-		return resultStatus;
+		return copyResult;
 	}
 }
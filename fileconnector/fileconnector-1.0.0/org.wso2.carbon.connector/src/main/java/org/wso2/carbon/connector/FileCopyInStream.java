@@ -18,25 +18,20 @@
 package org.wso2.carbon.connector;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 
 import javax.xml.stream.XMLStreamException;
 
 import org.apache.axiom.om.OMElement;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.FileSystemOptions;
-import org.apache.commons.vfs2.VFS;
 import org.apache.synapse.MessageContext;
 import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
-import org.wso2.carbon.connector.util.FTPSiteUtils;
+import org.wso2.carbon.connector.util.FileConnectionManager;
+import org.wso2.carbon.connector.util.FileCopyEngine;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileCopyInStream extends AbstractConnector implements Connector {
@@ -58,19 +53,24 @@ public class FileCopyInStream extends AbstractConnector implements Connector {
 		                         getParameter(messageContext, "newfilelocation") == null ? "" : getParameter(
 		                                                                                                     messageContext,
 		                                                                                                     "newfilelocation").toString();
+		FileCopyEngine engine =
+		                        FileCopyEngine.create(getParameter(messageContext, "buffersize"),
+		                                              getParameter(messageContext, "copythreads"),
+		                                              getParameter(messageContext, "resume"),
+		                                              getParameter(messageContext, "verifychecksum"));
 		if (log.isDebugEnabled()) {
 			log.info("File creation started..." + filename.toString());
 			log.info("File Location..." + fileLocation.toString());
 		}
 
-		boolean resultStatus = false;
+		FileCopyEngine.CopyResult copyResult = null;
 		try {
-			resultStatus = copyLargeFiles(fileLocation, filename, newFileLocation);
+			copyResult = copyLargeFiles(engine, fileLocation, filename, newFileLocation);
 		} catch (IOException e) {
 			handleException(e.getMessage(), messageContext);
 		}
 
-		generateResults(messageContext, resultStatus);
+		generateResults(messageContext, copyResult);
 
 	}
 
@@ -78,15 +78,18 @@ public class FileCopyInStream extends AbstractConnector implements Connector {
 	 * Generate the results
 	 * 
 	 * @param messageContext
-	 * @param resultStatus
+	 * @param copyResult
 	 */
-	private void generateResults(MessageContext messageContext, boolean resultStatus) {
+	private void generateResults(MessageContext messageContext, FileCopyEngine.CopyResult copyResult) {
 		ResultPayloadCreater resultPayload = new ResultPayloadCreater();
 
-		String responce = "<result><copylarge>" + resultStatus + "</copylarge></result>";
+		String responce = "<result><copylarge>" + (copyResult != null) + "</copylarge></result>";
 
 		try {
 			OMElement element = resultPayload.performSearchMessages(responce);
+			if (copyResult != null) {
+				copyResult.addTo(element);
+			}
 			resultPayload.preparePayload(messageContext, element);
 		} catch (XMLStreamException e) {
 			log.error(e.getMessage());
@@ -104,35 +107,34 @@ public class FileCopyInStream extends AbstractConnector implements Connector {
 	/**
 	 * Copy the large files
 	 * 
+	 * @param engine
 	 * @param fileLocation
 	 * @param filename
 	 * @param newFileLocation
-	 * @return
+	 * @return the copy statistics
 	 */
-	private boolean copyLargeFiles(String fileLocation, String filename, String newFileLocation)
-	                                                                                            throws IOException {
+	private FileCopyEngine.CopyResult copyLargeFiles(FileCopyEngine engine, String fileLocation,
+	                                                 String filename, String newFileLocation)
+	                                                                                         throws IOException {
 
 		String sftpURL = newFileLocation + filename.toString();
-		FileSystemOptions opts;
-		boolean resultStatus = false;
+		FileCopyEngine.CopyResult copyResult;
 
-		opts = FTPSiteUtils.createDefaultOptions();
-
-		FileSystemManager manager = VFS.getManager();
-		FileObject localFile = manager.resolveFile(fileLocation + filename, opts);
-		FileObject remoteFile = manager.resolveFile(sftpURL, opts);
-
-		InputStream fin = localFile.getContent().getInputStream();
-		OutputStream fout = remoteFile.getContent().getOutputStream();
-
-		IOUtils.copyLarge(fin, fout);
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		try {
+			FileObject localFile = session.resolveFile(fileLocation + filename);
+			FileObject remoteFile = session.resolveFile(sftpURL);
 
-		resultStatus = true;
+			copyResult = engine.copy(localFile, remoteFile, false);
+		} finally {
+			session.close();
+		}
 
 		if (log.isDebugEnabled()) {
-			log.info("File copying completed..." + filename.toString());
+			log.info("File copying completed..." + filename.toString() + " " + copyResult.getBytes() +
+			         " bytes in " + copyResult.getTime() + " ms");
 		}
 
-		return resultStatus;
+		return copyResult;
 	}
 }
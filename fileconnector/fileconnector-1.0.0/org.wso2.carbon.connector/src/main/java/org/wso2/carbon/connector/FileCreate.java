@@ -29,16 +29,13 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.commons.vfs2.FileContent;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.FileSystemOptions;
 import org.apache.commons.vfs2.Selectors;
-import org.apache.commons.vfs2.VFS;
 import org.apache.synapse.MessageContext;
 import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
-import org.wso2.carbon.connector.util.FTPSiteUtils;
+import org.wso2.carbon.connector.util.FileConnectionManager;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileCreate extends AbstractConnector implements Connector {
@@ -124,14 +121,12 @@ public class FileCreate extends AbstractConnector implements Connector {
 
 		boolean resultStatus = false;
 
-		FileSystemOptions opts = FTPSiteUtils.createDefaultOptions();
-
 		OutputStream out = null;
 
-		FileSystemManager manager = VFS.getManager();
-		if (manager != null) {
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		try {
 
-			FileObject remoteFile = manager.resolveFile(sftpURL, opts);
+			FileObject remoteFile = session.resolveFile(sftpURL);
 
 			if (isFolder) {
 				remoteFile.createFolder();
@@ -153,7 +148,7 @@ public class FileCreate extends AbstractConnector implements Connector {
 			}
 
 			if (!fileAProcess.equals("")) {
-				FileObject fileAfterProcess = manager.resolveFile(fileAProcess + filename, opts);
+				FileObject fileAfterProcess = session.resolveFile(fileAProcess + filename);
 				fileAfterProcess.copyFrom(remoteFile, Selectors.SELECT_SELF);
 			}
 			if (remoteFile != null) {
@@ -161,6 +156,8 @@ public class FileCreate extends AbstractConnector implements Connector {
 			}
 
 			resultStatus = true;
+		} finally {
+			session.close();
 		}
 
 		resultStatus = true;
@@ -24,14 +24,12 @@ import javax.xml.stream.XMLStreamException;
 import org.apache.axiom.om.OMElement;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.VFS;
 import org.apache.synapse.MessageContext;
 import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
-import org.wso2.carbon.connector.util.FTPSiteUtils;
+import org.wso2.carbon.connector.util.FileConnectionManager;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileExist extends AbstractConnector implements Connector {
@@ -114,17 +112,19 @@ public class FileExist extends AbstractConnector implements Connector {
 			log.info("File content..." + content.toString());
 		}
 
-		FileSystemManager manager = VFS.getManager();
-
-		// Create remote object
-		FileObject remoteFile =
-		                        manager.resolveFile(fileLocation.toString() + filename.toString(),
-		                                            FTPSiteUtils.createDefaultOptions());
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		try {
+			// Create remote object
+			FileObject remoteFile = session.resolveFile(fileLocation.toString() + filename.toString());
 
-		if (remoteFile.exists()) {
+			if (remoteFile.exists()) {
 
-			isFileExist = true;
+				isFileExist = true;
+			}
+		} finally {
+			session.close();
 		}
+
 		if (log.isDebugEnabled()) {
 			log.info("File exist " + isFileExist);
 		}
@@ -26,16 +26,13 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.FileSystemOptions;
 import org.apache.commons.vfs2.Selectors;
-import org.apache.commons.vfs2.VFS;
 import org.apache.synapse.MessageContext;
 import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
-import org.wso2.carbon.connector.util.FTPSiteUtils;
+import org.wso2.carbon.connector.util.FileConnectionManager;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileMove extends AbstractConnector implements Connector {
@@ -125,27 +122,30 @@ public class FileMove extends AbstractConnector implements Connector {
 
 		boolean resultStatus = false;
 
-		FileSystemOptions opts = FTPSiteUtils.createDefaultOptions();
-		FileSystemManager manager = VFS.getManager();
-		// Create remote object
-		FileObject remoteFile = manager.resolveFile(fileLocation + filename, opts);
-		FileObject newFile = manager.resolveFile(newFileLocation + filename, opts);
-		if (!filebeforepprocess.equals("")) {
-			FileObject fBeforeProcess = manager.resolveFile(filebeforepprocess + filename, opts);
-			fBeforeProcess.copyFrom(remoteFile, Selectors.SELECT_SELF);
-		}
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		try {
+			// Create remote object
+			FileObject remoteFile = session.resolveFile(fileLocation + filename);
+			FileObject newFile = session.resolveFile(newFileLocation + filename);
+			if (!filebeforepprocess.equals("")) {
+				FileObject fBeforeProcess = session.resolveFile(filebeforepprocess + filename);
+				fBeforeProcess.copyFrom(remoteFile, Selectors.SELECT_SELF);
+			}
 
-		if (remoteFile.exists()) {
-			remoteFile.moveTo(newFile);
-			resultStatus = true;
-			if (log.isDebugEnabled()) {
-				log.info("Move remote file success");
+			if (remoteFile.exists()) {
+				remoteFile.moveTo(newFile);
+				resultStatus = true;
+				if (log.isDebugEnabled()) {
+					log.info("Move remote file success");
+				}
 			}
-		}
 
-		if (!fileafterprocess.equals("")) {
-			FileObject fAfterProcess = manager.resolveFile(fileafterprocess + filename, opts);
-			fAfterProcess.copyFrom(newFile, Selectors.SELECT_SELF);
+			if (!fileafterprocess.equals("")) {
+				FileObject fAfterProcess = session.resolveFile(fileafterprocess + filename);
+				fAfterProcess.copyFrom(newFile, Selectors.SELECT_SELF);
+			}
+		} finally {
+			session.close();
 		}
 
 		return resultStatus;
@@ -17,23 +17,31 @@
  */
 package org.wso2.carbon.connector;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Iterator;
 
+import javax.activation.DataHandler;
 import javax.xml.stream.XMLStreamException;
 
+import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.axis2.transport.base.BaseConstants;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.FileSystemOptions;
-import org.apache.commons.vfs2.VFS;
+import org.apache.synapse.Mediator;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.util.MessageHelper;
 import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
-import org.wso2.carbon.connector.util.FTPSiteUtils;
+import org.wso2.carbon.connector.util.FileConnectionManager;
+import org.wso2.carbon.connector.util.FileObjectDataSource;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileRead extends AbstractConnector implements Connector {
@@ -42,6 +50,14 @@ public class FileRead extends AbstractConnector implements Connector {
 	private static final String CONTENT_TAG = "<content>";
 	private static final String END_TAG = "</result>";
 	private static final String START_TAG = "<result>";
+	private static final String RESULT = "result";
+	private static final String CONTENT = "content";
+	private static final String CHUNK = "chunk";
+	private static final String CHUNKS = "chunks";
+	private static final String NUMBER = "number";
+	private static final String READ_MODE_STREAM = "stream";
+	private static final String READ_MODE_LINES = "lines";
+	private static final int DEFAULT_LINES_PER_CHUNK = 1000;
 
 	public void connect(MessageContext messageContext) throws ConnectException {
 		String filename =
@@ -62,10 +78,49 @@ public class FileRead extends AbstractConnector implements Connector {
 		                                                                                       messageContext,
 		                                                                                       "encoding").toString();
 
+		String readMode =
+		                  getParameter(messageContext, "readmode") == null ? "" : getParameter(
+		                                                                                       messageContext,
+		                                                                                       "readmode").toString();
+
 		if (log.isDebugEnabled()) {
 			log.info("File read start with" + filename.toString());
 		}
 
+		if (READ_MODE_STREAM.equals(readMode)) {
+			try {
+				streamFile(messageContext, filename, fileLocation);
+			} catch (IOException e) {
+				handleException(e.getMessage(), messageContext);
+			}
+			return;
+		}
+		if (READ_MODE_LINES.equals(readMode)) {
+			String linesPerChunk =
+			                       getParameter(messageContext, "linesperchunk") == null ? "" : getParameter(
+			                                                                                                 messageContext,
+			                                                                                                 "linesperchunk").toString();
+			String chunkSequence =
+			                       getParameter(messageContext, "chunksequence") == null ? "" : getParameter(
+			                                                                                                 messageContext,
+			                                                                                                 "chunksequence").toString();
+			int lines = DEFAULT_LINES_PER_CHUNK;
+			if (!linesPerChunk.equals("")) {
+				try {
+					lines = Integer.parseInt(linesPerChunk.trim());
+				} catch (NumberFormatException e) {
+					handleException("Invalid linesperchunk " + linesPerChunk, e, messageContext);
+				}
+			}
+			try {
+				readFileInChunks(messageContext, filename, fileLocation, encoding, lines,
+				                 chunkSequence);
+			} catch (IOException e) {
+				handleException(e.getMessage(), messageContext);
+			}
+			return;
+		}
+
 		StringBuilder sb = new StringBuilder();
 		try {
 			sb = readFile(filename, fileLocation, encoding);
@@ -118,11 +173,9 @@ public class FileRead extends AbstractConnector implements Connector {
 		InputStream in = null;
 		StringBuilder sb = new StringBuilder();
 
-		FileSystemManager manager = VFS.getManager();
-		if (manager != null) {
-
-			FileSystemOptions opts = FTPSiteUtils.createDefaultOptions();
-			FileObject fileObj = manager.resolveFile(fileLocation + filename, opts);
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		try {
+			FileObject fileObj = session.resolveFile(fileLocation + filename);
 
 			in = fileObj.getContent().getInputStream();
 
@@ -136,20 +189,147 @@ public class FileRead extends AbstractConnector implements Connector {
 			sb.append(CONTENT_STOP_TAG);
 			sb.append(END_TAG);
 
-			int length;
-			while ((length = in.read()) != -1) {
+			in.close();
+			if (fileObj != null) {
+				fileObj.close();
+			}
+		} finally {
+			session.close();
+		}
 
-				if (log.isDebugEnabled()) {
-					log.info((char) length);
-				}
+		return sb;
+	}
+
+	/**
+	 * Set the file as a binary payload backed by the file itself. The content is read when the
+	 * message is formatted, so the bytes are streamed from the file system to the outbound transport
+	 * without the file being loaded into memory. The data source keeps the session open until the
+	 * content has been read.
+	 * 
+	 * @param messageContext
+	 * @param filename
+	 * @param fileLocation
+	 * @throws IOException
+	 */
+	private void streamFile(MessageContext messageContext, String filename, String fileLocation)
+	                                                                                             throws IOException {
+		String uri = fileLocation + filename;
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		FileObjectDataSource dataSource;
+		try {
+			FileObject fileObj = session.resolveFile(uri);
+			if (!fileObj.exists()) {
+				throw new IOException("File " + fileObj.getName().getFriendlyURI() + " does not exist");
+			}
+			dataSource =
+			             new FileObjectDataSource(session, fileObj, uri, fileObj.getContent()
+			                                                                  .getContentInfo()
+			                                                                  .getContentType());
+		} catch (IOException e) {
+			session.close();
+			throw e;
+		}
+		OMFactory factory = OMAbstractFactory.getOMFactory();
+		OMElement binary = factory.createOMElement(BaseConstants.DEFAULT_BINARY_WRAPPER);
+		binary.addChild(factory.createOMText(new DataHandler(dataSource), true));
+		new ResultPayloadCreater().preparePayload(messageContext, binary);
+	}
+
+	/**
+	 * Read the file line by line and emit the lines in chunks. When a chunk sequence is given every
+	 * chunk is mediated through it as a separate message while the file is read, so only one chunk is
+	 * in memory at a time. Otherwise the chunks are added to the result for the iterate mediator.
+	 * 
+	 * @param messageContext
+	 * @param filename
+	 * @param fileLocation
+	 * @param encoding
+	 * @param linesPerChunk
+	 * @param chunkSequence
+	 * @throws IOException
+	 */
+	private void readFileInChunks(MessageContext messageContext, String filename,
+	                              String fileLocation, String encoding, int linesPerChunk,
+	                              String chunkSequence) throws IOException {
+		if (linesPerChunk <= 0) {
+			throw new IOException("linesperchunk must be greater than zero");
+		}
+		Mediator sequence = null;
+		if (!chunkSequence.equals("")) {
+			sequence = messageContext.getSequence(chunkSequence);
+			if (sequence == null) {
+				throw new IOException("Chunk sequence " + chunkSequence + " is not found");
 			}
+		}
 
-			if (fileObj != null) {
-				fileObj.close();
+		OMFactory factory = OMAbstractFactory.getOMFactory();
+		OMElement result = factory.createOMElement(RESULT, null);
+		int chunkCount = 0;
+
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		BufferedReader reader = null;
+		try {
+			FileObject fileObj = session.resolveFile(fileLocation + filename);
+			InputStream in = fileObj.getContent().getInputStream();
+			reader =
+			         new BufferedReader(encoding.equals("") ? new InputStreamReader(in)
+			                                               : new InputStreamReader(in, encoding));
+			StringBuilder chunk = new StringBuilder();
+			int lines = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				chunk.append(line).append('\n');
+				if (++lines == linesPerChunk) {
+					emitChunk(messageContext, sequence, result, chunk, chunkCount++);
+					chunk.setLength(0);
+					lines = 0;
+				}
+			}
+			if (lines > 0) {
+				emitChunk(messageContext, sequence, result, chunk, chunkCount++);
 			}
+			fileObj.close();
+		} finally {
+			IOUtils.closeQuietly(reader);
+			session.close();
+		}
 
+		if (sequence != null) {
+			factory.createOMElement(CHUNKS, null, result).setText(String.valueOf(chunkCount));
 		}
+		new ResultPayloadCreater().preparePayload(messageContext, result);
+	}
 
-		return sb;
+	/**
+	 * Emit one chunk of lines
+	 * 
+	 * @param messageContext
+	 * @param sequence
+	 * @param result
+	 * @param chunk
+	 * @param chunkNumber
+	 * @throws IOException
+	 */
+	private void emitChunk(MessageContext messageContext, Mediator sequence, OMElement result,
+	                       StringBuilder chunk, int chunkNumber) throws IOException {
+		OMFactory factory = OMAbstractFactory.getOMFactory();
+		OMElement chunkElement = factory.createOMElement(CHUNK, null);
+		chunkElement.addAttribute(NUMBER, String.valueOf(chunkNumber), null);
+		factory.createOMElement(CONTENT, null, chunkElement).setText(chunk.toString());
+		if (sequence == null) {
+			result.addChild(chunkElement);
+			return;
+		}
+		MessageContext chunkContext = MessageHelper.cloneMessageContext(messageContext);
+		SOAPBody body = chunkContext.getEnvelope().getBody();
+		Iterator<?> children = body.getChildren();
+		while (children.hasNext()) {
+			children.next();
+			children.remove();
+		}
+		OMElement chunkResult = factory.createOMElement(RESULT, null);
+		chunkResult.addChild(chunkElement);
+		body.addChild(chunkResult);
+		sequence.mediate(chunkContext);
 	}
 }
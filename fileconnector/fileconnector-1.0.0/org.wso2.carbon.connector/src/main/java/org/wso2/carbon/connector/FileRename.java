@@ -26,15 +26,13 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
-import org.apache.commons.vfs2.FileSystemManager;
 import org.apache.commons.vfs2.Selectors;
-import org.apache.commons.vfs2.VFS;
 import org.apache.synapse.MessageContext;
 import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
-import org.wso2.carbon.connector.util.FTPSiteUtils;
+import org.wso2.carbon.connector.util.FileConnectionManager;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileRename extends AbstractConnector implements Connector {
@@ -120,21 +118,16 @@ public class FileRename extends AbstractConnector implements Connector {
 	private boolean renameFile(String fileLocation, String filename, String newFileName,
 	                           String filebeforepprocess) throws FileSystemException {
 		boolean resultStatus = false;
-		FileSystemManager manager = VFS.getManager();
-		if (manager != null) {
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		try {
 			// Create remote object
-			FileObject remoteFile =
-			                        manager.resolveFile(fileLocation.toString() +
-			                                                    filename.toString(),
-			                                            FTPSiteUtils.createDefaultOptions());
+			FileObject remoteFile = session.resolveFile(fileLocation.toString() + filename.toString());
 
 			FileObject reNameFile =
-			                        manager.resolveFile(fileLocation.toString() +
-			                                                    newFileName.toString(),
-			                                            FTPSiteUtils.createDefaultOptions());
+			                        session.resolveFile(fileLocation.toString() + newFileName.toString());
 			if (remoteFile.exists()) {
 				if (!filebeforepprocess.equals("")) {
-					FileObject fBeforeProcess = manager.resolveFile(filebeforepprocess + filename);
+					FileObject fBeforeProcess = session.resolveFile(filebeforepprocess + filename);
 					fBeforeProcess.copyFrom(remoteFile, Selectors.SELECT_SELF_AND_CHILDREN);
 				}
 
@@ -144,6 +137,8 @@ public class FileRename extends AbstractConnector implements Connector {
 					log.info("Rename remote file success");
 				}
 			}
+		} finally {
+			session.close();
 		}
 
 		return resultStatus;
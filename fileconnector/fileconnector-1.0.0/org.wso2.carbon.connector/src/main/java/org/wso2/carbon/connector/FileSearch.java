@@ -19,28 +19,20 @@ package org.wso2.carbon.connector;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Iterator;
-
-import javax.xml.stream.XMLStreamException;
 
+import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axiom.om.OMElement;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.IOFileFilter;
+import org.apache.axiom.om.OMFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.FileSystemOptions;
-import org.apache.commons.vfs2.VFS;
 import org.apache.synapse.MessageContext;
-import org.codehaus.jettison.json.JSONException;
 import org.wso2.carbon.connector.core.AbstractConnector;
 import org.wso2.carbon.connector.core.ConnectException;
 import org.wso2.carbon.connector.core.Connector;
-import org.wso2.carbon.connector.util.FTPSiteUtils;
-import org.wso2.carbon.connector.util.FilePattenMatcher;
+import org.wso2.carbon.connector.util.FileConnectionManager;
+import org.wso2.carbon.connector.util.FileSearchEngine;
 import org.wso2.carbon.connector.util.ResultPayloadCreater;
 
 public class FileSearch extends AbstractConnector implements Connector {
@@ -63,145 +55,143 @@ public class FileSearch extends AbstractConnector implements Connector {
 		                                                                                           "dirpattern").toString();
 
 		boolean searchInLocal =
-		                        getParameter(messageContext, "searchinlocal") == null ? false : Boolean.getBoolean(getParameter(
-		                                                                                                                        messageContext,
-		                                                                                                                        "searchinlocal").toString());
+		                        getParameter(messageContext, "searchinlocal") == null ? false : Boolean.parseBoolean(getParameter(
+		                                                                                                                          messageContext,
+		                                                                                                                          "searchinlocal").toString());
+		// Remote searches list a single level unless a depth is given, as they always did
+		int maxDepth =
+		               (int) getLongParameter(messageContext, "maxdepth",
+		                                      searchInLocal ? FileSearchEngine.UNLIMITED : 1);
+		FileSearchEngine engine =
+		                          new FileSearchEngine(filepattern, dirpattern, maxDepth,
+		                                               getLongParameter(messageContext, "modifiedsince",
+		                                                                FileSearchEngine.UNLIMITED),
+		                                               getLongParameter(messageContext, "minsize",
+		                                                                FileSearchEngine.UNLIMITED),
+		                                               getLongParameter(messageContext, "maxsize",
+		                                                                FileSearchEngine.UNLIMITED),
+		                                               (int) getLongParameter(messageContext,
+		                                                                      "searchthreads",
+		                                                                      FileSearchEngine.DEFAULT_THREADS));
+		int pageSize = (int) getLongParameter(messageContext, "pagesize", 0);
+		int pageNumber = (int) getLongParameter(messageContext, "pagenumber", 1);
 		if (log.isDebugEnabled()) {
 			log.info("File pattern..." + filepattern.toString());
 		}
-		if (!searchInLocal) {
-
-			StringBuffer sb = new StringBuffer();
-
-			try {
-				readFilesUsingFileSystem(fileLocation, filepattern, dirpattern, sb);
-			} catch (FileSystemException e) {
-				handleException(e.getMessage(), messageContext);
-			}
-
-			generateOutput(messageContext, sb);
-			if (log.isDebugEnabled()) {
-				log.info("File searching completed..." + filepattern.toString());
-			}
-		} else {
-
-			File inputDirectory = new File(fileLocation.toString());
-			final String FILE_PATTERN = filepattern;
-			final String DIR_PATTERN = dirpattern;
-			final IOFileFilter filesFilter = new IOFileFilter() {
-
-				public boolean accept(File file, String s) {
-					return file.isFile();
-				}
-
-				public boolean accept(File file) {
-					return new FilePattenMatcher(FILE_PATTERN).validate(file.getName()
-					                                                        .toLowerCase());
-				}
-
-			};
 
-			final IOFileFilter dirsFilter = new IOFileFilter() {
-
-				public boolean accept(File file, String s) {
-					return file.isDirectory();
-				}
-
-				public boolean accept(File file) {
-					return new FilePattenMatcher(DIR_PATTERN).validate(file.getName().toLowerCase());
+		OMFactory factory = OMAbstractFactory.getOMFactory();
+		OMElement result = factory.createOMElement("result", null);
+		if (pageSize > 0) {
+			factory.createOMElement("pagenumber", null, result).setText(String.valueOf(pageNumber));
+			factory.createOMElement("pagesize", null, result).setText(String.valueOf(pageSize));
+		}
+		try {
+			ResultWriter writer;
+			if (!searchInLocal) {
+				OMElement fileList = factory.createOMElement("filelist", null, result);
+				writer = new ResultWriter(factory, fileList, pageSize, pageNumber, false);
+				searchRemote(engine, fileLocation, writer);
+			} else {
+				writer = new ResultWriter(factory, result, pageSize, pageNumber, true);
+				if (pageSize > 0) {
+					engine.searchLocalInOrder(new File(fileLocation.toString()), writer);
+				} else {
+					engine.searchLocal(new File(fileLocation.toString()), writer);
 				}
-
-			};
-
-			Collection fileList = FileUtils.listFiles(inputDirectory, filesFilter, dirsFilter);
-			StringBuffer sb = new StringBuffer();
-			sb.append("<result>");
-			Iterator iterator = fileList.iterator();
-			while (iterator.hasNext()) {
-				File f = (File) iterator.next();
-
-				sb.append("<file>" + f.getName() + "</file>");
-
 			}
-			sb.append("</result>");
-			if (log.isDebugEnabled()) {
-				log.info(sb.toString());
+			if (pageSize > 0) {
+				factory.createOMElement("hasmore", null, result).setText(String.valueOf(writer.hasMore()));
 			}
-			generateOutput(messageContext, sb);
-
+		} catch (IOException e) {
+			handleException(e.getMessage(), messageContext);
+		}
+		if (log.isDebugEnabled()) {
+			log.info("File searching completed..." + filepattern.toString());
 		}
+		new ResultPayloadCreater().preparePayload(messageContext, result);
 
 	}
 
+	private long getLongParameter(MessageContext messageContext, String name, long defaultValue) {
+		Object value = getParameter(messageContext, name);
+		if (value == null || value.toString().trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.toString().trim());
+		} catch (NumberFormatException e) {
+			handleException("Invalid value " + value + " for " + name, messageContext);
+			return defaultValue;
+		}
+	}
+
 	/**
-	 * Generate the output
+	 * Search a location through the pooled file system connections
 	 * 
-	 * @param messageContext
-	 * @param sb
+	 * @param engine
+	 * @param fileLocation
+	 * @param writer
+	 * @throws FileSystemException
 	 */
-	private void generateOutput(MessageContext messageContext, StringBuffer sb) {
-		ResultPayloadCreater resultPayload = new ResultPayloadCreater();
+	private void searchRemote(FileSearchEngine engine, String fileLocation, ResultWriter writer)
+	                                                                                          throws FileSystemException {
 
-		OMElement element;
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
 		try {
-			element = resultPayload.performSearchMessages(sb.toString());
-			resultPayload.preparePayload(messageContext, element);
-		} catch (XMLStreamException e) {
-			log.error(e.getMessage());
-			handleException(e.getMessage(), messageContext);
-		} catch (IOException e) {
-			log.error(e.getMessage());
-			handleException(e.getMessage(), messageContext);
-		} catch (JSONException e) {
-			log.error(e.getMessage());
-			handleException(e.getMessage(), messageContext);
+			FileObject remoteFile = session.resolveFile(fileLocation);
+			engine.searchRemote(remoteFile, writer);
+		} finally {
+			session.close();
 		}
 
 	}
 
 	/**
-	 * Generate the file search
-	 * 
-	 * @param fileLocation
-	 * @param filepattern
-	 * @param dirpattern
-	 * @param sb
-	 * @throws FileSystemException
+	 * Writes the search results to the payload as they are found. With a page size, the results before
+	 * the requested page are skipped and the search stops at the first result after it. Remote searches
+	 * report folders as dir elements and files with their path relative to the search location, local
+	 * searches report file names.
 	 */
-	private void readFilesUsingFileSystem(String fileLocation, String filepattern,
-	                                      String dirpattern, StringBuffer sb)
-	                                                                         throws FileSystemException {
-
-		FileSystemOptions opts = FTPSiteUtils.createDefaultOptions();
-		FileSystemManager manager = VFS.getManager();
-
-		FileObject remoteFile = manager.resolveFile(fileLocation, opts);
-		FileObject[] children = remoteFile.getChildren();
-
-		final String FILE_PATTERN = filepattern;
-		final String DIR_PATTERN = dirpattern;
-
-		sb.append("<result><filelist>");
-		for (int i = 0; i < children.length; i++) {
-			if (children[i].getType().toString().equals("file") &&
-			    new FilePattenMatcher(FILE_PATTERN).validate(children[i].getName().getBaseName()
-			                                                            .toLowerCase())) {
-				sb.append("<file>" + children[i].getName().getBaseName() + "</file>");
-				if (log.isDebugEnabled()) {
-					log.info(children[i].getName().getBaseName());
-				}
-			} else if (children[i].getType().toString().equals("folder") &&
-			           new FilePattenMatcher(DIR_PATTERN).validate(children[i].getName()
-			                                                                  .getBaseName()
-			                                                                  .toLowerCase())) {
-				sb.append("<dir>" + children[i].getName().getBaseName() + "</dir>");
-				if (log.isDebugEnabled()) {
-					log.info(children[i].getName().getBaseName());
-				}
+	private static class ResultWriter implements FileSearchEngine.ResultSink {
+
+		private final OMFactory factory;
+		private final OMElement parent;
+		private final int pageSize;
+		private final boolean namesOnly;
+		private long skip;
+		private int added;
+		private boolean more;
+
+		private ResultWriter(OMFactory factory, OMElement parent, int pageSize, int pageNumber,
+		                     boolean namesOnly) {
+			this.factory = factory;
+			this.parent = parent;
+			this.pageSize = pageSize;
+			this.namesOnly = namesOnly;
+			this.skip = pageSize > 0 ? (long) Math.max(pageNumber - 1, 0) * pageSize : 0;
+		}
+
+		public synchronized boolean add(FileSearchEngine.SearchResult entry) {
+			if (skip > 0) {
+				skip--;
+				return true;
 			}
+			if (pageSize > 0 && added == pageSize) {
+				more = true;
+				return false;
+			}
+			factory.createOMElement(entry.isFolder() ? "dir" : "file", null, parent)
+			       .setText(namesOnly ? entry.getName() : entry.getPath());
+			added++;
+			return true;
 		}
-		sb.append("</filelist></result>");
 
+		/**
+		 * @return whether there are results after the page
+		 */
+		private synchronized boolean hasMore() {
+			return more;
+		}
 	}
 
 }
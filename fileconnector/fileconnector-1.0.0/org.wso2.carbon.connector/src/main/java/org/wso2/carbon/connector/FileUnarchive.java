@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2005-2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector;
+
+import java.io.IOException;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.synapse.MessageContext;
+import org.codehaus.jettison.json.JSONException;
+import org.wso2.carbon.connector.core.AbstractConnector;
+import org.wso2.carbon.connector.core.ConnectException;
+import org.wso2.carbon.connector.core.Connector;
+import org.wso2.carbon.connector.util.ArchiveType;
+import org.wso2.carbon.connector.util.FileArchiveEngine;
+import org.wso2.carbon.connector.util.FileConnectionManager;
+import org.wso2.carbon.connector.util.ResultPayloadCreater;
+
+public class FileUnarchive extends AbstractConnector implements Connector {
+
+	private static Log log = LogFactory.getLog(FileUnarchive.class);
+
+	public void connect(MessageContext messageContext) throws ConnectException {
+		String fileLocation =
+		                      getParameter(messageContext, "filelocation") == null ? "" : getParameter(
+		                                                                                               messageContext,
+		                                                                                               "filelocation").toString();
+		String filename =
+		                  getParameter(messageContext, "file") == null ? "" : getParameter(
+		                                                                                   messageContext,
+		                                                                                   "file").toString();
+		String newFileLocation =
+		                         getParameter(messageContext, "newfilelocation") == null ? "" : getParameter(
+		                                                                                                     messageContext,
+		                                                                                                     "newfilelocation").toString();
+		String archiveType =
+		                     getParameter(messageContext, "archivetype") == null ? "" : getParameter(
+		                                                                                             messageContext,
+		                                                                                             "archivetype").toString();
+		FileArchiveEngine engine =
+		                           FileArchiveEngine.create(getParameter(messageContext, "buffersize"),
+		                                                    null);
+		if (log.isDebugEnabled()) {
+			log.info("File extraction started..." + filename.toString());
+			log.info("File Location..." + fileLocation.toString());
+		}
+
+		ArchiveType type;
+		if (archiveType.equals("")) {
+			type = FileArchiveEngine.getArchiveType(filename);
+			if (type == null) {
+				handleException("Unable to find the archive type of " + filename, messageContext);
+			}
+		} else {
+			type =
+			       archiveType.equals(ArchiveType.TAR_GZIP.toString()) ? ArchiveType.TAR_GZIP
+			                                                           : ArchiveType.ZIP;
+		}
+
+		int entries = -1;
+		try {
+			entries = extractFile(engine, fileLocation, filename, newFileLocation, type);
+		} catch (IOException e) {
+			handleException(e.getMessage(), messageContext);
+		}
+
+		generateResults(messageContext, entries);
+
+	}
+
+	/**
+	 * Generate the results
+	 * 
+	 * @param messageContext
+	 * @param entries
+	 */
+	private void generateResults(MessageContext messageContext, int entries) {
+		ResultPayloadCreater resultPayload = new ResultPayloadCreater();
+
+		String responce =
+		                  "<result><success>" + (entries >= 0) + "</success><entries>" + entries +
+		                          "</entries></result>";
+
+		try {
+			OMElement element = resultPayload.performSearchMessages(responce);
+			resultPayload.preparePayload(messageContext, element);
+		} catch (XMLStreamException e) {
+			log.error(e.getMessage());
+			handleException(e.getMessage(), messageContext);
+		} catch (IOException e) {
+			log.error(e.getMessage());
+			handleException(e.getMessage(), messageContext);
+		} catch (JSONException e) {
+			log.error(e.getMessage());
+			handleException(e.getMessage(), messageContext);
+		}
+
+	}
+
+	/**
+	 * Extract the archive into the new file location
+	 * 
+	 * @param engine
+	 * @param fileLocation
+	 * @param filename
+	 * @param newFileLocation
+	 * @param type
+	 * @return the number of extracted entries
+	 * @throws IOException
+	 */
+	private int extractFile(FileArchiveEngine engine, String fileLocation, String filename,
+	                        String newFileLocation, ArchiveType type) throws IOException {
+		int entries;
+		FileConnectionManager.Session session = FileConnectionManager.getInstance().openSession();
+		try {
+			FileObject archive =
+			                     session.resolveFile(FileArchiveEngine.toResolvableName(fileLocation +
+			                                                                            filename));
+			if (!archive.exists()) {
+				throw new IOException("The archive " + fileLocation + filename + " does not exist");
+			}
+			FileObject destination =
+			                         session.resolveFile(FileArchiveEngine.toResolvableName(newFileLocation));
+			entries = engine.extract(archive, destination, type);
+		} finally {
+			session.close();
+		}
+
+		if (log.isDebugEnabled()) {
+			log.info("File extraction completed..." + filename.toString() + ", " + entries +
+			         " entries");
+		}
+		return entries;
+	}
+}
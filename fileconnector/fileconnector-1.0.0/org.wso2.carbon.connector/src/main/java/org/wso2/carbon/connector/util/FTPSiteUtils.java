@@ -7,6 +7,23 @@ import org.apache.commons.vfs2.provider.ftps.FtpsFileSystemConfigBuilder;
 import org.apache.commons.vfs2.provider.sftp.SftpFileSystemConfigBuilder;
 
 public class FTPSiteUtils {
+
+	private static FileSystemOptions defaultOptions;
+
+	/**
+	 * Get the shared default options. VFS reuses the connection of a remote file system for all the
+	 * files resolved with equal options, so every operation should resolve its files with these.
+	 * 
+	 * @return
+	 * @throws FileSystemException
+	 */
+	public static synchronized FileSystemOptions getDefaultOptions() throws FileSystemException {
+		if (defaultOptions == null) {
+			defaultOptions = createDefaultOptions();
+		}
+		return defaultOptions;
+	}
+
 	/**
 	 * Get the default options for File system
 	 * 
@@ -0,0 +1,360 @@
+package org.wso2.carbon.connector.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.NameScope;
+import org.apache.commons.vfs2.provider.UriParser;
+
+/**
+ * Creates and extracts zip and tar.gz archives. Archives are streamed to and from VFS files, so an
+ * archive on a remote server is written and read over the connection without a local copy of it.
+ *
+ * Zip entries are deflated in parallel, one entry per worker, and then written to the archive in order.
+ * Each worker holds its deflated entries until then, in memory up to SCATTER_MEMORY_THRESHOLD bytes and
+ * in a temporary file in java.io.tmpdir beyond that, so compressing a large tree to zip needs local disk
+ * space for its compressed size. Tar entries are written in order and the tar stream is gzipped in
+ * blocks by the workers, without temporary files.
+ */
+public class FileArchiveEngine {
+
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+	public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+	public static final int SCATTER_MEMORY_THRESHOLD = 4 * 1024 * 1024;
+
+	private static final String ZIP_EXTENSION = ".zip";
+	private static final String TAR_GZIP_EXTENSION = ".tar.gz";
+	private static final String TGZ_EXTENSION = ".tgz";
+	private static final String ENCODING = "UTF-8";
+
+	private static Log log = LogFactory.getLog(FileArchiveEngine.class);
+
+	private final int bufferSize;
+	private final int threads;
+
+	public FileArchiveEngine(int bufferSize, int threads) {
+		this.bufferSize = bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+		this.threads = threads > 0 ? threads : DEFAULT_THREADS;
+	}
+
+	/**
+	 * Create an engine from the template parameters of an operation. Missing or invalid values fall
+	 * back to the defaults.
+	 *
+	 * @param bufferSize
+	 * @param threads
+	 * @return the engine
+	 */
+	public static FileArchiveEngine create(Object bufferSize, Object threads) {
+		return new FileArchiveEngine(toInt(bufferSize, DEFAULT_BUFFER_SIZE), toInt(threads, DEFAULT_THREADS));
+	}
+
+	private static int toInt(Object value, int defaultValue) {
+		if (value == null || value.toString().trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.toString().trim());
+		} catch (NumberFormatException e) {
+			log.warn("Invalid number " + value + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @param archiveType
+	 * @return the file name extension of the archive type
+	 */
+	public static String getExtension(ArchiveType archiveType) {
+		return archiveType == ArchiveType.TAR_GZIP ? TAR_GZIP_EXTENSION : ZIP_EXTENSION;
+	}
+
+	/**
+	 * Find the archive type from the name of an archive
+	 *
+	 * @param name
+	 * @return the archive type, or null if the extension is not known
+	 */
+	public static ArchiveType getArchiveType(String name) {
+		String lowerCaseName = name.toLowerCase();
+		if (lowerCaseName.endsWith(ZIP_EXTENSION)) {
+			return ArchiveType.ZIP;
+		} else if (lowerCaseName.endsWith(TAR_GZIP_EXTENSION) || lowerCaseName.endsWith(TGZ_EXTENSION)) {
+			return ArchiveType.TAR_GZIP;
+		}
+		return null;
+	}
+
+	/**
+	 * Archive local files and folders, with the content of the folders. Entries are named by their path
+	 * relative to the base directory. A partially written target is deleted when the archiving fails.
+	 *
+	 * @param files
+	 * @param baseDirectory
+	 * @param target
+	 * @param archiveType
+	 * @return the number of archived entries
+	 * @throws IOException
+	 */
+	public int compress(Collection<File> files, File baseDirectory, FileObject target,
+	                    ArchiveType archiveType) throws IOException {
+		log.info("Compressing " + files.size() + " to " + target.getName().getFriendlyURI());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		boolean completed = false;
+		try {
+			int entries;
+			if (archiveType == ArchiveType.TAR_GZIP) {
+				entries = compressTarGzip(files, baseDirectory, target, executor);
+			} else {
+				entries = compressZip(files, baseDirectory, target, executor);
+			}
+			completed = true;
+			return entries;
+		} finally {
+			executor.shutdownNow();
+			target.close();
+			if (!completed) {
+				deleteQuietly(target);
+			}
+		}
+	}
+
+	private int compressZip(Collection<File> files, File baseDirectory, FileObject target,
+	                        ExecutorService executor) throws IOException {
+		OutputStream out = new BufferedOutputStream(target.getContent().getOutputStream(), bufferSize);
+		ZipArchiveOutputStream zaos = new ZipArchiveOutputStream(out);
+		try {
+			zaos.setEncoding(ENCODING);
+			zaos.setCreateUnicodeExtraFields(ZipArchiveOutputStream.UnicodeExtraFieldPolicy.ALWAYS);
+			ScatterGatherBackingStoreSupplier backingStores =
+			                                                   SpillingScatterGatherBackingStore.supplier(SCATTER_MEMORY_THRESHOLD);
+			ParallelScatterZipCreator creator = new ParallelScatterZipCreator(executor, backingStores);
+			int entries = 0;
+			for (File file : files) {
+				entries += addZipEntries(zaos, creator, file, getEntryName(baseDirectory, file));
+			}
+			// Folders are written directly, the deflated files follow once all workers are done
+			creator.writeTo(zaos);
+			zaos.close();
+			return entries;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing to " + target.getName().getFriendlyURI());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error while compressing to " + target.getName().getFriendlyURI() +
+			                      " : " + e.getCause().getMessage());
+		} finally {
+			IOUtils.closeQuietly(zaos);
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	private int addZipEntries(ZipArchiveOutputStream zaos, ParallelScatterZipCreator creator,
+	                          final File file, String name) throws IOException {
+		ZipArchiveEntry entry = new ZipArchiveEntry(file, name);
+		if (!file.isDirectory()) {
+			entry.setMethod(ZipEntry.DEFLATED);
+			creator.addArchiveEntry(entry, new InputStreamSupplier() {
+				public InputStream get() {
+					try {
+						return new BufferedInputStream(new FileInputStream(file), bufferSize);
+					} catch (FileNotFoundException e) {
+						throw new IllegalStateException("Unable to read " + file + " : " + e.getMessage());
+					}
+				}
+			});
+			return 1;
+		}
+		zaos.putArchiveEntry(entry);
+		zaos.closeArchiveEntry();
+		int entries = 1;
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				entries += addZipEntries(zaos, creator, child, name + "/" + child.getName());
+			}
+		}
+		return entries;
+	}
+
+	private int compressTarGzip(Collection<File> files, File baseDirectory, FileObject target,
+	                            ExecutorService executor) throws IOException {
+		OutputStream out = new BufferedOutputStream(target.getContent().getOutputStream(), bufferSize);
+		TarArchiveOutputStream taos =
+		                              new TarArchiveOutputStream(
+		                                                         new ParallelGzipOutputStream(
+		                                                                                      out,
+		                                                                                      executor,
+		                                                                                      threads,
+		                                                                                      ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE,
+		                                                                                      Deflater.DEFAULT_COMPRESSION));
+		try {
+			// TAR has an 8 gig file limit by default, this gets around that
+			taos.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_STAR);
+			// TAR originally didn't support long file names, so enable the support for it
+			taos.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+			byte[] buffer = new byte[bufferSize];
+			int entries = 0;
+			for (File file : files) {
+				entries += addTarEntries(taos, file, getEntryName(baseDirectory, file), buffer);
+			}
+			taos.close();
+			return entries;
+		} finally {
+			IOUtils.closeQuietly(taos);
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	private int addTarEntries(TarArchiveOutputStream taos, File file, String name, byte[] buffer)
+	                                                                                             throws IOException {
+		taos.putArchiveEntry(new TarArchiveEntry(file, name));
+		if (!file.isDirectory()) {
+			InputStream in = new FileInputStream(file);
+			try {
+				copy(in, taos, buffer);
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+			taos.closeArchiveEntry();
+			return 1;
+		}
+		taos.closeArchiveEntry();
+		int entries = 1;
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				entries += addTarEntries(taos, child, name + "/" + child.getName(), buffer);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Extract an archive into a folder. Entries which would be extracted outside of the folder are
+	 * rejected.
+	 *
+	 * @param archive
+	 * @param destination
+	 * @param archiveType
+	 * @return the number of extracted entries
+	 * @throws IOException
+	 */
+	public int extract(FileObject archive, FileObject destination, ArchiveType archiveType)
+	                                                                                       throws IOException {
+		InputStream in = new BufferedInputStream(archive.getContent().getInputStream(), bufferSize);
+		ArchiveInputStream ais = null;
+		try {
+			if (archiveType == ArchiveType.TAR_GZIP) {
+				ais = new TarArchiveInputStream(new GzipCompressorInputStream(in, true));
+			} else {
+				ais = new ZipArchiveInputStream(in, ENCODING, true, true);
+			}
+			destination.createFolder();
+			byte[] buffer = new byte[bufferSize];
+			int entries = 0;
+			ArchiveEntry entry;
+			while ((entry = ais.getNextEntry()) != null) {
+				FileObject target = destination.resolveFile(entry.getName());
+				if (!destination.getName().isDescendent(target.getName(), NameScope.DESCENDENT)) {
+					throw new IOException("The archive entry " + entry.getName() +
+					                      " is outside of the destination folder");
+				}
+				if (entry.isDirectory()) {
+					target.createFolder();
+				} else {
+					OutputStream out = target.getContent().getOutputStream();
+					try {
+						copy(ais, out, buffer);
+					} finally {
+						IOUtils.closeQuietly(out);
+						target.close();
+					}
+				}
+				entries++;
+			}
+			return entries;
+		} finally {
+			IOUtils.closeQuietly(ais);
+			IOUtils.closeQuietly(in);
+			archive.close();
+		}
+	}
+
+	/**
+	 * Turn a path into a name VFS resolves. Paths without a scheme are local paths, which are made
+	 * canonical the way the connector always resolved them, so relative paths stay relative to the
+	 * working directory.
+	 *
+	 * @param path
+	 * @return the name to resolve
+	 * @throws IOException
+	 */
+	public static String toResolvableName(String path) throws IOException {
+		File file = new File(path);
+		if (file.isAbsolute() || UriParser.extractScheme(path) == null) {
+			return file.getCanonicalPath();
+		}
+		return path;
+	}
+
+	/**
+	 * Name an entry by its path relative to the base directory, the way the connector always named
+	 * them
+	 */
+	private static String getEntryName(File baseDirectory, File file) {
+		String base = baseDirectory.getAbsolutePath();
+		String path = file.getAbsolutePath();
+		if (path.startsWith(base + File.separator)) {
+			return "./" + path.substring(base.length() + 1).replace(File.separatorChar, '/');
+		}
+		return "./" + file.getName();
+	}
+
+	private static void copy(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+	}
+
+	private static void deleteQuietly(FileObject file) {
+		try {
+			file.delete();
+		} catch (FileSystemException e) {
+			log.warn("Unable to delete the incomplete archive " + file.getName().getFriendlyURI(), e);
+		}
+	}
+}
@@ -0,0 +1,578 @@
+package org.wso2.carbon.connector.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystem;
+import org.apache.commons.vfs2.FileSystemConfigBuilder;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemManager;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.VFS;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.apache.commons.vfs2.provider.GenericFileName;
+
+/**
+ * Shared connection pool of the file connector. VFS keeps one file system, and with it one authenticated
+ * SFTP session or FTP client, per remote root and set of options. The manager pools these file systems
+ * per host and set of options: every pooled connection resolves its files with its own copy of the
+ * options, marked with the id of the connection, so VFS opens a separate file system for it, and an
+ * operation borrows a connection of the host for as long as its session is open. At most
+ * maxSessionsPerHost connections of a host and set of options exist at the same time, and an operation
+ * waits up to maxWaitTime for one to be returned when all of them are borrowed.
+ *
+ * A connection which has been idle for longer than the validation interval is checked against the
+ * server when it is borrowed and replaced if the check fails. Idle connections get a keep alive every
+ * keepAliveInterval and are closed once they have been idle for longer than the idle timeout.
+ *
+ * The limits can be changed with the system properties file.connector.maxSessionsPerHost,
+ * file.connector.maxWaitTime, file.connector.validationInterval, file.connector.keepAliveInterval and
+ * file.connector.idleTimeout (times in milliseconds).
+ */
+public class FileConnectionManager implements FileConnectionManagerMBean {
+
+	private static Log log = LogFactory.getLog(FileConnectionManager.class);
+
+	private static final String MBEAN_NAME = "org.wso2.carbon.connector:type=FileConnectionManager";
+
+	private static final FileConnectionManager INSTANCE = new FileConnectionManager();
+
+	private final int maxSessionsPerHost = Integer.getInteger("file.connector.maxSessionsPerHost", 8);
+	private final long maxWaitTime = Long.getLong("file.connector.maxWaitTime", 60000);
+	private final long validationInterval = Long.getLong("file.connector.validationInterval", 15000);
+	private final long keepAliveInterval = Long.getLong("file.connector.keepAliveInterval", 60000);
+	private final long idleTimeout = Long.getLong("file.connector.idleTimeout", 300000);
+
+	private final ConcurrentMap<PoolKey, HostPool> pools = new ConcurrentHashMap<PoolKey, HostPool>();
+	private final ConcurrentMap<FileObjectDataSource, Boolean> streamedFiles =
+	                                                                          new ConcurrentHashMap<FileObjectDataSource, Boolean>();
+	private final ScheduledExecutorService maintainer;
+
+	private final AtomicLong connectionIds = new AtomicLong();
+	private final AtomicLong connectCount = new AtomicLong();
+	private final AtomicLong leaseCount = new AtomicLong();
+	private final AtomicLong totalWaitTime = new AtomicLong();
+	private final AtomicLong validationFailureCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private FileConnectionManager() {
+		maintainer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "file-connector-connection-maintainer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		long interval = Math.max(1000, Math.min(keepAliveInterval, idleTimeout) / 2);
+		maintainer.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					maintain();
+				} catch (Throwable t) {
+					log.error("Error while maintaining the pooled file system connections", t);
+				}
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+		registerMBean();
+	}
+
+	public static FileConnectionManager getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Open a session for one connector operation. Files resolved through the session on a remote host
+	 * use a connection borrowed from the pool of the host, and the session must be closed when the
+	 * operation completes to return the connections.
+	 *
+	 * @return the session
+	 * @throws FileSystemException
+	 */
+	public Session openSession() throws FileSystemException {
+		return new Session(VFS.getManager());
+	}
+
+	/**
+	 * Track a file which is streamed after its operation has returned, so that its session is released
+	 * if the file is never read
+	 *
+	 * @param file
+	 */
+	void addStreamedFile(FileObjectDataSource file) {
+		streamedFiles.put(file, Boolean.TRUE);
+	}
+
+	void removeStreamedFile(FileObjectDataSource file) {
+		streamedFiles.remove(file);
+	}
+
+	public int getPooledHosts() {
+		return pools.size();
+	}
+
+	public int getMaxSessionsPerHost() {
+		return maxSessionsPerHost;
+	}
+
+	public int getActiveSessions() {
+		int active = 0;
+		for (HostPool pool : pools.values()) {
+			active += pool.getBorrowed();
+		}
+		return active;
+	}
+
+	public int getIdleConnections() {
+		int idle = 0;
+		for (HostPool pool : pools.values()) {
+			idle += pool.getIdle();
+		}
+		return idle;
+	}
+
+	public long getConnectCount() {
+		return connectCount.get();
+	}
+
+	public long getLeaseCount() {
+		return leaseCount.get();
+	}
+
+	public double getAverageWaitTime() {
+		long leases = leaseCount.get();
+		return leases == 0 ? 0 : (double) totalWaitTime.get() / leases;
+	}
+
+	public long getValidationFailureCount() {
+		return validationFailureCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public String[] getHostStatistics() {
+		List<String> statistics = new ArrayList<String>();
+		for (HostPool pool : pools.values()) {
+			statistics.add(pool.key.host + "=" + pool.getBorrowed() + "/" + maxSessionsPerHost + "," +
+			               pool.getIdle() + "," + pool.connects.get() + "," + pool.waitTime.get());
+		}
+		return statistics.toArray(new String[statistics.size()]);
+	}
+
+	/**
+	 * Release the sessions of streamed files which have not been read, keep the idle connections alive
+	 * and close the ones that have been idle for longer than the idle timeout
+	 */
+	private void maintain() {
+		long now = System.currentTimeMillis();
+		for (FileObjectDataSource file : streamedFiles.keySet()) {
+			if (file.expire(now - idleTimeout)) {
+				streamedFiles.remove(file);
+			}
+		}
+		for (HostPool pool : pools.values()) {
+			for (PooledConnection connection : pool.takeIdle(now, keepAliveInterval, idleTimeout)) {
+				if (now - connection.lastUsed >= idleTimeout) {
+					closeConnection(pool, connection);
+					evictionCount.incrementAndGet();
+					pool.discard();
+				} else if (validate(pool, connection)) {
+					pool.giveBack(connection, false);
+				} else {
+					closeConnection(pool, connection);
+					pool.discard();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check the connection against the server. Listing the attributes of the root goes to the server and
+	 * keeps the session active.
+	 *
+	 * @return false if the connection is broken
+	 */
+	private boolean validate(HostPool pool, PooledConnection connection) {
+		FileSystem fileSystem = connection.fileSystem;
+		if (fileSystem != null) {
+			try {
+				FileObject root = fileSystem.getRoot();
+				root.refresh();
+				root.exists();
+			} catch (FileSystemException e) {
+				log.warn("Validation failed for a connection to " + pool.key.host +
+				         ", closing the connection", e);
+				validationFailureCount.incrementAndGet();
+				return false;
+			}
+		}
+		connection.lastChecked = System.currentTimeMillis();
+		return true;
+	}
+
+	private void closeConnection(HostPool pool, PooledConnection connection) {
+		FileSystem fileSystem = connection.fileSystem;
+		connection.fileSystem = null;
+		if (fileSystem == null) {
+			return;
+		}
+		try {
+			FileSystemManager manager = VFS.getManager();
+			if (manager instanceof DefaultFileSystemManager) {
+				((DefaultFileSystemManager) manager).closeFileSystem(fileSystem);
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Closed a pooled connection to " + pool.key.host);
+			}
+		} catch (FileSystemException e) {
+			log.warn("Unable to close the connection to " + pool.key.host, e);
+		}
+	}
+
+	/**
+	 * Borrow a connection of the pool, waiting for one to be returned if all of them are in use. An idle
+	 * connection which has not been checked for the validation interval is validated first, and replaced
+	 * with a new connection if it is broken.
+	 */
+	private PooledConnection borrow(HostPool pool) throws FileSystemException {
+		long start = System.currentTimeMillis();
+		PooledConnection connection;
+		try {
+			connection = pool.borrow(maxWaitTime);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FileSystemException("Interrupted while waiting for a connection to " + pool.key.host,
+			                              e);
+		}
+		if (connection == null) {
+			throw new FileSystemException("Timed out waiting for a connection to " + pool.key.host);
+		}
+		long waited = System.currentTimeMillis() - start;
+		pool.waitTime.addAndGet(waited);
+		totalWaitTime.addAndGet(waited);
+		leaseCount.incrementAndGet();
+		if (System.currentTimeMillis() - connection.lastChecked >= validationInterval &&
+		    !validate(pool, connection)) {
+			closeConnection(pool, connection);
+			connection = pool.newConnection();
+		}
+		return connection;
+	}
+
+	private HostPool getPool(PoolKey key) {
+		HostPool pool = pools.get(key);
+		if (pool == null) {
+			HostPool created = new HostPool(key, maxSessionsPerHost);
+			pool = pools.putIfAbsent(key, created);
+			if (pool == null) {
+				pool = created;
+			}
+		}
+		return pool;
+	}
+
+	private void registerMBean() {
+		try {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			if (!mBeanServer.isRegistered(name)) {
+				mBeanServer.registerMBean(this, name);
+			}
+		} catch (Exception e) {
+			log.warn("Unable to register the file connection manager MBean", e);
+		}
+	}
+
+	/**
+	 * Remote host and options the connections of a pool are opened with. Options are equal when VFS
+	 * would share a file system between them.
+	 */
+	private static class PoolKey {
+
+		private final String host;
+		private final FileSystemOptions options;
+
+		private PoolKey(String host, FileSystemOptions options) {
+			this.host = host;
+			this.options = options;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PoolKey)) {
+				return false;
+			}
+			PoolKey other = (PoolKey) obj;
+			if (!host.equals(other.host)) {
+				return false;
+			}
+			if (options == null || other.options == null) {
+				return options == other.options;
+			}
+			return options.compareTo(other.options) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return host.hashCode();
+		}
+	}
+
+	/**
+	 * Marks the options of a pooled connection with the id of the connection, so that VFS opens a file
+	 * system of its own for the connection
+	 */
+	private static class ConnectionConfigBuilder extends FileSystemConfigBuilder {
+
+		private static final ConnectionConfigBuilder INSTANCE = new ConnectionConfigBuilder();
+
+		private static final String CONNECTION_ID = "connectionId";
+
+		private FileSystemOptions createOptions(FileSystemOptions options, long id) {
+			FileSystemOptions connectionOptions =
+			                                      options == null ? new FileSystemOptions()
+			                                                      : (FileSystemOptions) options.clone();
+			setParam(connectionOptions, CONNECTION_ID, Long.valueOf(id));
+			return connectionOptions;
+		}
+
+		@Override
+		protected Class<? extends FileSystem> getConfigClass() {
+			return FileSystem.class;
+		}
+	}
+
+	/**
+	 * A pooled connection: the file system opened with the options of the connection
+	 */
+	private static class PooledConnection {
+
+		private final FileSystemOptions options;
+		private volatile FileSystem fileSystem;
+		private volatile long lastUsed = System.currentTimeMillis();
+		private volatile long lastChecked = System.currentTimeMillis();
+
+		private PooledConnection(FileSystemOptions options) {
+			this.options = options;
+		}
+	}
+
+	/**
+	 * Connections of one remote host and set of options. Guarded by this.
+	 */
+	private class HostPool {
+
+		private final PoolKey key;
+		private final int maxSessions;
+		private final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+		private final AtomicLong connects = new AtomicLong();
+		private final AtomicLong waitTime = new AtomicLong();
+		private int borrowed;
+
+		private HostPool(PoolKey key, int maxSessions) {
+			this.key = key;
+			this.maxSessions = maxSessions;
+		}
+
+		private synchronized int getBorrowed() {
+			return borrowed;
+		}
+
+		private synchronized int getIdle() {
+			return idle.size();
+		}
+
+		/**
+		 * Take the most recently used idle connection, or create a connection if the pool is not full
+		 *
+		 * @param maxWait
+		 * @return the connection, or null if none was returned within the given time
+		 * @throws InterruptedException
+		 */
+		private synchronized PooledConnection borrow(long maxWait) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + maxWait;
+			while (idle.isEmpty() && borrowed >= maxSessions) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return null;
+				}
+				wait(remaining);
+			}
+			borrowed++;
+			if (!idle.isEmpty()) {
+				return idle.removeFirst();
+			}
+			return newConnection();
+		}
+
+		/**
+		 * Create a connection in place of a borrowed one. The file system is opened when the first file
+		 * is resolved with the options of the connection.
+		 */
+		private PooledConnection newConnection() {
+			return new PooledConnection(ConnectionConfigBuilder.INSTANCE.createOptions(key.options,
+			                                                                           connectionIds.incrementAndGet()));
+		}
+
+		/**
+		 * Return a borrowed connection to the pool
+		 *
+		 * @param connection
+		 * @param used
+		 *            whether the connection was used by an operation, which restarts its idle time
+		 */
+		private synchronized void giveBack(PooledConnection connection, boolean used) {
+			if (used) {
+				connection.lastUsed = System.currentTimeMillis();
+			}
+			borrowed--;
+			idle.addFirst(connection);
+			notifyAll();
+		}
+
+		/**
+		 * Drop a borrowed connection which has been closed
+		 */
+		private synchronized void discard() {
+			borrowed--;
+			notifyAll();
+		}
+
+		/**
+		 * Borrow the idle connections which need a keep alive or have to be closed. The caller gives
+		 * them back or discards them.
+		 */
+		private synchronized List<PooledConnection> takeIdle(long now, long keepAliveInterval,
+		                                                     long idleTimeout) {
+			List<PooledConnection> taken = new ArrayList<PooledConnection>();
+			for (Iterator<PooledConnection> it = idle.iterator(); it.hasNext();) {
+				PooledConnection connection = it.next();
+				if (now - connection.lastUsed >= idleTimeout ||
+				    now - Math.max(connection.lastUsed, connection.lastChecked) >= keepAliveInterval) {
+					it.remove();
+					borrowed++;
+					taken.add(connection);
+				}
+			}
+			return taken;
+		}
+	}
+
+	/**
+	 * Files resolved by one connector operation. The session holds one connection of every remote host
+	 * and set of options it resolved files with until it is closed.
+	 */
+	public class Session {
+
+		private final FileSystemManager manager;
+		private final Map<HostPool, PooledConnection> leased = new HashMap<HostPool, PooledConnection>();
+
+		private Session(FileSystemManager manager) {
+			this.manager = manager;
+		}
+
+		public FileSystemManager getManager() {
+			return manager;
+		}
+
+		/**
+		 * Resolve a file with the cached default options
+		 *
+		 * @param uri
+		 * @return the file
+		 * @throws FileSystemException
+		 */
+		public FileObject resolveFile(String uri) throws FileSystemException {
+			return resolveFile(uri, FTPSiteUtils.getDefaultOptions());
+		}
+
+		/**
+		 * Resolve a file on the connection the session borrowed from the pool of its host and options,
+		 * waiting for a pooled connection if all of them are in use
+		 *
+		 * @param uri
+		 * @param opts
+		 * @return the file
+		 * @throws FileSystemException
+		 */
+		public FileObject resolveFile(String uri, FileSystemOptions opts) throws FileSystemException {
+			String host = getHostKey(uri);
+			if (host == null) {
+				return manager.resolveFile(uri, opts);
+			}
+			HostPool pool = getPool(new PoolKey(host, opts));
+			PooledConnection connection = leased.get(pool);
+			if (connection == null) {
+				connection = borrow(pool);
+				leased.put(pool, connection);
+			}
+			FileObject file = manager.resolveFile(uri, connection.options);
+			FileSystem fileSystem = file.getFileSystem();
+			if (connection.fileSystem != fileSystem) {
+				// VFS opened the file system of the connection, which connects to the host
+				connection.fileSystem = fileSystem;
+				connection.lastChecked = System.currentTimeMillis();
+				pool.connects.incrementAndGet();
+				connectCount.incrementAndGet();
+			}
+			return file;
+		}
+
+		/**
+		 * Build the pool key of a remote file. The password is left out so that it does not show up
+		 * in the statistics.
+		 *
+		 * @param uri
+		 * @return the key, or null for files which are not on a remote host
+		 */
+		private String getHostKey(String uri) {
+			FileName fileName;
+			try {
+				fileName = manager.resolveURI(uri);
+			} catch (FileSystemException e) {
+				// Let the file resolution report the problem with the URI
+				return null;
+			}
+			if (!(fileName instanceof GenericFileName)) {
+				return null;
+			}
+			GenericFileName remoteName = (GenericFileName) fileName;
+			StringBuilder key = new StringBuilder(remoteName.getScheme()).append("://");
+			if (remoteName.getUserName() != null) {
+				key.append(remoteName.getUserName()).append('@');
+			}
+			key.append(remoteName.getHostName()).append(':').append(remoteName.getPort());
+			return key.toString();
+		}
+
+		/**
+		 * Hand the connections back to the pool
+		 */
+		public void close() {
+			for (Map.Entry<HostPool, PooledConnection> entry : leased.entrySet()) {
+				entry.getKey().giveBack(entry.getValue(), true);
+			}
+			leased.clear();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package org.wso2.carbon.connector.util;
+
+/**
+ * JMX view of the pooled remote file system connections
+ */
+public interface FileConnectionManagerMBean {
+
+	/**
+	 * @return number of connection pools, one per remote host and set of options
+	 */
+	int getPooledHosts();
+
+	/**
+	 * @return maximum number of connections of a pool
+	 */
+	int getMaxSessionsPerHost();
+
+	/**
+	 * @return number of pooled connections currently borrowed by operations
+	 */
+	int getActiveSessions();
+
+	/**
+	 * @return number of pooled connections waiting to be borrowed
+	 */
+	int getIdleConnections();
+
+	/**
+	 * @return number of connections opened to the remote hosts
+	 */
+	long getConnectCount();
+
+	/**
+	 * @return number of times an operation got a pooled connection
+	 */
+	long getLeaseCount();
+
+	/**
+	 * @return average time in milliseconds an operation waited for a pooled connection
+	 */
+	double getAverageWaitTime();
+
+	/**
+	 * @return number of pooled connections closed because they failed a validation
+	 */
+	long getValidationFailureCount();
+
+	/**
+	 * @return number of connections closed because they were idle
+	 */
+	long getEvictionCount();
+
+	/**
+	 * @return per host statistics in the form host=active/max,idle,connects,waitMillis
+	 */
+	String[] getHostStatistics();
+}
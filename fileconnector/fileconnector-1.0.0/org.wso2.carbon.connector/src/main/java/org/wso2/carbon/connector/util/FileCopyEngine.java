@@ -0,0 +1,440 @@
+package org.wso2.carbon.connector.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.Capability;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.Selectors;
+import org.apache.commons.vfs2.provider.local.LocalFileName;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+
+/**
+ * Copies files and folders between VFS locations.
+ *
+ * Local to local copies are done with FileChannel.transferTo, which lets the operating system move the
+ * bytes without copying them through the heap. Other copies stream through a buffer of the configured
+ * size. The files of a folder are copied in parallel on a bounded number of threads. A copy can resume
+ * from the size of an existing partial target when the target file system supports appending, or the
+ * target is an SFTP file, which is appended to through an SFTP channel of its own. The target can be
+ * verified against the source with a checksum.
+ */
+public class FileCopyEngine {
+
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+	public static final int DEFAULT_THREADS = 4;
+
+	private static final String CHECKSUM_ALGORITHM = "MD5";
+	private static final String LOCAL_SCHEME = "file";
+
+	private static Log log = LogFactory.getLog(FileCopyEngine.class);
+
+	private final int bufferSize;
+	private final int threads;
+	private final boolean resume;
+	private final boolean verifyChecksum;
+
+	public FileCopyEngine(int bufferSize, int threads, boolean resume, boolean verifyChecksum) {
+		this.bufferSize = bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+		this.threads = threads > 0 ? threads : DEFAULT_THREADS;
+		this.resume = resume;
+		this.verifyChecksum = verifyChecksum;
+	}
+
+	/**
+	 * Create an engine from the template parameters of an operation. Missing or invalid values fall
+	 * back to the defaults.
+	 *
+	 * @param bufferSize
+	 * @param threads
+	 * @param resume
+	 * @param verifyChecksum
+	 * @return the engine
+	 */
+	public static FileCopyEngine create(Object bufferSize, Object threads, Object resume,
+	                                    Object verifyChecksum) {
+		return new FileCopyEngine(toInt(bufferSize, DEFAULT_BUFFER_SIZE), toInt(threads, DEFAULT_THREADS),
+		                          toBoolean(resume), toBoolean(verifyChecksum));
+	}
+
+	private static int toInt(Object value, int defaultValue) {
+		if (value == null || value.toString().trim().equals("")) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.toString().trim());
+		} catch (NumberFormatException e) {
+			log.warn("Invalid number " + value + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	private static boolean toBoolean(Object value) {
+		return value != null && Boolean.parseBoolean(value.toString().trim());
+	}
+
+	/**
+	 * Copy a file, or a folder with all its children
+	 *
+	 * @param source
+	 * @param target
+	 * @param folder
+	 *            whether the source is a folder
+	 * @return the statistics of the copy
+	 * @throws IOException
+	 */
+	public CopyResult copy(FileObject source, FileObject target, boolean folder) throws IOException {
+		long start = System.currentTimeMillis();
+		List<FileCopyResult> files;
+		if (folder) {
+			if (source.getType() != FileType.FOLDER) {
+				throw new IOException("The source " + source.getName().getFriendlyURI() +
+				                      " is not a folder");
+			}
+			files = copyFolder(source, target);
+		} else {
+			if (source.getType() != FileType.FILE) {
+				throw new IOException("The source " + source.getName().getFriendlyURI() +
+				                      " is not a file");
+			}
+			files = Collections.singletonList(copyFile(source, target));
+		}
+		return new CopyResult(files, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Create the folder structure and copy the files of the folder in parallel
+	 *
+	 * @param source
+	 * @param target
+	 * @return the statistics of the copied files
+	 * @throws IOException
+	 */
+	private List<FileCopyResult> copyFolder(FileObject source, FileObject target) throws IOException {
+		FileObject[] children = source.findFiles(Selectors.EXCLUDE_SELF);
+		// Sort by path so that parents come before their children and folders are created in order
+		Arrays.sort(children, new Comparator<FileObject>() {
+			public int compare(FileObject first, FileObject second) {
+				return first.getName().getPath().compareTo(second.getName().getPath());
+			}
+		});
+		target.createFolder();
+		List<Callable<FileCopyResult>> tasks = new ArrayList<Callable<FileCopyResult>>();
+		for (final FileObject child : children) {
+			final FileObject childTarget =
+			                               target.resolveFile(source.getName()
+			                                                        .getRelativeName(child.getName()));
+			if (child.getType() == FileType.FOLDER) {
+				childTarget.createFolder();
+			} else {
+				tasks.add(new Callable<FileCopyResult>() {
+					public FileCopyResult call() throws IOException {
+						return copyFile(child, childTarget);
+					}
+				});
+			}
+		}
+		if (tasks.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+		try {
+			List<FileCopyResult> results = new ArrayList<FileCopyResult>();
+			for (Future<FileCopyResult> future : executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while copying " + source.getName().getFriendlyURI());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error while copying " + source.getName().getFriendlyURI() + " : " +
+			                      e.getCause().getMessage());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Copy a single file
+	 *
+	 * @param source
+	 * @param target
+	 * @return the statistics of the copy
+	 * @throws IOException
+	 */
+	private FileCopyResult copyFile(FileObject source, FileObject target) throws IOException {
+		long start = System.currentTimeMillis();
+		long offset = getResumeOffset(source, target);
+		MessageDigest digest = null;
+		long copied;
+		if (isLocal(source) && isLocal(target)) {
+			copied = transfer(toFile(source), toFile(target), offset);
+		} else {
+			// The checksum of the source is computed while copying, unless only a part is copied
+			digest = verifyChecksum && offset == 0 ? newDigest() : null;
+			copied = stream(source, target, offset, digest);
+		}
+		source.close();
+		target.close();
+		// The size of a target appended to outside the file system is cached
+		target.refresh();
+
+		Boolean verified = null;
+		if (verifyChecksum) {
+			byte[] sourceDigest = digest != null ? digest.digest() : digest(source);
+			verified = MessageDigest.isEqual(sourceDigest, digest(target));
+			if (!verified) {
+				throw new IOException("Checksum of " + target.getName().getFriendlyURI() +
+				                      " does not match " + source.getName().getFriendlyURI());
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Copied " + copied + " bytes to " + target.getName().getFriendlyURI());
+		}
+		return new FileCopyResult(source.getName().getBaseName(), copied, offset,
+		                          System.currentTimeMillis() - start, verified);
+	}
+
+	/**
+	 * Find where the copy of a file starts. A copy resumes after the bytes already in the target when
+	 * resuming is enabled and the target can be appended to.
+	 */
+	private long getResumeOffset(FileObject source, FileObject target) throws FileSystemException {
+		if (!resume || !target.exists() || !(canAppend(target) || isSftp(target))) {
+			return 0;
+		}
+		long targetSize = target.getContent().getSize();
+		return targetSize < source.getContent().getSize() ? targetSize : 0;
+	}
+
+	/**
+	 * Copy between local files with FileChannel.transferTo
+	 */
+	private long transfer(File source, File target, long offset) throws IOException {
+		File parent = target.getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Unable to create the folder " + parent);
+		}
+		FileInputStream in = new FileInputStream(source);
+		FileOutputStream out = new FileOutputStream(target, offset > 0);
+		try {
+			FileChannel inChannel = in.getChannel();
+			FileChannel outChannel = out.getChannel();
+			long size = inChannel.size();
+			long position = offset;
+			while (position < size) {
+				position += inChannel.transferTo(position, size - position, outChannel);
+			}
+			return size - offset;
+		} finally {
+			IOUtils.closeQuietly(in);
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Copy through a buffer, starting at the given offset of the source
+	 */
+	private long stream(FileObject source, FileObject target, long offset, MessageDigest digest)
+	                                                                                               throws IOException {
+		RandomAccessContent randomAccess = null;
+		InputStream in;
+		if (offset > 0 && source.getFileSystem().hasCapability(Capability.RANDOM_ACCESS_READ)) {
+			randomAccess = source.getContent().getRandomAccessContent(RandomAccessMode.READ);
+			randomAccess.seek(offset);
+			in = randomAccess.getInputStream();
+		} else {
+			in = source.getContent().getInputStream();
+			skip(in, offset);
+		}
+		OutputStream out;
+		if (offset > 0 && !canAppend(target)) {
+			out = SftpAppendOutputStream.open(target);
+		} else {
+			out = target.getContent().getOutputStream(offset > 0);
+		}
+		if (digest != null) {
+			out = new DigestOutputStream(out, digest);
+		}
+		try {
+			return copy(in, out);
+		} finally {
+			IOUtils.closeQuietly(in);
+			IOUtils.closeQuietly(out);
+			if (randomAccess != null) {
+				randomAccess.close();
+			}
+		}
+	}
+
+	private long copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[bufferSize];
+		long count = 0;
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+			count += read;
+		}
+		return count;
+	}
+
+	private static void skip(InputStream in, long offset) throws IOException {
+		long remaining = offset;
+		while (remaining > 0) {
+			long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				throw new IOException("Unable to skip to offset " + offset);
+			}
+			remaining -= skipped;
+		}
+	}
+
+	private byte[] digest(FileObject file) throws IOException {
+		MessageDigest digest = newDigest();
+		InputStream in = file.getContent().getInputStream();
+		try {
+			copy(in, new DigestOutputStream(new NullOutputStream(), digest));
+		} finally {
+			IOUtils.closeQuietly(in);
+			file.close();
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest newDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(CHECKSUM_ALGORITHM + " is not supported");
+		}
+	}
+
+	private static boolean canAppend(FileObject file) {
+		return file.getFileSystem().hasCapability(Capability.APPEND_CONTENT);
+	}
+
+	private static boolean isSftp(FileObject file) {
+		return SftpAppendOutputStream.SFTP_SCHEME.equals(file.getName().getScheme());
+	}
+
+	private static boolean isLocal(FileObject file) {
+		return LOCAL_SCHEME.equals(file.getName().getScheme()) &&
+		       file.getName() instanceof LocalFileName;
+	}
+
+	private static File toFile(FileObject file) {
+		LocalFileName name = (LocalFileName) file.getName();
+		return new File(name.getRootFile() + name.getPathDecoded());
+	}
+
+	/**
+	 * Statistics of a copy operation
+	 */
+	public static class CopyResult {
+
+		private final List<FileCopyResult> files;
+		private final long time;
+
+		private CopyResult(List<FileCopyResult> files, long time) {
+			this.files = files;
+			this.time = time;
+		}
+
+		public long getBytes() {
+			long bytes = 0;
+			for (FileCopyResult file : files) {
+				bytes += file.bytes;
+			}
+			return bytes;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public long getBytesPerSecond() {
+			return time == 0 ? getBytes() * 1000 : getBytes() * 1000 / time;
+		}
+
+		/**
+		 * Add the statistics to the result payload
+		 *
+		 * @param result
+		 */
+		public void addTo(OMElement result) {
+			OMFactory factory = OMAbstractFactory.getOMFactory();
+			factory.createOMElement("bytes", null, result).setText(String.valueOf(getBytes()));
+			factory.createOMElement("time", null, result).setText(String.valueOf(time));
+			factory.createOMElement("bytespersecond", null, result)
+			       .setText(String.valueOf(getBytesPerSecond()));
+			OMElement filesElement = factory.createOMElement("files", null, result);
+			for (FileCopyResult file : files) {
+				OMElement fileElement = factory.createOMElement("file", null, filesElement);
+				factory.createOMElement("name", null, fileElement).setText(file.name);
+				factory.createOMElement("bytes", null, fileElement).setText(String.valueOf(file.bytes));
+				factory.createOMElement("time", null, fileElement).setText(String.valueOf(file.time));
+				if (file.resumedFrom > 0) {
+					factory.createOMElement("resumedfrom", null, fileElement)
+					       .setText(String.valueOf(file.resumedFrom));
+				}
+				if (file.verified != null) {
+					factory.createOMElement("checksumverified", null, fileElement)
+					       .setText(file.verified.toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Statistics of one copied file
+	 */
+	private static class FileCopyResult {
+
+		private final String name;
+		private final long bytes;
+		private final long resumedFrom;
+		private final long time;
+		private final Boolean verified;
+
+		private FileCopyResult(String name, long bytes, long resumedFrom, long time, Boolean verified) {
+			this.name = name;
+			this.bytes = bytes;
+			this.resumedFrom = resumedFrom;
+			this.time = time;
+			this.verified = verified;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package org.wso2.carbon.connector.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.activation.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+
+/**
+ * Data source backed by a VFS file. The content is only opened when the data source is read, so the
+ * message formatter streams the bytes straight from the file system to the outbound transport instead
+ * of the whole file being loaded into memory.
+ *
+ * The data source takes over the session the file was resolved with, and keeps its pooled connection
+ * leased until the last stream opened on the file is closed. A later read leases a connection again. If
+ * the file is not read, the connection manager releases the session once it has been unused for the
+ * idle timeout.
+ */
+public class FileObjectDataSource implements DataSource {
+
+	private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+	private static Log log = LogFactory.getLog(FileObjectDataSource.class);
+
+	private final String uri;
+	private final String name;
+	private final String contentType;
+
+	// Guarded by this
+	private FileConnectionManager.Session session;
+	private FileObject fileObject;
+	private int openStreams;
+	private long lastUsed = System.currentTimeMillis();
+
+	/**
+	 * @param session
+	 *            the session the file was resolved with, which is closed by the data source
+	 * @param fileObject
+	 * @param uri
+	 *            the URI the file was resolved from
+	 * @param contentType
+	 */
+	public FileObjectDataSource(FileConnectionManager.Session session, FileObject fileObject, String uri,
+	                            String contentType) {
+		this.session = session;
+		this.fileObject = fileObject;
+		this.uri = uri;
+		this.name = fileObject.getName().getBaseName();
+		this.contentType = contentType == null || contentType.equals("") ? DEFAULT_CONTENT_TYPE
+		                                                                 : contentType;
+		FileConnectionManager.getInstance().addStreamedFile(this);
+	}
+
+	/**
+	 * Open a new stream on the file content
+	 *
+	 * @return the stream
+	 * @throws IOException
+	 */
+	public InputStream getInputStream() throws IOException {
+		FileObject file;
+		synchronized (this) {
+			if (session == null) {
+				// The session was released after an earlier read
+				FileConnectionManager.Session newSession = FileConnectionManager.getInstance().openSession();
+				try {
+					fileObject = newSession.resolveFile(uri);
+				} catch (FileSystemException e) {
+					newSession.close();
+					throw e;
+				}
+				session = newSession;
+				FileConnectionManager.getInstance().addStreamedFile(this);
+			}
+			openStreams++;
+			lastUsed = System.currentTimeMillis();
+			file = fileObject;
+		}
+		InputStream in;
+		try {
+			in = file.getContent().getInputStream();
+		} catch (FileSystemException e) {
+			streamClosed();
+			throw e;
+		}
+		return new FilterInputStream(in) {
+			private boolean closed;
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					if (!closed) {
+						closed = true;
+						streamClosed();
+					}
+				}
+			}
+		};
+	}
+
+	public OutputStream getOutputStream() throws IOException {
+		throw new IOException("The file data source is read only");
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Release the session if no stream is open and the file has not been used since the given time
+	 *
+	 * @param expiry
+	 * @return true if the session has been released
+	 */
+	synchronized boolean expire(long expiry) {
+		if (session == null) {
+			return true;
+		}
+		if (openStreams > 0 || lastUsed >= expiry) {
+			return false;
+		}
+		release();
+		return true;
+	}
+
+	/**
+	 * Release the session once the last open stream is closed
+	 */
+	private synchronized void streamClosed() {
+		lastUsed = System.currentTimeMillis();
+		if (--openStreams == 0) {
+			release();
+			FileConnectionManager.getInstance().removeStreamedFile(this);
+		}
+	}
+
+	private void release() {
+		try {
+			fileObject.close();
+		} catch (FileSystemException e) {
+			log.warn("Unable to close " + name, e);
+		}
+		session.close();
+		session = null;
+		fileObject = null;
+	}
+}
@@ -1,28 +1,57 @@
 package org.wso2.carbon.connector.util;
 
-import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 public class FilePattenMatcher {
 
+	/**
+	 * Upper bound of the cached matchers, in case the patterns are built from message content
+	 */
+	private static final int MAX_CACHED_PATTERNS = 256;
+
+	private static final ConcurrentMap<String, FilePattenMatcher> CACHE =
+	                                                                     new ConcurrentHashMap<String, FilePattenMatcher>();
+
 	private Pattern pattern;
-	private Matcher matcher;
 
 	public FilePattenMatcher(String patternStr) {
 		pattern = Pattern.compile(patternStr);
 	}
 
+	/**
+	 * Get a matcher of the pattern. The pattern is compiled once and the matcher is shared, as
+	 * validating is thread safe.
+	 *
+	 * @param patternStr
+	 * @return the matcher
+	 */
+	public static FilePattenMatcher getInstance(String patternStr) {
+		FilePattenMatcher matcher = CACHE.get(patternStr);
+		if (matcher == null) {
+			if (CACHE.size() >= MAX_CACHED_PATTERNS) {
+				CACHE.clear();
+			}
+			matcher = new FilePattenMatcher(patternStr);
+			FilePattenMatcher existing = CACHE.putIfAbsent(patternStr, matcher);
+			if (existing != null) {
+				matcher = existing;
+			}
+		}
+		return matcher;
+	}
+
 	/**
 	 * Validate file with regular expression
-	 * 
+	 *
 	 * @param image
 	 *            file for validation
 	 * @return true valid image, false invalid image
 	 */
 	public boolean validate(final String image) {
 
-		matcher = pattern.matcher(image);
-		return matcher.matches();
+		return pattern.matcher(image).matches();
 
 	}
-}
\ No newline at end of file
+}
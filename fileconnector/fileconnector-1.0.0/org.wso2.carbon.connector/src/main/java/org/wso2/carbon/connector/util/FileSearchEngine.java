@@ -0,0 +1,330 @@
+package org.wso2.carbon.connector.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+
+/**
+ * Searches a directory tree for files and folders whose names match the file and directory patterns.
+ * The search only descends into folders matching the directory pattern, up to the maximum depth, and
+ * files can further be filtered by size and modification time. The patterns are compiled once per
+ * search.
+ *
+ * Matches are handed to a {@link ResultSink} as soon as they are found, so that the caller writes them
+ * to the payload while the walk goes on, and the walk stops once the sink is full. A full local search is
+ * walked by a pool of workers, one directory at a time, and reports the matches in no particular order.
+ * Ordered walks list the children of every folder sorted by name and descend depth first on the calling
+ * thread, so the matches come in the same order on every search and a page of them can be taken
+ * without walking the rest of the tree. Remote trees are always walked in order, which also keeps the
+ * search on a single pooled connection.
+ */
+public class FileSearchEngine {
+
+	public static final int UNLIMITED = -1;
+	public static final int DEFAULT_THREADS = 4;
+
+	private static Log log = LogFactory.getLog(FileSearchEngine.class);
+
+	private final FilePattenMatcher fileMatcher;
+	private final FilePattenMatcher dirMatcher;
+	private final int maxDepth;
+	private final long modifiedSince;
+	private final long minSize;
+	private final long maxSize;
+	private final int threads;
+
+	/**
+	 * @param filePattern
+	 *            pattern the lower case name of a file has to match
+	 * @param dirPattern
+	 *            pattern the lower case name of a folder has to match
+	 * @param maxDepth
+	 *            levels below the search root to look at, or UNLIMITED
+	 * @param modifiedSince
+	 *            only files modified at or after this time in milliseconds, or UNLIMITED
+	 * @param minSize
+	 *            minimum file size in bytes, or UNLIMITED
+	 * @param maxSize
+	 *            maximum file size in bytes, or UNLIMITED
+	 * @param threads
+	 *            number of workers walking a local tree
+	 */
+	public FileSearchEngine(String filePattern, String dirPattern, int maxDepth, long modifiedSince,
+	                        long minSize, long maxSize, int threads) {
+		this.fileMatcher = FilePattenMatcher.getInstance(filePattern);
+		this.dirMatcher = FilePattenMatcher.getInstance(dirPattern);
+		this.maxDepth = maxDepth;
+		this.modifiedSince = modifiedSince;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.threads = threads > 0 ? threads : DEFAULT_THREADS;
+	}
+
+	/**
+	 * Search the files of a local directory tree with the pool of workers. The sink is called from the
+	 * workers, one match at a time.
+	 *
+	 * @param directory
+	 * @param sink
+	 *            receives the matching files in no particular order
+	 * @throws IOException
+	 */
+	public void searchLocal(File directory, ResultSink sink) throws IOException {
+		checkDirectory(directory);
+		new LocalWalk(sink).run(directory);
+	}
+
+	/**
+	 * Search the files of a local directory tree in order, on the calling thread
+	 *
+	 * @param directory
+	 * @param sink
+	 *            receives the matching files in walk order
+	 * @throws IOException
+	 */
+	public void searchLocalInOrder(File directory, ResultSink sink) throws IOException {
+		checkDirectory(directory);
+		walkLocal(directory, "", 1, sink);
+	}
+
+	/**
+	 * Search the files and folders of a remote directory tree in order
+	 *
+	 * @param directory
+	 * @param sink
+	 *            receives the matching files and folders in walk order
+	 * @throws FileSystemException
+	 */
+	public void searchRemote(FileObject directory, ResultSink sink) throws FileSystemException {
+		walkRemote(directory, "", 1, sink);
+	}
+
+	private void checkDirectory(File directory) throws IOException {
+		if (!directory.isDirectory()) {
+			throw new IOException(directory + " is not a directory");
+		}
+	}
+
+	/**
+	 * @return false once the sink is full
+	 */
+	private boolean walkRemote(FileObject folder, String path, int depth, ResultSink sink)
+	                                                                                       throws FileSystemException {
+		FileObject[] children = folder.getChildren();
+		Arrays.sort(children, REMOTE_NAME_ORDER);
+		for (FileObject child : children) {
+			String name = child.getName().getBaseName();
+			String childPath = path.length() == 0 ? name : path + "/" + name;
+			FileType type = child.getType();
+			if (type == FileType.FOLDER) {
+				if (dirMatcher.validate(name.toLowerCase())) {
+					if (!sink.add(new SearchResult(name, childPath, true))) {
+						return false;
+					}
+					if (isWithinDepth(depth) && !walkRemote(child, childPath, depth + 1, sink)) {
+						return false;
+					}
+				}
+			} else if (type == FileType.FILE && fileMatcher.validate(name.toLowerCase())) {
+				// Only ask the server for the attributes when they are filtered on
+				if (hasAttributeFilter()) {
+					FileContent content = child.getContent();
+					if (!acceptAttributes(content.getSize(), content.getLastModifiedTime())) {
+						continue;
+					}
+				}
+				if (!sink.add(new SearchResult(name, childPath, false))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return false once the sink is full
+	 */
+	private boolean walkLocal(File directory, String path, int depth, ResultSink sink) {
+		File[] children = directory.listFiles();
+		if (children == null) {
+			log.warn("Unable to list " + directory + ", skipping it");
+			return true;
+		}
+		Arrays.sort(children, LOCAL_NAME_ORDER);
+		for (File child : children) {
+			String name = child.getName();
+			String childPath = path.length() == 0 ? name : path + "/" + name;
+			if (child.isDirectory()) {
+				if (isWithinDepth(depth) && dirMatcher.validate(name.toLowerCase()) &&
+				    !walkLocal(child, childPath, depth + 1, sink)) {
+					return false;
+				}
+			} else if (acceptLocalFile(child, name) &&
+			           !sink.add(new SearchResult(name, childPath, false))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean acceptLocalFile(File file, String name) {
+		return fileMatcher.validate(name.toLowerCase()) &&
+		       (!hasAttributeFilter() || acceptAttributes(file.length(), file.lastModified()));
+	}
+
+	private boolean isWithinDepth(int depth) {
+		return maxDepth < 0 || depth < maxDepth;
+	}
+
+	private boolean hasAttributeFilter() {
+		return modifiedSince >= 0 || minSize >= 0 || maxSize >= 0;
+	}
+
+	private boolean acceptAttributes(long size, long lastModified) {
+		return (modifiedSince < 0 || lastModified >= modifiedSince) && (minSize < 0 || size >= minSize) &&
+		       (maxSize < 0 || size <= maxSize);
+	}
+
+	/**
+	 * Walk of a local tree. Every directory is listed by a separate task, and the walk is complete when
+	 * no task is pending any more.
+	 */
+	private class LocalWalk {
+
+		private final ResultSink sink;
+		private final AtomicInteger pending = new AtomicInteger();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private ExecutorService executor;
+		private volatile boolean full;
+		private volatile RuntimeException failure;
+
+		private LocalWalk(ResultSink sink) {
+			this.sink = sink;
+		}
+
+		private void run(File directory) throws IOException {
+			executor = Executors.newFixedThreadPool(threads);
+			try {
+				submit(directory, "", 1);
+				done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while searching " + directory);
+			} finally {
+				executor.shutdownNow();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+
+		private void submit(final File directory, final String path, final int depth) {
+			pending.incrementAndGet();
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						if (failure == null && !full) {
+							visit(directory, path, depth);
+						}
+					} catch (RuntimeException e) {
+						failure = e;
+					} finally {
+						if (pending.decrementAndGet() == 0) {
+							done.countDown();
+						}
+					}
+				}
+			});
+		}
+
+		private void visit(File directory, String path, int depth) {
+			File[] children = directory.listFiles();
+			if (children == null) {
+				log.warn("Unable to list " + directory + ", skipping it");
+				return;
+			}
+			for (File child : children) {
+				if (full) {
+					return;
+				}
+				String name = child.getName();
+				String childPath = path.length() == 0 ? name : path + "/" + name;
+				if (child.isDirectory()) {
+					if (isWithinDepth(depth) && dirMatcher.validate(name.toLowerCase())) {
+						submit(child, childPath, depth + 1);
+					}
+				} else if (acceptLocalFile(child, name) &&
+				           !sink.add(new SearchResult(name, childPath, false))) {
+					full = true;
+				}
+			}
+		}
+	}
+
+	private static final Comparator<File> LOCAL_NAME_ORDER = new Comparator<File>() {
+		public int compare(File file1, File file2) {
+			return file1.getName().compareTo(file2.getName());
+		}
+	};
+
+	private static final Comparator<FileObject> REMOTE_NAME_ORDER = new Comparator<FileObject>() {
+		public int compare(FileObject file1, FileObject file2) {
+			return file1.getName().getBaseName().compareTo(file2.getName().getBaseName());
+		}
+	};
+
+	/**
+	 * Receives the matches of a search as they are found
+	 */
+	public interface ResultSink {
+
+		/**
+		 * @param result
+		 * @return false if the sink is full and the search should stop
+		 */
+		boolean add(SearchResult result);
+	}
+
+	/**
+	 * A file or folder found by the search
+	 */
+	public static class SearchResult {
+
+		private final String name;
+		private final String path;
+		private final boolean folder;
+
+		private SearchResult(String name, String path, boolean folder) {
+			this.name = name;
+			this.path = path;
+			this.folder = folder;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the path relative to the search root
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		public boolean isFolder() {
+			return folder;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package org.wso2.carbon.connector.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip output stream which compresses blocks of the data on a pool of workers. Every block is written as
+ * a separate gzip member, in order, which is valid gzip that gunzip and GzipCompressorInputStream with
+ * decompressConcatenated read as one stream. The number of blocks being compressed at the same time is
+ * bounded so that memory use does not depend on how fast the target accepts the data.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BLOCK_SIZE = 131072;
+
+	private static final byte[] MEMBER_HEADER = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0,
+	                                                        0, 0, 0, 0, (byte) 0xff };
+
+	private final OutputStream out;
+	private final ExecutorService executor;
+	private final int maxPendingBlocks;
+	private final int level;
+	private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+
+	private byte[] block;
+	private int count;
+	private boolean written;
+	private boolean closed;
+
+	/**
+	 * @param out
+	 *            stream the compressed data is written to
+	 * @param executor
+	 *            workers compressing the blocks, which are not shut down by this stream
+	 * @param threads
+	 *            number of workers of the executor
+	 * @param blockSize
+	 *            size of the uncompressed blocks
+	 * @param level
+	 *            deflate compression level
+	 */
+	public ParallelGzipOutputStream(OutputStream out, ExecutorService executor, int threads,
+	                                int blockSize, int level) {
+		this.out = out;
+		this.executor = executor;
+		this.maxPendingBlocks = Math.max(threads, 1) * 2;
+		this.level = level;
+		this.block = new byte[blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE];
+	}
+
+	public void write(int b) throws IOException {
+		if (count == block.length) {
+			submitBlock();
+		}
+		block[count++] = (byte) b;
+	}
+
+	public void write(byte[] data, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (count == block.length) {
+				submitBlock();
+			}
+			int chunk = Math.min(length, block.length - count);
+			System.arraycopy(data, offset, block, count, chunk);
+			count += chunk;
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	/**
+	 * Finish the gzip stream and close the target stream
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			// An empty input still needs one member to be a valid gzip file
+			if (count > 0 || !written) {
+				submitBlock();
+			}
+			while (!pending.isEmpty()) {
+				writeNextMember();
+			}
+			out.flush();
+		} finally {
+			for (Future<byte[]> future : pending) {
+				future.cancel(true);
+			}
+			out.close();
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		final byte[] data = block;
+		final int length = count;
+		pending.add(executor.submit(new Callable<byte[]>() {
+			public byte[] call() {
+				return compress(data, length);
+			}
+		}));
+		written = true;
+		block = new byte[block.length];
+		count = 0;
+		while (pending.size() >= maxPendingBlocks) {
+			writeNextMember();
+		}
+	}
+
+	private void writeNextMember() throws IOException {
+		try {
+			out.write(pending.removeFirst().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing");
+		} catch (ExecutionException e) {
+			throw new IOException("Error while compressing : " + e.getCause().getMessage());
+		}
+	}
+
+	private byte[] compress(byte[] data, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+		member.write(MEMBER_HEADER, 0, MEMBER_HEADER.length);
+		Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			byte[] buffer = new byte[Math.max(length / 2, 1024)];
+			while (!deflater.finished()) {
+				int deflated = deflater.deflate(buffer);
+				member.write(buffer, 0, deflated);
+			}
+		} finally {
+			deflater.end();
+		}
+		writeInt(member, (int) crc.getValue());
+		writeInt(member, length);
+		return member.toByteArray();
+	}
+
+	private static void writeInt(ByteArrayOutputStream out, int value) {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+		out.write((value >> 16) & 0xff);
+		out.write((value >> 24) & 0xff);
+	}
+}
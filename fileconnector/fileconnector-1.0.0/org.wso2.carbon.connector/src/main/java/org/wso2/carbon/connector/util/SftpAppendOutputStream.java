@@ -0,0 +1,106 @@
+package org.wso2.carbon.connector.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.provider.GenericFileName;
+import org.apache.commons.vfs2.provider.UriParser;
+import org.apache.commons.vfs2.provider.sftp.SftpClientFactory;
+import org.apache.commons.vfs2.provider.sftp.SftpFileSystemConfigBuilder;
+import org.apache.commons.vfs2.util.UserAuthenticatorUtils;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpProgressMonitor;
+
+/**
+ * Appends to the end of an SFTP file. The commons-vfs SFTP provider only truncates the files it writes, so
+ * the stream opens an SFTP channel of its own, with the host, credentials and options of the file, and
+ * writes in the append mode of the channel. The channel and its session are closed with the stream.
+ */
+public class SftpAppendOutputStream extends FilterOutputStream {
+
+	public static final String SFTP_SCHEME = "sftp";
+
+	private static final String SFTP_CHANNEL = "sftp";
+
+	private final Session session;
+	private final ChannelSftp channel;
+
+	private SftpAppendOutputStream(OutputStream out, Session session, ChannelSftp channel) {
+		super(out);
+		this.session = session;
+		this.channel = channel;
+	}
+
+	/**
+	 * Open a stream appending to an SFTP file
+	 *
+	 * @param file
+	 * @return the stream
+	 * @throws IOException
+	 */
+	public static OutputStream open(FileObject file) throws IOException {
+		GenericFileName name = (GenericFileName) file.getName();
+		FileSystemOptions options = file.getFileSystem().getFileSystemOptions();
+		Session session =
+		                  SftpClientFactory.createConnection(name.getHostName(), name.getPort(),
+		                                                     UserAuthenticatorUtils.toChar(name.getUserName()),
+		                                                     UserAuthenticatorUtils.toChar(name.getPassword()),
+		                                                     options);
+		ChannelSftp channel = null;
+		try {
+			channel = (ChannelSftp) session.openChannel(SFTP_CHANNEL);
+			channel.connect();
+			// The append mode writes after the current size of the file
+			OutputStream out = channel.put(getPath(file, options), (SftpProgressMonitor) null,
+			                               ChannelSftp.APPEND);
+			return new SftpAppendOutputStream(out, session, channel);
+		} catch (JSchException e) {
+			disconnect(session, channel);
+			throw new FileSystemException("Unable to open an SFTP channel to " +
+			                              name.getFriendlyURI(), e);
+		} catch (SftpException e) {
+			disconnect(session, channel);
+			throw new FileSystemException("Unable to append to " + name.getFriendlyURI(), e);
+		}
+	}
+
+	/**
+	 * The path of the file on the server, relative to the home folder when the file system is configured
+	 * with the user folder as its root
+	 */
+	private static String getPath(FileObject file, FileSystemOptions options) throws FileSystemException {
+		if (Boolean.TRUE.equals(SftpFileSystemConfigBuilder.getInstance().getUserDirIsRoot(options))) {
+			return UriParser.decode(file.getFileSystem().getRootName().getRelativeName(file.getName()));
+		}
+		return file.getName().getPathDecoded();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			disconnect(session, channel);
+		}
+	}
+
+	private static void disconnect(Session session, ChannelSftp channel) {
+		if (channel != null) {
+			channel.disconnect();
+		}
+		session.disconnect();
+	}
+}
@@ -0,0 +1,92 @@
+package org.wso2.carbon.connector.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Holds the entries deflated by one zip worker until they are written to the archive. The entries
+ * are kept in memory up to a threshold, and spilled to a temporary file in java.io.tmpdir beyond it,
+ * so small archives are built without touching the local disk and large ones do not exhaust the heap.
+ */
+public class SpillingScatterGatherBackingStore implements ScatterGatherBackingStore {
+
+	private static final String TEMP_FILE_PREFIX = "fileconnector-scatter";
+
+	private final int threshold;
+	private MemoryBuffer memory = new MemoryBuffer();
+	private File file;
+	private OutputStream fileOut;
+
+	public SpillingScatterGatherBackingStore(int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @param threshold
+	 *            the number of bytes each worker keeps in memory
+	 * @return a supplier of backing stores with the given threshold
+	 */
+	public static ScatterGatherBackingStoreSupplier supplier(final int threshold) {
+		return new ScatterGatherBackingStoreSupplier() {
+			public ScatterGatherBackingStore get() throws IOException {
+				return new SpillingScatterGatherBackingStore(threshold);
+			}
+		};
+	}
+
+	public void writeOut(byte[] data, int offset, int length) throws IOException {
+		if (file == null && memory.size() + length > threshold) {
+			file = File.createTempFile(TEMP_FILE_PREFIX, null);
+			fileOut = new BufferedOutputStream(new FileOutputStream(file));
+			memory.writeTo(fileOut);
+			memory = null;
+		}
+		if (file != null) {
+			fileOut.write(data, offset, length);
+		} else {
+			memory.write(data, offset, length);
+		}
+	}
+
+	public void closeForWriting() throws IOException {
+		if (fileOut != null) {
+			fileOut.close();
+		}
+	}
+
+	public InputStream getInputStream() throws IOException {
+		if (file != null) {
+			return new FileInputStream(file);
+		}
+		return memory.getInputStream();
+	}
+
+	public void close() throws IOException {
+		IOUtils.closeQuietly(fileOut);
+		memory = null;
+		if (file != null && !file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Reads back the written bytes without copying them
+	 */
+	private static class MemoryBuffer extends ByteArrayOutputStream {
+
+		InputStream getInputStream() {
+			return new ByteArrayInputStream(buf, 0, count);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.gmail;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.google.code.com.sun.mail.imap.IMAPStore;
+import com.google.code.javax.mail.BodyPart;
+import com.google.code.javax.mail.MessagingException;
+
+/**
+ * Keeps a pooled {@link IMAPStore} borrowed while the attachments streamed
+ * from it are still to be read. The store is returned to the pool once the
+ * stream of every attachment has been closed, or by the pool evictor if the
+ * attachments are not read within the idle timeout of the pool.
+ */
+public class GmailAttachmentLease {
+
+	/**
+	 * The borrowed store the attachments are fetched from.
+	 */
+	private final IMAPStore store;
+
+	/**
+	 * Number of attachments which have not been read yet.
+	 */
+	private int unreadAttachments;
+
+	private int openStreams;
+
+	private boolean released;
+
+	/**
+	 * Time a stream was last opened or closed.
+	 */
+	private long lastUsed = System.currentTimeMillis();
+
+	/**
+	 * Creates a lease of a borrowed store.
+	 *
+	 * @param store
+	 *            the borrowed store
+	 */
+	public GmailAttachmentLease(IMAPStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Returns the borrowed store.
+	 *
+	 * @return the store
+	 */
+	public IMAPStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Counts an attachment streamed from the store.
+	 */
+	public synchronized void addAttachment() {
+		unreadAttachments++;
+	}
+
+	/**
+	 * Returns whether any attachment is streamed from the store.
+	 *
+	 * @return true if the store has to stay borrowed
+	 */
+	public synchronized boolean hasAttachments() {
+		return unreadAttachments > 0;
+	}
+
+	/**
+	 * Opens a stream of an attachment. The first close of a stream of an
+	 * attachment counts the attachment as read.
+	 *
+	 * @param bodyPart
+	 *            the attachment body part
+	 * @param name
+	 *            file name of the attachment
+	 * @param source
+	 *            the data source of the attachment
+	 * @return the stream
+	 * @throws IOException
+	 *             if the store has been returned to the pool or the stream
+	 *             cannot be opened
+	 */
+	public InputStream openStream(BodyPart bodyPart, String name,
+	                              final GmailBodyPartDataSource source) throws IOException {
+		synchronized (this) {
+			if (released) {
+				throw new IOException("The attachment " + name +
+				                      " is no longer available, the IMAP store has been released");
+			}
+			openStreams++;
+			lastUsed = System.currentTimeMillis();
+		}
+		InputStream stream;
+		try {
+			stream = bodyPart.getInputStream();
+		} catch (MessagingException e) {
+			streamClosed(null);
+			IOException ioException = new IOException("Unable to fetch the attachment " + name);
+			ioException.initCause(e);
+			throw (ioException);
+		}
+		return new FilterInputStream(stream) {
+			private boolean closed;
+
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					if (!closed) {
+						closed = true;
+						streamClosed(source);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the store to the pool if the lease has not been used for the
+	 * given time and no stream is open.
+	 *
+	 * @param expiry
+	 *            time before which the lease is expired
+	 * @return true if the lease has expired
+	 */
+	boolean expire(long expiry) {
+		synchronized (this) {
+			if (released || openStreams > 0 || lastUsed >= expiry) {
+				return false;
+			}
+			released = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Counts a closed stream, and returns the store to the pool after the last
+	 * attachment has been read.
+	 */
+	private void streamClosed(GmailBodyPartDataSource source) {
+		synchronized (this) {
+			openStreams--;
+			lastUsed = System.currentTimeMillis();
+			if (source != null && source.markRead()) {
+				unreadAttachments--;
+			}
+			if (released || unreadAttachments > 0 || openStreams > 0) {
+				return;
+			}
+			released = true;
+		}
+		GmailIMAPStorePool.getInstance().endLease(this);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.gmail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.activation.DataSource;
+
+import com.google.code.javax.mail.BodyPart;
+import com.google.code.javax.mail.MessagingException;
+
+/**
+ * {@link DataSource} of an attachment which is fetched from the IMAP server
+ * only when it is read. The content of an IMAP body part is fetched in chunks
+ * with partial "BODY.PEEK[section]" fetches, so the attachment streams to the
+ * outbound transport without being held in memory. The store of the message
+ * stays borrowed through a {@link GmailAttachmentLease} until the streams of
+ * all the attachments of the operation have been closed, so that its folder is
+ * still open when the attachment is read.
+ */
+public class GmailBodyPartDataSource implements DataSource {
+
+	/**
+	 * The attachment body part.
+	 */
+	private final BodyPart bodyPart;
+
+	/**
+	 * Content type of the attachment.
+	 */
+	private final String contentType;
+
+	/**
+	 * File name of the attachment.
+	 */
+	private final String name;
+
+	/**
+	 * Lease keeping the store of the attachment borrowed.
+	 */
+	private final GmailAttachmentLease lease;
+
+	/**
+	 * Whether a stream of the attachment has been closed, guarded by the lease.
+	 */
+	private boolean read;
+
+	/**
+	 * Creates a data source reading the given body part.
+	 *
+	 * @param bodyPart
+	 *            the attachment body part
+	 * @param name
+	 *            file name of the attachment
+	 * @param lease
+	 *            lease of the store the body part is fetched from
+	 * @throws MessagingException
+	 *             if the content type of the body part cannot be read
+	 */
+	public GmailBodyPartDataSource(BodyPart bodyPart, String name, GmailAttachmentLease lease)
+	                                                                                         throws MessagingException {
+		this.bodyPart = bodyPart;
+		this.contentType = bodyPart.getContentType();
+		this.name = name;
+		this.lease = lease;
+		lease.addAttachment();
+	}
+
+	/*
+	 * Opens a new stream fetching the decoded content of the body part.
+	 */
+	public InputStream getInputStream() throws IOException {
+		return lease.openStream(bodyPart, name, this);
+	}
+
+	public OutputStream getOutputStream() throws IOException {
+		throw new IOException("The attachment " + name + " is read only");
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Marks the attachment as read.
+	 *
+	 * @return true if the attachment had not been read before
+	 */
+	boolean markRead() {
+		if (read) {
+			return false;
+		}
+		read = true;
+		return true;
+	}
+}
@@ -155,11 +155,81 @@ public final class GmailConstants {
 	 */
 	public static final String GMAIL_PARAM_BATCH_NUMBER = "batchNumber";
 
+	/**
+	 * Name of the "pageToken" parameter in synapse configuration.
+	 */
+	public static final String GMAIL_PARAM_PAGE_TOKEN = "pageToken";
+
+	/**
+	 * Name of the "fetchParts" parameter in synapse configuration.
+	 */
+	public static final String GMAIL_PARAM_FETCH_PARTS = "fetchParts";
+
+	/**
+	 * Name of the "folder" parameter in synapse configuration.
+	 */
+	public static final String GMAIL_PARAM_FOLDER = "folder";
+
+	/**
+	 * Name of the "sequence" parameter in synapse configuration.
+	 */
+	public static final String GMAIL_PARAM_SEQUENCE = "sequence";
+
+	/**
+	 * Folder watched by the "start mailbox watch" operation by default.
+	 */
+	public static final String GMAIL_DEFAULT_WATCH_FOLDER = "INBOX";
+
+	/**
+	 * Name of the "recipients" parameter in synapse configuration.
+	 */
+	public static final String GMAIL_PARAM_RECIPIENTS = "recipients";
+
+	/**
+	 * Name of the "connections" parameter in synapse configuration.
+	 */
+	public static final String GMAIL_PARAM_CONNECTIONS = "connections";
+
+	/**
+	 * "fetchParts" value to read only the headers of the messages.
+	 */
+	public static final String GMAIL_FETCH_PARTS_HEADERS = "headers";
+
+	/**
+	 * "fetchParts" value to read the headers and the text content of the
+	 * messages.
+	 */
+	public static final String GMAIL_FETCH_PARTS_TEXT = "text";
+
+	/**
+	 * "fetchParts" value to read the headers, the text content and the
+	 * attachments of the messages.
+	 */
+	public static final String GMAIL_FETCH_PARTS_FULL = "full";
+
+	/**
+	 * "fetchParts" value to read the headers and the text content of the
+	 * messages, and to stream their attachments from the IMAP server when they
+	 * are read.
+	 */
+	public static final String GMAIL_FETCH_PARTS_STREAM = "stream";
+
 	/**
 	 * Default batch size.
 	 */
 	public static final int GMAIL_BATCH_SIZE = 50;
 
+	/**
+	 * Number of messages searched by the first search of a page. Every
+	 * following search of the page covers twice as many messages.
+	 */
+	public static final int GMAIL_SEARCH_WINDOW = 2000;
+
+	/**
+	 * Maximum number of messages covered by a single search of a page.
+	 */
+	public static final int GMAIL_MAX_SEARCH_WINDOW = 64000;
+
 	/**
 	 * Gmail folder name for all mails.
 	 */
@@ -213,11 +283,33 @@ public final class GmailConstants {
 	 */
 	public static final String GMAIL_SEND_MAIL_RESPONSE = "sendMailResponse";
 
+	/**
+	 * Response node name of the "send bulk mail" operation.
+	 */
+	public static final String GMAIL_SEND_BULK_MAIL_RESPONSE = "sendBulkMailResponse";
+
 	/**
 	 * Response node name of the "set labels" operation.
 	 */
 	public static final String GMAIL_SET_LABELS_RESPONSE = "gmailSetLabelsResponse";
 
+	/**
+	 * Response node name of the "start mailbox watch" operation.
+	 */
+	public static final String GMAIL_START_MAILBOX_WATCH_RESPONSE =
+	                                                                "gmailStartMailboxWatchResponse";
+
+	/**
+	 * Response node name of the "stop mailbox watch" operation.
+	 */
+	public static final String GMAIL_STOP_MAILBOX_WATCH_RESPONSE = "gmailStopMailboxWatchResponse";
+
+	/**
+	 * Payload node name of the messages mediated for new mails in a watched
+	 * folder.
+	 */
+	public static final String GMAIL_NEW_MAILS_RESPONSE = "gmailNewMailsResponse";
+
 	/**
 	 * Stores the value, "true".
 	 */
@@ -247,4 +339,96 @@ public final class GmailConstants {
 	 * SMTP port
 	 */
 	public static final int GMAIL_SMTP_PORT = 587;
+
+	/**
+	 * Maximum number of idle IMAP stores pooled for a login. Gmail allows 15
+	 * simultaneous IMAP connections per account.
+	 */
+	public static final int GMAIL_IMAP_POOL_MAX_IDLE_PER_KEY = 4;
+
+	/**
+	 * Time in milliseconds after which an idle pooled IMAP store is closed
+	 */
+	public static final long GMAIL_IMAP_POOL_IDLE_TIMEOUT = 300000;
+
+	/**
+	 * Time in milliseconds a pooled IMAP store may be idle before it is
+	 * checked with a NOOP command when it is borrowed
+	 */
+	public static final long GMAIL_IMAP_POOL_VALIDATION_INTERVAL = 30000;
+
+	/**
+	 * Object name of the IMAP store pool metrics MBean
+	 */
+	public static final String GMAIL_IMAP_POOL_MBEAN_NAME =
+	                                                        "org.wso2.carbon.connector.gmail:type=IMAPStorePool";
+
+	/**
+	 * Time in milliseconds a mailbox watcher waits before reconnecting after
+	 * the first failure. The wait doubles with each consecutive failure.
+	 */
+	public static final long GMAIL_IDLE_MIN_BACKOFF = 1000;
+
+	/**
+	 * Maximum time in milliseconds a mailbox watcher waits before reconnecting
+	 */
+	public static final long GMAIL_IDLE_MAX_BACKOFF = 300000;
+
+	/**
+	 * Time in milliseconds after which a mailbox watcher ends its IDLE command
+	 * and issues a new one, within the 10 minutes Gmail keeps an IDLE command
+	 */
+	public static final long GMAIL_IDLE_REFRESH_INTERVAL = 540000;
+
+	/**
+	 * Socket read timeout in milliseconds of the IMAP connection of a mailbox
+	 * watcher. It is longer than the refresh interval, so an IDLE
+	 * command only times out when the server does not answer its refresh.
+	 */
+	public static final long GMAIL_IDLE_TIMEOUT = 600000;
+
+	/**
+	 * Time in milliseconds a mailbox watcher waits for its IMAP connection to
+	 * be established
+	 */
+	public static final long GMAIL_IMAP_CONNECTION_TIMEOUT = 30000;
+
+	/**
+	 * Maximum number of idle SMTP transports pooled for a login. This is also
+	 * the maximum number of transports a bulk send uses.
+	 */
+	public static final int GMAIL_SMTP_POOL_MAX_IDLE_PER_KEY = 5;
+
+	/**
+	 * Time in milliseconds after which an idle pooled SMTP transport is closed
+	 */
+	public static final long GMAIL_SMTP_POOL_IDLE_TIMEOUT = 120000;
+
+	/**
+	 * Time in milliseconds a pooled SMTP transport may be idle before it is
+	 * checked with a NOOP command when it is borrowed
+	 */
+	public static final long GMAIL_SMTP_POOL_VALIDATION_INTERVAL = 15000;
+
+	/**
+	 * Object name of the SMTP transport pool metrics MBean
+	 */
+	public static final String GMAIL_SMTP_POOL_MBEAN_NAME =
+	                                                        "org.wso2.carbon.connector.gmail:type=SMTPTransportPool";
+
+	/**
+	 * Number of SMTP transports a bulk send uses by default
+	 */
+	public static final int GMAIL_BULK_DEFAULT_CONNECTIONS = 3;
+
+	/**
+	 * Maximum number of threads sending the mails of all the concurrent bulk
+	 * sends
+	 */
+	public static final int GMAIL_BULK_SENDER_THREADS = 20;
+
+	/**
+	 * Time in milliseconds after which an idle bulk sender thread ends
+	 */
+	public static final long GMAIL_BULK_SENDER_KEEP_ALIVE = 60000;
 }
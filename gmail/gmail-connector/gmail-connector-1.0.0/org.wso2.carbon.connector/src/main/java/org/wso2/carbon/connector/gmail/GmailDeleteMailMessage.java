@@ -39,6 +39,7 @@ public class GmailDeleteMailMessage extends AbstractConnector {
 	 */
 	@Override
 	public void connect(MessageContext messageContext) {
+		GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 		try {
 			// Reading message ID from the message context
 			String messageID =
@@ -57,7 +58,6 @@ public class GmailDeleteMailMessage extends AbstractConnector {
 				handleException(connectException.getMessage(), connectException, messageContext);
 			}
 
-			GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 			log.info("Loading the IMAPStore");
 			IMAPStore store = imapClientLoader.loadIMAPStore(messageContext);
 			SearchTerm term = new GmailMessageIDTerm(messageID);
@@ -77,6 +77,8 @@ public class GmailDeleteMailMessage extends AbstractConnector {
 			GmailUtils.storeErrorResponseStatus(messageContext, e,
 			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
 			handleException(e.getMessage(), e, messageContext);
+		} finally {
+			imapClientLoader.releaseIMAPStore(messageContext);
 		}
 	}
 }
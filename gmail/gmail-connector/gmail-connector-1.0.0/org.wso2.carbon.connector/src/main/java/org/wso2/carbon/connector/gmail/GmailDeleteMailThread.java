@@ -39,6 +39,7 @@ public class GmailDeleteMailThread extends AbstractConnector {
 	 */
 	@Override
 	public void connect(MessageContext messageContext) {
+		GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 		try {
 			// Reading thread ID from the message context
 			String threadID =
@@ -57,7 +58,6 @@ public class GmailDeleteMailThread extends AbstractConnector {
 				handleException(connectException.getMessage(), connectException, messageContext);
 			}
 
-			GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 			log.info("Loading the IMAPStore");
 			IMAPStore store = imapClientLoader.loadIMAPStore(messageContext);
 			SearchTerm term = new GmailThreadIDTerm(threadID);
@@ -77,6 +77,8 @@ public class GmailDeleteMailThread extends AbstractConnector {
 			GmailUtils.storeErrorResponseStatus(messageContext, e,
 			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
 			handleException(e.getMessage(), e, messageContext);
+		} finally {
+			imapClientLoader.releaseIMAPStore(messageContext);
 		}
 	}
 }
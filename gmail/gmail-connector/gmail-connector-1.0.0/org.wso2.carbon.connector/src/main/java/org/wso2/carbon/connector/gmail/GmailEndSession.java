@@ -38,6 +38,8 @@ public class GmailEndSession extends AbstractConnector {
 		try {
 			org.apache.axis2.context.MessageContext axis2MessageContext =
 			                                                              ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+			new GmailIMAPClientLoader().closePooledIMAPStores(messageContext);
+			new GmailSMTPClientLoader().closePooledSMTPSessions(messageContext);
 			GmailUtils.closeConnection(axis2MessageContext);
 			log.info("Successfully terminated the session");
 
@@ -27,7 +27,9 @@ import com.google.code.com.sun.mail.imap.IMAPStore;
 import com.google.code.javax.mail.MessagingException;
 
 /**
- * Class which loads the IMAP store according to the authentication mode.
+ * Class which loads the IMAP store according to the authentication mode. The
+ * stores are borrowed from the {@link GmailIMAPStorePool}, so the messages
+ * mediated with the same login share the authenticated IMAP connections.
  */
 public class GmailIMAPClientLoader {
 
@@ -38,7 +40,8 @@ public class GmailIMAPClientLoader {
 
 	/**
 	 * Method which loads the IMAPStore instance according to the authentication
-	 * mode.
+	 * mode. An idle pooled store of the same login is used if there is one,
+	 * otherwise a new store is logged in and added to the pool.
 	 * 
 	 * @param messageContext
 	 *            Message context where the instantiated IMAPStore instance is
@@ -65,16 +68,76 @@ public class GmailIMAPClientLoader {
 			return (IMAPStore) prestoredInstance;
 		}
 
-		// Login mode should have been defined during either "init" or
-		// "passwordLogin" operations.
-		Object loginMode = axis2MsgCtx.getProperty(GmailConstants.GMAIL_LOGIN_MODE);
-		if (loginMode == null) {
-			String errorLog = "Gmail configuration details were not initialized";
-			log.error(errorLog);
-			ConnectException connectException = new ConnectException(errorLog);
-			throw (connectException);
+		String poolKey = GmailUtils.getPoolKey(GmailUtils.getLoginDetails(messageContext));
+		GmailIMAPStorePool pool = GmailIMAPStorePool.getInstance();
+		IMAPStore store = pool.borrow(poolKey);
+		if (store != null) {
+			log.info("Reusing a pooled IMAPStore instance");
+		} else {
+			long loginStart = System.currentTimeMillis();
+			store = this.login(messageContext);
+			long loginTime = System.currentTimeMillis() - loginStart;
+			pool.add(poolKey, store, loginTime);
+			log.info("IMAP login completed in " + loginTime + " ms (pool hits: " + pool.getHitCount() +
+			         ", misses: " + pool.getMissCount() + ")");
+		}
+
+		// Stores the IMAPStore in the operation context until it is released.
+		axis2MsgCtx.getOperationContext().setProperty(GmailConstants.GMAIL_IMAP_STORE_INSTANCE,
+		                                              store);
+		return store;
+	}
+
+	/**
+	 * Returns the IMAPStore instance loaded for the operation to the pool.
+	 * 
+	 * @param messageContext
+	 *            Message context where the loaded IMAPStore instance is stored.
+	 */
+	public void releaseIMAPStore(MessageContext messageContext) {
+		org.apache.axis2.context.MessageContext axis2MsgCtx =
+		                                                      ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+		Object store =
+		               axis2MsgCtx.getOperationContext()
+		                          .getProperty(GmailConstants.GMAIL_IMAP_STORE_INSTANCE);
+		if (store != null) {
+			axis2MsgCtx.getOperationContext()
+			           .removeProperty(GmailConstants.GMAIL_IMAP_STORE_INSTANCE);
+			GmailIMAPStorePool.getInstance().release((IMAPStore) store);
 		}
+	}
 
+	/**
+	 * Closes the idle pooled IMAPStore instances of the configured login.
+	 * 
+	 * @param messageContext
+	 *            Message context where the login details are stored.
+	 */
+	public void closePooledIMAPStores(MessageContext messageContext) {
+		try {
+			String poolKey = GmailUtils.getPoolKey(GmailUtils.getLoginDetails(messageContext));
+			GmailIMAPStorePool.getInstance().invalidate(poolKey);
+		} catch (ConnectException e) {
+			// No login is configured, hence no stores are pooled for it.
+		}
+	}
+
+	/**
+	 * Logs in to IMAP according to the authentication mode.
+	 * 
+	 * @param messageContext
+	 *            Message context where the login details are stored.
+	 * @return the authenticated IMAPStore instance
+	 * @throws MessagingException
+	 *             as a result of authentication failures
+	 * @throws ConnectException
+	 *             as a result of invalid configuration
+	 */
+	private IMAPStore login(MessageContext messageContext) throws MessagingException,
+	                                                      ConnectException {
+		org.apache.axis2.context.MessageContext axis2MsgCtx =
+		                                                      ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+		Object loginMode = axis2MsgCtx.getProperty(GmailConstants.GMAIL_LOGIN_MODE);
 		IMAPStore store = null;
 
 		// Perform SASL authentication if configured using the "Password Login"
@@ -122,9 +185,27 @@ public class GmailIMAPClientLoader {
 			throw (connectException);
 		}
 
-		// Stores the newly instantiated IMAPStore in the operation context.
-		axis2MsgCtx.getOperationContext().setProperty(GmailConstants.GMAIL_IMAP_STORE_INSTANCE,
-		                                              store);
 		return store;
 	}
+
+	/**
+	 * Creates a watcher of a mailbox folder which logs in with the configured
+	 * login. The watcher keeps its own IMAP connection, which is not pooled.
+	 * 
+	 * @param messageContext
+	 *            Message context where the login details are stored.
+	 * @param folder
+	 *            name of the folder to watch
+	 * @param sequence
+	 *            name of the sequence the new messages are mediated through
+	 * @return the watcher, not yet started
+	 * @throws ConnectException
+	 *             if the login details were not initialized
+	 */
+	public GmailMailboxWatcher createMailboxWatcher(MessageContext messageContext, String folder,
+	                                                String sequence) throws ConnectException {
+		String[] login = GmailUtils.getLoginDetails(messageContext);
+		return new GmailMailboxWatcher(login[0], login[1], login[2], folder, sequence,
+		                               messageContext.getEnvironment());
+	}
 }
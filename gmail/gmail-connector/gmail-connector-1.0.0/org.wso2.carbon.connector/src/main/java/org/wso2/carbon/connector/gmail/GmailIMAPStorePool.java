@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.gmail;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.code.com.sun.mail.imap.IMAPFolder;
+import com.google.code.com.sun.mail.imap.IMAPStore;
+import com.google.code.javax.mail.Folder;
+import com.google.code.javax.mail.MessagingException;
+
+/**
+ * Pool of authenticated {@link IMAPStore} instances shared by the IMAP
+ * operations of all the messages mediated with the same login. A store is
+ * borrowed by one operation at a time, and the folders it has opened are kept
+ * open while it is in the pool, so that consecutive operations on the same
+ * mailbox neither log in nor reopen "[Gmail]/All Mail" again.
+ */
+public final class GmailIMAPStorePool implements GmailIMAPStorePoolMBean {
+
+	/**
+	 * Log instance.
+	 */
+	private static Log log = LogFactory.getLog(GmailIMAPStorePool.class);
+
+	/**
+	 * The pool instance.
+	 */
+	private static final GmailIMAPStorePool INSTANCE = new GmailIMAPStorePool();
+
+	/**
+	 * Idle stores by their pool keys, the most recently used store first.
+	 */
+	private final Map<String, LinkedList<PooledStore>> idleStores =
+	                                                               new HashMap<String, LinkedList<PooledStore>>();
+
+	/**
+	 * All the pooled stores, both idle and borrowed.
+	 */
+	private final Map<IMAPStore, PooledStore> pooledStores =
+	                                                        new IdentityHashMap<IMAPStore, PooledStore>();
+
+	/**
+	 * Leases of the borrowed stores whose attachments are still to be read.
+	 */
+	private final Set<GmailAttachmentLease> leases = new HashSet<GmailAttachmentLease>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong logins = new AtomicLong();
+
+	private final AtomicLong loginTime = new AtomicLong();
+
+	/**
+	 * Making the default constructor private since the pool is shared.
+	 */
+	private GmailIMAPStorePool() {
+		ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "gmail-imap-pool-evictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		evictor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				evictIdleStores();
+			}
+		}, GmailConstants.GMAIL_IMAP_POOL_IDLE_TIMEOUT, GmailConstants.GMAIL_IMAP_POOL_IDLE_TIMEOUT,
+		                               TimeUnit.MILLISECONDS);
+		try {
+			ManagementFactory.getPlatformMBeanServer()
+			                 .registerMBean(this, new ObjectName(GmailConstants.GMAIL_IMAP_POOL_MBEAN_NAME));
+		} catch (Exception e) {
+			log.warn("Unable to register the IMAP store pool metrics", e);
+		}
+	}
+
+	/**
+	 * Returns the pool instance.
+	 *
+	 * @return the pool
+	 */
+	public static GmailIMAPStorePool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Borrows an idle store of the given key. A store which has been idle
+	 * longer than the validation interval is checked with a NOOP command before
+	 * it is returned, and closed if the check fails.
+	 *
+	 * @param key
+	 *            pool key of the login
+	 * @return a connected store, or null if the pool has no idle store for the
+	 *         key
+	 */
+	public IMAPStore borrow(String key) {
+		while (true) {
+			PooledStore pooledStore;
+			synchronized (this) {
+				LinkedList<PooledStore> stores = idleStores.get(key);
+				if (stores == null || stores.isEmpty()) {
+					misses.incrementAndGet();
+					return null;
+				}
+				pooledStore = stores.removeFirst();
+			}
+
+			// IMAPStore#isConnected() sends a NOOP to the server.
+			long idleTime = System.currentTimeMillis() - pooledStore.lastUsed;
+			if (idleTime < GmailConstants.GMAIL_IMAP_POOL_VALIDATION_INTERVAL ||
+			    pooledStore.store.isConnected()) {
+				hits.incrementAndGet();
+				return pooledStore.store;
+			}
+			log.info("Discarding a disconnected IMAP store");
+			discard(pooledStore);
+		}
+	}
+
+	/**
+	 * Adds a newly logged in store to the pool as a borrowed store.
+	 *
+	 * @param key
+	 *            pool key of the login
+	 * @param store
+	 *            the logged in store
+	 * @param loginMillis
+	 *            time taken to log in, in milliseconds
+	 */
+	public synchronized void add(String key, IMAPStore store, long loginMillis) {
+		pooledStores.put(store, new PooledStore(key, store));
+		logins.incrementAndGet();
+		loginTime.addAndGet(loginMillis);
+	}
+
+	/**
+	 * Returns a borrowed store to the pool. The store is closed if it is
+	 * disconnected or the key already has the maximum number of idle stores.
+	 *
+	 * @param store
+	 *            the borrowed store
+	 */
+	public void release(IMAPStore store) {
+		PooledStore pooledStore;
+		synchronized (this) {
+			pooledStore = pooledStores.get(store);
+		}
+		if (pooledStore == null) {
+			return;
+		}
+		boolean connected = store.isConnected();
+		synchronized (this) {
+			LinkedList<PooledStore> stores = idleStores.get(pooledStore.key);
+			if (stores == null) {
+				stores = new LinkedList<PooledStore>();
+				idleStores.put(pooledStore.key, stores);
+			}
+			if (connected && stores.size() < GmailConstants.GMAIL_IMAP_POOL_MAX_IDLE_PER_KEY) {
+				pooledStore.lastUsed = System.currentTimeMillis();
+				stores.addFirst(pooledStore);
+				return;
+			}
+		}
+		discard(pooledStore);
+	}
+
+	/**
+	 * Keeps a borrowed store borrowed after its operation has completed, until
+	 * the lease ends. The store is returned to the pool when the lease ends.
+	 *
+	 * @param lease
+	 *            lease of the borrowed store
+	 */
+	public synchronized void startLease(GmailAttachmentLease lease) {
+		leases.add(lease);
+	}
+
+	/**
+	 * Ends a lease and returns its store to the pool.
+	 *
+	 * @param lease
+	 *            lease of the borrowed store
+	 */
+	public void endLease(GmailAttachmentLease lease) {
+		synchronized (this) {
+			if (!leases.remove(lease)) {
+				return;
+			}
+		}
+		release(lease.getStore());
+	}
+
+	/**
+	 * Closes a borrowed store and removes it from the pool.
+	 *
+	 * @param store
+	 *            the borrowed store
+	 */
+	public void invalidate(IMAPStore store) {
+		PooledStore pooledStore;
+		synchronized (this) {
+			pooledStore = pooledStores.get(store);
+		}
+		if (pooledStore != null) {
+			discard(pooledStore);
+		} else {
+			close(store);
+		}
+	}
+
+	/**
+	 * Closes the idle stores of the given key, so that the next operation
+	 * logs in again.
+	 *
+	 * @param key
+	 *            pool key of the login
+	 */
+	public void invalidate(String key) {
+		List<PooledStore> stores;
+		synchronized (this) {
+			stores = idleStores.remove(key);
+		}
+		if (stores != null) {
+			for (PooledStore pooledStore : stores) {
+				discard(pooledStore);
+			}
+		}
+	}
+
+	/**
+	 * Opens a folder of a store in the given mode. A folder of a pooled store
+	 * which is already open in a compatible mode is returned as it is.
+	 *
+	 * @param store
+	 *            the store
+	 * @param folder
+	 *            the folder, not yet opened, returned if it is not open already
+	 * @param mode
+	 *            {@link Folder#READ_ONLY} or {@link Folder#READ_WRITE}
+	 * @return the open folder
+	 * @throws MessagingException
+	 *             if the folder cannot be opened
+	 */
+	public IMAPFolder openFolder(IMAPStore store, IMAPFolder folder, int mode)
+	                                                                          throws MessagingException {
+		PooledStore pooledStore;
+		synchronized (this) {
+			pooledStore = pooledStores.get(store);
+		}
+		if (pooledStore == null) {
+			folder.open(mode);
+			return folder;
+		}
+
+		String name = folder.getFullName();
+		IMAPFolder openFolder = pooledStore.folders.get(name);
+		if (openFolder != null && openFolder.isOpen() &&
+		    (openFolder.getMode() == Folder.READ_WRITE || mode == Folder.READ_ONLY)) {
+			return openFolder;
+		}
+		if (openFolder != null && openFolder.isOpen()) {
+			openFolder.close(false);
+		}
+		folder.open(mode);
+		pooledStore.folders.put(name, folder);
+		return folder;
+	}
+
+	/**
+	 * Releases a folder opened with
+	 * {@link #openFolder(IMAPStore, IMAPFolder, int)}. The folder is kept open
+	 * if its store is pooled, and closed otherwise.
+	 *
+	 * @param store
+	 *            the store of the folder
+	 * @param folder
+	 *            the open folder
+	 * @throws MessagingException
+	 *             if the folder cannot be closed
+	 */
+	public void releaseFolder(IMAPStore store, IMAPFolder folder) throws MessagingException {
+		synchronized (this) {
+			if (pooledStores.containsKey(store)) {
+				return;
+			}
+		}
+		folder.close(true);
+	}
+
+	/**
+	 * Closes the stores which have been idle longer than the idle timeout, and
+	 * ends the leases whose attachments have not been read within it.
+	 */
+	private void evictIdleStores() {
+		long expiry = System.currentTimeMillis() - GmailConstants.GMAIL_IMAP_POOL_IDLE_TIMEOUT;
+		List<GmailAttachmentLease> expiredLeases = new ArrayList<GmailAttachmentLease>();
+		synchronized (this) {
+			for (GmailAttachmentLease lease : leases) {
+				if (lease.expire(expiry)) {
+					expiredLeases.add(lease);
+				}
+			}
+		}
+		for (GmailAttachmentLease lease : expiredLeases) {
+			log.info("Releasing an IMAP store whose attachments were not read");
+			endLease(lease);
+		}
+
+		List<PooledStore> evicted = new ArrayList<PooledStore>();
+		synchronized (this) {
+			for (Iterator<LinkedList<PooledStore>> keys = idleStores.values().iterator(); keys.hasNext();) {
+				LinkedList<PooledStore> stores = keys.next();
+				for (Iterator<PooledStore> iterator = stores.iterator(); iterator.hasNext();) {
+					PooledStore pooledStore = iterator.next();
+					if (pooledStore.lastUsed < expiry) {
+						iterator.remove();
+						evicted.add(pooledStore);
+					}
+				}
+				if (stores.isEmpty()) {
+					keys.remove();
+				}
+			}
+		}
+		if (!evicted.isEmpty()) {
+			log.info("Closing " + evicted.size() + " idle IMAP stores");
+		}
+		for (PooledStore pooledStore : evicted) {
+			discard(pooledStore);
+		}
+	}
+
+	/**
+	 * Removes a store from the pool and closes it.
+	 */
+	private void discard(PooledStore pooledStore) {
+		synchronized (this) {
+			pooledStores.remove(pooledStore.store);
+		}
+		close(pooledStore.store);
+	}
+
+	private static void close(IMAPStore store) {
+		try {
+			store.close();
+		} catch (MessagingException e) {
+			log.info("Failure while closing an IMAP store: " + e.getMessage());
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getLoginCount() {
+		return logins.get();
+	}
+
+	public double getAverageLoginTime() {
+		long count = logins.get();
+		return count == 0 ? 0 : (double) loginTime.get() / count;
+	}
+
+	public synchronized int getPooledStoreCount() {
+		return pooledStores.size();
+	}
+
+	public synchronized int getIdleStoreCount() {
+		int count = 0;
+		for (List<PooledStore> stores : idleStores.values()) {
+			count += stores.size();
+		}
+		return count;
+	}
+
+	/**
+	 * A pooled store and the folders it has opened.
+	 */
+	private static final class PooledStore {
+
+		private final String key;
+
+		private final IMAPStore store;
+
+		/**
+		 * Folders opened by the store by their full names.
+		 */
+		private final Map<String, IMAPFolder> folders = new HashMap<String, IMAPFolder>();
+
+		/**
+		 * Time the store was last returned to the pool.
+		 */
+		private long lastUsed;
+
+		private PooledStore(String key, IMAPStore store) {
+			this.key = key;
+			this.store = store;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.gmail;
+
+/**
+ * Metrics of the IMAP store pool, registered with the platform MBean server.
+ */
+public interface GmailIMAPStorePoolMBean {
+
+	/**
+	 * @return the number of operations which reused a pooled store
+	 */
+	long getHitCount();
+
+	/**
+	 * @return the number of operations which found no idle pooled store
+	 */
+	long getMissCount();
+
+	/**
+	 * @return the number of IMAP logins
+	 */
+	long getLoginCount();
+
+	/**
+	 * @return the average time of an IMAP login in milliseconds
+	 */
+	double getAverageLoginTime();
+
+	/**
+	 * @return the number of pooled stores, both idle and borrowed
+	 */
+	int getPooledStoreCount();
+
+	/**
+	 * @return the number of idle pooled stores
+	 */
+	int getIdleStoreCount();
+}
@@ -39,6 +39,7 @@ public class GmailListAllMails extends AbstractConnector {
 	 */
 	@Override
 	public void connect(MessageContext messageContext) {
+		GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 		try {
 			// Reading label name and batch number to read from the
 			// message context
@@ -48,6 +49,9 @@ public class GmailListAllMails extends AbstractConnector {
 			String batchNumberString =
 			                           GmailUtils.lookupFunctionParam(messageContext,
 			                                                          GmailConstants.GMAIL_PARAM_BATCH_NUMBER);
+			String pageToken =
+			                   GmailUtils.lookupFunctionParam(messageContext,
+			                                                  GmailConstants.GMAIL_PARAM_PAGE_TOKEN);
 
 			// Validating and using optional parameters
 			int batchNumber = GmailUtils.getBatchNumber(batchNumberString);
@@ -56,10 +60,9 @@ public class GmailListAllMails extends AbstractConnector {
 				term = new GmailLabelTerm(label);
 			}
 
-			GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 			log.info("Loading the IMAPStore");
 			IMAPStore store = imapClientLoader.loadIMAPStore(messageContext);
-			GmailUtils.listMails(messageContext, store, term, batchNumber,
+			GmailUtils.listMails(messageContext, store, term, batchNumber, pageToken,
 			                     GmailConstants.GMAIL_LIST_ALL_MAILS_RESPONSE);
 			log.info("Successfully completed the \"list all mails\" operation");
 		} catch (NumberFormatException e) {
@@ -81,6 +84,8 @@ public class GmailListAllMails extends AbstractConnector {
 			GmailUtils.storeErrorResponseStatus(messageContext, e,
 			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
 			handleException(e.getMessage(), e, messageContext);
+		} finally {
+			imapClientLoader.releaseIMAPStore(messageContext);
 		}
 	}
 }
@@ -40,18 +40,21 @@ public class GmailListAllUnreadMails extends AbstractConnector {
 	 */
 	@Override
 	public void connect(MessageContext messageContext) {
+		GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 		try {
 			// Reading the optional parameter, batch number, to read
 			// from the message context
 			String batchString =
 			                     GmailUtils.lookupFunctionParam(messageContext,
 			                                                    GmailConstants.GMAIL_PARAM_BATCH_NUMBER);
+			String pageToken =
+			                   GmailUtils.lookupFunctionParam(messageContext,
+			                                                  GmailConstants.GMAIL_PARAM_PAGE_TOKEN);
 			int batchNumber = GmailUtils.getBatchNumber(batchString);
-			GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 			log.info("Loading the IMAPStore");
 			IMAPStore store = imapClientLoader.loadIMAPStore(messageContext);
 			SearchTerm flagTerm = new FlagTerm(new Flags(Flag.SEEN), false);
-			GmailUtils.listMails(messageContext, store, flagTerm, batchNumber,
+			GmailUtils.listMails(messageContext, store, flagTerm, batchNumber, pageToken,
 			                     GmailConstants.GMAIL_LIST_ALL_UNREAD_MAILS_RESPONSE);
 			log.info("Successfully completed the \"list all unread mails\" operation");
 		} catch (NumberFormatException e) {
@@ -72,6 +75,8 @@ public class GmailListAllUnreadMails extends AbstractConnector {
 			GmailUtils.storeErrorResponseStatus(messageContext, e,
 			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
 			handleException(e.getMessage(), e, messageContext);
+		} finally {
+			imapClientLoader.releaseIMAPStore(messageContext);
 		}
 	}
 }
@@ -42,6 +42,7 @@ public class GmailListAllUnreadMailsUnderLabel extends AbstractConnector {
 	 */
 	@Override
 	public void connect(MessageContext messageContext) throws ConnectException {
+		GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 		try {
 			// Reading input parameters, batch number and label name, from the
 			// message context
@@ -51,6 +52,9 @@ public class GmailListAllUnreadMailsUnderLabel extends AbstractConnector {
 			String batchString =
 			                     GmailUtils.lookupFunctionParam(messageContext,
 			                                                    GmailConstants.GMAIL_PARAM_BATCH_NUMBER);
+			String pageToken =
+			                   GmailUtils.lookupFunctionParam(messageContext,
+			                                                  GmailConstants.GMAIL_PARAM_PAGE_TOKEN);
 
 			// Validating the mandatory parameter, label.
 			if (label == null || "".equals(label.trim())) {
@@ -64,11 +68,10 @@ public class GmailListAllUnreadMailsUnderLabel extends AbstractConnector {
 			}
 
 			int batchNumber = GmailUtils.getBatchNumber(batchString);
-			GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 			log.info("Loading the IMAPStore");
 			IMAPStore store = imapClientLoader.loadIMAPStore(messageContext);
 			SearchTerm term = this.getSearchTerm(label);
-			GmailUtils.listMails(messageContext, store, term, batchNumber,
+			GmailUtils.listMails(messageContext, store, term, batchNumber, pageToken,
 			                     GmailConstants.GMAIL_LIST_ALL_UNREAD_MAILS_UNDER_LABEL_RESPONSE);
 			log.info("Successfully completed the \"list all unread mails under label\" operation");
 		} catch (NumberFormatException e) {
@@ -89,6 +92,8 @@ public class GmailListAllUnreadMailsUnderLabel extends AbstractConnector {
 			GmailUtils.storeErrorResponseStatus(messageContext, e,
 			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
 			handleException(e.getMessage(), e, messageContext);
+		} finally {
+			imapClientLoader.releaseIMAPStore(messageContext);
 		}
 	}
 
@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.gmail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.mediators.base.SequenceMediator;
+import org.wso2.carbon.connector.core.ConnectException;
+
+import com.google.code.com.sun.mail.imap.IMAPFolder;
+import com.google.code.com.sun.mail.imap.IMAPStore;
+import com.google.code.javax.mail.FetchProfile;
+import com.google.code.javax.mail.Folder;
+import com.google.code.javax.mail.Message;
+import com.google.code.javax.mail.MessagingException;
+import com.google.code.javax.mail.UIDFolder;
+import com.google.code.javax.mail.event.MessageCountAdapter;
+import com.google.code.javax.mail.event.MessageCountEvent;
+
+/**
+ * Watches a mailbox folder with IMAP IDLE and mediates the messages which
+ * arrive in it through a sequence. The watcher keeps its own IMAP connection
+ * in the IDLE state, so new messages are reported within a second without
+ * polling. Every batch of new messages is injected as a message whose payload
+ * is the same XML the "list" operations return. A lost connection is
+ * re-established with an exponential backoff, and the messages which arrived
+ * while the watcher was disconnected are mediated by their UIDs before it
+ * idles again. The IDLE command is issued again periodically, and the
+ * connection has a read timeout, so a connection the server has dropped
+ * without closing it is detected.
+ */
+public class GmailMailboxWatcher implements Runnable {
+
+	/**
+	 * Log instance.
+	 */
+	private static Log log = LogFactory.getLog(GmailMailboxWatcher.class);
+
+	/**
+	 * Running watchers by their keys.
+	 */
+	private static final Map<String, GmailMailboxWatcher> WATCHERS =
+	                                                                 new HashMap<String, GmailMailboxWatcher>();
+
+	/**
+	 * Number of deployed "start mailbox watch" operations.
+	 */
+	private static int operations;
+
+	/**
+	 * Login mode, either SASL or OAuth.
+	 */
+	private final String loginMode;
+
+	private final String username;
+
+	/**
+	 * Password or OAuth access token, replaced when the watch is started again
+	 * with new credentials.
+	 */
+	private volatile String credential;
+
+	private final String folderName;
+
+	private final String sequenceName;
+
+	private final SynapseEnvironment synapseEnvironment;
+
+	/**
+	 * Messages reported by the folder while it was idle, mediated once the
+	 * IDLE command returns.
+	 */
+	private final ConcurrentLinkedQueue<Message> newMessages = new ConcurrentLinkedQueue<Message>();
+
+	/**
+	 * UID validity of the folder the UIDs were read from.
+	 */
+	private long uidValidity = -1;
+
+	/**
+	 * UID of the last message mediated or seen when the watch started.
+	 */
+	private long lastUid = -1;
+
+	private volatile boolean running;
+
+	private volatile IMAPStore store;
+
+	private Thread thread;
+
+	/**
+	 * Creates a watcher of a mailbox folder.
+	 *
+	 * @param loginMode
+	 *            login mode, either SASL or OAuth
+	 * @param username
+	 *            user name
+	 * @param credential
+	 *            password or OAuth access token of the user
+	 * @param folderName
+	 *            name of the folder to watch
+	 * @param sequenceName
+	 *            name of the sequence the new messages are mediated through
+	 * @param synapseEnvironment
+	 *            environment the messages are injected into
+	 */
+	public GmailMailboxWatcher(String loginMode, String username, String credential,
+	                           String folderName, String sequenceName,
+	                           SynapseEnvironment synapseEnvironment) {
+		this.loginMode = loginMode;
+		this.username = username;
+		this.credential = credential;
+		this.folderName = folderName;
+		this.sequenceName = sequenceName;
+		this.synapseEnvironment = synapseEnvironment;
+	}
+
+	/**
+	 * Starts the given watcher unless the same folder of the same user is
+	 * already watched for the sequence, in which case the running watcher takes
+	 * the credential of the given one.
+	 *
+	 * @param watcher
+	 *            the watcher to start
+	 * @return true if the watcher was started
+	 */
+	public static synchronized boolean startWatching(GmailMailboxWatcher watcher) {
+		GmailMailboxWatcher running = WATCHERS.get(watcher.getKey());
+		if (running != null) {
+			running.setCredential(watcher.credential);
+			return false;
+		}
+		WATCHERS.put(watcher.getKey(), watcher);
+		watcher.start();
+		return true;
+	}
+
+	/**
+	 * Stops the running watcher which watches the same folder of the same user
+	 * for the same sequence as the given one.
+	 *
+	 * @param watcher
+	 *            a watcher with the key of the running watcher
+	 * @return true if a running watcher was stopped
+	 */
+	public static synchronized boolean stopWatching(GmailMailboxWatcher watcher) {
+		GmailMailboxWatcher running = WATCHERS.remove(watcher.getKey());
+		if (running == null) {
+			return false;
+		}
+		running.stop();
+		return true;
+	}
+
+	/**
+	 * Counts a deployed "start mailbox watch" operation.
+	 */
+	public static synchronized void operationDeployed() {
+		operations++;
+	}
+
+	/**
+	 * Stops all the watchers when the last "start mailbox watch" operation is
+	 * undeployed.
+	 */
+	public static synchronized void operationUndeployed() {
+		if (--operations > 0) {
+			return;
+		}
+		for (GmailMailboxWatcher watcher : WATCHERS.values()) {
+			watcher.stop();
+		}
+		WATCHERS.clear();
+	}
+
+	/**
+	 * Returns the key of the watcher, made of the login mode, the user name, the
+	 * folder and the sequence.
+	 *
+	 * @return the key
+	 */
+	public String getKey() {
+		return loginMode + ":" + username + ":" + folderName + ":" + sequenceName;
+	}
+
+	/**
+	 * Sets the credential used when the watcher connects again, such as a
+	 * refreshed OAuth access token.
+	 *
+	 * @param credential
+	 *            password or OAuth access token of the user
+	 */
+	public void setCredential(String credential) {
+		this.credential = credential;
+	}
+
+	/**
+	 * Starts watching the folder.
+	 */
+	public synchronized void start() {
+		running = true;
+		thread = new Thread(this, "gmail-idle-" + username + "-" + folderName);
+		thread.setDaemon(true);
+		thread.start();
+		log.info("Started watching " + folderName + " of " + username);
+	}
+
+	/**
+	 * Stops watching the folder and closes the IMAP connection.
+	 */
+	public synchronized void stop() {
+		running = false;
+		IMAPStore currentStore = store;
+		if (currentStore != null) {
+			// Closing the store ends the IDLE command.
+			try {
+				currentStore.close();
+			} catch (MessagingException e) {
+				log.info("Failure while closing the IMAP store: " + e.getMessage());
+			}
+		}
+		thread.interrupt();
+		log.info("Stopped watching " + folderName + " of " + username);
+	}
+
+	/*
+	 * Connects and idles until the watcher is stopped, reconnecting with a
+	 * backoff when the connection fails.
+	 */
+	public void run() {
+		long backoff = GmailConstants.GMAIL_IDLE_MIN_BACKOFF;
+		while (running) {
+			try {
+				watch();
+				backoff = GmailConstants.GMAIL_IDLE_MIN_BACKOFF;
+			} catch (Exception e) {
+				if (!running) {
+					break;
+				}
+				log.error("Failure while watching " + folderName + " of " + username +
+				          ", reconnecting in " + backoff + " ms", e);
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				backoff = Math.min(backoff * 2, GmailConstants.GMAIL_IDLE_MAX_BACKOFF);
+			} finally {
+				closeStore();
+			}
+		}
+	}
+
+	/**
+	 * Opens the folder, mediates the messages which arrived since the last
+	 * connection and idles on the folder, mediating the new messages after each
+	 * IDLE command returns.
+	 */
+	private void watch() throws MessagingException, ConnectException {
+		// Messages queued by the folder of a lost connection are fetched again by UID.
+		newMessages.clear();
+		store = connect();
+		final IMAPFolder folder = (IMAPFolder) store.getFolder(folderName);
+		if (folder == null || !folder.exists()) {
+			throw new ConnectException("Invalid label/ folder name " + folderName);
+		}
+		folder.addMessageCountListener(new MessageCountAdapter() {
+			public void messagesAdded(MessageCountEvent event) {
+				for (Message message : event.getMessages()) {
+					newMessages.add(message);
+				}
+			}
+		});
+		folder.open(Folder.READ_ONLY);
+		mediateMissedMessages(folder);
+		log.info("Watching " + folderName + " of " + username + " with IMAP IDLE");
+		Timer refresher = new Timer("gmail-idle-refresh-" + username + "-" + folderName, true);
+		refresher.schedule(new TimerTask() {
+			public void run() {
+				try {
+					// A command issued from another thread ends the IDLE command,
+					// which the watcher then issues again.
+					folder.getMessageCount();
+				} catch (MessagingException e) {
+					log.info("Failure while refreshing the IDLE command: " + e.getMessage());
+				}
+			}
+		}, GmailConstants.GMAIL_IDLE_REFRESH_INTERVAL, GmailConstants.GMAIL_IDLE_REFRESH_INTERVAL);
+		try {
+			while (running) {
+				// Returns when the server reports a change or ends the command.
+				folder.idle();
+				mediateNewMessages(folder);
+			}
+		} finally {
+			refresher.cancel();
+		}
+	}
+
+	/**
+	 * Mediates the messages whose UIDs are greater than the last UID seen on a
+	 * previous connection. On the first connection, or when the UIDs of the
+	 * folder have been reassigned, only the last UID is recorded.
+	 */
+	private void mediateMissedMessages(IMAPFolder folder) throws MessagingException {
+		long validity = folder.getUIDValidity();
+		if (lastUid < 0 || validity != uidValidity) {
+			if (lastUid >= 0) {
+				log.warn("The UID validity of " + folderName + " of " + username +
+				         " has changed, the messages which arrived while disconnected are not mediated");
+			}
+			uidValidity = validity;
+			lastUid = getLastUid(folder);
+			return;
+		}
+		Message[] messages = folder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID);
+		mediateMessages(folder, Arrays.asList(messages));
+	}
+
+	/**
+	 * Returns the UID of the last message in the folder.
+	 */
+	private long getLastUid(IMAPFolder folder) throws MessagingException {
+		long uidNext = folder.getUIDNext();
+		if (uidNext > 0) {
+			return uidNext - 1;
+		}
+		int count = folder.getMessageCount();
+		return count > 0 ? folder.getUID(folder.getMessage(count)) : 0;
+	}
+
+	/**
+	 * Mediates the messages reported by the folder while it was idle.
+	 */
+	private void mediateNewMessages(IMAPFolder folder) throws MessagingException {
+		List<Message> messages = new ArrayList<Message>();
+		Message message;
+		while ((message = newMessages.poll()) != null) {
+			messages.add(message);
+		}
+		mediateMessages(folder, messages);
+	}
+
+	/**
+	 * Fetches the messages whose UIDs are greater than the last UID and injects
+	 * them into the sequence.
+	 */
+	private void mediateMessages(IMAPFolder folder, List<Message> messages)
+	                                                                       throws MessagingException {
+		if (messages.isEmpty()) {
+			return;
+		}
+		Message[] fetched = messages.toArray(new Message[messages.size()]);
+		FetchProfile fetchProfile = GmailUtils.getFetchProfile();
+		fetchProfile.add(UIDFolder.FetchProfileItem.UID);
+		folder.fetch(fetched, fetchProfile);
+
+		// A UID range always returns the last message, even if it is not newer.
+		List<Message> newer = new ArrayList<Message>();
+		long maxUid = lastUid;
+		for (Message message : fetched) {
+			long uid = folder.getUID(message);
+			if (uid > lastUid) {
+				newer.add(message);
+				maxUid = Math.max(maxUid, uid);
+			}
+		}
+		if (newer.isEmpty()) {
+			return;
+		}
+		lastUid = maxUid;
+
+		Message[] messageArray = newer.toArray(new Message[newer.size()]);
+		log.info("Received " + messageArray.length + " new messages in " + folderName + " of " +
+		         username);
+		try {
+			MessageContext messageContext = synapseEnvironment.createMessageContext();
+			messageContext.setEnvelope(OMAbstractFactory.getSOAP11Factory().getDefaultEnvelope());
+			GmailUtils.storeMailListInResponse(messageArray, messageContext,
+			                                   GmailConstants.GMAIL_NEW_MAILS_RESPONSE, false);
+			SequenceMediator sequence =
+			                            (SequenceMediator) messageContext.getSequence(sequenceName);
+			if (sequence == null) {
+				log.error("Sequence " + sequenceName + " is not found, dropping " +
+				          messageArray.length + " new messages");
+				return;
+			}
+			synapseEnvironment.injectAsync(messageContext, sequence);
+		} catch (Exception e) {
+			log.error("Failure while mediating the new messages of " + folderName, e);
+		}
+	}
+
+	/**
+	 * Logs in to IMAP with the login mode of the watcher.
+	 */
+	private IMAPStore connect() throws MessagingException {
+		if (GmailConstants.GMAIL_OAUTH_LOGIN_MODE.equals(loginMode)) {
+			GmailOAuth2SASLAuthenticator.initializeOAuth2Provider();
+			return GmailOAuth2SASLAuthenticator.connectToIMAP(username, credential,
+			                                                  GmailConstants.GMAIL_IDLE_TIMEOUT);
+		}
+		return GmailSASLAuthenticator.connectToIMAP(username, credential,
+		                                            GmailConstants.GMAIL_IDLE_TIMEOUT);
+	}
+
+	private void closeStore() {
+		IMAPStore currentStore = store;
+		store = null;
+		if (currentStore != null) {
+			try {
+				currentStore.close();
+			} catch (MessagingException e) {
+				log.info("Failure while closing the IMAP store: " + e.getMessage());
+			}
+		}
+	}
+}
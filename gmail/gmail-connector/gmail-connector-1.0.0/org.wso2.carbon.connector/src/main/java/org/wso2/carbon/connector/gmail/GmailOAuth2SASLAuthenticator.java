@@ -60,7 +60,37 @@ public final class GmailOAuth2SASLAuthenticator {
 	 */
 	public static IMAPStore connectToIMAP(String username, String oauthToken)
 	                                                                         throws MessagingException {
+		return connectToIMAP(username, oauthToken, new Properties());
+	}
+
+	/**
+	 * Connects to IMAPStore with a socket read timeout
+	 * 
+	 * @param username
+	 *            user name
+	 * @param oauthToken
+	 *            user's OAuth access token
+	 * @param timeout
+	 *            socket read timeout in milliseconds
+	 * @return authenticated IMAPSore instance
+	 * @throws MessagingException
+	 *             as a result of authentication failure
+	 */
+	public static IMAPStore connectToIMAP(String username, String oauthToken, long timeout)
+	                                                                                       throws MessagingException {
 		Properties props = new Properties();
+		props.put("mail.imaps.timeout", String.valueOf(timeout));
+		props.put("mail.imaps.connectiontimeout",
+		          String.valueOf(GmailConstants.GMAIL_IMAP_CONNECTION_TIMEOUT));
+		return connectToIMAP(username, oauthToken, props);
+	}
+
+	/**
+	 * Connects to IMAPStore with the given session properties in addition to
+	 * the OAuth ones.
+	 */
+	private static IMAPStore connectToIMAP(String username, String oauthToken, Properties props)
+	                                                                                           throws MessagingException {
 		props.put("mail.imaps.sasl.enable", GmailConstants.GMAIL_TRUE_VALUE);
 		props.put("mail.imaps.sasl.mechanisms", GmailConstants.GMAIL_AUTHENTICATION_MECHANISM);
 		props.put(OAuth2SaslClientFactory.OAUTH_TOKEN_PROP, oauthToken);
@@ -37,11 +37,15 @@ public class GmailReadMailMessage extends AbstractConnector {
 	 */
 	@Override
 	public void connect(MessageContext messageContext) {
+		GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 		try {
 			// Reading message ID from the message context
 			String messageID =
 			                   GmailUtils.lookupFunctionParam(messageContext,
 			                                                  GmailConstants.GMAIL_PARAM_MESSAGEID);
+			String fetchParts =
+			                    GmailUtils.lookupFunctionParam(messageContext,
+			                                                   GmailConstants.GMAIL_PARAM_FETCH_PARTS);
 
 			// Validating the message ID
 			if (messageID == null || "".equals(messageID.trim())) {
@@ -54,11 +58,10 @@ public class GmailReadMailMessage extends AbstractConnector {
 				handleException(connectException.getMessage(), connectException, messageContext);
 			}
 
-			GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 			log.info("Loading the IMAPStore");
 			IMAPStore store = imapClientLoader.loadIMAPStore(messageContext);
 			SearchTerm term = new GmailMessageIDTerm(messageID);
-			GmailUtils.readMails(messageContext, store, term,
+			GmailUtils.readMails(messageContext, store, term, fetchParts,
 			                     GmailConstants.GMAIL_READ_MAIL_MESSAGE_RESPONSE);
 			log.info("Successfully completed the \"read mail messsages\" operation");
 		} catch (MessagingException e) {
@@ -74,6 +77,8 @@ public class GmailReadMailMessage extends AbstractConnector {
 			GmailUtils.storeErrorResponseStatus(messageContext, e,
 			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
 			handleException(e.getMessage(), e, messageContext);
+		} finally {
+			imapClientLoader.releaseIMAPStore(messageContext);
 		}
 	}
 }
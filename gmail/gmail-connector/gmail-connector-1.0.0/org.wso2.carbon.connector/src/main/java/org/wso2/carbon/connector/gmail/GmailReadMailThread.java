@@ -37,11 +37,15 @@ public class GmailReadMailThread extends AbstractConnector {
 	 */
 	@Override
 	public void connect(MessageContext messageContext) {
+		GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 		try {
 			// Reading thread ID from the message context
 			String threadID =
 			                  GmailUtils.lookupFunctionParam(messageContext,
 			                                                 GmailConstants.GMAIL_PARAM_THREADID);
+			String fetchParts =
+			                    GmailUtils.lookupFunctionParam(messageContext,
+			                                                   GmailConstants.GMAIL_PARAM_FETCH_PARTS);
 
 			// Validating the thread ID
 			if (threadID == null || "".equals(threadID.trim())) {
@@ -54,11 +58,11 @@ public class GmailReadMailThread extends AbstractConnector {
 				handleException(connectException.getMessage(), connectException, messageContext);
 			}
 
-			GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 			log.info("Loading the IMAPStore");
 			IMAPStore store = imapClientLoader.loadIMAPStore(messageContext);
 			SearchTerm term = new GmailThreadIDTerm(threadID);
-			GmailUtils.readMails(messageContext, store, term, "gmailReadMailThreadResponse");
+			GmailUtils.readMails(messageContext, store, term, fetchParts,
+			                     "gmailReadMailThreadResponse");
 			log.info("Successfully completed the \"read mail thread\" operation");
 		} catch (MessagingException e) {
 			GmailUtils.storeErrorResponseStatus(messageContext,
@@ -73,6 +77,8 @@ public class GmailReadMailThread extends AbstractConnector {
 			GmailUtils.storeErrorResponseStatus(messageContext, e,
 			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
 			handleException(e.getMessage(), e, messageContext);
+		} finally {
+			imapClientLoader.releaseIMAPStore(messageContext);
 		}
 	}
 }
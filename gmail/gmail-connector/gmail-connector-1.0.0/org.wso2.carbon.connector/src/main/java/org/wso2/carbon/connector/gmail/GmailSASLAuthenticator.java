@@ -59,6 +59,34 @@ public final class GmailSASLAuthenticator {
 		return imapStore;
 	}
 
+	/**
+	 * Connects to IMAPStore with a socket read timeout, in a
+	 * session of its own.
+	 * 
+	 * @param username
+	 *            user name
+	 * @param password
+	 *            password of the user
+	 * @param timeout
+	 *            socket read timeout in milliseconds
+	 * @return the authenticated IMAPSore instance
+	 * @throws MessagingException
+	 *             as a result of authentication failure
+	 */
+	public static IMAPStore connectToIMAP(String username, String password, long timeout)
+	                                                                                     throws MessagingException {
+		Properties properties = new Properties();
+		properties.putAll(System.getProperties());
+		properties.setProperty("mail.store.protocol", "imaps");
+		properties.setProperty("mail.imaps.timeout", String.valueOf(timeout));
+		properties.setProperty("mail.imaps.connectiontimeout",
+		                       String.valueOf(GmailConstants.GMAIL_IMAP_CONNECTION_TIMEOUT));
+		Session session = Session.getInstance(properties);
+		IMAPSSLStore imapStore = new IMAPSSLStore(session, new URLName("http://imap.gmail.com"));
+		imapStore.connect(username, password);
+		return imapStore;
+	}
+
 	/**
 	 * Connects to SMTP transport and mail session.
 	 * 
@@ -27,7 +27,9 @@ import com.google.code.javax.mail.MessagingException;
 
 /**
  * Class which loads the {@link GmailSMTPConnectionObject} according to the
- * authentication mode.
+ * authentication mode. The transports are borrowed from the
+ * {@link GmailSMTPTransportPool}, so the messages mediated with the same login
+ * share the authenticated SMTP connections.
  */
 public class GmailSMTPClientLoader {
 
@@ -38,7 +40,9 @@ public class GmailSMTPClientLoader {
 
 	/**
 	 * Method which loads the {@link GmailSMTPConnectionObject} instance
-	 * according to the authentication mode.
+	 * according to the authentication mode. An idle pooled transport of the
+	 * same login is used if there is one, otherwise a new transport is logged
+	 * in and added to the pool.
 	 * 
 	 * @param messageContext
 	 *            Message context where the instantiated
@@ -68,59 +72,130 @@ public class GmailSMTPClientLoader {
 			return (GmailSMTPConnectionObject) prestoredInstance;
 		}
 
-		// Login mode should have been defined during either "init" or
-		// "passwordLogin" operations.
-		Object loginMode = axis2MsgCtx.getProperty(GmailConstants.GMAIL_LOGIN_MODE);
-		if (loginMode == null) {
-			String errorLog = "Gmail configuration details were not initialized";
-			log.error(errorLog);
-			ConnectException connectException = new ConnectException(errorLog);
-			throw (connectException);
+		GmailSMTPConnectionObject smtpConnectionObject =
+		                                                 this.borrowSMTPSession(GmailUtils.getLoginDetails(messageContext));
+
+		// Stores the GmailSMTPConnectionObject in the operation context until
+		// it is released.
+		axis2MsgCtx.getOperationContext()
+		           .setProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE, smtpConnectionObject);
+		return smtpConnectionObject;
+	}
+
+	/**
+	 * Borrows an SMTP transport of the given login from the pool, logging in a
+	 * new one if the pool has no idle transport for the login. The transport
+	 * should be given back with {@link GmailSMTPTransportPool#release} or
+	 * {@link GmailSMTPTransportPool#invalidate} once it is used.
+	 * 
+	 * @param login
+	 *            the login details returned by
+	 *            {@link GmailUtils#getLoginDetails(MessageContext)}
+	 * @return the borrowed {@link GmailSMTPConnectionObject} instance
+	 * @throws MessagingException
+	 *             as a result of authentication failures
+	 */
+	public GmailSMTPConnectionObject borrowSMTPSession(String[] login) throws MessagingException {
+		String poolKey = GmailUtils.getPoolKey(login);
+		GmailSMTPTransportPool pool = GmailSMTPTransportPool.getInstance();
+		GmailSMTPConnectionObject smtpConnectionObject = pool.borrow(poolKey);
+		if (smtpConnectionObject != null) {
+			log.info("Reusing a pooled SMTP transport");
+			return smtpConnectionObject;
 		}
 
-		GmailSMTPConnectionObject smtpConnectionObject = null;
+		long loginStart = System.currentTimeMillis();
+		smtpConnectionObject = this.login(login);
+		long loginTime = System.currentTimeMillis() - loginStart;
+		pool.add(poolKey, smtpConnectionObject, loginTime);
+		log.info("SMTP login completed in " + loginTime + " ms (pool hits: " + pool.getHitCount() +
+		         ", misses: " + pool.getMissCount() + ")");
+		return smtpConnectionObject;
+	}
 
-		// Perform SASL authentication if configured using the "Password Login"
-		// operation.
-		if (loginMode.toString().equals(GmailConstants.GMAIL_SASL_LOGIN_MODE)) {
+	/**
+	 * Returns the SMTP transport loaded for the operation to the pool.
+	 * 
+	 * @param messageContext
+	 *            Message context where the loaded transport is stored.
+	 */
+	public void releaseSMTPSession(MessageContext messageContext) {
+		GmailSMTPConnectionObject smtpConnectionObject = this.removeSMTPSession(messageContext);
+		if (smtpConnectionObject != null) {
+			GmailSMTPTransportPool.getInstance().release(smtpConnectionObject);
+		}
+	}
 
-			log.info("SASL authentication starts");
-			smtpConnectionObject =
-			                       GmailSASLAuthenticator.connectToSMTPSession(messageContext.getProperty(GmailConstants.GMAIL_USER_USERNAME)
-			                                                                                 .toString(),
-			                                                                   messageContext.getProperty(GmailConstants.GMAIL_USER_PASSWORD)
-			                                                                                 .toString());
+	/**
+	 * Closes the SMTP transport loaded for the operation, since a send through
+	 * it has failed and the connection may be broken.
+	 * 
+	 * @param messageContext
+	 *            Message context where the loaded transport is stored.
+	 */
+	public void invalidateSMTPSession(MessageContext messageContext) {
+		GmailSMTPConnectionObject smtpConnectionObject = this.removeSMTPSession(messageContext);
+		if (smtpConnectionObject != null) {
+			GmailSMTPTransportPool.getInstance().invalidate(smtpConnectionObject);
+		}
+	}
 
+	/**
+	 * Closes the idle pooled SMTP transports of the configured login.
+	 * 
+	 * @param messageContext
+	 *            Message context where the login details are stored.
+	 */
+	public void closePooledSMTPSessions(MessageContext messageContext) {
+		try {
+			String poolKey = GmailUtils.getPoolKey(GmailUtils.getLoginDetails(messageContext));
+			GmailSMTPTransportPool.getInstance().invalidate(poolKey);
+		} catch (ConnectException e) {
+			// No login is configured, hence no transports are pooled for it.
 		}
-		// Perform OAuth authentication if configured using the "init"
+	}
+
+	/**
+	 * Removes the SMTP transport loaded for the operation from the operation
+	 * context.
+	 */
+	private GmailSMTPConnectionObject removeSMTPSession(MessageContext messageContext) {
+		org.apache.axis2.context.MessageContext axis2MsgCtx =
+		                                                      ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+		Object smtpConnectionObject =
+		                              axis2MsgCtx.getOperationContext()
+		                                         .getProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE);
+		if (smtpConnectionObject != null) {
+			axis2MsgCtx.getOperationContext()
+			           .removeProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE);
+		}
+		return (GmailSMTPConnectionObject) smtpConnectionObject;
+	}
+
+	/**
+	 * Logs in to SMTP according to the authentication mode.
+	 * 
+	 * @param login
+	 *            the login mode, the user name and the password or the access
+	 *            token
+	 * @return the authenticated {@link GmailSMTPConnectionObject} instance
+	 * @throws MessagingException
+	 *             as a result of authentication failures
+	 */
+	private GmailSMTPConnectionObject login(String[] login) throws MessagingException {
+
+		// Perform SASL authentication if configured using the "Password Login"
 		// operation.
-		else if (loginMode.toString().equals(GmailConstants.GMAIL_OAUTH_LOGIN_MODE)) {
-
-			if (axis2MsgCtx.getProperty(GmailConstants.GMAIL_OAUTH2_PROVIDER) == null) {
-
-				log.info("Initializing a new OAuth2 provider");
-				GmailOAuth2SASLAuthenticator.initializeOAuth2Provider();
-				axis2MsgCtx.getOperationContext().setProperty(GmailConstants.GMAIL_OAUTH2_PROVIDER,
-				                                              "initialized");
-			}
-
-			log.info("OAuth2 authentication starts");
-			smtpConnectionObject =
-			                       GmailOAuth2SASLAuthenticator.connectToSMTP(messageContext.getProperty(GmailConstants.GMAIL_OAUTH_USERNAME)
-			                                                                                .toString(),
-			                                                                  messageContext.getProperty(GmailConstants.GMAIL_OAUTH_ACCESS_TOKEN)
-			                                                                                .toString());
-		} else {
-			String errorLog = "Gmail configuration details were not initialized";
-			log.error(errorLog);
-			ConnectException connectException = new ConnectException(errorLog);
-			throw (connectException);
+		if (login[0].equals(GmailConstants.GMAIL_SASL_LOGIN_MODE)) {
+			log.info("SASL authentication starts");
+			return GmailSASLAuthenticator.connectToSMTPSession(login[1], login[2]);
 		}
 
-		// Stores the newly instantiated GmailSMTPConnectionObject in the
-		// operation context.
-		axis2MsgCtx.getOperationContext()
-		           .setProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE, smtpConnectionObject);
-		return smtpConnectionObject;
+		// Perform OAuth authentication if configured using the "init"
+		// operation.
+		log.info("Initializing the OAuth2 provider");
+		GmailOAuth2SASLAuthenticator.initializeOAuth2Provider();
+		log.info("OAuth2 authentication starts");
+		return GmailOAuth2SASLAuthenticator.connectToSMTP(login[1], login[2]);
 	}
 }
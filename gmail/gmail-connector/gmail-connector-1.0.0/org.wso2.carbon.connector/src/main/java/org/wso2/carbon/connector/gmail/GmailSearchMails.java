@@ -40,6 +40,7 @@ public class GmailSearchMails extends AbstractConnector {
 	 */
 	@Override
 	public void connect(MessageContext messageContext) {
+		GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 		try {
 			// Reading the search string and the batch number from the message context
 			String searchString =
@@ -48,6 +49,9 @@ public class GmailSearchMails extends AbstractConnector {
 			String batchString =
 			                     GmailUtils.lookupFunctionParam(messageContext,
 			                                                    GmailConstants.GMAIL_PARAM_BATCH_NUMBER);
+			String pageToken =
+			                   GmailUtils.lookupFunctionParam(messageContext,
+			                                                  GmailConstants.GMAIL_PARAM_PAGE_TOKEN);
 
 			// Validate the mandatory parameter, search string.
 			if (searchString == null || "".equals(searchString.trim())) {
@@ -61,11 +65,10 @@ public class GmailSearchMails extends AbstractConnector {
 			}
 
 			int batchNumber = GmailUtils.getBatchNumber(batchString);
-			GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 			log.info("Loading the IMAPStore");
 			IMAPStore store = imapClientLoader.loadIMAPStore(messageContext);
 			SearchTerm searchTerm = new GmailRawSearchTerm(searchString);
-			GmailUtils.listMails(messageContext, store, searchTerm, batchNumber,
+			GmailUtils.listMails(messageContext, store, searchTerm, batchNumber, pageToken,
 			                     GmailConstants.GMAIL_SEARCH_MAILS_RESPONSE);
 			log.info("Successfully completed the \"search mails\" operation");
 		} catch (NumberFormatException e) {
@@ -86,6 +89,8 @@ public class GmailSearchMails extends AbstractConnector {
 			GmailUtils.storeErrorResponseStatus(messageContext, e,
 			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
 			handleException(e.getMessage(), e, messageContext);
+		} finally {
+			imapClientLoader.releaseIMAPStore(messageContext);
 		}
 	}
 }
@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.gmail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.wso2.carbon.connector.core.AbstractConnector;
+import org.wso2.carbon.connector.core.ConnectException;
+
+import com.google.code.javax.mail.Message;
+import com.google.code.javax.mail.MessagingException;
+
+/**
+ * This class performs the "send bulk mail" operation which, sends a batch of
+ * mails over a few pooled SMTP transports which are kept connected for the
+ * whole batch. The mails are either one mail per address of the "recipients"
+ * parameter, sharing the subject, the text content and the attachments, or the
+ * "message" elements of the payload, each with its own recipients, subject
+ * and text content. The response reports the status of every mail.
+ */
+public class GmailSendBulkMail extends AbstractConnector {
+
+	/**
+	 * Threads sending the mails of all the bulk sends. Senders of concurrent
+	 * bulk sends wait in the queue once all the threads are busy.
+	 */
+	private static final ExecutorService SENDERS = createSenders();
+
+	/*
+	 * Sends the batch of mails.
+	 */
+	@Override
+	public void connect(MessageContext messageContext) {
+		try {
+			// Reading input parameters from the message context
+			String recipients =
+			                    GmailUtils.lookupFunctionParam(messageContext,
+			                                                   GmailConstants.GMAIL_PARAM_RECIPIENTS);
+			String subject =
+			                 GmailUtils.lookupFunctionParam(messageContext,
+			                                                GmailConstants.GMAIL_PARAM_SUBJECT);
+			String textContent =
+			                     GmailUtils.lookupFunctionParam(messageContext,
+			                                                    GmailConstants.GMAIL_PARAM_TEXT_CONTENT);
+			String attachmentIDs =
+			                       GmailUtils.lookupFunctionParam(messageContext,
+			                                                      GmailConstants.GMAIL_PARAM_ATTACHMENTIDS);
+			String connectionsString =
+			                           GmailUtils.lookupFunctionParam(messageContext,
+			                                                          GmailConstants.GMAIL_PARAM_CONNECTIONS);
+
+			List<BulkMail> mails = new ArrayList<BulkMail>();
+			if (recipients != null && !"".equals(recipients.trim())) {
+				for (String recipient : recipients.split(",")) {
+					if (!"".equals(recipient.trim())) {
+						mails.add(new BulkMail(recipient.trim(), null, null, subject, textContent));
+					}
+				}
+			} else {
+				this.readPayloadMails(messageContext, subject, textContent, mails);
+			}
+
+			// Validating mails. At least one mail should have been given.
+			if (mails.isEmpty()) {
+				String errorLog = "No recipients are found";
+				log.error(errorLog);
+				ConnectException connectException = new ConnectException(errorLog);
+				GmailUtils.storeErrorResponseStatus(messageContext,
+				                                    connectException,
+				                                    GmailErrorCodes.GMAIL_ERROR_CODE_CONNECT_EXCEPTION);
+				handleException(connectException.getMessage(), connectException, messageContext);
+			}
+
+			int connections = this.getConnections(connectionsString, mails.size());
+			String[] attachmentList =
+			                          attachmentIDs == null || "".equals(attachmentIDs.trim())
+			                                                                                  ? new String[0]
+			                                                                                  : attachmentIDs.split(",");
+			String[] login = GmailUtils.getLoginDetails(messageContext);
+			log.info("Sending " + mails.size() + " mails over " + connections +
+			         " SMTP transports");
+			this.sendMails(mails, connections, login, attachmentList,
+			               ((Axis2MessageContext) messageContext).getAxis2MessageContext());
+			this.storeResponse(mails, messageContext);
+			log.info("Successfully completed the \"send bulk mail\" operation");
+		} catch (NumberFormatException e) {
+			GmailUtils.storeErrorResponseStatus(messageContext,
+			                                    e,
+			                                    GmailErrorCodes.GMAIL_ERROR_CODE_NUMBER_FORMAT_EXCEPTION);
+			handleException(e.getMessage(), e, messageContext);
+		} catch (ConnectException e) {
+			GmailUtils.storeErrorResponseStatus(messageContext, e,
+			                                    GmailErrorCodes.GMAIL_ERROR_CODE_CONNECT_EXCEPTION);
+			handleException(e.getMessage(), e, messageContext);
+		} catch (Exception e) {
+			GmailUtils.storeErrorResponseStatus(messageContext, e,
+			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
+			handleException(e.getMessage(), e, messageContext);
+		}
+	}
+
+	/**
+	 * Reads the mails from the "message" elements of the payload. The subject
+	 * and the text content parameters are used for the messages which do not
+	 * have their own.
+	 * 
+	 * @param messageContext
+	 *            from where the payload should be read
+	 * @param subject
+	 *            default subject
+	 * @param textContent
+	 *            default text content
+	 * @param mails
+	 *            list to add the mails to
+	 */
+	private void readPayloadMails(MessageContext messageContext, String subject,
+	                              String textContent, List<BulkMail> mails) {
+		OMElement payload = messageContext.getEnvelope().getBody().getFirstElement();
+		if (payload == null) {
+			return;
+		}
+		Iterator<?> messages = payload.getChildrenWithLocalName("message");
+		while (messages.hasNext()) {
+			OMElement message = (OMElement) messages.next();
+			String to = this.getChildText(message, GmailConstants.GMAIL_PARAM_TO_RECIPIENTS);
+			String cc = this.getChildText(message, GmailConstants.GMAIL_PARAM_CC_RECIPIENTS);
+			String bcc = this.getChildText(message, GmailConstants.GMAIL_PARAM_BCC_RECIPIENTS);
+			if (to == null && cc == null && bcc == null) {
+				log.warn("Skipping a message without recipients");
+				continue;
+			}
+			String messageSubject = this.getChildText(message, GmailConstants.GMAIL_PARAM_SUBJECT);
+			String messageContent =
+			                        this.getChildText(message,
+			                                          GmailConstants.GMAIL_PARAM_TEXT_CONTENT);
+			mails.add(new BulkMail(to, cc, bcc, messageSubject != null ? messageSubject : subject,
+			                       messageContent != null ? messageContent : textContent));
+		}
+	}
+
+	/**
+	 * Returns the trimmed text of a child element, or null if the child is
+	 * missing or empty.
+	 */
+	private String getChildText(OMElement element, String localName) {
+		Iterator<?> children = element.getChildrenWithLocalName(localName);
+		if (!children.hasNext()) {
+			return null;
+		}
+		String text = ((OMElement) children.next()).getText();
+		return text == null || "".equals(text.trim()) ? null : text.trim();
+	}
+
+	/**
+	 * Reads the number of SMTP transports to send the mails over.
+	 * 
+	 * @param connectionsString
+	 *            the "connections" parameter
+	 * @param mailCount
+	 *            number of mails to send
+	 * @return the number of transports
+	 * @throws NumberFormatException
+	 *             if the parameter is not a number
+	 * @throws ConnectException
+	 *             if the parameter is out of range
+	 */
+	private int getConnections(String connectionsString, int mailCount)
+	                                                                  throws NumberFormatException,
+	                                                                  ConnectException {
+		int connections = GmailConstants.GMAIL_BULK_DEFAULT_CONNECTIONS;
+		if (connectionsString != null && !"".equals(connectionsString.trim())) {
+			connections = Integer.parseInt(connectionsString.trim());
+			if (connections < 1 || connections > GmailConstants.GMAIL_SMTP_POOL_MAX_IDLE_PER_KEY) {
+				String errorLog =
+				                  "connections should be between 1 and " +
+				                          GmailConstants.GMAIL_SMTP_POOL_MAX_IDLE_PER_KEY;
+				log.error(errorLog);
+				ConnectException connectException = new ConnectException(errorLog);
+				throw (connectException);
+			}
+		}
+		return Math.min(connections, mailCount);
+	}
+
+	/**
+	 * Sends the mails concurrently, each sender sending the next unsent mail
+	 * over its own transport until all the mails are sent.
+	 */
+	private void sendMails(final List<BulkMail> mails, int connections, final String[] login,
+	                       final String[] attachmentList,
+	                       final org.apache.axis2.context.MessageContext axis2MsgCtx)
+	                                                                                 throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		List<Callable<Object>> senders = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < connections; i++) {
+			senders.add(new Callable<Object>() {
+				public Object call() {
+					sendMails(mails, next, login, attachmentList, axis2MsgCtx);
+					return null;
+				}
+			});
+		}
+
+		SENDERS.invokeAll(senders);
+
+		// Mails are left unsent only if no sender could log in.
+		for (BulkMail mail : mails) {
+			if (mail.status == null) {
+				mail.status = "failed";
+				mail.error = "No SMTP transport could be connected";
+			}
+		}
+	}
+
+	/**
+	 * Creates the executor of the senders, whose idle threads end after the
+	 * keep alive time.
+	 */
+	private static ExecutorService createSenders() {
+		ThreadFactory threadFactory = new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "gmail-bulk-sender-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		ThreadPoolExecutor executor =
+		                              new ThreadPoolExecutor(GmailConstants.GMAIL_BULK_SENDER_THREADS,
+		                                                     GmailConstants.GMAIL_BULK_SENDER_THREADS,
+		                                                     GmailConstants.GMAIL_BULK_SENDER_KEEP_ALIVE,
+		                                                     TimeUnit.MILLISECONDS,
+		                                                     new LinkedBlockingQueue<Runnable>(),
+		                                                     threadFactory);
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Sends the next unsent mails over a borrowed transport. A mail which fails
+	 * because the connection is lost is sent again over a new transport.
+	 */
+	private void sendMails(List<BulkMail> mails, AtomicInteger next, String[] login,
+	                       String[] attachmentList,
+	                       org.apache.axis2.context.MessageContext axis2MsgCtx) {
+		GmailSMTPClientLoader smtpClientLoader = new GmailSMTPClientLoader();
+		GmailSMTPTransportPool pool = GmailSMTPTransportPool.getInstance();
+		GmailSMTPConnectionObject smtpConnectionObject = null;
+		try {
+			int index;
+			while ((index = next.getAndIncrement()) < mails.size()) {
+				BulkMail mail = mails.get(index);
+				for (int attempt = 0; attempt < 2 && mail.status == null; attempt++) {
+					if (smtpConnectionObject == null) {
+						try {
+							smtpConnectionObject = smtpClientLoader.borrowSMTPSession(login);
+						} catch (MessagingException e) {
+							// Logging in again for every mail would fail the
+							// same way, so this sender stops.
+							log.error("Failure in SMTP authentication", e);
+							mail.error = e.getMessage();
+							mail.status = "failed";
+							return;
+						}
+					}
+					try {
+						Message message =
+						                  GmailUtils.createNewMessage(smtpConnectionObject.getSession(),
+						                                              mail.subject,
+						                                              mail.textContent, mail.to,
+						                                              mail.cc, mail.bcc,
+						                                              attachmentList, axis2MsgCtx);
+						GmailUtils.sendMessage(message, smtpConnectionObject.getTransport());
+						mail.status = "sent";
+					} catch (MessagingException e) {
+						mail.error = e.getMessage();
+						if (!smtpConnectionObject.getTransport().isConnected()) {
+							log.warn("SMTP transport is disconnected, reconnecting");
+							pool.invalidate(smtpConnectionObject);
+							smtpConnectionObject = null;
+						} else {
+							// The mail itself was rejected, sending it again would
+							// fail the same way.
+							mail.status = "failed";
+						}
+					} catch (Exception e) {
+						mail.error = e.getMessage();
+						mail.status = "failed";
+					}
+				}
+				if (mail.status == null) {
+					mail.status = "failed";
+				}
+			}
+		} finally {
+			if (smtpConnectionObject != null) {
+				pool.release(smtpConnectionObject);
+			}
+		}
+	}
+
+	/**
+	 * Stores the status of every mail in the response.
+	 */
+	private void storeResponse(List<BulkMail> mails, MessageContext messageContext) {
+		log.info("Storing the response in the message context");
+		if (messageContext.getEnvelope().getBody().getFirstElement() != null) {
+			messageContext.getEnvelope().getBody().getFirstElement().detach();
+		}
+		OMFactory factory = OMAbstractFactory.getOMFactory();
+		OMNamespace ns = factory.createOMNamespace("http://org.wso2.esbconnectors.gmail", "ns");
+		OMElement result = factory.createOMElement(GmailConstants.GMAIL_SEND_BULK_MAIL_RESPONSE, ns);
+
+		int sent = 0;
+		OMElement messagesElement = factory.createOMElement("messages", ns);
+		for (BulkMail mail : mails) {
+			OMElement messageElement = factory.createOMElement("message", ns);
+			messagesElement.addChild(messageElement);
+			OMElement recipientsElement = factory.createOMElement("recipients", ns);
+			recipientsElement.setText(mail.getRecipients());
+			messageElement.addChild(recipientsElement);
+			OMElement statusElement = factory.createOMElement("status", ns);
+			statusElement.setText(mail.status);
+			messageElement.addChild(statusElement);
+			if ("sent".equals(mail.status)) {
+				sent++;
+			} else if (mail.error != null) {
+				OMElement errorElement = factory.createOMElement("error", ns);
+				errorElement.setText(mail.error);
+				messageElement.addChild(errorElement);
+			}
+		}
+		OMElement sentElement = factory.createOMElement("sent", ns);
+		sentElement.setText(Integer.toString(sent));
+		result.addChild(sentElement);
+		OMElement failedElement = factory.createOMElement("failed", ns);
+		failedElement.setText(Integer.toString(mails.size() - sent));
+		result.addChild(failedElement);
+		result.addChild(messagesElement);
+		messageContext.getEnvelope().getBody().addChild(result);
+	}
+
+	/**
+	 * A mail of the batch and the status of its send.
+	 */
+	private static final class BulkMail {
+
+		private final String to;
+
+		private final String cc;
+
+		private final String bcc;
+
+		private final String subject;
+
+		private final String textContent;
+
+		/**
+		 * "sent" or "failed", written by the sender of the mail.
+		 */
+		private volatile String status;
+
+		private volatile String error;
+
+		private BulkMail(String to, String cc, String bcc, String subject, String textContent) {
+			this.to = to;
+			this.cc = cc;
+			this.bcc = bcc;
+			this.subject = subject == null || "".equals(subject.trim()) ? "(no suject)" : subject;
+			this.textContent = textContent == null ? "" : textContent;
+		}
+
+		private String getRecipients() {
+			StringBuilder recipients = new StringBuilder();
+			for (String address : new String[] { to, cc, bcc }) {
+				if (address != null) {
+					if (recipients.length() > 0) {
+						recipients.append(',');
+					}
+					recipients.append(address);
+				}
+			}
+			return recipients.toString();
+		}
+	}
+}
@@ -37,6 +37,7 @@ public class GmailSetLabels extends AbstractConnector {
 	 */
 	@Override
 	public void connect(MessageContext messageContext) {
+		GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 		try {
 			// Reads mandatory parameters from the message context.
 			String threadID =
@@ -67,7 +68,6 @@ public class GmailSetLabels extends AbstractConnector {
 			}
 			String[] labelNames = labels.split(",");
 
-			GmailIMAPClientLoader imapClientLoader = new GmailIMAPClientLoader();
 			log.info("Loading the IMAPStore");
 			IMAPStore store = imapClientLoader.loadIMAPStore(messageContext);
 			SearchTerm term = new GmailThreadIDTerm(threadID);
@@ -87,6 +87,8 @@ public class GmailSetLabels extends AbstractConnector {
 			GmailUtils.storeErrorResponseStatus(messageContext, e,
 			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
 			handleException(e.getMessage(), e, messageContext);
+		} finally {
+			imapClientLoader.releaseIMAPStore(messageContext);
 		}
 	}
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.gmail;
+
+import org.apache.synapse.MessageContext;
+import org.wso2.carbon.connector.core.AbstractConnector;
+import org.wso2.carbon.connector.core.ConnectException;
+
+/**
+ * This class performs the "stop mailbox watch" operation which, stops a watch
+ * started with the "start mailbox watch" operation.
+ */
+public class GmailStopMailboxWatch extends AbstractConnector {
+
+	/*
+	 * Stops watching a folder.
+	 */
+	@Override
+	public void connect(MessageContext messageContext) {
+		try {
+			// Reads the input parameters from the message context.
+			String folder =
+			                GmailUtils.lookupFunctionParam(messageContext,
+			                                               GmailConstants.GMAIL_PARAM_FOLDER);
+			String sequence =
+			                  GmailUtils.lookupFunctionParam(messageContext,
+			                                                 GmailConstants.GMAIL_PARAM_SEQUENCE);
+
+			// Validating the mandatory parameter, sequence.
+			if (sequence == null || "".equals(sequence.trim())) {
+				String errorLog = "A valid sequence name is not provided";
+				log.error(errorLog);
+				ConnectException connectException = new ConnectException(errorLog);
+				GmailUtils.storeErrorResponseStatus(messageContext,
+				                                    connectException,
+				                                    GmailErrorCodes.GMAIL_ERROR_CODE_CONNECT_EXCEPTION);
+				handleException(connectException.getMessage(), connectException, messageContext);
+			}
+			if (folder == null || "".equals(folder.trim())) {
+				folder = GmailConstants.GMAIL_DEFAULT_WATCH_FOLDER;
+			}
+
+			GmailMailboxWatcher watcher =
+			                              new GmailIMAPClientLoader().createMailboxWatcher(messageContext,
+			                                                                               folder,
+			                                                                               sequence);
+			boolean stopped = GmailMailboxWatcher.stopWatching(watcher);
+			GmailUtils.storeMailboxWatchResponse(GmailConstants.GMAIL_STOP_MAILBOX_WATCH_RESPONSE,
+			                                     folder, sequence, stopped ? "stopped"
+			                                                               : "notRunning", messageContext);
+			log.info("Successfully completed the \"stop mailbox watch\" operation");
+		} catch (ConnectException e) {
+			GmailUtils.storeErrorResponseStatus(messageContext, e,
+			                                    GmailErrorCodes.GMAIL_ERROR_CODE_CONNECT_EXCEPTION);
+			handleException(e.getMessage(), e, messageContext);
+		} catch (Exception e) {
+			GmailUtils.storeErrorResponseStatus(messageContext, e,
+			                                    GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
+			handleException(e.getMessage(), e, messageContext);
+		}
+	}
+}
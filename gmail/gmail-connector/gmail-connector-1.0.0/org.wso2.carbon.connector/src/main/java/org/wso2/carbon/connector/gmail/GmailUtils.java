@@ -21,7 +21,10 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Arrays;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedList;
 
 import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axiom.om.OMElement;
@@ -51,6 +54,7 @@ import com.google.code.javax.mail.Session;
 import com.google.code.javax.mail.Flags.Flag;
 import com.google.code.javax.mail.Multipart;
 import com.google.code.javax.mail.Part;
+import com.google.code.javax.mail.UIDFolder;
 import com.google.code.javax.mail.internet.InternetAddress;
 import com.google.code.javax.mail.internet.MimeBodyPart;
 import com.google.code.javax.mail.internet.MimeMessage;
@@ -120,7 +124,11 @@ public final class GmailUtils {
 
 	/**
 	 * Read and list the e-mail messages searched from the IMAP store according
-	 * to the given search term
+	 * to the given search term. Only the messages of the requested page are
+	 * fetched: the mailbox is searched backwards from the newest message, or
+	 * from the message before the page token, in windows of growing size until
+	 * the page is filled. The response carries a "nextPageToken" which resumes
+	 * the listing after the last message of the page.
 	 * 
 	 * @param messageContext
 	 *            Message context where the response should be stored
@@ -129,38 +137,157 @@ public final class GmailUtils {
 	 * @param term
 	 *            Search term
 	 * @param batchNumber
-	 *            The batch number to return
+	 *            The batch number to return, ignored if a page token is given
+	 * @param pageToken
+	 *            The "nextPageToken" of the previous page, or null
 	 * @param responseElementName
 	 *            Name of the response element name
 	 * @throws MessagingException
 	 * @throws ConnectException
-	 *             if the folder does not exist
+	 *             if the folder does not exist or the page token is invalid
 	 */
 	public static void listMails(MessageContext messageContext, IMAPStore store, SearchTerm term,
-	                             int batchNumber, String responseElementName)
-	                                                                         throws MessagingException,
-	                                                                         ConnectException {
+	                             int batchNumber, String pageToken, String responseElementName)
+	                                                                                               throws MessagingException,
+	                                                                                               ConnectException {
 		FetchProfile fetchprofile = getFetchProfile();
+		fetchprofile.add(UIDFolder.FetchProfileItem.UID);
 		Message[] messages = null;
 		try {
 			log.info("Started reading messages");
-			IMAPFolder folder = getFolder(GmailConstants.GMAIL_ALL_MAIL, store);
-			folder.open(Folder.READ_ONLY);
-			if (term != null) {
-				messages = GmailUtils.getBatch(folder.search(term), batchNumber);
+			IMAPFolder folder = openFolder(GmailConstants.GMAIL_ALL_MAIL, store, Folder.READ_ONLY);
+			int lastMessageNumber;
+			int skip;
+			if (pageToken != null && !"".equals(pageToken.trim())) {
+				lastMessageNumber = getMessageNumberBefore(folder, pageToken.trim());
+				skip = 0;
 			} else {
-				messages = GmailUtils.getBatch(folder.getMessages(), batchNumber);
+				lastMessageNumber = folder.getMessageCount();
+				skip = GmailConstants.GMAIL_BATCH_SIZE * (batchNumber - 1);
 			}
+			messages = getPage(folder, term, lastMessageNumber, skip);
 			folder.fetch(messages, fetchprofile);
 			log.info("Number of fetched messages:" + messages.length);
 			storeMailListInResponse(messages, messageContext, responseElementName, false);
-			folder.close(true);
+
+			// The oldest message of a full page is where the next page starts.
+			if (messages.length == GmailConstants.GMAIL_BATCH_SIZE &&
+			    messages[0].getMessageNumber() > 1) {
+				OMElement result = messageContext.getEnvelope().getBody().getFirstElement();
+				OMElement nextPageToken =
+				                          result.getOMFactory()
+				                                .createOMElement("nextPageToken", result.getNamespace());
+				nextPageToken.setText(folder.getUIDValidity() + ":" + folder.getUID(messages[0]));
+				result.addChild(nextPageToken);
+			}
+			GmailIMAPStorePool.getInstance().releaseFolder(store, folder);
 		} catch (MessagingException e) {
 			log.error("Failure while fetching messages");
 			throw (e);
 		}
 	}
 
+	/**
+	 * Returns a page of the newest messages matching the search term among the
+	 * messages up to the given message number. The folder is searched
+	 * backwards in windows which double in size, so that a page of a frequent
+	 * term is found with a few small searches.
+	 * 
+	 * @param folder
+	 *            the open folder
+	 * @param term
+	 *            Search term, or null to list all the messages
+	 * @param lastMessageNumber
+	 *            number of the newest message to consider
+	 * @param skip
+	 *            number of the newest matching messages to skip
+	 * @return the messages of the page, the oldest first
+	 * @throws MessagingException
+	 *             if the search fails
+	 */
+	private static Message[] getPage(IMAPFolder folder, SearchTerm term, int lastMessageNumber,
+	                                 int skip) throws MessagingException {
+		int needed = skip + GmailConstants.GMAIL_BATCH_SIZE;
+		LinkedList<Message[]> found = new LinkedList<Message[]>();
+		int foundCount = 0;
+		int window = term == null ? needed : GmailConstants.GMAIL_SEARCH_WINDOW;
+		int end = lastMessageNumber;
+		while (end >= 1 && foundCount < needed) {
+			int start = Math.max(1, end - window + 1);
+			Message[] range = folder.getMessages(start, end);
+			Message[] matches = term == null ? range : folder.search(term, range);
+			found.addFirst(matches);
+			foundCount += matches.length;
+			end = start - 1;
+			window = Math.min(window * 2, GmailConstants.GMAIL_MAX_SEARCH_WINDOW);
+		}
+
+		// Drops the skipped newest matches and the matches older than the page.
+		int pageSize = Math.max(0, Math.min(GmailConstants.GMAIL_BATCH_SIZE, foundCount - skip));
+		Message[] page = new Message[pageSize];
+		int offset = foundCount - skip - pageSize;
+		int index = 0;
+		for (Message[] matches : found) {
+			for (Message message : matches) {
+				if (index >= offset && index < offset + pageSize) {
+					page[index - offset] = message;
+				}
+				index++;
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Resolves a page token to the number of the newest message before the
+	 * message it refers to.
+	 * 
+	 * @param folder
+	 *            the open folder
+	 * @param pageToken
+	 *            the page token, as "UIDVALIDITY:UID"
+	 * @return the message number, 0 if there is no older message
+	 * @throws MessagingException
+	 *             if the UIDs cannot be read
+	 * @throws ConnectException
+	 *             if the page token is invalid or has expired
+	 */
+	private static int getMessageNumberBefore(IMAPFolder folder, String pageToken)
+	                                                                              throws MessagingException,
+	                                                                              ConnectException {
+		String[] parts = pageToken.split(":");
+		long uid;
+		try {
+			if (parts.length != 2 || Long.parseLong(parts[0]) != folder.getUIDValidity()) {
+				throw new NumberFormatException();
+			}
+			uid = Long.parseLong(parts[1]);
+		} catch (NumberFormatException e) {
+			String errorLog = "Invalid or expired page token";
+			log.error(errorLog);
+			ConnectException connectException = new ConnectException(errorLog);
+			throw (connectException);
+		}
+
+		Message message = folder.getMessageByUID(uid);
+		if (message != null) {
+			return message.getMessageNumber() - 1;
+		}
+
+		// The message was removed, UIDs ascend with the message numbers.
+		int low = 1;
+		int high = folder.getMessageCount();
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (folder.getUID(folder.getMessage(middle)) < uid) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high;
+	}
+
 	/**
 	 * Deletes the e-mail messages searched from the IMAP store according
 	 * to the given search term
@@ -186,9 +313,8 @@ public final class GmailUtils {
 		Message[] messages = null;
 		try {
 			log.info("Reading messages");
-			IMAPFolder folder = getFolder(GmailConstants.GMAIL_ALL_MAIL, store);
+			IMAPFolder folder = openFolder(GmailConstants.GMAIL_ALL_MAIL, store, Folder.READ_WRITE);
 			IMAPFolder trash = getFolder(GmailConstants.GMAIL_TRASH, store);
-			folder.open(Folder.READ_WRITE);
 			messages = folder.search(term);
 			if (messages.length == 0) {
 				String errorLog =
@@ -203,7 +329,7 @@ public final class GmailUtils {
 			log.info("Number of fetched messages:" + messages.length);
 			storeMailListInResponse(messages, messageContext, responseElementName, true);
 			folder.copyMessages(messages, trash);
-			folder.close(true);
+			GmailIMAPStorePool.getInstance().releaseFolder(store, folder);
 		} catch (MessagingException e) {
 			log.error("Error while deleting messages");
 			throw (e);
@@ -220,22 +346,33 @@ public final class GmailUtils {
 	 *            IMAPStore
 	 * @param term
 	 *            Search term
+	 * @param fetchParts
+	 *            the parts of the messages to read, "headers", "text", "full"
+	 *            or "stream". Attachments are read into memory with "full".
+	 *            With "stream" they are fetched only when the outbound
+	 *            transport reads them, and the store stays borrowed until then.
 	 * @param responseElementName
 	 *            Name of the response element name
 	 * @throws MessagingException
 	 *             if any failure occur while reading messages
 	 * @throws ConnectException
-	 *             if no messages are fetched to read
+	 *             if no messages are fetched to read or the fetch parts are
+	 *             invalid
 	 */
 	public static void readMails(MessageContext messageContext, IMAPStore store, SearchTerm term,
-	                             String responseElementName) throws MessagingException,
-	                                                        ConnectException {
+	                             String fetchParts, String responseElementName)
+	                                                                           throws MessagingException,
+	                                                                           ConnectException {
+		fetchParts = getFetchParts(fetchParts);
 		FetchProfile fetchprofile = getFetchProfile();
+		if (!GmailConstants.GMAIL_FETCH_PARTS_HEADERS.equals(fetchParts)) {
+			// Fetches the body structures along with the headers.
+			fetchprofile.add(FetchProfile.Item.CONTENT_INFO);
+		}
 		Message[] messages = null;
 		try {
 			log.info("Started reading messages");
-			IMAPFolder folder = getFolder(GmailConstants.GMAIL_ALL_MAIL, store);
-			folder.open(Folder.READ_WRITE);
+			IMAPFolder folder = openFolder(GmailConstants.GMAIL_ALL_MAIL, store, Folder.READ_WRITE);
 			messages = folder.search(term);
 			if (messages.length == 0) {
 				String errorLog =
@@ -247,8 +384,20 @@ public final class GmailUtils {
 			log.info("Fetching messages");
 			folder.fetch(messages, fetchprofile);
 			log.info("Number of fetched messages:" + messages.length);
-			storeMailListInResponse(messages, messageContext, responseElementName, true);
-			folder.close(true);
+			GmailAttachmentLease lease = null;
+			if (GmailConstants.GMAIL_FETCH_PARTS_STREAM.equals(fetchParts)) {
+				lease = new GmailAttachmentLease(store);
+			}
+			storeMailListInResponse(messages, messageContext, responseElementName, fetchParts, lease);
+			GmailIMAPStorePool.getInstance().releaseFolder(store, folder);
+			if (lease != null && lease.hasAttachments()) {
+				// The lease returns the store to the pool once the attachments
+				// are read, instead of the operation.
+				GmailIMAPStorePool.getInstance().startLease(lease);
+				((Axis2MessageContext) messageContext).getAxis2MessageContext()
+				                                      .getOperationContext()
+				                                      .removeProperty(GmailConstants.GMAIL_IMAP_STORE_INSTANCE);
+			}
 		} catch (MessagingException e) {
 			log.error("Failure while fetching messages");
 			throw (e);
@@ -281,9 +430,8 @@ public final class GmailUtils {
 		FetchProfile fetchprofile = getFetchProfile();
 		IMAPMessage[] messages = null;
 		try {
-			IMAPFolder folder = getFolder(GmailConstants.GMAIL_ALL_MAIL, store);
 			log.info("Reading messages");
-			folder.open(Folder.READ_WRITE);
+			IMAPFolder folder = openFolder(GmailConstants.GMAIL_ALL_MAIL, store, Folder.READ_WRITE);
 			messages = (IMAPMessage[]) folder.search(term);
 			if (messages.length == 0) {
 				String errorLog =
@@ -297,7 +445,7 @@ public final class GmailUtils {
 			log.info("Number of fetched messages:" + messages.length);
 			folder.setGoogleMessageLabels(messages, labels, true);
 			GmailUtils.storeMailListInResponse(messages, messageContext, responseElementName, false);
-			folder.close(true);
+			GmailIMAPStorePool.getInstance().releaseFolder(store, folder);
 		} catch (MessagingException e) {
 			log.error("Error while deleting messages");
 			throw (e);
@@ -336,6 +484,37 @@ public final class GmailUtils {
 	public static void storeMailListInResponse(Message[] messagesArray,
 	                                           MessageContext messageContext,
 	                                           String resultElementName, boolean storeContent) {
+		storeMailListInResponse(messagesArray, messageContext, resultElementName,
+		                        storeContent ? GmailConstants.GMAIL_FETCH_PARTS_FULL
+		                                    : GmailConstants.GMAIL_FETCH_PARTS_HEADERS, null);
+	}
+
+	/**
+	 * Store resulted e-mail messages in the response.
+	 * 
+	 * @param messagesArray
+	 *            Array of {@link Message}
+	 * @param messageContext
+	 *            Message Context where the messages should be stored
+	 * @param resultElementName
+	 *            Name of the result element
+	 * @param fetchParts
+	 *            "headers" to store only the headers of the messages, "text" to
+	 *            store their text content too, or "full" or "stream" to store
+	 *            their attachments too
+	 * @param lease
+	 *            if not null, the attachments are added to the message context
+	 *            as data handlers which fetch them from the leased store when
+	 *            they are read, otherwise they are read into memory
+	 */
+	public static void storeMailListInResponse(Message[] messagesArray,
+	                                           MessageContext messageContext,
+	                                           String resultElementName, String fetchParts,
+	                                           GmailAttachmentLease lease) {
+		boolean storeContent = !GmailConstants.GMAIL_FETCH_PARTS_HEADERS.equals(fetchParts);
+		boolean storeAttachments =
+		                           GmailConstants.GMAIL_FETCH_PARTS_FULL.equals(fetchParts) ||
+		                                   GmailConstants.GMAIL_FETCH_PARTS_STREAM.equals(fetchParts);
 		log.info("Storing the response in the message context");
 		if (messageContext.getEnvelope().getBody().getFirstElement() != null) {
 			messageContext.getEnvelope().getBody().getFirstElement().detach();
@@ -426,7 +605,8 @@ public final class GmailUtils {
 						content.setText("\n" +
 						                GmailUtils.processMessageBody(message, messageContext,
 						                                              attachmentContentIDs,
-						                                              messageID));
+						                                              messageID, storeAttachments,
+						                                              lease));
 					} catch (Exception e) {
 						log.info("Cannot retrive \"Message Content\".");
 					}
@@ -454,22 +634,32 @@ public final class GmailUtils {
 	 *            file names as the content IDs of the attachments
 	 * @param messageID
 	 *            ID of the message.
+	 * @param storeAttachments
+	 *            whether the attachments are added to the message context
+	 * @param lease
+	 *            lease of the store the attachments are fetched from when they
+	 *            are read, or null to read them into memory
 	 * @return
 	 * @throws IOException
 	 * @throws MessagingException
 	 */
 	private static String processMessageBody(Message message, MessageContext messageContext,
-	                                         StringBuilder attachmentContentIDs, String messageID)
-	                                                                                              throws IOException,
-	                                                                                              MessagingException {
+	                                         StringBuilder attachmentContentIDs, String messageID,
+	                                         boolean storeAttachments, GmailAttachmentLease lease)
+	                                                                                            throws IOException,
+	                                                                                            MessagingException {
 		Object content = message.getContent();
 		if (content instanceof Multipart) {
 			Multipart multiPart = (Multipart) content;
 			StringBuilder builder = new StringBuilder();
 			return procesMultiPart(builder, multiPart, messageContext, attachmentContentIDs,
-			                       messageID);
+			                       messageID, storeAttachments, lease);
 		} else if (content instanceof String) {
 			return content.toString();
+		} else if (content instanceof InputStream && !storeAttachments) {
+			// Only the text content is requested.
+			((InputStream) content).close();
+			return "";
 		} else if (content instanceof InputStream) {
 			InputStream inStream = (InputStream) content;
 			BufferedReader br = new BufferedReader(new InputStreamReader(inStream));
@@ -516,6 +706,95 @@ public final class GmailUtils {
 		return batchNumber;
 	}
 
+	/**
+	 * Reads the parts of the messages to fetch from the input string.
+	 * 
+	 * @param fetchParts
+	 *            input string
+	 * @return "headers", "text", "full" or "stream", "full" if the input is
+	 *         empty
+	 * @throws ConnectException
+	 *             if the input is not one of the fetch parts
+	 */
+	public static String getFetchParts(String fetchParts) throws ConnectException {
+		if (fetchParts == null || "".equals(fetchParts.trim())) {
+			return GmailConstants.GMAIL_FETCH_PARTS_FULL;
+		}
+		String parts = fetchParts.trim().toLowerCase();
+		if (!GmailConstants.GMAIL_FETCH_PARTS_HEADERS.equals(parts) &&
+		    !GmailConstants.GMAIL_FETCH_PARTS_TEXT.equals(parts) &&
+		    !GmailConstants.GMAIL_FETCH_PARTS_FULL.equals(parts) &&
+		    !GmailConstants.GMAIL_FETCH_PARTS_STREAM.equals(parts)) {
+			String errorLog = "fetchParts should be \"headers\", \"text\", \"full\" or \"stream\"";
+			log.error(errorLog);
+			ConnectException connectException = new ConnectException(errorLog);
+			throw (connectException);
+		}
+		return parts;
+	}
+
+	/**
+	 * Builds the key under which the IMAP stores and the SMTP transports of a
+	 * login are pooled, from the login mode, the user name and a digest of the
+	 * password or the access token.
+	 * 
+	 * @param login
+	 *            the login details returned by
+	 *            {@link #getLoginDetails(MessageContext)}
+	 * @return the pool key
+	 */
+	public static String getPoolKey(String[] login) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			StringBuilder key = new StringBuilder();
+			key.append(login[0]).append(':').append(login[1]).append(':');
+			for (byte b : digest.digest(login[2].getBytes("UTF-8"))) {
+				key.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads the login mode, the user name and the password or the access token
+	 * of the configured login.
+	 * 
+	 * @param messageContext
+	 *            Message context where the login details are stored.
+	 * @return the login mode, the user name and the credential
+	 * @throws ConnectException
+	 *             if the login details were not initialized
+	 */
+	public static String[] getLoginDetails(MessageContext messageContext) throws ConnectException {
+		org.apache.axis2.context.MessageContext axis2MsgCtx =
+		                                                      ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+
+		// Login mode should have been defined during either "init" or
+		// "passwordLogin" operations.
+		Object loginMode = axis2MsgCtx.getProperty(GmailConstants.GMAIL_LOGIN_MODE);
+		Object username = null;
+		Object credential = null;
+		if (loginMode != null && loginMode.toString().equals(GmailConstants.GMAIL_SASL_LOGIN_MODE)) {
+			username = messageContext.getProperty(GmailConstants.GMAIL_USER_USERNAME);
+			credential = messageContext.getProperty(GmailConstants.GMAIL_USER_PASSWORD);
+		} else if (loginMode != null &&
+		           loginMode.toString().equals(GmailConstants.GMAIL_OAUTH_LOGIN_MODE)) {
+			username = messageContext.getProperty(GmailConstants.GMAIL_OAUTH_USERNAME);
+			credential = messageContext.getProperty(GmailConstants.GMAIL_OAUTH_ACCESS_TOKEN);
+		}
+		if (username == null || credential == null) {
+			String errorLog = "Gmail configuration details were not initialized";
+			log.error(errorLog);
+			ConnectException connectException = new ConnectException(errorLog);
+			throw (connectException);
+		}
+		return new String[] { loginMode.toString(), username.toString(), credential.toString() };
+	}
+
 	/**
 	 * Close and remove the already stored IMAP and SMTP connections
 	 * 
@@ -532,14 +811,15 @@ public final class GmailUtils {
 		OperationContext operationContext = axis2MessageContext.getOperationContext();
 		if (operationContext.getProperty(GmailConstants.GMAIL_IMAP_STORE_INSTANCE) != null) {
 			log.info("Closing the previously opened IMAP Store");
-			((IMAPStore) operationContext.getProperty(GmailConstants.GMAIL_IMAP_STORE_INSTANCE)).close();
+			GmailIMAPStorePool.getInstance()
+			                  .invalidate((IMAPStore) operationContext.getProperty(GmailConstants.GMAIL_IMAP_STORE_INSTANCE));
 			operationContext.removeProperty(GmailConstants.GMAIL_IMAP_STORE_INSTANCE);
 		}
 
 		if (operationContext.getProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE) != null) {
 			log.info("Closing the previously opened SMTP transport");
-			((GmailSMTPConnectionObject) operationContext.getProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE)).getTransport()
-			                                                                                                         .close();
+			GmailSMTPTransportPool.getInstance()
+			                      .invalidate((GmailSMTPConnectionObject) operationContext.getProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE));
 			operationContext.removeProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE);
 		}
 
@@ -590,6 +870,43 @@ public final class GmailUtils {
 		messageContext.getEnvelope().getBody().addChild(result);
 	}
 
+	/**
+	 * Store the response for mailbox watch operations.
+	 * 
+	 * @param responseElementName
+	 *            Response element's name
+	 * @param folder
+	 *            Name of the watched folder
+	 * @param sequence
+	 *            Name of the sequence the new mails are mediated through
+	 * @param status
+	 *            Status of the watch
+	 * @param messageContext
+	 *            Message context where the response should be stored
+	 */
+	public static void storeMailboxWatchResponse(String responseElementName, String folder,
+	                                             String sequence, String status,
+	                                             MessageContext messageContext) {
+		log.info("Storing the response in the message context");
+		if (messageContext.getEnvelope().getBody().getFirstElement() != null) {
+			messageContext.getEnvelope().getBody().getFirstElement().detach();
+		}
+		OMFactory factory = OMAbstractFactory.getOMFactory();
+		OMNamespace ns = factory.createOMNamespace("http://org.wso2.esbconnectors.gmail", "ns");
+		OMElement result = factory.createOMElement(responseElementName, ns);
+
+		OMElement folderElement = factory.createOMElement("folder", ns);
+		folderElement.setText(folder);
+		result.addChild(folderElement);
+		OMElement sequenceElement = factory.createOMElement("sequence", ns);
+		sequenceElement.setText(sequence);
+		result.addChild(sequenceElement);
+		OMElement statusElement = factory.createOMElement("status", ns);
+		statusElement.setText(status);
+		result.addChild(statusElement);
+		messageContext.getEnvelope().getBody().addChild(result);
+	}
+
 	/**
 	 * Creates a new {@link Message}.
 	 * 
@@ -708,32 +1025,26 @@ public final class GmailUtils {
 	}
 
 	/**
-	 * Returns a batch of 50 e-mail messages according to the given batch number
+	 * Opens an {@link IMAPFolder} of the given {@link IMAPStore} in the given
+	 * mode. The folder is reused if the store is pooled and has already opened
+	 * it.
 	 * 
-	 * @param messages
-	 *            Array of {@link Message}
-	 * @param batchNumber
-	 *            The batch number
-	 * @return a batch of 50 e-mail messages
+	 * @param folderName
+	 *            name of the {@link IMAPFolder}
+	 * @param store
+	 *            {@link IMAPStore} instance where the folder is located
+	 * @param mode
+	 *            {@link Folder#READ_ONLY} or {@link Folder#READ_WRITE}
+	 * @return the open folder
+	 * @throws MessagingException
+	 *             as a result of the failures occur while opening the folder
+	 * @throws ConnectException
+	 *             if the folder is null
 	 */
-	private static Message[] getBatch(Message[] messages, int batchNumber) {
-		Message[] newMessages;
-		if (messages.length > GmailConstants.GMAIL_BATCH_SIZE * batchNumber) {
-			newMessages =
-			              Arrays.copyOfRange(messages, messages.length -
-			                                           GmailConstants.GMAIL_BATCH_SIZE *
-			                                           batchNumber,
-			                                 messages.length - GmailConstants.GMAIL_BATCH_SIZE *
-			                                         (batchNumber - 1));
-		} else if (messages.length > GmailConstants.GMAIL_BATCH_SIZE * (batchNumber - 1)) {
-			newMessages =
-			              Arrays.copyOfRange(messages, 0, messages.length -
-			                                              GmailConstants.GMAIL_BATCH_SIZE *
-			                                              (batchNumber - 1));
-		} else {
-			newMessages = new Message[0];
-		}
-		return newMessages;
+	private static IMAPFolder openFolder(String folderName, IMAPStore store, int mode)
+	                                                                                throws MessagingException,
+	                                                                                ConnectException {
+		return GmailIMAPStorePool.getInstance().openFolder(store, getFolder(folderName, store), mode);
 	}
 
 	/**
@@ -749,33 +1060,42 @@ public final class GmailUtils {
 	 *            String builder to store content IDs of the attachments
 	 * @param messageID
 	 *            ID of the message
+	 * @param storeAttachments
+	 *            whether the attachments are added to the message context
+	 * @param lease
+	 *            lease of the store the attachments are fetched from when they
+	 *            are read, or null to read them into memory
 	 * @return the {@link Multipart} content as a {@link String}
 	 * @throws MessagingException
 	 * @throws IOException
 	 */
 	private static String procesMultiPart(StringBuilder contentBuilder, Multipart multipart,
 	                                      MessageContext messageContext,
-	                                      StringBuilder attachmentContentIDs, String messageID)
-	                                                                                           throws MessagingException,
-	                                                                                           IOException {
+	                                      StringBuilder attachmentContentIDs, String messageID,
+	                                      boolean storeAttachments, GmailAttachmentLease lease)
+	                                                                                          throws MessagingException,
+	                                                                                          IOException {
 		int multiPartCount = multipart.getCount();
 		for (int i = 0; i < multiPartCount; i++) {
 			BodyPart bodyPart = multipart.getBodyPart(i);
 
+			// The MIME type is checked first, since reading the content of a
+			// part which is not multipart starts fetching it.
 			if (bodyPart.isMimeType("text/plain")) {
 				contentBuilder.append("Text:\n" + bodyPart.getContent() + "\n");
-			} else if (bodyPart.getContent() instanceof Multipart) {
+			} else if (bodyPart.isMimeType("multipart/*")) {
 				procesMultiPart(contentBuilder, (Multipart) bodyPart.getContent(), messageContext,
-				                attachmentContentIDs, messageID);
+				                attachmentContentIDs, messageID, storeAttachments, lease);
 			} else if (null != bodyPart.getDisposition() &&
 			           bodyPart.getDisposition().equalsIgnoreCase(Part.ATTACHMENT)) {
 				String fileName = bodyPart.getFileName();
-				String attachmentID = messageID + fileName;
 				contentBuilder.append("Attachment:" + fileName + "\n");
-				attachmentContentIDs.append(attachmentID);
-				attachmentContentIDs.append(',');
-				addAttachmentToMessageContext(attachmentID, bodyPart.getInputStream(),
-				                              bodyPart.getContentType(), messageContext);
+				if (storeAttachments) {
+					String attachmentID = messageID + fileName;
+					attachmentContentIDs.append(attachmentID);
+					attachmentContentIDs.append(',');
+					addAttachmentToMessageContext(attachmentID, bodyPart, messageContext, lease);
+				}
 			} else if (null != bodyPart.getDisposition() &&
 			           bodyPart.getDisposition().equalsIgnoreCase(Part.INLINE)) {
 				String fileName = bodyPart.getFileName();
@@ -791,29 +1111,35 @@ public final class GmailUtils {
 	 * 
 	 * @param attachmentContentID
 	 *            Content ID (file name) of the attachment
-	 * @param inputStream
-	 *            Input stream to attach
-	 * @param type
-	 *            Content type of the attachment
+	 * @param bodyPart
+	 *            Body part of the attachment
 	 * @param messageContext
 	 *            Message context to where the attachments should be added
+	 * @param lease
+	 *            if not null, the attachment is fetched from the leased store
+	 *            only when it is read, otherwise it is read into memory
 	 * @throws IOException
 	 *             as a result of the failures occur while getting the byte
 	 *             array from the input stream
+	 * @throws MessagingException
+	 *             as a result of the failures occur while reading the body part
 	 */
 	private static void addAttachmentToMessageContext(String attachmentContentID,
-	                                                  InputStream inputStream, String type,
-	                                                  MessageContext messageContext)
-	                                                                                throws IOException {
+	                                                  BodyPart bodyPart,
+	                                                  MessageContext messageContext,
+	                                                  GmailAttachmentLease lease)
+	                                                                           throws IOException,
+	                                                                           MessagingException {
 		org.apache.axis2.context.MessageContext axis2mc =
 		                                                  ((Axis2MessageContext) messageContext).getAxis2MessageContext();
-		byte[] bytes = IOUtils.toByteArray(inputStream);
-		javax.mail.util.ByteArrayDataSource source =
-		                                             new javax.mail.util.ByteArrayDataSource(bytes,
-		                                                                                     type);
-		javax.activation.DataHandler handler =
-		                                       new javax.activation.DataHandler(
-		                                                                        (javax.activation.DataSource) source);
+		javax.activation.DataSource source;
+		if (lease != null) {
+			source = new GmailBodyPartDataSource(bodyPart, bodyPart.getFileName(), lease);
+		} else {
+			byte[] bytes = IOUtils.toByteArray(bodyPart.getInputStream());
+			source = new javax.mail.util.ByteArrayDataSource(bytes, bodyPart.getContentType());
+		}
+		javax.activation.DataHandler handler = new javax.activation.DataHandler(source);
 		axis2mc.addAttachment(attachmentContentID, handler);
 		log.info("Added an attachemnt named \"" + attachmentContentID + "\" to message context");
 	}
@@ -28,6 +28,7 @@ import java.util.UUID;
 
 import javax.activation.DataHandler;
 import javax.activation.FileDataSource;
+import javax.xml.namespace.QName;
 
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.util.AXIOMUtil;
@@ -294,6 +295,79 @@ public class GmailConnectorIntegrationTest extends ESBIntegrationTest {
         }    	
     }
     
+    @Test(groups = {"wso2.esb"},priority = 4,
+    		description = "Gmail {sendBulkMail} method {optional parameters} Integration Tests")
+    public void testSendBulkMailOptionalParams() throws Exception {
+    	final String methodName = "sendBulkMail";
+        final String omString =
+                "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:urn=\"urn:wso2.connector.gmail.sendbulkmail\">\n" 
+                		+ "   <soapenv:Header/>\n"
+                        + "   <soapenv:Body>\n" 
+                		+ "		<root>\n" 
+                        + "   		<urn:username>" + gmailConnectorProperties.get("userEmailAddress") + "</urn:username>\n"
+                        + "   		<urn:oauthAccessToken>" + gmailConnectorProperties.get("oauthAccessToken") + "</urn:oauthAccessToken>\n"
+                        + "   		<urn:recipients>" + gmailConnectorProperties.get("recipientsSet1") + "," + gmailConnectorProperties.get("recipientsSet2") + "</urn:recipients>\n"
+                        + "   		<urn:subject>" + this.mailSubject + "</urn:subject>\n"
+                        + "   		<urn:textContent>This is the text content of the bulk e-mail message.</urn:textContent>\n"
+                        + "   		<urn:connections>2</urn:connections>\n"
+                        + "		</root>\n" 
+                        + "   </soapenv:Body>\n" 
+                        + "</soapenv:Envelope>";
+        
+        proxyAdmin.addProxyService(new DataHandler(new URL("file:" + File.separator + File.separator + ProductConstant.SYSTEM_TEST_RESOURCE_LOCATION 
+                                                           + ConnectorIntegrationUtil.ESB_CONFIG_LOCATION + File.separator + "proxies" + File.separator 
+                                                           + CONNECTOR_NAME + File.separator + CONNECTOR_NAME + "_" + methodName + ".xml")));
+        OMElement requestEnvelope = AXIOMUtil.stringToOM(omString);
+        
+        OperationClient mepClient = null;
+        mepClient = ConnectorIntegrationUtil.buildMEPClient(new EndpointReference(getProxyServiceURL(CONNECTOR_NAME + "_" + methodName)),
+                                                                          requestEnvelope);        
+        try {
+            mepClient.execute(true); 
+            MessageContext responseMsgCtx = mepClient.getMessageContext(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
+            OMElement response = responseMsgCtx.getEnvelope().getBody().getFirstElement();
+            Assert.assertEquals(response.getLocalName(), "sendBulkMailResponse", "Validated the response node name");
+            Assert.assertEquals(response.getFirstChildWithName(new QName(response.getNamespace().getNamespaceURI(), "sent")).getText(), "2",
+                                "Every mail of the batch is sent");
+        } finally {
+            proxyAdmin.deleteProxy(CONNECTOR_NAME + "_" + methodName);
+        }    	
+    }
+    
+    @Test(expectedExceptions = AxisFault.class, groups = {"wso2.esb"},priority = 4,
+    		description = "Gmail {sendBulkMail} method {optional negative params} Integration Tests")
+    public void testSendBulkMailOptionalNegativeParams() throws Exception {
+    	final String methodName = "sendBulkMail";
+    	
+    	// Sending the batch over more connections than the pool allows.
+        final String omString =
+                "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:urn=\"urn:wso2.connector.gmail.sendbulkmail\">\n" 
+                		+ "   <soapenv:Header/>\n"
+                        + "   <soapenv:Body>\n" 
+                		+ "		<root>\n" 
+                        + "   		<urn:username>" + gmailConnectorProperties.get("userEmailAddress") + "</urn:username>\n"
+                        + "   		<urn:oauthAccessToken>" + gmailConnectorProperties.get("oauthAccessToken") + "</urn:oauthAccessToken>\n"
+                        + "   		<urn:recipients>" + gmailConnectorProperties.get("recipientsSet1") + "," + gmailConnectorProperties.get("recipientsSet2") + "</urn:recipients>\n"
+                        + "   		<urn:subject>" + this.mailSubject + "</urn:subject>\n"
+                        + "   		<urn:connections>6</urn:connections>\n"
+                        + "		</root>\n" 
+                        + "   </soapenv:Body>\n" 
+                        + "</soapenv:Envelope>";
+        
+        proxyAdmin.addProxyService(new DataHandler(new URL("file:" + File.separator + File.separator + ProductConstant.SYSTEM_TEST_RESOURCE_LOCATION 
+                                                           + ConnectorIntegrationUtil.ESB_CONFIG_LOCATION + File.separator + "proxies" + File.separator 
+                                                           + CONNECTOR_NAME + File.separator + CONNECTOR_NAME + "_" + methodName + ".xml")));
+        OMElement requestEnvelope = AXIOMUtil.stringToOM(omString);
+        OperationClient mepClient = null;
+        mepClient = ConnectorIntegrationUtil.buildMEPClient(new EndpointReference(getProxyServiceURL(CONNECTOR_NAME + "_" + methodName)),
+                                                                 requestEnvelope);       
+        try {
+            mepClient.execute(true); 
+        } finally {
+            proxyAdmin.deleteProxy(CONNECTOR_NAME + "_" + methodName);
+        }    	
+    }
+    
     @Test(groups = {"wso2.esb"},priority = 2, dependsOnMethods = {"testSendMailOptionalParams" },
     		description = "Gmail {searchMails} method {mandatory parameters} Integration Tests")
     public void testSearchMailsMandatoryParams() throws Exception {
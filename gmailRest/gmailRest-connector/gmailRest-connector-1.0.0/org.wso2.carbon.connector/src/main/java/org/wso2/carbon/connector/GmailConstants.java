@@ -247,4 +247,26 @@ public final class GmailConstants {
      * SMTP port
      */
     public static final int GMAIL_SMTP_PORT = 587;
+
+    /**
+     * Maximum number of idle SMTP transports pooled for a login
+     */
+    public static final int GMAIL_SMTP_POOL_MAX_IDLE_PER_KEY = 5;
+
+    /**
+     * Time in milliseconds after which an idle pooled SMTP transport is closed
+     */
+    public static final long GMAIL_SMTP_POOL_IDLE_TIMEOUT = 120000;
+
+    /**
+     * Time in milliseconds a pooled SMTP transport may be idle before it is
+     * checked with a NOOP command when it is borrowed
+     */
+    public static final long GMAIL_SMTP_POOL_VALIDATION_INTERVAL = 15000;
+
+    /**
+     * Object name of the SMTP transport pool metrics MBean
+     */
+    public static final String GMAIL_SMTP_POOL_MBEAN_NAME =
+            "org.wso2.carbon.connector.gmailRest:type=SMTPTransportPool";
 }
@@ -24,9 +24,15 @@ import org.apache.synapse.MessageContext;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.wso2.carbon.connector.core.ConnectException;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 /**
  * Class which loads the {@link GmailSMTPConnectionObject} according to the
- * authentication mode.
+ * authentication mode. The transports are borrowed from the
+ * {@link GmailSMTPTransportPool}, so the messages mediated with the same login
+ * share the authenticated SMTP connections.
  */
 public class GmailSMTPClientLoader {
 
@@ -37,7 +43,9 @@ public class GmailSMTPClientLoader {
 
     /**
      * Method which loads the {@link GmailSMTPConnectionObject} instance
-     * according to the authentication mode.
+     * according to the authentication mode. An idle pooled transport of the
+     * same login is used if there is one, otherwise a new transport is logged
+     * in and added to the pool.
      *
      * @param messageContext
      *            Message context where the instantiated
@@ -77,7 +85,22 @@ public class GmailSMTPClientLoader {
             throw (connectException);
         }
 
-        GmailSMTPConnectionObject smtpConnectionObject = null;
+        String poolKey = this.getPoolKey(messageContext, loginMode.toString());
+        if (poolKey == null) {
+            String errorLog = "Gmail configuration details were not initialized";
+            log.error(errorLog);
+            ConnectException connectException = new ConnectException(errorLog);
+            throw (connectException);
+        }
+        GmailSMTPTransportPool pool = GmailSMTPTransportPool.getInstance();
+        GmailSMTPConnectionObject smtpConnectionObject = pool.borrow(poolKey);
+        if (smtpConnectionObject != null) {
+            log.info("Reusing a pooled SMTP transport");
+            axis2MsgCtx.getOperationContext()
+                    .setProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE, smtpConnectionObject);
+            return smtpConnectionObject;
+        }
+        long loginStart = System.currentTimeMillis();
 
         // Perform SASL authentication if configured using the "Password Login"
         // operation.
@@ -116,10 +139,117 @@ public class GmailSMTPClientLoader {
             throw (connectException);
         }
 
-        // Stores the newly instantiated GmailSMTPConnectionObject in the
-        // operation context.
+        long loginTime = System.currentTimeMillis() - loginStart;
+        pool.add(poolKey, smtpConnectionObject, loginTime);
+        log.info("SMTP login completed in " + loginTime + " ms (pool hits: " + pool.getHitCount() +
+                ", misses: " + pool.getMissCount() + ")");
+
+        // Stores the GmailSMTPConnectionObject in the operation context until
+        // it is released.
         axis2MsgCtx.getOperationContext()
                 .setProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE, smtpConnectionObject);
         return smtpConnectionObject;
     }
+
+    /**
+     * Returns the SMTP transport loaded for the operation to the pool.
+     *
+     * @param messageContext
+     *            Message context where the loaded transport is stored.
+     */
+    public void releaseSMTPSession(MessageContext messageContext) {
+        GmailSMTPConnectionObject smtpConnectionObject = this.removeSMTPSession(messageContext);
+        if (smtpConnectionObject != null) {
+            GmailSMTPTransportPool.getInstance().release(smtpConnectionObject);
+        }
+    }
+
+    /**
+     * Closes the SMTP transport loaded for the operation, since a send through
+     * it has failed and the connection may be broken.
+     *
+     * @param messageContext
+     *            Message context where the loaded transport is stored.
+     */
+    public void invalidateSMTPSession(MessageContext messageContext) {
+        GmailSMTPConnectionObject smtpConnectionObject = this.removeSMTPSession(messageContext);
+        if (smtpConnectionObject != null) {
+            GmailSMTPTransportPool.getInstance().invalidate(smtpConnectionObject);
+        }
+    }
+
+    /**
+     * Closes the idle pooled SMTP transports of the configured login.
+     *
+     * @param messageContext
+     *            Message context where the login details are stored.
+     */
+    public void closePooledSMTPSessions(MessageContext messageContext) {
+        org.apache.axis2.context.MessageContext axis2MsgCtx =
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+        Object loginMode = axis2MsgCtx.getProperty(GmailConstants.GMAIL_LOGIN_MODE);
+        if (loginMode == null) {
+            return;
+        }
+        String poolKey = this.getPoolKey(messageContext, loginMode.toString());
+        if (poolKey != null) {
+            GmailSMTPTransportPool.getInstance().invalidate(poolKey);
+        }
+    }
+
+    /**
+     * Removes the SMTP transport loaded for the operation from the operation
+     * context.
+     */
+    private GmailSMTPConnectionObject removeSMTPSession(MessageContext messageContext) {
+        org.apache.axis2.context.MessageContext axis2MsgCtx =
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+        Object smtpConnectionObject =
+                axis2MsgCtx.getOperationContext()
+                        .getProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE);
+        if (smtpConnectionObject != null) {
+            axis2MsgCtx.getOperationContext()
+                    .removeProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE);
+        }
+        return (GmailSMTPConnectionObject) smtpConnectionObject;
+    }
+
+    /**
+     * Builds the pool key of the configured login from the login mode, the user
+     * name and a digest of the password or the access token.
+     *
+     * @param messageContext
+     *            Message context where the login details are stored.
+     * @param loginMode
+     *            the login mode
+     * @return the pool key, or null if the login details are missing
+     */
+    private String getPoolKey(MessageContext messageContext, String loginMode) {
+        Object username;
+        Object credential;
+        if (loginMode.equals(GmailConstants.GMAIL_SASL_LOGIN_MODE)) {
+            username = messageContext.getProperty(GmailConstants.GMAIL_USER_USERNAME);
+            credential = messageContext.getProperty(GmailConstants.GMAIL_USER_PASSWORD);
+        } else {
+            username = messageContext.getProperty(GmailConstants.GMAIL_OAUTH_USERNAME);
+            credential = messageContext.getProperty(GmailConstants.GMAIL_OAUTH_ACCESS_TOKEN);
+        }
+        if (username == null || credential == null) {
+            return null;
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder key = new StringBuilder();
+            key.append(loginMode).append(':').append(username).append(':');
+            for (byte b : digest.digest(credential.toString().getBytes("UTF-8"))) {
+                key.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *   WSO2 Inc. licenses this file to you under the Apache License,
+ *   Version 2.0 (the "License"); you may not use this file except
+ *   in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.connector;
+
+import com.google.code.javax.mail.MessagingException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of authenticated SMTP transports shared by the send operations of all
+ * the messages mediated with the same login. A transport is borrowed by one
+ * sender at a time and stays connected while it is in the pool, so that
+ * consecutive mails neither negotiate TLS nor authenticate again.
+ */
+public final class GmailSMTPTransportPool implements GmailSMTPTransportPoolMBean {
+
+    /**
+     * Log instance.
+     */
+    private static Log log = LogFactory.getLog(GmailSMTPTransportPool.class);
+
+    /**
+     * The pool instance.
+     */
+    private static final GmailSMTPTransportPool INSTANCE = new GmailSMTPTransportPool();
+
+    /**
+     * Idle transports by their pool keys, the most recently used transport
+     * first.
+     */
+    private final Map<String, LinkedList<PooledTransport>> idleTransports =
+            new HashMap<String, LinkedList<PooledTransport>>();
+
+    /**
+     * All the pooled transports, both idle and borrowed.
+     */
+    private final Map<GmailSMTPConnectionObject, PooledTransport> pooledTransports =
+            new IdentityHashMap<GmailSMTPConnectionObject, PooledTransport>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong logins = new AtomicLong();
+
+    private final AtomicLong loginTime = new AtomicLong();
+
+    /**
+     * Making the default constructor private since the pool is shared.
+     */
+    private GmailSMTPTransportPool() {
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "gmailrest-smtp-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                evictIdleTransports();
+            }
+        }, GmailConstants.GMAIL_SMTP_POOL_IDLE_TIMEOUT, GmailConstants.GMAIL_SMTP_POOL_IDLE_TIMEOUT,
+                TimeUnit.MILLISECONDS);
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(this, new ObjectName(GmailConstants.GMAIL_SMTP_POOL_MBEAN_NAME));
+        } catch (Exception e) {
+            log.warn("Unable to register the SMTP transport pool metrics", e);
+        }
+    }
+
+    /**
+     * Returns the pool instance.
+     *
+     * @return the pool
+     */
+    public static GmailSMTPTransportPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Borrows an idle transport of the given key. A transport which has been
+     * idle longer than the validation interval is checked with a NOOP command
+     * before it is returned, and closed if the check fails.
+     *
+     * @param key
+     *            pool key of the login
+     * @return a connected transport, or null if the pool has no idle transport
+     *         for the key
+     */
+    public GmailSMTPConnectionObject borrow(String key) {
+        while (true) {
+            PooledTransport pooledTransport;
+            synchronized (this) {
+                LinkedList<PooledTransport> transports = idleTransports.get(key);
+                if (transports == null || transports.isEmpty()) {
+                    misses.incrementAndGet();
+                    return null;
+                }
+                pooledTransport = transports.removeFirst();
+            }
+
+            // SMTPTransport#isConnected() sends a NOOP to the server.
+            long idleTime = System.currentTimeMillis() - pooledTransport.lastUsed;
+            if (idleTime < GmailConstants.GMAIL_SMTP_POOL_VALIDATION_INTERVAL ||
+                pooledTransport.connection.getTransport().isConnected()) {
+                hits.incrementAndGet();
+                return pooledTransport.connection;
+            }
+            log.info("Discarding a disconnected SMTP transport");
+            discard(pooledTransport);
+        }
+    }
+
+    /**
+     * Adds a newly logged in transport to the pool as a borrowed transport.
+     *
+     * @param key
+     *            pool key of the login
+     * @param connection
+     *            the logged in transport and its session
+     * @param loginMillis
+     *            time taken to log in, in milliseconds
+     */
+    public synchronized void add(String key, GmailSMTPConnectionObject connection,
+            long loginMillis) {
+        pooledTransports.put(connection, new PooledTransport(key, connection));
+        logins.incrementAndGet();
+        loginTime.addAndGet(loginMillis);
+    }
+
+    /**
+     * Returns a borrowed transport to the pool. The transport is closed if the
+     * key already has the maximum number of idle transports. A transport whose
+     * last send failed should be invalidated instead.
+     *
+     * @param connection
+     *            the borrowed transport
+     */
+    public void release(GmailSMTPConnectionObject connection) {
+        PooledTransport pooledTransport;
+        synchronized (this) {
+            pooledTransport = pooledTransports.get(connection);
+            if (pooledTransport == null) {
+                return;
+            }
+            LinkedList<PooledTransport> transports = idleTransports.get(pooledTransport.key);
+            if (transports == null) {
+                transports = new LinkedList<PooledTransport>();
+                idleTransports.put(pooledTransport.key, transports);
+            }
+            if (transports.size() < GmailConstants.GMAIL_SMTP_POOL_MAX_IDLE_PER_KEY) {
+                pooledTransport.lastUsed = System.currentTimeMillis();
+                transports.addFirst(pooledTransport);
+                return;
+            }
+        }
+        discard(pooledTransport);
+    }
+
+    /**
+     * Closes a borrowed transport and removes it from the pool.
+     *
+     * @param connection
+     *            the borrowed transport
+     */
+    public void invalidate(GmailSMTPConnectionObject connection) {
+        PooledTransport pooledTransport;
+        synchronized (this) {
+            pooledTransport = pooledTransports.get(connection);
+        }
+        if (pooledTransport != null) {
+            discard(pooledTransport);
+        } else {
+            close(connection);
+        }
+    }
+
+    /**
+     * Closes the idle transports of the given key, so that the next send logs
+     * in again.
+     *
+     * @param key
+     *            pool key of the login
+     */
+    public void invalidate(String key) {
+        List<PooledTransport> transports;
+        synchronized (this) {
+            transports = idleTransports.remove(key);
+        }
+        if (transports != null) {
+            for (PooledTransport pooledTransport : transports) {
+                discard(pooledTransport);
+            }
+        }
+    }
+
+    /**
+     * Closes the transports which have been idle longer than the idle timeout.
+     */
+    private void evictIdleTransports() {
+        long expiry = System.currentTimeMillis() - GmailConstants.GMAIL_SMTP_POOL_IDLE_TIMEOUT;
+        List<PooledTransport> evicted = new ArrayList<PooledTransport>();
+        synchronized (this) {
+            for (Iterator<LinkedList<PooledTransport>> keys = idleTransports.values().iterator(); keys.hasNext();) {
+                LinkedList<PooledTransport> transports = keys.next();
+                for (Iterator<PooledTransport> iterator = transports.iterator(); iterator.hasNext();) {
+                    PooledTransport pooledTransport = iterator.next();
+                    if (pooledTransport.lastUsed < expiry) {
+                        iterator.remove();
+                        evicted.add(pooledTransport);
+                    }
+                }
+                if (transports.isEmpty()) {
+                    keys.remove();
+                }
+            }
+        }
+        if (!evicted.isEmpty()) {
+            log.info("Closing " + evicted.size() + " idle SMTP transports");
+        }
+        for (PooledTransport pooledTransport : evicted) {
+            discard(pooledTransport);
+        }
+    }
+
+    /**
+     * Removes a transport from the pool and closes it.
+     */
+    private void discard(PooledTransport pooledTransport) {
+        synchronized (this) {
+            pooledTransports.remove(pooledTransport.connection);
+        }
+        close(pooledTransport.connection);
+    }
+
+    private static void close(GmailSMTPConnectionObject connection) {
+        try {
+            connection.getTransport().close();
+        } catch (MessagingException e) {
+            log.info("Failure while closing an SMTP transport: " + e.getMessage());
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getLoginCount() {
+        return logins.get();
+    }
+
+    public double getAverageLoginTime() {
+        long count = logins.get();
+        return count == 0 ? 0 : (double) loginTime.get() / count;
+    }
+
+    public synchronized int getPooledTransportCount() {
+        return pooledTransports.size();
+    }
+
+    public synchronized int getIdleTransportCount() {
+        int count = 0;
+        for (List<PooledTransport> transports : idleTransports.values()) {
+            count += transports.size();
+        }
+        return count;
+    }
+
+    /**
+     * A pooled transport and the time it was last used.
+     */
+    private static final class PooledTransport {
+
+        private final String key;
+
+        private final GmailSMTPConnectionObject connection;
+
+        /**
+         * Time the transport was last returned to the pool.
+         */
+        private long lastUsed;
+
+        private PooledTransport(String key, GmailSMTPConnectionObject connection) {
+            this.key = key;
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *   WSO2 Inc. licenses this file to you under the Apache License,
+ *   Version 2.0 (the "License"); you may not use this file except
+ *   in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.wso2.carbon.connector;
+
+/**
+ * Metrics of the SMTP transport pool, registered with the platform MBean
+ * server.
+ */
+public interface GmailSMTPTransportPoolMBean {
+
+    /**
+     * @return the number of sends which reused a pooled transport
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of sends which found no idle pooled transport
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of SMTP logins
+     */
+    long getLoginCount();
+
+    /**
+     * @return the average time of an SMTP login in milliseconds
+     */
+    double getAverageLoginTime();
+
+    /**
+     * @return the number of pooled transports, both idle and borrowed
+     */
+    int getPooledTransportCount();
+
+    /**
+     * @return the number of idle pooled transports
+     */
+    int getIdleTransportCount();
+}
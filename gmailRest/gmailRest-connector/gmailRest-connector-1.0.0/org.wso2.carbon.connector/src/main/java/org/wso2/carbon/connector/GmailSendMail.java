@@ -41,6 +41,7 @@ public class GmailSendMail extends AbstractConnector {
      */
     @Override
     public void connect(MessageContext messageContext) {
+        GmailSMTPClientLoader smtpClientLoader = new GmailSMTPClientLoader();
         try {
             // Reading input parameters from the message context
             String toRecipients =
@@ -69,7 +70,6 @@ public class GmailSendMail extends AbstractConnector {
             String subject = this.setSubject(messageContext);
             String textContent = this.setTextContent(messageContext);
 
-            GmailSMTPClientLoader smtpClientLoader = new GmailSMTPClientLoader();
             log.info("Loading the SMTP connection");
             GmailSMTPConnectionObject smtpConnectionObject =
                     (GmailSMTPConnectionObject) smtpClientLoader.loadSMTPSession(messageContext);
@@ -94,6 +94,8 @@ public class GmailSendMail extends AbstractConnector {
                     GmailErrorCodes.GMAIL_ERROR_CODE_CONNECT_EXCEPTION);
             handleException(e.getMessage(), e, messageContext);
         } catch (MessagingException e) {
+            // The transport may be broken, hence it is not returned to the pool.
+            smtpClientLoader.invalidateSMTPSession(messageContext);
             GmailUtils.storeErrorResponseStatus(messageContext,
                     e,
                     GmailErrorCodes.GMAIL_ERROR_CODE_MESSAGING_EXCEPTION);
@@ -106,6 +108,8 @@ public class GmailSendMail extends AbstractConnector {
             GmailUtils.storeErrorResponseStatus(messageContext, e,
                     GmailErrorCodes.GMAIL_COMMON_EXCEPTION);
             handleException(e.getMessage(), e, messageContext);
+        } finally {
+            smtpClientLoader.releaseSMTPSession(messageContext);
         }
     }
 
@@ -557,8 +557,8 @@ public  final class GmailUtils {
 
         if (operationContext.getProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE) != null) {
             log.info("Closing the previously opened SMTP transport");
-            ((GmailSMTPConnectionObject) operationContext.getProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE)).getTransport()
-                    .close();
+            GmailSMTPTransportPool.getInstance()
+                    .invalidate((GmailSMTPConnectionObject) operationContext.getProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE));
             operationContext.removeProperty(GmailConstants.GMAIL_SMTP_CONNECTION_INSTANCE);
         }
 
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.googledrive;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.drive.Drive;
+
+/**
+ * Process-wide cache of authenticated Google Drive clients, keyed by the identity of their credentials. All
+ * the clients share one HTTP transport, whose connections are kept alive between requests, and one JSON
+ * factory. A background task refreshes the access tokens of the cached credentials before they expire, so
+ * mediator calls neither set up TLS nor exchange tokens on the hot path. Private keys of service accounts are
+ * cached by the hash of the PKCS12 content they are extracted from, and evicted together with the last cached
+ * client which uses them.
+ */
+public final class GoogleDriveClientCache {
+    
+    /**
+     * Log instance.
+     */
+    private static final Log LOG = LogFactory.getLog(GoogleDriveClientCache.class);
+    
+    /**
+     * Interval in seconds at which the cached credentials are checked for refresh and eviction.
+     */
+    private static final long MAINTENANCE_INTERVAL = 60;
+    
+    /**
+     * Access tokens which expire within this many seconds are refreshed in the background.
+     */
+    private static final long REFRESH_AHEAD_SECONDS = 300;
+    
+    /**
+     * Time in milliseconds after which an unused client is evicted.
+     */
+    private static final long IDLE_TIMEOUT = 3600000;
+    
+    /**
+     * HTTP transport shared by all the clients.
+     */
+    private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+    
+    /**
+     * JSON factory shared by all the clients.
+     */
+    private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+    
+    /**
+     * Cached clients by the identity of their credentials.
+     */
+    private static final ConcurrentMap<String, CachedClient> CLIENTS = new ConcurrentHashMap<String, CachedClient>();
+    
+    /**
+     * Private keys by the hash of the PKCS12 content they were extracted from. Keys which are no longer used by
+     * a cached client are removed by the maintenance task.
+     */
+    private static final Map<String, PrivateKey> PRIVATE_KEYS = new ConcurrentHashMap<String, PrivateKey>();
+    
+    static {
+        ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            
+            public Thread newThread(final Runnable runnable) {
+            
+                Thread thread = new Thread(runnable, "googledrive-credential-refresher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        maintenance.scheduleWithFixedDelay(new Runnable() {
+            
+            public void run() {
+            
+                maintain();
+            }
+        }, MAINTENANCE_INTERVAL, MAINTENANCE_INTERVAL, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * constructor for class Google Drive Client Cache.
+     */
+    private GoogleDriveClientCache() {
+    
+    }
+    
+    /**
+     * Returns the HTTP transport shared by all the clients.
+     * 
+     * @return the shared HTTP transport
+     */
+    public static HttpTransport getHttpTransport() {
+    
+        return HTTP_TRANSPORT;
+    }
+    
+    /**
+     * Returns the JSON factory shared by all the clients.
+     * 
+     * @return the shared JSON factory
+     */
+    public static JsonFactory getJsonFactory() {
+    
+        return JSON_FACTORY;
+    }
+    
+    /**
+     * Returns the cached client of the given credential identity.
+     * 
+     * @param key Identity of the credentials
+     * @return the cached Drive client, or null if there is none
+     */
+    public static Drive getDrive(final String key) {
+    
+        CachedClient client = CLIENTS.get(key);
+        if (client == null) {
+            return null;
+        }
+        client.lastUsed = System.currentTimeMillis();
+        return client.drive;
+    }
+    
+    /**
+     * Builds a client with the given credentials and caches it, unless another client has been cached for the
+     * same identity meanwhile, in which case that client is returned. The requests of the client are retried
+     * with exponential back-off after network errors and server errors.
+     * 
+     * @param key Identity of the credentials
+     * @param privateKeyHash Hash of the cached private key of the credentials, or null if they have none
+     * @param credential Credentials of the client
+     * @return the cached Drive client
+     */
+    public static Drive putDrive(final String key, final String privateKeyHash, final GoogleCredential credential) {
+    
+        Drive drive =
+                new Drive.Builder(HTTP_TRANSPORT, JSON_FACTORY, new GoogleDriveRequestInitializer(credential))
+                        .build();
+        CachedClient client = new CachedClient(credential, privateKeyHash, drive);
+        CachedClient existing = CLIENTS.putIfAbsent(key, client);
+        return existing != null ? existing.drive : drive;
+    }
+    
+    /**
+     * Returns the private key extracted from the PKCS12 content with the given hash.
+     * 
+     * @param contentHash Hash of the PKCS12 content
+     * @return the private key, or null if it has not been extracted yet
+     */
+    public static PrivateKey getPrivateKey(final String contentHash) {
+    
+        return PRIVATE_KEYS.get(contentHash);
+    }
+    
+    /**
+     * Caches the private key extracted from the PKCS12 content with the given hash.
+     * 
+     * @param contentHash Hash of the PKCS12 content
+     * @param privateKey The extracted private key
+     */
+    public static void putPrivateKey(final String contentHash, final PrivateKey privateKey) {
+    
+        PRIVATE_KEYS.put(contentHash, privateKey);
+    }
+    
+    /**
+     * Returns the hex encoded SHA-256 hash of the given content, used to key credentials without keeping
+     * secrets in the cache keys.
+     * 
+     * @param content Content to hash
+     * @return the hex encoded hash
+     */
+    public static String hash(final byte[] content) {
+    
+        try {
+            StringBuilder hash = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hash.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+    
+    /**
+     * Returns the hex encoded SHA-256 hash of the given string.
+     * 
+     * @param content String to hash, may be null
+     * @return the hex encoded hash
+     */
+    public static String hash(final String content) {
+    
+        try {
+            return hash(content == null ? new byte[0] : content.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+    
+    /**
+     * Evicts the clients which have not been used within the idle timeout and the private keys which are no
+     * longer used by a cached client, and refreshes the access tokens of the other clients which are about to
+     * expire.
+     */
+    private static void maintain() {
+    
+        long expiry = System.currentTimeMillis() - IDLE_TIMEOUT;
+        Set<String> privateKeysInUse = new HashSet<String>();
+        Iterator<Map.Entry<String, CachedClient>> iterator = CLIENTS.entrySet().iterator();
+        while (iterator.hasNext()) {
+            CachedClient client = iterator.next().getValue();
+            if (client.lastUsed < expiry) {
+                iterator.remove();
+                continue;
+            }
+            if (client.privateKeyHash != null) {
+                privateKeysInUse.add(client.privateKeyHash);
+            }
+            
+            // The expiry is unknown until the first token has been issued.
+            Long expiresIn = client.credential.getExpiresInSeconds();
+            if (expiresIn != null && expiresIn.longValue() < REFRESH_AHEAD_SECONDS) {
+                try {
+                    if (!client.credential.refreshToken()) {
+                        LOG.warn("Google Drive access token could not be refreshed ahead of its expiry");
+                    }
+                } catch (IOException ioe) {
+                    LOG.warn("Failed to refresh Google Drive access token ahead of its expiry", ioe);
+                }
+            }
+        }
+        
+        // A key cached after the sweep above and before its client is cached may be removed as well, in which
+        // case it is extracted again by the next caller without a cached client.
+        PRIVATE_KEYS.keySet().retainAll(privateKeysInUse);
+    }
+    
+    /**
+     * A cached client and its credentials.
+     */
+    private static final class CachedClient {
+        
+        /**
+         * Credentials of the client.
+         */
+        private final GoogleCredential credential;
+        
+        /**
+         * Hash of the cached private key of the credentials, or null if they have none.
+         */
+        private final String privateKeyHash;
+        
+        /**
+         * The Drive client.
+         */
+        private final Drive drive;
+        
+        /**
+         * Time the client was last returned from the cache.
+         */
+        private volatile long lastUsed;
+        
+        /**
+         * Constructor to initialize a cached client.
+         * 
+         * @param credential Credentials of the client
+         * @param privateKeyHash Hash of the cached private key of the credentials, or null if they have none
+         * @param drive The Drive client
+         */
+        private CachedClient(final GoogleCredential credential, final String privateKeyHash, final Drive drive) {
+        
+            this.credential = credential;
+            this.privateKeyHash = privateKeyHash;
+            this.drive = drive;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+    
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.googledrive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.activation.DataSource;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+
+/**
+ * DataSource of the content of a Google Drive file, which is downloaded only when it is read. The content is
+ * fetched with ranged requests of a fixed chunk size, and up to the given number of chunks are fetched in
+ * parallel ahead of the reader, so a large file streams to the outbound transport without being held in
+ * memory and a failed chunk is fetched again without starting the download from the beginning.
+ */
+public class GoogleDriveDownloadDataSource implements DataSource {
+    
+    /**
+     * Number of attempts to fetch a chunk before the download fails.
+     */
+    private static final int CHUNK_ATTEMPTS = 3;
+    
+    /**
+     * Time in milliseconds to wait before fetching a failed chunk again, multiplied by the attempt number.
+     */
+    private static final long RETRY_INTERVAL = 1000;
+    
+    /**
+     * Content type used when the file has none.
+     */
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    
+    /**
+     * Google Drive SDK service object.
+     */
+    private final Drive service;
+    
+    /**
+     * URL of the file content.
+     */
+    private final String downloadUrl;
+    
+    /**
+     * Size of the file content in bytes.
+     */
+    private final long fileSize;
+    
+    /**
+     * Content type of the file.
+     */
+    private final String contentType;
+    
+    /**
+     * Title of the file.
+     */
+    private final String name;
+    
+    /**
+     * Number of bytes fetched with each ranged request.
+     */
+    private final int chunkSize;
+    
+    /**
+     * Maximum number of chunks fetched in parallel.
+     */
+    private final int parallelChunks;
+    
+    /**
+     * Constructor to initialize a data source of a Google Drive file.
+     * 
+     * @param service Google Drive SDK service object
+     * @param file Google Drive SDK File resource with a download URL and a file size
+     * @param chunkSize Number of bytes fetched with each ranged request
+     * @param parallelChunks Maximum number of chunks fetched in parallel
+     */
+    public GoogleDriveDownloadDataSource(final Drive service, final File file, final int chunkSize,
+            final int parallelChunks) {
+    
+        this.service = service;
+        this.downloadUrl = file.getDownloadUrl();
+        this.fileSize = file.getFileSize();
+        this.contentType = file.getMimeType() != null ? file.getMimeType() : DEFAULT_CONTENT_TYPE;
+        this.name = file.getTitle();
+        this.chunkSize = chunkSize;
+        this.parallelChunks = parallelChunks;
+    }
+    
+    /**
+     * Opens a new stream which downloads the file content.
+     * 
+     * @return Stream of the file content
+     */
+    public final InputStream getInputStream() {
+    
+        return new ChunkedDownloadStream();
+    }
+    
+    /**
+     * The downloaded content cannot be written.
+     * 
+     * @return never returns
+     * @throws IOException Always, since the data source is read only.
+     */
+    public final OutputStream getOutputStream() throws IOException {
+    
+        throw new IOException("The content of " + name + " is read only");
+    }
+    
+    /**
+     * Returns the content type of the file.
+     * 
+     * @return Content type of the file
+     */
+    public final String getContentType() {
+    
+        return contentType;
+    }
+    
+    /**
+     * Returns the title of the file.
+     * 
+     * @return Title of the file
+     */
+    public final String getName() {
+    
+        return name;
+    }
+    
+    /**
+     * Fetches a range of the file content, retrying on network failures and server errors.
+     * 
+     * @param firstByte Position of the first byte of the range
+     * @param lastByte Position of the last byte of the range
+     * @return Content of the range
+     * @throws IOException If the range cannot be fetched.
+     */
+    private byte[] fetchChunk(final long firstByte, final long lastByte) throws IOException {
+    
+        int attempt = 1;
+        while (true) {
+            try {
+                HttpRequest request = service.getRequestFactory().buildGetRequest(new GenericUrl(downloadUrl));
+                request.getHeaders().setRange("bytes=" + firstByte + "-" + lastByte);
+                HttpResponse response = request.execute();
+                ByteArrayOutputStream chunk = new ByteArrayOutputStream((int) (lastByte - firstByte + 1));
+                try {
+                    response.download(chunk);
+                } finally {
+                    response.disconnect();
+                }
+                if (chunk.size() != lastByte - firstByte + 1) {
+                    throw new IOException("Received " + chunk.size() + " bytes for the range " + firstByte + "-"
+                            + lastByte + " of " + name);
+                }
+                return chunk.toByteArray();
+            } catch (IOException ioe) {
+                boolean clientError =
+                        ioe instanceof HttpResponseException && ((HttpResponseException) ioe).getStatusCode() < 500;
+                if (clientError || attempt == CHUNK_ATTEMPTS) {
+                    throw ioe;
+                }
+            }
+            
+            try {
+                Thread.sleep(RETRY_INTERVAL * attempt);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while downloading " + name);
+            }
+            attempt++;
+        }
+    }
+    
+    /**
+     * Stream which reads the chunks in order while the following chunks are fetched ahead.
+     */
+    private final class ChunkedDownloadStream extends InputStream {
+        
+        /**
+         * Chunks being fetched, in the order of their ranges.
+         */
+        private final LinkedList<Future<byte[]>> pendingChunks = new LinkedList<Future<byte[]>>();
+        
+        /**
+         * Executor fetching the chunks, created on the first read.
+         */
+        private ExecutorService executor;
+        
+        /**
+         * Position of the first byte of the next chunk to fetch.
+         */
+        private long nextOffset;
+        
+        /**
+         * Chunk being read.
+         */
+        private byte[] currentChunk;
+        
+        /**
+         * Position of the next byte to read in the current chunk.
+         */
+        private int position;
+        
+        /**
+         * Reads the next byte of the content.
+         * 
+         * @return the byte, or -1 at the end of the content
+         * @throws IOException If a chunk cannot be fetched.
+         */
+        public int read() throws IOException {
+        
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xff;
+        }
+        
+        /**
+         * Reads bytes of the content into a buffer.
+         * 
+         * @param buffer Buffer the bytes are read into
+         * @param offset Position in the buffer the first byte is written to
+         * @param length Maximum number of bytes to read
+         * @return Number of bytes read, or -1 at the end of the content
+         * @throws IOException If a chunk cannot be fetched.
+         */
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        
+            if (length == 0) {
+                return 0;
+            }
+            if ((currentChunk == null || position == currentChunk.length) && !nextChunk()) {
+                return -1;
+            }
+            int count = Math.min(length, currentChunk.length - position);
+            System.arraycopy(currentChunk, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+        
+        /**
+         * Cancels the chunks which are still being fetched.
+         */
+        public void close() {
+        
+            for (Future<byte[]> pendingChunk : pendingChunks) {
+                pendingChunk.cancel(true);
+            }
+            pendingChunks.clear();
+            nextOffset = fileSize;
+            currentChunk = null;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        
+        /**
+         * Waits for the next chunk and starts fetching the chunks which follow it.
+         * 
+         * @return false at the end of the content
+         * @throws IOException If the chunk cannot be fetched.
+         */
+        private boolean nextChunk() throws IOException {
+        
+            fetchAhead();
+            if (pendingChunks.isEmpty()) {
+                close();
+                return false;
+            }
+            try {
+                currentChunk = pendingChunks.removeFirst().get();
+                position = 0;
+            } catch (InterruptedException ie) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while downloading " + name);
+            } catch (ExecutionException ee) {
+                close();
+                if (ee.getCause() instanceof IOException) {
+                    throw (IOException) ee.getCause();
+                }
+                IOException ioe = new IOException("Failed to download " + name);
+                ioe.initCause(ee.getCause());
+                throw ioe;
+            }
+            fetchAhead();
+            return true;
+        }
+        
+        /**
+         * Starts fetching chunks until the maximum number of chunks are being fetched.
+         */
+        private void fetchAhead() {
+        
+            if (executor == null) {
+                executor = Executors.newFixedThreadPool(parallelChunks, new ThreadFactory() {
+                    
+                    public Thread newThread(final Runnable runnable) {
+                    
+                        Thread thread = new Thread(runnable, "googledrive-download");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            while (pendingChunks.size() < parallelChunks && nextOffset < fileSize) {
+                final long firstByte = nextOffset;
+                final long lastByte = Math.min(firstByte + chunkSize, fileSize) - 1;
+                pendingChunks.add(executor.submit(new Callable<byte[]>() {
+                    
+                    public byte[] call() throws IOException {
+                    
+                        return fetchChunk(firstByte, lastByte);
+                    }
+                }));
+                nextOffset = lastByte + 1;
+            }
+        }
+    }
+    
+}
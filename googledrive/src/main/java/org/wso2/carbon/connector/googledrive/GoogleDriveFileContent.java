@@ -35,6 +35,11 @@ public class GoogleDriveFileContent extends AbstractInputStreamContent {
      */
     private final InputStream inputStream;
     
+    /**
+     * Length of the content, or {@code null} to take the bytes available in the input stream.
+     */
+    private final Long length;
+    
     /**
      * Constructor to initialize a Google Drive file content object.
      * 
@@ -45,6 +50,21 @@ public class GoogleDriveFileContent extends AbstractInputStreamContent {
     
         super(type);
         this.inputStream = inputStrm;
+        this.length = null;
+    }
+    
+    /**
+     * Constructor to initialize a Google Drive file content object of a given length.
+     * 
+     * @param type Content type or {@code null} for none
+     * @param inputStrm The input stream
+     * @param contentLength Length of the content, or -1 if it is unknown
+     */
+    public GoogleDriveFileContent(final String type, final InputStream inputStrm, final long contentLength) {
+    
+        super(type);
+        this.inputStream = inputStrm;
+        this.length = contentLength;
     }
     
     /**
@@ -55,7 +75,7 @@ public class GoogleDriveFileContent extends AbstractInputStreamContent {
      */
     public final long getLength() throws IOException {
     
-        return inputStream.available();
+        return length != null ? length.longValue() : inputStream.available();
     }
     
     /**
@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.googledrive;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import javax.activation.DataHandler;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.mediators.MediatorWorker;
+import org.apache.synapse.mediators.base.SequenceMediator;
+
+import com.google.api.client.json.GenericJson;
+
+/**
+ * Fetches the pages of a Google Drive list request on a background thread, following the next page tokens.
+ * At most the given number of pages are fetched ahead of the consumer, so the next page is usually ready when
+ * the current one has been processed while a slow consumer does not make the pages pile up in memory. When the
+ * number of items is limited, the last page is requested with only the remaining number of items, so its next
+ * page token continues right after the last item returned.
+ * 
+ * @param <T> Type of the list resource, such as FileList, ChildList or ChangeList
+ */
+public final class GoogleDrivePager<T extends GenericJson> {
+    
+    /**
+     * Number of pages fetched ahead of the consumer unless specified.
+     */
+    private static final int DEFAULT_PREFETCH_PAGES = 2;
+    
+    /**
+     * Maximum number of pages which can be fetched ahead of the consumer.
+     */
+    private static final int MAX_PREFETCH_PAGES = 10;
+    
+    /**
+     * Number of items of a page when the list request does not specify it, as documented by the Drive API.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    
+    /**
+     * Properties of the list operation which the messages of the injected pages take, so that the sequence can
+     * call further operations with the same login and response format.
+     */
+    private static final String[] INJECTED_PROPERTIES = {GoogleDriveUtils.StringConstants.USE_SERVICE_ACCOUNT,
+            GoogleDriveUtils.StringConstants.SERVICE_ACCOUNT_EMAIL,
+            GoogleDriveUtils.StringConstants.CERTIFICATE_PASSWORD, GoogleDriveUtils.StringConstants.CLIENT_ID,
+            GoogleDriveUtils.StringConstants.CLIENT_SECRET, GoogleDriveUtils.StringConstants.ACCESS_TOKEN,
+            GoogleDriveUtils.StringConstants.REFRESH_TOKEN, GoogleDriveUtils.StringConstants.FIELDS,
+            GoogleDriveUtils.StringConstants.RESPONSE_FORMAT };
+    
+    /**
+     * Content ID of the certificate attachment of service accounts.
+     */
+    private static final String CERTIFICATE = "certificate";
+    
+    /**
+     * Marks the end of the pages in the queue.
+     */
+    private static final Object END_OF_PAGES = new Object();
+    
+    /**
+     * Executor fetching the pages of all the pagers.
+     */
+    private static final ExecutorService PREFETCHER = Executors.newCachedThreadPool(new ThreadFactory() {
+        
+        public Thread newThread(final Runnable runnable) {
+        
+            Thread thread = new Thread(runnable, "googledrive-page-prefetcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    
+    /**
+     * Fetched pages followed by the end marker or the failure which ended the fetching.
+     */
+    private final BlockingQueue<Object> pages;
+    
+    /**
+     * Maximum number of pages fetched ahead of the consumer, and of injected pages being mediated.
+     */
+    private final int prefetchPages;
+    
+    /**
+     * Maximum number of items to return, or zero for all.
+     */
+    private final int maxItems;
+    
+    /**
+     * Task fetching the pages.
+     */
+    private final Future<?> prefetchTask;
+    
+    /**
+     * Number of items returned so far.
+     */
+    private int itemCount;
+    
+    /**
+     * Whether all the pages have been returned.
+     */
+    private boolean done;
+    
+    /**
+     * Executes a list request for a page.
+     * 
+     * @param <T> Type of the list resource
+     */
+    public interface PageRequest<T extends GenericJson> {
+        
+        /**
+         * Executes the request for the page of the given token.
+         * 
+         * @param pageToken Token of the page, or {@code null} for the first page
+         * @param remainingItems Number of items still to return, or zero for all, see {@link GoogleDrivePager#getPageSize}
+         * @return the page
+         * @throws IOException If an error occur on Google Drive API end.
+         */
+        T execute(String pageToken, int remainingItems) throws IOException;
+    }
+    
+    /**
+     * Constructor which starts fetching the pages.
+     * 
+     * @param request List request to execute for each page
+     * @param firstPageToken Token of the first page, or {@code null} to start from the beginning
+     * @param prefetchPages Maximum number of pages fetched ahead of the consumer
+     * @param maxItems Maximum number of items to return, or zero for all
+     */
+    public GoogleDrivePager(final PageRequest<T> request, final String firstPageToken, final int prefetchPages,
+            final int maxItems) {
+    
+        this.pages = new ArrayBlockingQueue<Object>(prefetchPages);
+        this.prefetchPages = prefetchPages;
+        this.maxItems = maxItems;
+        this.prefetchTask = PREFETCHER.submit(new Runnable() {
+            
+            public void run() {
+            
+                prefetch(request, firstPageToken);
+            }
+        });
+    }
+    
+    /**
+     * Whether auto pagination is requested with the <strong>autoPaginate</strong> parameter.
+     * 
+     * @param parameters Parameters of the list operation
+     * @return true if the pages are to be fetched automatically
+     * @throws ValidationException If the parameter is not a boolean.
+     */
+    public static boolean isAutoPaginate(final Map<String, String> parameters) throws ValidationException {
+    
+        String autoPaginate = parameters.get(GoogleDriveUtils.StringConstants.AUTO_PAGINATE);
+        return autoPaginate != null && !autoPaginate.isEmpty() && GoogleDriveUtils.toBoolean(autoPaginate);
+    }
+    
+    /**
+     * Returns the number of items to request for a page, which is the page size of the list request unless fewer
+     * items remain to be returned.
+     * 
+     * @param pageSize Page size of the list request, or {@code null} for the default
+     * @param remainingItems Number of items still to return, or zero for all
+     * @return the page size to request, or {@code null} for the default
+     */
+    public static Integer getPageSize(final Integer pageSize, final int remainingItems) {
+    
+        if (remainingItems <= 0) {
+            return pageSize;
+        }
+        int size = pageSize != null ? pageSize.intValue() : DEFAULT_PAGE_SIZE;
+        return remainingItems < size ? Integer.valueOf(remainingItems) : pageSize;
+    }
+    
+    /**
+     * Fetches all the pages of a list request, up to the <strong>maxItems</strong> parameter. Unless the
+     * <strong>sequence</strong> parameter is given, the items of all the pages are returned in one result like
+     * a single page. Otherwise each page is injected into the sequence as a separate message, and the result
+     * holds the number of pages and items mediated. At most <strong>prefetchPages</strong> injected pages are
+     * mediated at a time, and the messages of the pages take the login properties of the list operation.
+     * 
+     * @param <T> Type of the list resource
+     * @param messageContext Synapse Message Context
+     * @param parameters Parameters of the list operation
+     * @param request List request to execute for each page
+     * @param namespace String value for namespace
+     * @param resultTagName String tag for result
+     * @throws IOException If an error occur on Google Drive API end.
+     * @throws ValidationException If a validation error occurs.
+     */
+    public static <T extends GenericJson> void paginate(final MessageContext messageContext,
+            final Map<String, String> parameters, final PageRequest<T> request, final String namespace,
+            final String resultTagName) throws IOException, ValidationException {
+    
+        int maxItems = 0;
+        String temporaryValue = parameters.get(GoogleDriveUtils.StringConstants.MAX_ITEMS);
+        if (temporaryValue != null && !temporaryValue.isEmpty()) {
+            maxItems = GoogleDriveUtils.toInteger(temporaryValue);
+        }
+        
+        int prefetchPages = DEFAULT_PREFETCH_PAGES;
+        temporaryValue = parameters.get(GoogleDriveUtils.StringConstants.PREFETCH_PAGES);
+        if (temporaryValue != null && !temporaryValue.isEmpty()) {
+            prefetchPages = GoogleDriveUtils.toInteger(temporaryValue);
+            if (prefetchPages == 0 || prefetchPages > MAX_PREFETCH_PAGES) {
+                throw new ValidationException("prefetchPages should be between 1 and " + MAX_PREFETCH_PAGES);
+            }
+        }
+        
+        SequenceMediator sequence = null;
+        String sequenceName = parameters.get(GoogleDriveUtils.StringConstants.SEQUENCE);
+        if (sequenceName != null && !sequenceName.isEmpty()) {
+            sequence = (SequenceMediator) messageContext.getSequence(sequenceName);
+            if (sequence == null) {
+                throw new ValidationException("Sequence " + sequenceName + " is not found");
+            }
+        }
+        
+        GoogleDrivePager<T> pager =
+                new GoogleDrivePager<T>(request, parameters.get(GoogleDriveUtils.StringConstants.PAGE_TOKEN),
+                        prefetchPages, maxItems);
+        try {
+            if (sequence == null) {
+                GoogleDriveUtils.setResultPayload(messageContext, namespace, resultTagName, pager.aggregate());
+            } else {
+                GoogleDriveUtils.setResultPayload(messageContext, namespace, resultTagName,
+                        pager.inject(messageContext, sequence, namespace, resultTagName));
+            }
+        } finally {
+            pager.close();
+        }
+    }
+    
+    /**
+     * Returns the next page.
+     * 
+     * @return the next page, or {@code null} if all the pages have been returned
+     * @throws IOException If the page cannot be fetched.
+     */
+    public T nextPage() throws IOException {
+    
+        if (done) {
+            return null;
+        }
+        
+        Object next;
+        try {
+            next = pages.take();
+        } catch (InterruptedException ie) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching the next page");
+        }
+        if (next == END_OF_PAGES) {
+            done = true;
+            return null;
+        }
+        if (next instanceof IOException) {
+            done = true;
+            throw (IOException) next;
+        }
+        
+        @SuppressWarnings("unchecked")
+        FetchedPage<T> fetched = (FetchedPage<T>) next;
+        T page = fetched.page;
+        List<?> items = getItems(page);
+        if (maxItems > 0 && itemCount + items.size() >= maxItems) {
+            if (itemCount + items.size() > maxItems) {
+                // The page is requested with the remaining number of items, so it only has more items if the
+                // page size was not honoured. Its own token is returned so that none of its items are lost.
+                page.set(GoogleDriveUtils.StringConstants.ITEMS, new ArrayList<Object>(items.subList(0, maxItems
+                        - itemCount)));
+                page.set(GoogleDriveUtils.StringConstants.NEXT_PAGE_TOKEN, fetched.pageToken);
+            }
+            done = true;
+        }
+        itemCount += getItems(page).size();
+        return page;
+    }
+    
+    /**
+     * Stops fetching the pages.
+     */
+    public void close() {
+    
+        done = true;
+        prefetchTask.cancel(true);
+        pages.clear();
+    }
+    
+    /**
+     * Merges the items of all the pages into the first page, which takes the continuation of the last page.
+     * 
+     * @return the first page holding the items of all the pages
+     * @throws IOException If a page cannot be fetched.
+     */
+    private T aggregate() throws IOException {
+    
+        T result = nextPage();
+        List<Object> items = new ArrayList<Object>(getItems(result));
+        T lastPage = result;
+        T page;
+        while ((page = nextPage()) != null) {
+            items.addAll(getItems(page));
+            lastPage = page;
+        }
+        
+        result.set(GoogleDriveUtils.StringConstants.ITEMS, items);
+        result.set(GoogleDriveUtils.StringConstants.NEXT_PAGE_TOKEN,
+                lastPage.get(GoogleDriveUtils.StringConstants.NEXT_PAGE_TOKEN));
+        if (lastPage.get(GoogleDriveUtils.StringConstants.LARGEST_CHANGE_ID) != null) {
+            result.set(GoogleDriveUtils.StringConstants.LARGEST_CHANGE_ID,
+                    lastPage.get(GoogleDriveUtils.StringConstants.LARGEST_CHANGE_ID));
+        }
+        return result;
+    }
+    
+    /**
+     * Injects each page into a sequence as a separate message.
+     * 
+     * @param messageContext Synapse Message Context of the list operation
+     * @param sequence Sequence to mediate the pages through
+     * @param namespace String value for namespace
+     * @param resultTagName String tag for result
+     * @return the number of pages and items injected, and the token of the page after the last one
+     * @throws IOException If a page cannot be fetched.
+     */
+    private GenericJson inject(final MessageContext messageContext, final SequenceMediator sequence,
+            final String namespace, final String resultTagName) throws IOException {
+    
+        final Semaphore mediatingPages = new Semaphore(prefetchPages);
+        DataHandler certificate =
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext().getAttachment(CERTIFICATE);
+        int pageCount = 0;
+        Object nextPageToken = null;
+        T page;
+        while ((page = nextPage()) != null) {
+            MessageContext pageContext = messageContext.getEnvironment().createMessageContext();
+            pageContext.setEnvelope(OMAbstractFactory.getSOAP11Factory().getDefaultEnvelope());
+            for (String property : INJECTED_PROPERTIES) {
+                pageContext.setProperty(property, messageContext.getProperty(property));
+            }
+            if (certificate != null) {
+                ((Axis2MessageContext) pageContext).getAxis2MessageContext().addAttachment(CERTIFICATE, certificate);
+            }
+            GoogleDriveUtils.setResultPayload(pageContext, namespace, resultTagName, page);
+            
+            // The next page is not taken until the mediation of an earlier page has completed.
+            try {
+                mediatingPages.acquire();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the mediation of the pages");
+            }
+            final MediatorWorker worker = new MediatorWorker(sequence, pageContext);
+            messageContext.getEnvironment().getExecutorService().execute(new Runnable() {
+                
+                public void run() {
+                
+                    try {
+                        worker.run();
+                    } finally {
+                        mediatingPages.release();
+                    }
+                }
+            });
+            pageCount++;
+            nextPageToken = page.get(GoogleDriveUtils.StringConstants.NEXT_PAGE_TOKEN);
+        }
+        
+        GenericJson summary = new GenericJson();
+        summary.setFactory(GoogleDriveClientCache.getJsonFactory());
+        summary.set(GoogleDriveUtils.StringConstants.PAGE_COUNT, pageCount);
+        summary.set(GoogleDriveUtils.StringConstants.ITEM_COUNT, itemCount);
+        if (nextPageToken != null) {
+            summary.set(GoogleDriveUtils.StringConstants.NEXT_PAGE_TOKEN, nextPageToken);
+        }
+        return summary;
+    }
+    
+    /**
+     * Fetches the pages into the queue until the last page, the item limit or a failure.
+     * 
+     * @param request List request to execute for each page
+     * @param firstPageToken Token of the first page
+     */
+    private void prefetch(final PageRequest<T> request, final String firstPageToken) {
+    
+        String pageToken = firstPageToken;
+        int fetchedItems = 0;
+        try {
+            while (true) {
+                T page;
+                try {
+                    page = request.execute(pageToken, maxItems > 0 ? maxItems - fetchedItems : 0);
+                } catch (IOException ioe) {
+                    pages.put(ioe);
+                    return;
+                } catch (RuntimeException re) {
+                    IOException ioe = new IOException("Failed to fetch the next page");
+                    ioe.initCause(re);
+                    pages.put(ioe);
+                    return;
+                }
+                pages.put(new FetchedPage<T>(page, pageToken));
+                
+                fetchedItems += getItems(page).size();
+                pageToken = (String) page.get(GoogleDriveUtils.StringConstants.NEXT_PAGE_TOKEN);
+                if (pageToken == null || pageToken.isEmpty() || (maxItems > 0 && fetchedItems >= maxItems)) {
+                    pages.put(END_OF_PAGES);
+                    return;
+                }
+            }
+        } catch (InterruptedException ie) {
+            // The consumer has closed the pager.
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Returns the items of a page.
+     * 
+     * @param page The page
+     * @return the items of the page, empty if it has none
+     */
+    private static List<?> getItems(final GenericJson page) {
+    
+        Object items = page.get(GoogleDriveUtils.StringConstants.ITEMS);
+        if (items instanceof List<?>) {
+            return (List<?>) items;
+        }
+        return Collections.emptyList();
+    }
+    
+    /**
+     * A fetched page with the token it was requested with.
+     * 
+     * @param <T> Type of the list resource
+     */
+    private static final class FetchedPage<T> {
+        
+        /**
+         * The page.
+         */
+        private final T page;
+        
+        /**
+         * Token the page was requested with, or {@code null} for the first page.
+         */
+        private final String pageToken;
+        
+        /**
+         * Constructor to initialize a fetched page.
+         * 
+         * @param page The page
+         * @param pageToken Token the page was requested with
+         */
+        private FetchedPage(final T page, final String pageToken) {
+        
+            this.page = page;
+            this.pageToken = pageToken;
+        }
+    }
+    
+}
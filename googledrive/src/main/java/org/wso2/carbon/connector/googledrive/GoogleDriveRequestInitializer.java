@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.connector.googledrive;
+
+import java.io.IOException;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.HttpBackOffIOExceptionHandler;
+import com.google.api.client.http.HttpBackOffUnsuccessfulResponseHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.api.client.util.ExponentialBackOff;
+
+/**
+ * Initializer of the requests of a Drive client, which authorizes them with the credentials of the client and
+ * retries them with exponential back-off after a network error or a server error. The media uploader only
+ * resends a chunk of a resumable upload from the last committed byte when the request it failed on agrees to be
+ * retried, so without these handlers a resumable upload fails on the first network error.
+ */
+public class GoogleDriveRequestInitializer implements HttpRequestInitializer {
+    
+    /**
+     * Credentials of the client.
+     */
+    private final GoogleCredential credential;
+    
+    /**
+     * Constructor to initialize the request initializer of a client.
+     * 
+     * @param credential Credentials of the client
+     */
+    public GoogleDriveRequestInitializer(final GoogleCredential credential) {
+    
+        this.credential = credential;
+    }
+    
+    /**
+     * Authorizes the request and installs the back-off handlers. An unsuccessful response is first handed to
+     * the credentials, which refresh the access token on a 401 response, and a server error is then retried
+     * after a back-off. Each request gets its own back-off, as the back-off keeps the state of its retries.
+     * 
+     * @param request HTTP request to initialize
+     * @throws IOException If the request cannot be initialized.
+     */
+    public final void initialize(final HttpRequest request) throws IOException {
+    
+        credential.initialize(request);
+        request.setIOExceptionHandler(new HttpBackOffIOExceptionHandler(new ExponentialBackOff()));
+        final HttpUnsuccessfulResponseHandler serverErrorHandler =
+                new HttpBackOffUnsuccessfulResponseHandler(new ExponentialBackOff());
+        request.setUnsuccessfulResponseHandler(new HttpUnsuccessfulResponseHandler() {
+            
+            public boolean handleResponse(final HttpRequest retriedRequest, final HttpResponse response,
+                    final boolean supportsRetry) throws IOException {
+            
+                return credential.handleResponse(retriedRequest, response, supportsRetry)
+                        || serverErrorHandler.handleResponse(retriedRequest, response, supportsRetry);
+            }
+        });
+    }
+    
+}
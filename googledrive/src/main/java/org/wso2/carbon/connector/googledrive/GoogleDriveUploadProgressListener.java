@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.googledrive;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.googleapis.media.MediaHttpUploaderProgressListener;
+
+/**
+ * Progress listener of resumable uploads, which logs the bytes committed by Google Drive after each chunk.
+ */
+public class GoogleDriveUploadProgressListener implements MediaHttpUploaderProgressListener {
+    
+    /**
+     * Log instance.
+     */
+    private static final Log LOG = LogFactory.getLog(GoogleDriveUploadProgressListener.class);
+    
+    /**
+     * Invoked when the upload state changes, after the upload is initiated and after each chunk.
+     * 
+     * @param uploader Media HTTP uploader of the request
+     * @throws IOException If the progress cannot be read.
+     */
+    public final void progressChanged(final MediaHttpUploader uploader) throws IOException {
+    
+        switch (uploader.getUploadState()) {
+            case INITIATION_COMPLETE:
+                LOG.debug("Resumable upload initiated with chunks of " + uploader.getChunkSize() + " bytes");
+                break;
+            case MEDIA_IN_PROGRESS:
+                LOG.debug("Uploaded " + uploader.getNumBytesUploaded() + " bytes");
+                break;
+            case MEDIA_COMPLETE:
+                LOG.info("Resumable upload completed, uploaded " + uploader.getNumBytesUploaded() + " bytes");
+                break;
+            default:
+                break;
+        }
+    }
+    
+}
@@ -19,6 +19,7 @@
 package org.wso2.carbon.connector.googledrive;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
@@ -26,6 +27,7 @@ import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -41,6 +43,7 @@ import org.apache.axiom.om.OMFactory;
 import org.apache.axiom.om.OMNamespace;
 import org.apache.axiom.om.util.AXIOMUtil;
 import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axis2.Constants;
 import org.apache.axis2.transport.TransportUtils;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseConstants;
@@ -49,12 +52,11 @@ import org.apache.synapse.core.axis2.Axis2MessageContext;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.media.MediaHttpUploader;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpResponseException;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.util.Data;
 import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.DriveScopes;
 import com.google.api.services.drive.model.ParentReference;
@@ -129,6 +131,66 @@ public final class GoogleDriveUtils {
         
     }
     
+    /**
+     * Creates the media content of an insert or update request. The length of the content of a resumable upload
+     * is left unknown, so that the uploader buffers each chunk and can send it again after a failure instead of
+     * relying on the bytes available in the attachment stream.
+     * 
+     * @param mimeType Content type or {@code null} for none
+     * @param contentStream InputStream of the content
+     * @param uploadType The type of the upload: resumable or media
+     * @return Google Drive file content
+     */
+    public static GoogleDriveFileContent getFileContent(final String mimeType, final InputStream contentStream,
+            final String uploadType) {
+    
+        if (isResumableUpload(uploadType)) {
+            return new GoogleDriveFileContent(mimeType, contentStream, -1);
+        }
+        return new GoogleDriveFileContent(mimeType, contentStream);
+    }
+    
+    /**
+     * Configures the media uploader of an insert or update request. Uploads other than resumable ones are sent
+     * in a single request. Resumable uploads are sent in chunks of the given size, and a chunk which fails on a
+     * network error or a server error is sent again from the last byte committed by the server, as the requests
+     * of the cached clients are retried by {@link GoogleDriveRequestInitializer}.
+     * 
+     * @param uploader Media HTTP uploader of the request
+     * @param uploadType The type of the upload: resumable or media
+     * @param chunkSize Number of bytes sent with each request of a resumable upload, or {@code null} for the
+     *        default
+     * @throws ValidationException If the chunk size is not a multiple of the minimum chunk size.
+     */
+    public static void configureMediaUploader(final MediaHttpUploader uploader, final String uploadType,
+            final String chunkSize) throws ValidationException {
+    
+        if (!isResumableUpload(uploadType)) {
+            uploader.setDirectUploadEnabled(true);
+            return;
+        }
+        if (chunkSize != null && !chunkSize.isEmpty()) {
+            int chunkBytes = toInteger(chunkSize);
+            if (chunkBytes == 0 || chunkBytes % MediaHttpUploader.MINIMUM_CHUNK_SIZE != 0) {
+                throw new ValidationException("chunkSize should be a multiple of "
+                        + MediaHttpUploader.MINIMUM_CHUNK_SIZE);
+            }
+            uploader.setChunkSize(chunkBytes);
+        }
+        uploader.setProgressListener(new GoogleDriveUploadProgressListener());
+    }
+    
+    /**
+     * Uploads are resumable unless another upload type is specified.
+     * 
+     * @param uploadType The type of the upload: resumable or media
+     * @return true if the upload is resumable
+     */
+    private static boolean isResumableUpload(final String uploadType) {
+    
+        return uploadType == null || uploadType.equals(StringConstants.RESUMABLE);
+    }
+    
     /**
      * Takes a map containing key value pairs and maps those key-value pairs in to tag-value pairs within an
      * OMElement, and creates a new SOAP envelope using this OMElement.
@@ -164,7 +226,92 @@ public final class GoogleDriveUtils {
     }
     
     /**
-     * Creates a Drive Service object from the Google Drive SDK after completing user authentication.
+     * Sets a Google Drive SDK resource as the payload of the message. Unless the <strong>responseFormat</strong>
+     * property is <strong>json</strong>, the members of the resource are written straight into a result element
+     * in the same XML form JSON payloads are converted to, without serializing the resource to JSON and parsing
+     * it back. Otherwise the resource is set as a JSON payload as it is.
+     * 
+     * @param messageContext Synapse Message Context
+     * @param namespace String value for namespace
+     * @param resultTagName String tag for result
+     * @param result Google Drive SDK resource returned by the operation
+     * @throws IOException If the payload cannot be set
+     */
+    public static void setResultPayload(final MessageContext messageContext, final String namespace,
+            final String resultTagName, final GenericJson result) throws IOException {
+    
+        org.apache.axis2.context.MessageContext axis2mc =
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+        String responseFormat = (String) messageContext.getProperty(StringConstants.RESPONSE_FORMAT);
+        if (StringConstants.JSON.equalsIgnoreCase(responseFormat)) {
+            JsonUtil.newJsonPayload(axis2mc, result.toString(), true, true);
+            axis2mc.setProperty(Constants.Configuration.MESSAGE_TYPE, StringConstants.JSON_CONTENT_TYPE);
+            axis2mc.setProperty(Constants.Configuration.CONTENT_TYPE, StringConstants.JSON_CONTENT_TYPE);
+            return;
+        }
+        
+        OMFactory factory = OMAbstractFactory.getOMFactory();
+        OMNamespace ns = factory.createOMNamespace(namespace, "urn");
+        OMElement resultTag = factory.createOMElement(resultTagName, ns);
+        appendJsonMembers(factory, resultTag, result);
+        
+        messageContext.getEnvelope().detach();
+        messageContext.setEnvelope(TransportUtils.createSOAPEnvelope(resultTag));
+    }
+    
+    /**
+     * Appends the members of a JSON object as child elements of the given element.
+     * 
+     * @param factory OM factory to create the elements with
+     * @param parent Element of the JSON object
+     * @param object Members of the JSON object
+     */
+    private static void appendJsonMembers(final OMFactory factory, final OMElement parent, final Map<?, ?> object) {
+    
+        Iterator<? extends Map.Entry<?, ?>> memberIterator = object.entrySet().iterator();
+        while (memberIterator.hasNext()) {
+            Map.Entry<?, ?> member = memberIterator.next();
+            Object value = member.getValue();
+            if (value == null) {
+                continue;
+            }
+            
+            String name = String.valueOf(member.getKey());
+            if (value instanceof Collection<?>) {
+                // Marks the elements of an array, the same way as JSON to XML conversion does.
+                factory.createOMProcessingInstruction(parent, "xml-multiple", name);
+                for (Object item : (Collection<?>) value) {
+                    appendJsonValue(factory, parent, name, item);
+                }
+            } else {
+                appendJsonValue(factory, parent, name, value);
+            }
+        }
+    }
+    
+    /**
+     * Appends a JSON value as a child element of the given element.
+     * 
+     * @param factory OM factory to create the element with
+     * @param parent Element the value belongs to
+     * @param name Name of the value
+     * @param value Object, string, number, boolean or date value
+     */
+    private static void appendJsonValue(final OMFactory factory, final OMElement parent, final String name,
+            final Object value) {
+    
+        OMElement element = factory.createOMElement(name, null, parent);
+        if (value instanceof Map<?, ?>) {
+            appendJsonMembers(factory, element, (Map<?, ?>) value);
+        } else if (value != null && !Data.isNull(value)) {
+            element.setText(String.valueOf(value));
+        }
+    }
+    
+    /**
+     * Creates a Drive Service object from the Google Drive SDK after completing user authentication. Drive
+     * objects are cached by the identity of their credentials, so repeated calls with the same credentials share
+     * one authenticated client and its HTTP connections.
      * 
      * @param messageContext Synapse Message Context
      * @return Credentials object which contain credentials
@@ -174,9 +321,6 @@ public final class GoogleDriveUtils {
     public static Drive getDriveService(final MessageContext messageContext) throws IOException,
             GeneralSecurityException {
     
-        HttpTransport httpTransport = new NetHttpTransport();
-        JsonFactory jsonFactory = new JacksonFactory();
-        
         String certificatePassword = (String) messageContext.getProperty(StringConstants.CERTIFICATE_PASSWORD);
         if (certificatePassword == null || certificatePassword.isEmpty()) {
             certificatePassword = "notasecret";
@@ -194,51 +338,69 @@ public final class GoogleDriveUtils {
                         .getProperty(GoogleDriveUtils.StringConstants.USE_SERVICE_ACCOUNT));
         
         GoogleCredential credential = null;
+        String cacheKey = null;
+        String privateKeyHash = null;
         if (useServiceAccount) {
+            String serviceAccountEmail =
+                    (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.SERVICE_ACCOUNT_EMAIL);
+            byte[] certificate = readCertificateAttachment(messageContext);
+            privateKeyHash =
+                    GoogleDriveClientCache.hash(GoogleDriveClientCache.hash(certificate) + ":" + certificatePassword);
+            cacheKey = "serviceAccount:" + serviceAccountEmail + ":" + privateKeyHash;
+            Drive drive = GoogleDriveClientCache.getDrive(cacheKey);
+            if (drive != null) {
+                return drive;
+            }
+            
+            PrivateKey privateKey = GoogleDriveClientCache.getPrivateKey(privateKeyHash);
+            if (privateKey == null) {
+                privateKey = extractPrivatekey(certificate, certificatePassword);
+                GoogleDriveClientCache.putPrivateKey(privateKeyHash, privateKey);
+            }
             credential =
-                    new GoogleCredential.Builder()
-                            .setTransport(httpTransport)
-                            .setJsonFactory(jsonFactory)
-                            .setServiceAccountId(
-                                    (String) messageContext
-                                            .getProperty(GoogleDriveUtils.StringConstants.SERVICE_ACCOUNT_EMAIL))
+                    new GoogleCredential.Builder().setTransport(GoogleDriveClientCache.getHttpTransport())
+                            .setJsonFactory(GoogleDriveClientCache.getJsonFactory())
+                            .setServiceAccountId(serviceAccountEmail)
                             .setServiceAccountScopes(Collections.singleton(DriveScopes.DRIVE))
-                            .setServiceAccountPrivateKey(
-                                    extractPrivatekeyFromAttachment(messageContext, certificatePassword)).build();
+                            .setServiceAccountPrivateKey(privateKey).build();
             
         } else {
+            String clientId = (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.CLIENT_ID);
+            String clientSecret =
+                    (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.CLIENT_SECRET);
+            String accessToken = (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.ACCESS_TOKEN);
+            String refreshToken =
+                    (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.REFRESH_TOKEN);
+            
+            // A refresh token identifies the grant across access token renewals.
+            String token = refreshToken != null && !refreshToken.isEmpty() ? refreshToken : accessToken;
+            cacheKey = "client:" + clientId + ":" + GoogleDriveClientCache.hash(clientSecret + ":" + token);
+            Drive drive = GoogleDriveClientCache.getDrive(cacheKey);
+            if (drive != null) {
+                return drive;
+            }
+            
             credential =
-                    new GoogleCredential.Builder()
-                            .setTransport(httpTransport)
-                            .setJsonFactory(jsonFactory)
-                            .setClientSecrets(
-                                    (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.CLIENT_ID),
-                                    (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.CLIENT_SECRET))
-                            .build()
-                            .setAccessToken(
-                                    (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.ACCESS_TOKEN))
-                            .setRefreshToken(
-                                    (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.REFRESH_TOKEN));
+                    new GoogleCredential.Builder().setTransport(GoogleDriveClientCache.getHttpTransport())
+                            .setJsonFactory(GoogleDriveClientCache.getJsonFactory())
+                            .setClientSecrets(clientId, clientSecret).build().setAccessToken(accessToken)
+                            .setRefreshToken(refreshToken);
         }
         
-        return new Drive.Builder(httpTransport, jsonFactory, credential).build();
+        return GoogleDriveClientCache.putDrive(cacheKey, privateKeyHash, credential);
     }
     
     /**
-     * This method can extract private key from PKCS12 format security certificate First it will remove
-     * certificate from soap attachment.
+     * Reads the PKCS12 security certificate from the soap attachment with the content ID 'certificate'.
+     * 
      * @param messageContext Synapse Message Context
-     * @param certificatePassword this is password of certificate which offer when google provide private key
-     *        to save
-     * @return java.security.Privatekey The privatekey to use for authentication.
-     * @throws GeneralSecurityException If a GeneralSecurity error occurs
+     * @return the content of the certificate
+     * @throws GeneralSecurityException If the certificate is not attached
      * @throws IOException IOException If an error occurs while reading stream
      */
-    private static PrivateKey extractPrivatekeyFromAttachment(final MessageContext messageContext,
-            final String certificatePassword) throws GeneralSecurityException, IOException {
+    private static byte[] readCertificateAttachment(final MessageContext messageContext)
+            throws GeneralSecurityException, IOException {
     
-        char[] passwordChar = certificatePassword.toCharArray();
-        
         org.apache.axis2.context.MessageContext axis2mc =
                 ((Axis2MessageContext) messageContext).getAxis2MessageContext();
         
@@ -250,10 +412,37 @@ public final class GoogleDriveUtils {
         }
         
         InputStream certificateInputStream = dataHandler.getInputStream();
+        try {
+            ByteArrayOutputStream certificate = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = certificateInputStream.read(buffer)) != -1) {
+                certificate.write(buffer, 0, read);
+            }
+            return certificate.toByteArray();
+        } finally {
+            certificateInputStream.close();
+        }
+    }
+    
+    /**
+     * This method can extract private key from PKCS12 format security certificate.
+     * 
+     * @param certificate content of the certificate
+     * @param certificatePassword this is password of certificate which offer when google provide private key
+     *        to save
+     * @return java.security.Privatekey The privatekey to use for authentication.
+     * @throws GeneralSecurityException If a GeneralSecurity error occurs
+     * @throws IOException IOException If an error occurs while reading stream
+     */
+    private static PrivateKey extractPrivatekey(final byte[] certificate, final String certificatePassword)
+            throws GeneralSecurityException, IOException {
+    
+        char[] passwordChar = certificatePassword.toCharArray();
         
         KeyStore ks = java.security.KeyStore.getInstance("PKCS12");
         
-        ks.load(certificateInputStream, passwordChar);
+        ks.load(new ByteArrayInputStream(certificate), passwordChar);
         
         String alias = ks.aliases().nextElement();
         if (alias != null && !alias.isEmpty()) {
@@ -471,6 +660,21 @@ public final class GoogleDriveUtils {
          */
         public static final String FIELDS = "fields";
         
+        /**
+         * Represent the responseFormat, json to return the resources as JSON payloads.
+         */
+        public static final String RESPONSE_FORMAT = "responseFormat";
+        
+        /**
+         * Represent the json response format.
+         */
+        public static final String JSON = "json";
+        
+        /**
+         * Content type of JSON payloads.
+         */
+        public static final String JSON_CONTENT_TYPE = "application/json";
+        
         /**
          * Represent the maxResult.
          */
@@ -481,6 +685,51 @@ public final class GoogleDriveUtils {
          */
         public static final String PAGE_TOKEN = "pageToken";
         
+        /**
+         * Specific to list methods Represent the autoPaginate.
+         */
+        public static final String AUTO_PAGINATE = "autoPaginate";
+        
+        /**
+         * Specific to list methods Represent the maxItems.
+         */
+        public static final String MAX_ITEMS = "maxItems";
+        
+        /**
+         * Specific to list methods Represent the prefetchPages.
+         */
+        public static final String PREFETCH_PAGES = "prefetchPages";
+        
+        /**
+         * Specific to list methods Represent the sequence the pages are injected into.
+         */
+        public static final String SEQUENCE = "sequence";
+        
+        /**
+         * Items of a list resource.
+         */
+        public static final String ITEMS = "items";
+        
+        /**
+         * Next page token of a list resource.
+         */
+        public static final String NEXT_PAGE_TOKEN = "nextPageToken";
+        
+        /**
+         * Largest change ID of a change list resource.
+         */
+        public static final String LARGEST_CHANGE_ID = "largestChangeId";
+        
+        /**
+         * Number of pages injected into the sequence.
+         */
+        public static final String PAGE_COUNT = "pageCount";
+        
+        /**
+         * Number of items injected into the sequence.
+         */
+        public static final String ITEM_COUNT = "itemCount";
+        
         /**
          * Represent the query.
          */
@@ -626,6 +875,21 @@ public final class GoogleDriveUtils {
          */
         public static final String INSERTED_FILE_RESULT = "insertedFileResult";
         
+        /**
+         * Specific to downloadFile method Represent the download file result.
+         */
+        public static final String DOWNLOAD_FILE_RESULT = "downloadFileResult";
+        
+        /**
+         * Specific to insertFile, updateFile and downloadFile methods Represent the chunkSize.
+         */
+        public static final String CHUNK_SIZE = "chunkSize";
+        
+        /**
+         * Specific to downloadFile method Represent the parallelChunks.
+         */
+        public static final String PARALLEL_CHUNKS = "parallelChunks";
+        
         /**
          * Represent title.
          */
@@ -691,6 +955,11 @@ public final class GoogleDriveUtils {
          */
         public static final String URN_GOOGLEDRIVE_INSERTFILE = "urn:wso2.connector.googledrive.insertfile";
         
+        /**
+         * Specific to downloadFile method Represent the URN.
+         */
+        public static final String URN_GOOGLEDRIVE_DOWNLOADFILE = "urn:wso2.connector.googledrive.downloadfile";
+        
         /**
          * Represent urn for copyFile.
          */
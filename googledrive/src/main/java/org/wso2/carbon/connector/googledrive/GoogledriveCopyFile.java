@@ -59,7 +59,6 @@ public class GoogledriveCopyFile extends AbstractConnector {
     public final void connect(final MessageContext messageContext) {
     
         String fileId = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.FILE_ID);
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
         try {
             
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
@@ -68,13 +67,9 @@ public class GoogledriveCopyFile extends AbstractConnector {
             
             File copiedFile = copyFile(service, fileId, optionalParams);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE, copiedFile.toPrettyString());
-            
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_COPYFILE,
-                    GoogleDriveUtils.StringConstants.COPIED_FILE_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.COPIED_FILE_RESULT, copiedFile);
             
         } catch (IOException ioe) {
             log.error("Failed to copy file:", ioe);
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.googledrive;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+import javax.activation.DataHandler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.wso2.carbon.connector.core.AbstractConnector;
+
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+
+/**
+ * Class mediator which downloads the content of a file within Google Drive, specified by a file ID. The content
+ * is attached to the message with the content ID <strong>file</strong> as a DataHandler which fetches the
+ * content in ranged chunks, optionally in parallel, when the attachment is read. Returns the file as a Google
+ * Drive SDK File resource in XML format and attaches to the message context's envelope body, and stores an
+ * error message as a property on failure. Maps to the <strong>downloadFile</strong> Synapse template within
+ * the <strong>Google Drive</strong> connector.
+ * 
+ * @see https://developers.google.com/drive/web/manage-downloads
+ */
+public class GoogledriveDownloadFile extends AbstractConnector {
+    
+    /**
+     * Number of bytes fetched with each ranged request unless specified.
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    
+    /**
+     * Maximum number of chunks which can be fetched in parallel.
+     */
+    private static final int MAX_PARALLEL_CHUNKS = 8;
+    
+    /**
+     * Connector method which is executed at the specified point within the corresponding Synapse template
+     * within the connector.
+     * 
+     * @param messageContext Synapse Message Context
+     * @see org.wso2.carbon.connector.core.AbstractConnector#connect(org.apache.synapse.MessageContext)
+     */
+    public final void connect(final MessageContext messageContext) {
+    
+        String fileId = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.FILE_ID);
+        String chunkSize = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.CHUNK_SIZE);
+        String parallelChunks =
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.PARALLEL_CHUNKS);
+        
+        try {
+            int chunkBytes = DEFAULT_CHUNK_SIZE;
+            if (chunkSize != null && !chunkSize.isEmpty()) {
+                chunkBytes = GoogleDriveUtils.toInteger(chunkSize);
+                if (chunkBytes == 0) {
+                    throw new ValidationException("chunkSize should be greater than zero");
+                }
+            }
+            int parallelCount = 1;
+            if (parallelChunks != null && !parallelChunks.isEmpty()) {
+                parallelCount = GoogleDriveUtils.toInteger(parallelChunks);
+                if (parallelCount == 0 || parallelCount > MAX_PARALLEL_CHUNKS) {
+                    throw new ValidationException("parallelChunks should be between 1 and " + MAX_PARALLEL_CHUNKS);
+                }
+            }
+            
+            Drive service = GoogleDriveUtils.getDriveService(messageContext);
+            
+            File file = service.files().get(fileId).execute();
+            if (file.getDownloadUrl() == null || file.getFileSize() == null) {
+                throw new ValidationException("File " + fileId
+                        + " has no content to download, Google Docs files need to be exported");
+            }
+            
+            org.apache.axis2.context.MessageContext axis2mc =
+                    ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+            axis2mc.addAttachment(GoogleDriveUtils.StringConstants.FILE, new DataHandler(
+                    new GoogleDriveDownloadDataSource(service, file, chunkBytes, parallelCount)));
+            
+            GoogleDriveUtils.setResultPayload(messageContext,
+                    GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_DOWNLOADFILE,
+                    GoogleDriveUtils.StringConstants.DOWNLOAD_FILE_RESULT, file);
+            
+        } catch (IOException ioe) {
+            log.error("Error downloading file.", ioe);
+            GoogleDriveUtils.storeErrorResponseStatus(messageContext, ioe,
+                    GoogleDriveUtils.ErrorCodeConstants.ERROR_CODE_IO_EXCEPTION);
+            handleException("Error downloading file.", ioe, messageContext);
+        } catch (GeneralSecurityException gse) {
+            log.error("Google Drive authentication failure.", gse);
+            GoogleDriveUtils.storeErrorResponseStatus(messageContext, gse,
+                    GoogleDriveUtils.ErrorCodeConstants.ERROR_CODE_GENERAL_SECURITY_EXCEPTION);
+            handleException("Google Drive authentication failure.", gse, messageContext);
+        } catch (ValidationException ve) {
+            log.error("Failed to validate parameter.", ve);
+            GoogleDriveUtils.storeErrorResponseStatus(messageContext, ve,
+                    GoogleDriveUtils.ErrorCodeConstants.ERROR_CODE_CONNECTOR_VALIDATION_EXCEPTION);
+            handleException("Failed to validate parameter.", ve, messageContext);
+        }
+    }
+    
+}
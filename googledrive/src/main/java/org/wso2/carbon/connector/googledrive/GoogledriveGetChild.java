@@ -20,8 +20,6 @@ package org.wso2.carbon.connector.googledrive;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.synapse.MessageContext;
 import org.wso2.carbon.connector.core.AbstractConnector;
@@ -54,7 +52,6 @@ public class GoogledriveGetChild extends AbstractConnector {
         String childId = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.CHILD_ID);
         String fields = (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS);
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
         try {
             
             ChildReference returnedChild;
@@ -66,12 +63,9 @@ public class GoogledriveGetChild extends AbstractConnector {
             }
             returnedChild = getChildRequest.execute();
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.CHILD_REFERENCE, returnedChild.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_GETCHILD,
-                    GoogleDriveUtils.StringConstants.GET_CHILD_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.GET_CHILD_RESULT, returnedChild);
             
         } catch (IOException ioe) {
             log.error("Error getting child reference.", ioe);
@@ -58,7 +58,6 @@ public class GoogledriveGetCommentByID extends AbstractConnector {
         parameters.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS));
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
         try {
             
             Comment returnedComment;
@@ -66,12 +65,9 @@ public class GoogledriveGetCommentByID extends AbstractConnector {
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
             returnedComment = getCommentById(service, fileId, commentId, parameters);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.COMMENT, returnedComment.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_GETCOMMENTBYID,
-                    GoogleDriveUtils.StringConstants.GET_COMMENT_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.GET_COMMENT_RESULT, returnedComment);
             
         } catch (IOException ioe) {
             log.error("Failed to get Comment: " + ioe.getMessage(), ioe);
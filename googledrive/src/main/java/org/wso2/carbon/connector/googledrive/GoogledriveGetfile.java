@@ -60,18 +60,13 @@ public class GoogledriveGetfile extends AbstractConnector {
         parameters.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS));
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
-        
         try {
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
             
             File fileResult = getFileById(service, fileId, parameters);
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE, fileResult.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_GETFILE,
-                    GoogleDriveUtils.StringConstants.GET_FILE_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.GET_FILE_RESULT, fileResult);
             
         } catch (IOException ioe) {
             log.error("Error retrieving file.", ioe);
@@ -68,19 +68,14 @@ public class GoogledriveInsertComment extends AbstractConnector {
         parameters.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS));
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
-        
         try {
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
             
             comment = insertComment(service, fileId, commentContent, parameters);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.COMMENT, comment.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_INSERTCOMMENT,
-                    GoogleDriveUtils.StringConstants.INSERT_COMMENT_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.INSERT_COMMENT_RESULT, comment);
             
         } catch (ParserConfigurationException pce) {
             log.error("Error in XML parsing configuration.", pce);
@@ -64,8 +64,6 @@ public class GoogledriveInsertFile extends AbstractConnector {
     
         String uploadType = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.UPLOAD_TYPE);
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
-        
         InputStream attachmentInStream = null;
         try {
             org.apache.axis2.context.MessageContext axis2mc =
@@ -82,12 +80,9 @@ public class GoogledriveInsertFile extends AbstractConnector {
             
             File insertedFile = insertFile(service, uploadType, attachmentInStream, optionalParametersMap);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE, insertedFile.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_INSERTFILE,
-                    GoogleDriveUtils.StringConstants.INSERTED_FILE_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.INSERTED_FILE_RESULT, insertedFile);
             
         } catch (IOException ioe) {
             log.error("Error inserting file.", ioe);
@@ -150,6 +145,8 @@ public class GoogledriveInsertFile extends AbstractConnector {
                 (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.INDEXABLE_TEXT));
         parameters.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS));
+        parameters.put(GoogleDriveUtils.StringConstants.CHUNK_SIZE,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.CHUNK_SIZE));
         
         return parameters;
     }
@@ -230,10 +227,10 @@ public class GoogledriveInsertFile extends AbstractConnector {
         if ( fileContentStream != null ) {
             // File's content.
             insertRequest =
-                    service.files().insert(metaDatafile, new GoogleDriveFileContent(mimeType, fileContentStream));
-            if (uploadType != null && !uploadType.equals(GoogleDriveUtils.StringConstants.RESUMABLE)) {
-                insertRequest.getMediaHttpUploader().setDirectUploadEnabled(true);
-            } 
+                    service.files().insert(metaDatafile,
+                            GoogleDriveUtils.getFileContent(mimeType, fileContentStream, uploadType));
+            GoogleDriveUtils.configureMediaUploader(insertRequest.getMediaHttpUploader(), uploadType,
+                    optionalParametersMap.get(GoogleDriveUtils.StringConstants.CHUNK_SIZE));
         } else {
             insertRequest = service.files().insert(metaDatafile);
         }
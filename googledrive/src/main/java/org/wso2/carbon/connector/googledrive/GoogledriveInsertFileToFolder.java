@@ -20,8 +20,6 @@ package org.wso2.carbon.connector.googledrive;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.synapse.MessageContext;
 import org.wso2.carbon.connector.core.AbstractConnector;
@@ -57,19 +55,15 @@ public class GoogledriveInsertFileToFolder extends AbstractConnector {
         String fileId = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.FILE_ID);
         String fields = (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS);
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
         try {
             
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
             
             insertedChild = insertFileIntoFolder(service, folderId, fileId, fields);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.CHILD_REFERENCE, insertedChild.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_INSERTFILETOFOLDER,
-                    GoogleDriveUtils.StringConstants.INSERT_FILE_TO_FOLDER_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.INSERT_FILE_TO_FOLDER_RESULT, insertedChild);
             
         } catch (IOException ioe) {
             log.error("Failed insert file to folder.", ioe);
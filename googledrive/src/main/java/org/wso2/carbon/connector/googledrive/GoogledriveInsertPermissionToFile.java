@@ -77,19 +77,15 @@ public class GoogledriveInsertPermissionToFile extends AbstractConnector {
         parameters.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS));
         
-        Map<String, String> resultsEnvelopeMap = new HashMap<String, String>();
         try {
             
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
             
             insertedPermission = insertPermission(service, fileId, parameters);
             
-            resultsEnvelopeMap.put(GoogleDriveUtils.StringConstants.PERMISSION, insertedPermission.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_INSERTPERMISSION,
-                    GoogleDriveUtils.StringConstants.INSERT_PERMISSION_RESULT, resultsEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.INSERT_PERMISSION_RESULT, insertedPermission);
         } catch (IOException ioe) {
             log.error("Error on insert permission.", ioe);
             GoogleDriveUtils.storeErrorResponseStatus(messageContext, ioe,
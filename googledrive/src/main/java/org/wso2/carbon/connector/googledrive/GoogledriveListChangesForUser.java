@@ -54,8 +54,6 @@ public class GoogledriveListChangesForUser extends AbstractConnector {
         ChangeList changeList;
         
         Map<String, String> parameterMap = new HashMap<String, String>();
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
-        
         // Adding parameters to parameterMap
         parameterMap.put(GoogleDriveUtils.StringConstants.INCLUDE_DELETED,
                 (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.INCLUDE_DELETED));
@@ -69,19 +67,39 @@ public class GoogledriveListChangesForUser extends AbstractConnector {
                 (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.START_CHANGE_ID));
         parameterMap.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS));
+        parameterMap.put(GoogleDriveUtils.StringConstants.AUTO_PAGINATE,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.AUTO_PAGINATE));
+        parameterMap.put(GoogleDriveUtils.StringConstants.MAX_ITEMS,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.MAX_ITEMS));
+        parameterMap.put(GoogleDriveUtils.StringConstants.PREFETCH_PAGES,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.PREFETCH_PAGES));
+        parameterMap.put(GoogleDriveUtils.StringConstants.SEQUENCE,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.SEQUENCE));
         
         try {
             
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
             
-            changeList = getChangeList(service, parameterMap);
+            final Changes.List request = createListRequest(service, parameterMap);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.CHANGE_LIST, changeList.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
-                    GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_LISTCHANGESFORUSER,
-                    GoogleDriveUtils.StringConstants.LIST_CHANGES_FOR_USER_RESULT, resultEnvelopeMap));
+            if (GoogleDrivePager.isAutoPaginate(parameterMap)) {
+                final Integer pageSize = request.getMaxResults();
+                GoogleDrivePager.paginate(messageContext, parameterMap, new GoogleDrivePager.PageRequest<ChangeList>() {
+                    
+                    public ChangeList execute(final String pageToken, final int remainingItems) throws IOException {
+                    
+                        return request.setPageToken(pageToken)
+                                .setMaxResults(GoogleDrivePager.getPageSize(pageSize, remainingItems)).execute();
+                    }
+                }, GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_LISTCHANGESFORUSER,
+                        GoogleDriveUtils.StringConstants.LIST_CHANGES_FOR_USER_RESULT);
+            } else {
+                changeList = request.execute();
+                
+                GoogleDriveUtils.setResultPayload(messageContext,
+                        GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_LISTCHANGESFORUSER,
+                        GoogleDriveUtils.StringConstants.LIST_CHANGES_FOR_USER_RESULT, changeList);
+            }
             
         } catch (IOException ioe) {
             log.error("Failed to retrieve changes.", ioe);
@@ -102,18 +120,18 @@ public class GoogledriveListChangesForUser extends AbstractConnector {
     }
     
     /**
-     * Returns a list of changes to a file as a ChangeList resource.
+     * Creates a request to list the changes to a file as a ChangeList resource.
      * 
      * @param service Drive API service instance.
      * @param params HashMap containing parameters for the request
-     * @return <strong>ChangeList</strong> of changes
+     * @return Request for a <strong>ChangeList</strong> of changes
      * @throws IOException If an error occur on Google Drive API end.
      * @throws ValidationException If a validation error occurs.
      * @throws TokenResponseException If receiving an error response from
      *         the token server.
      */
-    private ChangeList getChangeList(final Drive service, final Map<String, String> params) throws IOException,
-            ValidationException, TokenResponseException {
+    private Changes.List createListRequest(final Drive service, final Map<String, String> params)
+            throws IOException, ValidationException, TokenResponseException {
     
         // Get list of changes
         Changes.List request = service.changes().list();
@@ -154,7 +172,7 @@ public class GoogledriveListChangesForUser extends AbstractConnector {
             request.setFields(temporaryValue);
         }
         
-        return request.execute();
+        return request;
         
     }
 }
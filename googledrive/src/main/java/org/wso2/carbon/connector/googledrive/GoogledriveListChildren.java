@@ -61,20 +61,39 @@ public class GoogledriveListChildren extends AbstractConnector {
                 (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.Q));
         optParam.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS));
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
+        optParam.put(GoogleDriveUtils.StringConstants.AUTO_PAGINATE,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.AUTO_PAGINATE));
+        optParam.put(GoogleDriveUtils.StringConstants.MAX_ITEMS,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.MAX_ITEMS));
+        optParam.put(GoogleDriveUtils.StringConstants.PREFETCH_PAGES,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.PREFETCH_PAGES));
+        optParam.put(GoogleDriveUtils.StringConstants.SEQUENCE,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.SEQUENCE));
         try {
             
             ChildList childrenList;
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
             
-            childrenList = retrieveListOfChildren(service, folderId, optParam);
+            final Children.List request = createListRequest(service, folderId, optParam);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.CHILD_REFERENCE, childrenList.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
-                    GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_LISTFOLDERS,
-                    GoogleDriveUtils.StringConstants.LIST_CHILDREN_RESULT, resultEnvelopeMap));
+            if (GoogleDrivePager.isAutoPaginate(optParam)) {
+                final Integer pageSize = request.getMaxResults();
+                GoogleDrivePager.paginate(messageContext, optParam, new GoogleDrivePager.PageRequest<ChildList>() {
+                    
+                    public ChildList execute(final String pageToken, final int remainingItems) throws IOException {
+                    
+                        return request.setPageToken(pageToken)
+                                .setMaxResults(GoogleDrivePager.getPageSize(pageSize, remainingItems)).execute();
+                    }
+                }, GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_LISTFOLDERS,
+                        GoogleDriveUtils.StringConstants.LIST_CHILDREN_RESULT);
+            } else {
+                childrenList = request.execute();
+                
+                GoogleDriveUtils.setResultPayload(messageContext,
+                        GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_LISTFOLDERS,
+                        GoogleDriveUtils.StringConstants.LIST_CHILDREN_RESULT, childrenList);
+            }
             
         } catch (IOException ioe) {
             log.error("Error listing folders:", ioe);
@@ -96,17 +115,17 @@ public class GoogledriveListChildren extends AbstractConnector {
     }
     
     /**
-     * Retrieves a list of children for a given folder and returns them as a ChildList resource.
+     * Creates a request to list the children of a given folder as a ChildList resource.
      * 
      * @param service Drive service object
      * @param folderId ID of the folder of which the children should be returned
      * @param optParam optional parameter hashmap
-     * @return List of Child objects
+     * @return Request for a list of Child objects
      * @throws IOException If an error occur on Google Drive API end.
      * @throws TokenResponseException If receiving an error response from
      *         the token server.
      */
-    private ChildList retrieveListOfChildren(final Drive service, final String folderId,
+    private Children.List createListRequest(final Drive service, final String folderId,
             final Map<String, String> optParam) throws IOException, ValidationException, TokenResponseException {
     
         Children.List request = service.children().list(folderId);
@@ -130,7 +149,7 @@ public class GoogledriveListChildren extends AbstractConnector {
             request.setFields(temporaryValue);
         }
         
-        return request.execute();
+        return request;
         
     }
     
@@ -20,8 +20,6 @@ package org.wso2.carbon.connector.googledrive;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.synapse.MessageContext;
 import org.wso2.carbon.connector.core.AbstractConnector;
@@ -55,8 +53,6 @@ public class GoogledriveListFilePermissions extends AbstractConnector {
         String fileId = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.FILE_ID);
         String fields = (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS);
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
-        
         try {
             
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
@@ -66,12 +62,9 @@ public class GoogledriveListFilePermissions extends AbstractConnector {
             }
             permissionList = request.execute();
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.PERMISSION, permissionList.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_GETPERMISSIONLIST,
-                    GoogleDriveUtils.StringConstants.GET_PERMISSIONS_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.GET_PERMISSIONS_RESULT, permissionList);
             
         } catch (IOException ioe) {
             log.error("Error on list file permissions: " + ioe.getMessage(), ioe);
@@ -60,20 +60,39 @@ public class GoogledriveListFiles extends AbstractConnector {
                 (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.Q));
         optParam.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS));
+        optParam.put(GoogleDriveUtils.StringConstants.AUTO_PAGINATE,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.AUTO_PAGINATE));
+        optParam.put(GoogleDriveUtils.StringConstants.MAX_ITEMS,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.MAX_ITEMS));
+        optParam.put(GoogleDriveUtils.StringConstants.PREFETCH_PAGES,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.PREFETCH_PAGES));
+        optParam.put(GoogleDriveUtils.StringConstants.SEQUENCE,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.SEQUENCE));
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
         try {
             
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
             
-            FileList files = retrieveListOfFiles(service, optParam);
+            final Files.List request = createListRequest(service, optParam);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE_LIST, files.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
-                    GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_LISTFILE,
-                    GoogleDriveUtils.StringConstants.LIST_FILE_RESULT, resultEnvelopeMap));
+            if (GoogleDrivePager.isAutoPaginate(optParam)) {
+                final Integer pageSize = request.getMaxResults();
+                GoogleDrivePager.paginate(messageContext, optParam, new GoogleDrivePager.PageRequest<FileList>() {
+                    
+                    public FileList execute(final String pageToken, final int remainingItems) throws IOException {
+                    
+                        return request.setPageToken(pageToken)
+                                .setMaxResults(GoogleDrivePager.getPageSize(pageSize, remainingItems)).execute();
+                    }
+                }, GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_LISTFILE,
+                        GoogleDriveUtils.StringConstants.LIST_FILE_RESULT);
+            } else {
+                FileList files = request.execute();
+                
+                GoogleDriveUtils.setResultPayload(messageContext,
+                        GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_LISTFILE,
+                        GoogleDriveUtils.StringConstants.LIST_FILE_RESULT, files);
+            }
             
         } catch (IOException ioe) {
             log.error("Failed to retrieve file list:", ioe);
@@ -95,17 +114,17 @@ public class GoogledriveListFiles extends AbstractConnector {
     }
     
     /**
-     * Retrieve a list of File resources according to optional parameters passed.
+     * Create a request to list File resources according to optional parameters passed.
      * 
      * @param service Drive API service instance.
      * @param optParam Collection of optional parameters.
-     * @return List of File resources.
+     * @return Request for a list of File resources.
      * @throws IOException If an error occur on Google Drive API end.
      * @throws ValidationException If a validation error occurs.
      * @throws TokenResponseException If receiving an error response from the token server.
      */
-    private FileList retrieveListOfFiles(final Drive service, final Map<String, String> optParam) throws IOException,
-            ValidationException, TokenResponseException {
+    private Files.List createListRequest(final Drive service, final Map<String, String> optParam)
+            throws IOException, ValidationException, TokenResponseException {
     
         Files.List request = service.files().list();
         
@@ -136,7 +155,7 @@ public class GoogledriveListFiles extends AbstractConnector {
             request.setFields(temporaryValue);
         }
         
-        return request.execute();
+        return request;
     }
     
 }
@@ -56,8 +56,6 @@ public class GoogledrivePatchFile extends AbstractConnector {
         // Represent the patched files.
         File patchedFile;
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
-        
         String fileId = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.FILE_ID);
         
         Map<String, String> parameters = new HashMap<String, String>();
@@ -92,12 +90,9 @@ public class GoogledrivePatchFile extends AbstractConnector {
             
             patchedFile = patchFile(service, fileId, parameters);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE, patchedFile.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_PATCHFILE,
-                    GoogleDriveUtils.StringConstants.PATCH_FILE_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.PATCH_FILE_RESULT, patchedFile);
             
         } catch (IOException ioe) {
             log.error("Failed to patch file:", ioe);
@@ -20,8 +20,6 @@ package org.wso2.carbon.connector.googledrive;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.synapse.MessageContext;
 import org.wso2.carbon.connector.core.AbstractConnector;
@@ -52,8 +50,6 @@ public class GoogledriveTouchFile extends AbstractConnector {
     
         String fileId = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.FILE_ID);
         String fields = (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS);
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
-        
         try {
             
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
@@ -63,12 +59,9 @@ public class GoogledriveTouchFile extends AbstractConnector {
             }
             File file = request.execute();
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE, file.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_TOUCHFILE,
-                    GoogleDriveUtils.StringConstants.TOUCH_FILE_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.TOUCH_FILE_RESULT, file);
             
         } catch (IOException ioe) {
             log.error("Error updating time to the current server time:", ioe);
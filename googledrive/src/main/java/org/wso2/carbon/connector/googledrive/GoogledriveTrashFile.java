@@ -20,8 +20,6 @@ package org.wso2.carbon.connector.googledrive;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.synapse.MessageContext;
 import org.wso2.carbon.connector.core.AbstractConnector;
@@ -52,7 +50,6 @@ public class GoogledriveTrashFile extends AbstractConnector {
     
         String fileId = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.FILE_ID);
         String fields = (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS);
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
         try {
             
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
@@ -63,13 +60,9 @@ public class GoogledriveTrashFile extends AbstractConnector {
             }
             File trashedFile = request.execute();
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE, trashedFile.toPrettyString());
-            
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_TRASHFILE,
-                    GoogleDriveUtils.StringConstants.TRASHED_FILE_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.TRASHED_FILE_RESULT, trashedFile);
             
         } catch (IOException ioe) {
             log.error("Error trashing file:", ioe);
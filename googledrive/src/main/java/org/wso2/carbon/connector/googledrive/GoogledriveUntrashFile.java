@@ -20,8 +20,6 @@ package org.wso2.carbon.connector.googledrive;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.synapse.MessageContext;
 import org.wso2.carbon.connector.core.AbstractConnector;
@@ -52,8 +50,6 @@ public class GoogledriveUntrashFile extends AbstractConnector {
     
         String fileId = (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.FILE_ID);
         String fields = (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS);
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
-        
         try {
             
             Drive service = GoogleDriveUtils.getDriveService(messageContext);
@@ -63,13 +59,9 @@ public class GoogledriveUntrashFile extends AbstractConnector {
             }
             File untrashedFile = request.execute();
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE, untrashedFile.toPrettyString());
-            
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_UNTRASHFILE,
-                    GoogleDriveUtils.StringConstants.UNTRASHED_FILE_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.UNTRASHED_FILE_RESULT, untrashedFile);
             
         } catch (IOException ioe) {
             log.error("Failed to untrash the file:", ioe);
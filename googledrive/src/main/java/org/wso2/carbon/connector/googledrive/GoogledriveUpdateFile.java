@@ -102,7 +102,8 @@ public class GoogledriveUpdateFile extends AbstractConnector {
                 (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.INDEXABLE_TEXT));
         optionalParameters.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) messageContext.getProperty(GoogleDriveUtils.StringConstants.FIELDS));
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
+        optionalParameters.put(GoogleDriveUtils.StringConstants.CHUNK_SIZE,
+                (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.CHUNK_SIZE));
         try {
             InputStream attachmentInStream = null;
             org.apache.axis2.context.MessageContext axis2mc =
@@ -120,12 +121,9 @@ public class GoogledriveUpdateFile extends AbstractConnector {
             File updatedFile;
             updatedFile = updateFile(service, mandatoryParameters, attachmentInStream, optionalParameters);
             
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE, updatedFile.toPrettyString());
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_UPDATEFILE,
-                    GoogleDriveUtils.StringConstants.UPDATE_FILE_RESULT, resultEnvelopeMap));
+                    GoogleDriveUtils.StringConstants.UPDATE_FILE_RESULT, updatedFile);
             
         } catch (IOException ioe) {
             log.error("Error updating file.", ioe);
@@ -228,11 +226,11 @@ public class GoogledriveUpdateFile extends AbstractConnector {
             // If it is not a patch that is required, we are going to run an
             // upload
             updateRequest =
-                    service.files().update(fileId, file, new GoogleDriveFileContent(mimeType, fileContentStream));
+                    service.files().update(fileId, file,
+                            GoogleDriveUtils.getFileContent(mimeType, fileContentStream, uploadType));
             
-            if (uploadType != null && !uploadType.equals(GoogleDriveUtils.StringConstants.RESUMABLE)) {
-                updateRequest.getMediaHttpUploader().setDirectUploadEnabled(true);
-            }
+            GoogleDriveUtils.configureMediaUploader(updateRequest.getMediaHttpUploader(), uploadType,
+                    optionalParams.get(GoogleDriveUtils.StringConstants.CHUNK_SIZE));
         }
         temporaryValue = optionalParams.get(GoogleDriveUtils.StringConstants.CONVERT);
         if (!temporaryValue.isEmpty()) {
@@ -67,8 +67,6 @@ public class GoogledriveWatchFile extends AbstractConnector {
         parameters.put(GoogleDriveUtils.StringConstants.FIELDS,
                 (String) getParameter(messageContext, GoogleDriveUtils.StringConstants.FIELDS));
         
-        Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
-        
         // Channel object to store result
         Channel createdChannel = null;
         
@@ -78,12 +76,9 @@ public class GoogledriveWatchFile extends AbstractConnector {
             
             createdChannel = watchFile(service, fileId, parameters);
             
-            messageContext.getEnvelope().detach();
-            // build new SOAP envelope to return to client
-            messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(
+            GoogleDriveUtils.setResultPayload(messageContext,
                     GoogleDriveUtils.StringConstants.URN_GOOGLEDRIVE_WATCHFILE,
-                    GoogleDriveUtils.StringConstants.WATCH_FILE_RESULT, resultEnvelopeMap));
-            resultEnvelopeMap.put(GoogleDriveUtils.StringConstants.FILE, createdChannel.toPrettyString());
+                    GoogleDriveUtils.StringConstants.WATCH_FILE_RESULT, createdChannel);
             
         } catch (IOException ioe) {
             
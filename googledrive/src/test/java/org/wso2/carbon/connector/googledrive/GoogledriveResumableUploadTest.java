@@ -0,0 +1,156 @@
+/**
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.connector.googledrive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+
+/**
+ * Runs a chunked resumable upload of the connector against a Drive upload endpoint which drops the connection in
+ * the middle of a chunk, and checks that the upload resumes from the last byte the endpoint committed.
+ */
+public class GoogledriveResumableUploadTest {
+    
+    private static final int CHUNK_SIZE = 256 * 1024;
+    
+    private static final String SESSION_URL = "https://www.googleapis.com/upload/drive/v2/files?upload_id=resumed";
+    
+    @Test(description = "Google Drive {insertFile} method {resumed chunked upload} unit test")
+    public void testResumableUploadResumesAfterNetworkError() throws Exception {
+    
+        byte[] content = new byte[CHUNK_SIZE * 3 + 1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        UploadEndpoint endpoint = new UploadEndpoint(CHUNK_SIZE + CHUNK_SIZE / 2);
+        Drive drive =
+                new Drive.Builder(endpoint, GoogleDriveClientCache.getJsonFactory(),
+                        new GoogleDriveRequestInitializer(new GoogleCredential().setAccessToken("token")))
+                        .setApplicationName("googledrive-connector-test").build();
+        
+        Drive.Files.Insert insert =
+                drive.files().insert(new File().setTitle("resumed.bin"),
+                        GoogleDriveUtils.getFileContent("application/octet-stream", new ByteArrayInputStream(content),
+                                null));
+        GoogleDriveUtils.configureMediaUploader(insert.getMediaHttpUploader(), null, String.valueOf(CHUNK_SIZE));
+        File file = insert.execute();
+        
+        Assert.assertEquals(file.getId(), "resumed");
+        Assert.assertTrue(endpoint.failed, "The connection was not dropped");
+        Assert.assertTrue(endpoint.statusQueried, "The upload status was not queried after the failure");
+        Assert.assertTrue(Arrays.equals(endpoint.received.toByteArray(), content));
+    }
+    
+    /**
+     * Resumable upload endpoint which commits the bytes of the chunks it receives, and once drops the connection
+     * after committing part of the chunk which crosses the given offset.
+     */
+    private static final class UploadEndpoint extends MockHttpTransport {
+        
+        private final int failAt;
+        
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        
+        private boolean failed;
+        
+        private boolean statusQueried;
+        
+        private UploadEndpoint(final int failAt) {
+        
+            this.failAt = failAt;
+        }
+        
+        @Override
+        public LowLevelHttpRequest buildRequest(final String method, final String url) throws IOException {
+        
+            return new MockLowLevelHttpRequest(url) {
+                
+                @Override
+                public LowLevelHttpResponse execute() throws IOException {
+                
+                    if (url.contains("uploadType=resumable")) {
+                        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+                        response.addHeader("Location", SESSION_URL);
+                        return response;
+                    }
+                    return receiveChunk(getFirstHeaderValue("Content-Range"), this);
+                }
+            };
+        }
+        
+        private LowLevelHttpResponse receiveChunk(final String contentRange, final LowLevelHttpRequest request)
+                throws IOException {
+        
+            if (contentRange.startsWith("bytes */")) {
+                statusQueried = true;
+                return incomplete();
+            }
+            
+            String range = contentRange.substring("bytes ".length(), contentRange.indexOf('/'));
+            long first = Long.parseLong(range.substring(0, range.indexOf('-')));
+            Assert.assertEquals(first, received.size(), "The chunk does not start at the last committed byte");
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+            request.getStreamingContent().writeTo(chunk);
+            byte[] bytes = chunk.toByteArray();
+            if (!failed && first + bytes.length > failAt) {
+                failed = true;
+                received.write(bytes, 0, (int) (failAt - first));
+                throw new IOException("Connection reset");
+            }
+            received.write(bytes, 0, bytes.length);
+            
+            if (contentRange.endsWith("/*")) {
+                return incomplete();
+            }
+            MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+            response.setContentType("application/json; charset=UTF-8");
+            response.setContent("{\"id\": \"resumed\", \"title\": \"resumed.bin\"}");
+            return response;
+        }
+        
+        /**
+         * Returns the response to an incomplete upload, with the range of the committed bytes.
+         */
+        private LowLevelHttpResponse incomplete() {
+        
+            MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+            response.setStatusCode(308);
+            if (received.size() > 0) {
+                response.addHeader("Range", "bytes=0-" + (received.size() - 1));
+            }
+            return response;
+        }
+    }
+    
+}
@@ -0,0 +1,174 @@
+/**
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector.googledrive.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.engine.AxisConfiguration;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.connector.googledrive.GoogleDriveClientCache;
+import org.wso2.carbon.connector.googledrive.GoogleDriveUtils;
+import org.wso2.carbon.connector.googledrive.GoogleDriveUtils.StringConstants;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.FileList;
+import com.google.api.services.drive.model.ParentReference;
+
+/**
+ * Compares setting a listFiles result as the payload of the message with GoogleDriveUtils.setResultPayload against
+ * the way the connector did it before, which serialized the FileList to a JSON string and converted that string to
+ * XML with JsonUtil.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoogleDriveResultPayloadBenchmark {
+
+    /**
+     * Number of files in the FileList.
+     */
+    @Param({ "100", "1000" })
+    private int fileCount;
+
+    private FileList files;
+
+    private MessageContext messageContext;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        files = createFileList(fileCount);
+        messageContext = createMessageContext();
+
+        final String legacy = legacy().getFirstElement().toString();
+        final String payload = payload().getFirstElement().toString();
+        if (!legacy.equals(payload)) {
+            throw new IllegalStateException("Payloads differ: " + legacy + " and " + payload);
+        }
+    }
+
+    @Benchmark
+    public OMElement legacy() throws Exception {
+
+        final Map<String, String> resultEnvelopeMap = new HashMap<String, String>();
+        resultEnvelopeMap.put(StringConstants.FILE_LIST, files.toPrettyString());
+        messageContext.getEnvelope().detach();
+        messageContext.setEnvelope(GoogleDriveUtils.buildResultEnvelope(StringConstants.URN_GOOGLEDRIVE_LISTFILE,
+                StringConstants.LIST_FILE_RESULT, resultEnvelopeMap));
+        return build();
+    }
+
+    @Benchmark
+    public OMElement payload() throws Exception {
+
+        GoogleDriveUtils.setResultPayload(messageContext, StringConstants.URN_GOOGLEDRIVE_LISTFILE,
+                StringConstants.LIST_FILE_RESULT, files);
+        return build();
+    }
+
+    /**
+     * Builds the whole body of the message, so that neither path defers any of its work to the serializer.
+     */
+    private OMElement build() {
+
+        final OMElement body = messageContext.getEnvelope().getBody();
+        body.build();
+        return body;
+    }
+
+    private static MessageContext createMessageContext() throws Exception {
+
+        final SynapseConfiguration synCfg = new SynapseConfiguration();
+        final ConfigurationContext configurationContext = new ConfigurationContext(new AxisConfiguration());
+        final MessageContext messageContext =
+                new Axis2MessageContext(new org.apache.axis2.context.MessageContext(), synCfg,
+                        new Axis2SynapseEnvironment(configurationContext, synCfg));
+        ((Axis2MessageContext) messageContext).getAxis2MessageContext().setConfigurationContext(
+                configurationContext);
+        messageContext.setEnvelope(OMAbstractFactory.getSOAP11Factory().getDefaultEnvelope());
+        return messageContext;
+    }
+
+    /**
+     * Creates a FileList like the ones files.list returns, with the given number of files.
+     */
+    private static FileList createFileList(final int fileCount) {
+
+        final DateTime createdDate = new DateTime(1388534400000L);
+        final DateTime modifiedDate = new DateTime(1391212800000L);
+        final List<File> items = new ArrayList<File>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            final String id = "0B4f8Lx2RkBaZdGVzdEZpbGU" + i;
+            final File file = new File();
+            file.setKind("drive#file");
+            file.setId(id);
+            file.setEtag("\"ZEtag" + i + "\"");
+            file.setSelfLink("https://www.googleapis.com/drive/v2/files/" + id);
+            file.setAlternateLink("https://docs.google.com/file/d/" + id + "/edit?usp=drivesdk");
+            file.setTitle("report-" + i + ".txt");
+            file.setMimeType("text/plain");
+            file.setCreatedDate(createdDate);
+            file.setModifiedDate(modifiedDate);
+            file.setFileSize(Long.valueOf(1024L * i));
+            file.setMd5Checksum("d41d8cd98f00b204e9800998ecf8427e");
+            file.setEditable(Boolean.TRUE);
+            file.setLabels(new File.Labels().setStarred(Boolean.FALSE).setHidden(Boolean.FALSE)
+                    .setTrashed(Boolean.FALSE).setRestricted(Boolean.FALSE).setViewed(Boolean.TRUE));
+            file.setParents(Collections.singletonList(new ParentReference().setKind("drive#parentReference")
+                    .setId("0AIf8Lx2RkBaZUk9PVA").setIsRoot(Boolean.TRUE)));
+            file.setOwnerNames(Arrays.asList("Connector Test"));
+            items.add(file);
+        }
+
+        final FileList files = new FileList();
+        files.setKind("drive#fileList");
+        files.setEtag("\"FileListEtag\"");
+        files.setSelfLink("https://www.googleapis.com/drive/v2/files");
+        files.setItems(items);
+        files.setFactory(GoogleDriveClientCache.getJsonFactory());
+        return files;
+    }
+}
@@ -18,7 +18,10 @@
 
 package org.wso2.carbon.connector.integration.test.googledrive;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -73,6 +76,12 @@ public class GoogledriveConnectorIntegrationTest extends ESBIntegrationTest {
     
     private static String folderId;
     
+    private static String chunkedFileId;
+    
+    private static byte[] chunkedFileContent;
+    
+    private static final int CHUNK_SIZE = 256 * 1024;
+    
     
     @BeforeClass(alwaysRun = true)
     public void setEnvironment() throws Exception {
@@ -889,6 +898,75 @@ public class GoogledriveConnectorIntegrationTest extends ESBIntegrationTest {
             proxyAdmin.deleteProxy(CONNECTOR_NAME + "_" + methodName);
         }
     }
+    @Test(groups = {"wso2.esb"}, priority = 1,
+            description = "Google Drive {insertFile} method {chunked resumable upload} Integration Tests")
+    public void testInsertFileWithChunkedUpload() throws Exception {
+    
+        final String methodName = "insertFileChunked";
+        final String omString =
+                "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:urn=\"urn:wso2.connector.googledrive.insertfile\">\n" 
+                        + "   <soapenv:Header/>\n"
+                        + "   <soapenv:Body>\n" 
+                        + "     <root>\n" 
+                        + "         <urn:useServiceAccount>" + googleDriveConnectorProperties.get("useServiceAccount") + "</urn:useServiceAccount>\n"
+                        + "         <urn:serviceAccountEmail>" + googleDriveConnectorProperties.get("serviceAccountEmail") + "</urn:serviceAccountEmail>\n"
+                        + "         <urn:clientId>" + googleDriveConnectorProperties.get("clientId") + "</urn:clientId>\n"
+                        + "         <urn:clientSecret>" + googleDriveConnectorProperties.get("clientSecret") + "</urn:clientSecret>\n"
+                        + "         <urn:refreshToken>" + googleDriveConnectorProperties.get("refreshToken") + "</urn:refreshToken>\n"
+                        + "         <urn:accessToken>" + googleDriveConnectorProperties.get("accessToken") + "</urn:accessToken>\n" 
+                        + "         <urn:uploadType>resumable</urn:uploadType>\n"
+                        + "         <urn:chunkSize>" + CHUNK_SIZE + "</urn:chunkSize>\n"
+                        + "         <urn:fileResource>\n"
+                        + "             <title>Chunked Upload File</title>\n"
+                        + "             <mimeType>application/octet-stream</mimeType>\n"
+                        + "         </urn:fileResource>\n"
+                        + "     </root>\n" 
+                        + "   </soapenv:Body>\n" 
+                        + "</soapenv:Envelope>";
+        
+        // Three full chunks and a partial one, so the upload takes four requests.
+        chunkedFileContent = new byte[CHUNK_SIZE * 3 + 1000];
+        for (int i = 0; i < chunkedFileContent.length; i++) {
+            chunkedFileContent[i] = (byte) (i % 251);
+        }
+        File chunkedFile = File.createTempFile("googledrive_chunked", ".bin");
+        chunkedFile.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(chunkedFile);
+        try {
+            out.write(chunkedFileContent);
+        } finally {
+            out.close();
+        }
+        
+        proxyAdmin.addProxyService(new DataHandler(new URL("file:" + File.separator + File.separator + ProductConstant.SYSTEM_TEST_RESOURCE_LOCATION + ConnectorIntegrationUtil.ESB_CONFIG_LOCATION
+                + File.separator + "proxies" + File.separator + CONNECTOR_NAME + File.separator + CONNECTOR_NAME + "_" + methodName + ".xml")));
+        OMElement requestEnvelope = AXIOMUtil.stringToOM(omString);
+        
+        Map<String, DataHandler> attachmentMap = new HashMap<String,DataHandler>();
+        if (Boolean.valueOf(googleDriveConnectorProperties.get("useServiceAccount").toString()) == true) {
+            attachmentMap.put("certificate", new DataHandler(
+                            new FileDataSource(new File(ProductConstant.SYSTEM_TEST_RESOURCE_LOCATION 
+                                    + ConnectorIntegrationUtil.ESB_CONFIG_LOCATION
+                                    + File.separator + "googledrive_certificate.p12"))));
+        }
+        attachmentMap.put("file", new DataHandler(new FileDataSource(chunkedFile)));
+        OperationClient mepClient = ConnectorIntegrationUtil.buildMEPClientWithAttachment(new EndpointReference(
+                getProxyServiceURL(CONNECTOR_NAME + "_" + methodName)), requestEnvelope, attachmentMap);
+        
+        try {
+            mepClient.execute(true); 
+            MessageContext responseMsgCtx = mepClient.getMessageContext(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
+            
+            Assert.assertTrue(responseMsgCtx.getEnvelope().getBody().toString().contains("insertedFileResult"));
+            OMElement result = responseMsgCtx.getEnvelope().getBody().getFirstElement();
+            chunkedFileId = result.getFirstChildWithName(new QName("id")).getText();
+            Assert.assertEquals(result.getFirstChildWithName(new QName("fileSize")).getText(),
+                    String.valueOf(chunkedFileContent.length));
+        } finally {
+            proxyAdmin.deleteProxy(CONNECTOR_NAME + "_" + methodName);
+        }
+    }
+    
     @Test(expectedExceptions = AxisFault.class, 
     		groups = {"wso2.esb"}, priority = 1,
     		description = "Google Drive {insertFile} method {negative scenario} Integration Tests")
@@ -2788,4 +2866,69 @@ public class GoogledriveConnectorIntegrationTest extends ESBIntegrationTest {
         
     }
     
+    @Test(groups = {"wso2.esb"}, priority = 2, dependsOnMethods = {"testInsertFileWithChunkedUpload" },
+            description = "Google Drive {downloadFile} method {parallel ranged download} Integration Tests")
+    public void testDownloadFileWithParallelChunks() throws Exception {
+    
+        final String methodName = "downloadFile";
+        final String omString =
+                "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:urn=\"urn:wso2.connector.googledrive.downloadfile\">\n" 
+                        + "   <soapenv:Header/>\n"
+                        + "   <soapenv:Body>\n" 
+                        + "     <root>\n" 
+                        + "         <urn:useServiceAccount>" + googleDriveConnectorProperties.get("useServiceAccount") + "</urn:useServiceAccount>\n"
+                        + "         <urn:serviceAccountEmail>" + googleDriveConnectorProperties.get("serviceAccountEmail") + "</urn:serviceAccountEmail>\n"
+                        + "         <urn:certificatePassword>" + googleDriveConnectorProperties.get("certificatePassword") + "</urn:certificatePassword>\n"
+                        + "         <urn:clientId>" + googleDriveConnectorProperties.get("clientId") + "</urn:clientId>\n"
+                        + "         <urn:clientSecret>" + googleDriveConnectorProperties.get("clientSecret") + "</urn:clientSecret>\n"
+                        + "         <urn:refreshToken>" + googleDriveConnectorProperties.get("refreshToken") + "</urn:refreshToken>\n"
+                        + "         <urn:accessToken>" + googleDriveConnectorProperties.get("accessToken") + "</urn:accessToken>\n" 
+                        + "         <urn:fileId>" + chunkedFileId + "</urn:fileId>\n"
+                        + "         <urn:chunkSize>" + CHUNK_SIZE + "</urn:chunkSize>\n"
+                        + "         <urn:parallelChunks>3</urn:parallelChunks>\n"
+                        + "     </root>\n" 
+                        + "   </soapenv:Body>\n" 
+                        + "</soapenv:Envelope>";
+        
+        proxyAdmin.addProxyService(new DataHandler(new URL("file:" + File.separator + File.separator + ProductConstant.SYSTEM_TEST_RESOURCE_LOCATION + ConnectorIntegrationUtil.ESB_CONFIG_LOCATION
+                + File.separator + "proxies" + File.separator + CONNECTOR_NAME + File.separator + CONNECTOR_NAME + "_" + methodName + ".xml")));
+        OMElement requestEnvelope = AXIOMUtil.stringToOM(omString);
+        
+        OperationClient mepClient = null;
+        if (Boolean.valueOf(googleDriveConnectorProperties.get("useServiceAccount").toString()) == true) {
+            Map<String, DataHandler> attachmentMap = new HashMap<String,DataHandler>();
+            attachmentMap.put("certificate", new DataHandler(
+                            new FileDataSource(new File(ProductConstant.SYSTEM_TEST_RESOURCE_LOCATION 
+                                    + ConnectorIntegrationUtil.ESB_CONFIG_LOCATION
+                                    + File.separator + "googledrive_certificate.p12"))));
+            mepClient = ConnectorIntegrationUtil.buildMEPClientWithAttachment(new EndpointReference(
+                        getProxyServiceURL(CONNECTOR_NAME + "_" + methodName)), requestEnvelope, attachmentMap);
+        } else {
+            mepClient = ConnectorIntegrationUtil.buildMEPClient(new EndpointReference(
+                    getProxyServiceURL(CONNECTOR_NAME + "_" + methodName)), requestEnvelope);
+        }
+        
+        try {
+            mepClient.execute(true); 
+            MessageContext responseMsgCtx = mepClient.getMessageContext(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
+            
+            Assert.assertTrue(responseMsgCtx.getEnvelope().getBody().toString().contains("downloadFileResult"));
+            DataHandler file = responseMsgCtx.getAttachment("file");
+            Assert.assertNotNull(file);
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            InputStream in = file.getInputStream();
+            try {
+                byte[] buffer = new byte[8192];
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    content.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+            Assert.assertTrue(Arrays.equals(content.toByteArray(), chunkedFileContent));
+        } finally {
+            proxyAdmin.deleteProxy(CONNECTOR_NAME + "_" + methodName);
+        }
+    }
+    
 }
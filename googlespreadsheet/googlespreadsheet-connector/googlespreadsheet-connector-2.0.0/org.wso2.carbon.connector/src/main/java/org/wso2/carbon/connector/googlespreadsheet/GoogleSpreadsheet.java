@@ -105,7 +105,8 @@ public class GoogleSpreadsheet {
 
 
     /**
-     * Get the spreadsheets by title
+     * Get the spreadsheets by title. The entry is looked up in the metadata cache
+     * first, and the spreadsheet feed is only downloaded when it is not cached.
      *
      * @throws ServiceException when the request causes an error in the Google
      *         Spreadsheets service.
@@ -114,7 +115,11 @@ public class GoogleSpreadsheet {
      */
     public SpreadsheetEntry getSpreadSheetsByTitle(String title) throws IOException, ServiceException {
 
-        SpreadsheetEntry spreadsheetResult = null;
+        GoogleSpreadsheetMetadataCache cache = GoogleSpreadsheetMetadataCache.getInstance();
+        SpreadsheetEntry spreadsheetResult = cache.getSpreadsheet(service, title);
+        if (spreadsheetResult != null) {
+            return spreadsheetResult;
+        }
         // Define the URL to request.  This should never change.
         URL SPREADSHEET_FEED_URL = new URL(
                 "https://spreadsheets.google.com/feeds/spreadsheets/private/full");
@@ -122,6 +127,7 @@ public class GoogleSpreadsheet {
         // Make a request to the API and get all spreadsheets.
         SpreadsheetFeed feed = service.getFeed(SPREADSHEET_FEED_URL, SpreadsheetFeed.class);
         List<SpreadsheetEntry> spreadsheets = feed.getEntries();
+        cache.putSpreadsheets(service, spreadsheets);
 
         // Iterate through all of the spreadsheets returned
         for (SpreadsheetEntry spreadsheet : spreadsheets) {
@@ -35,6 +35,7 @@ public class GoogleSpreadsheetClientLoader {
 		org.apache.axis2.context.MessageContext axis2MsgCtx =
 		                                                      ((Axis2MessageContext) messageContext).getAxis2MessageContext();
 		SpreadsheetService spreadsheetService = null;
+		String cacheKey = null;
 
 		if (axis2MsgCtx.getOperationContext()
 		               .getProperty(GoogleSpreadsheetConstants.GOOGLE_AUTH_INSTANCE) != null) {
@@ -50,6 +51,7 @@ public class GoogleSpreadsheetClientLoader {
 			spreadsheetService = gssService.getSpreadsheetService();
 			GoogleSpreadsheetAuthentication gssAuthentication =
 			                                                    new GoogleSpreadsheetAuthentication();
+			cacheKey = "user:" + messageContext.getProperty(GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_USERNAME);
 			gssAuthentication.login(messageContext.getProperty(GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_USERNAME)
 			                                      .toString(),
 			                        messageContext.getProperty(GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_PASSWORD)
@@ -62,6 +64,12 @@ public class GoogleSpreadsheetClientLoader {
 			spreadsheetService = gssService.getSpreadsheetService();
 			GoogleSpreadsheetAuthentication gssAuthentication =
 			                                                    new GoogleSpreadsheetAuthentication();
+			cacheKey =
+			           "oauth:" +
+			                   messageContext.getProperty(GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_CONSUMER_KEY) +
+			                   ":" +
+			                   GoogleSpreadsheetMetadataCache.hash(messageContext.getProperty(GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_ACCESS_TOKEN)
+			                                                                     .toString());
 			gssAuthentication.loginOAuth2(messageContext.getProperty(GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_CONSUMER_KEY)
 			                                            .toString(),
 			                              messageContext.getProperty(GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_CONSUMER_SECRET)
@@ -83,6 +91,15 @@ public class GoogleSpreadsheetClientLoader {
 			GoogleSpreadsheetService gssService = new GoogleSpreadsheetService();
 			spreadsheetService = gssService.getSpreadsheetService();
 
+			// The refresh token stays the same when the access token is refreshed.
+			cacheKey = "oauth2:"
+					+ messageContext
+							.getProperty(GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_CONSUMER_KEY)
+					+ ":"
+					+ GoogleSpreadsheetMetadataCache.hash(messageContext
+							.getProperty(GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_REFRESH_TOKEN)
+							.toString());
+
 			// Then perform the OAuth 2 Authorization here.
 			GoogleSpreadsheetOAuth2Authentication gssOAuth2Authentication = new GoogleSpreadsheetOAuth2Authentication();
 			gssOAuth2Authentication
@@ -104,6 +121,9 @@ public class GoogleSpreadsheetClientLoader {
 											GoogleSpreadsheetConstants.GOOGLE_SPREADSHEET_USER_REFRESH_TOKEN)
 									.toString(), spreadsheetService);
 		}
+		if (spreadsheetService != null && cacheKey != null) {
+			GoogleSpreadsheetMetadataCache.getInstance().register(spreadsheetService, cacheKey);
+		}
 		axis2MsgCtx.getOperationContext()
 		           .setProperty(GoogleSpreadsheetConstants.GOOGLE_AUTH_INSTANCE, spreadsheetService);
 		return spreadsheetService;
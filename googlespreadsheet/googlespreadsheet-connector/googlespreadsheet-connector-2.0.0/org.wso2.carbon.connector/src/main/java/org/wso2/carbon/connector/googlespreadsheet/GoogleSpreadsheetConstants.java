@@ -28,5 +28,9 @@ public class GoogleSpreadsheetConstants {
     public static final String GOOGLE_SPREADSHEET_USER_PASSWORD = "googlespreadsheet.user.password";
 	public static final String GOOGLE_AUTH_INSTANCE = "GOOGLE_AUTH_INSTANCE";
 	public static final String GOOGLE_SPREADSHEET_USER_REFRESH_TOKEN = "googlespreadsheet.user.oauth.refreshToken";
+	/** Time a cached spreadsheet or worksheet entry is used before it is validated, in milliseconds. */
+	public static final long METADATA_CACHE_TTL = 60000;
+	/** Time the cached entries of a login are kept without being looked up, in milliseconds. */
+	public static final long METADATA_CACHE_IDLE_TIMEOUT = 3600000;
     
 }
@@ -72,6 +72,8 @@ public class GoogleSpreadsheetCreateSpreadsheet extends AbstractConnector {
             DocumentListEntry createdEntry = createNewDocument(spreadsheetName, messageContext);
 
             if (createdEntry != null) {
+                // A cached spreadsheet with the same title would hide the new one.
+                GoogleSpreadsheetMetadataCache.getInstance().invalidateSpreadsheets(ssService);
                 if (log.isDebugEnabled()) {
                     log.debug("Spreadsheet now online @ :" + createdEntry.getHtmlLink().getHref());
                 }
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2005-2013, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.googlespreadsheet;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.gdata.client.spreadsheet.SpreadsheetService;
+import com.google.gdata.data.BaseEntry;
+import com.google.gdata.data.Link;
+import com.google.gdata.data.spreadsheet.SpreadsheetEntry;
+import com.google.gdata.data.spreadsheet.WorksheetEntry;
+import com.google.gdata.util.NotModifiedException;
+import com.google.gdata.util.ServiceException;
+
+/**
+ * Cache of the spreadsheet and worksheet entries looked up by title, shared by
+ * the messages mediated with the same login. Resolving a title otherwise
+ * downloads the whole spreadsheet feed and the whole worksheet feed of the
+ * spreadsheet. A cached entry is returned as it is within the time to live,
+ * and after that it is validated with a conditional GET of the entry using
+ * its ETag. The operations which create, delete or rename worksheets and
+ * create spreadsheets invalidate the entries they affect.
+ */
+public final class GoogleSpreadsheetMetadataCache {
+
+	/**
+	 * Log instance.
+	 */
+	private static Log log = LogFactory.getLog(GoogleSpreadsheetMetadataCache.class);
+
+	/**
+	 * The cache instance.
+	 */
+	private static final GoogleSpreadsheetMetadataCache INSTANCE = new GoogleSpreadsheetMetadataCache();
+
+	/**
+	 * Cache keys of the logins by the services logged in with them.
+	 */
+	private final Map<SpreadsheetService, String> serviceKeys = new WeakHashMap<SpreadsheetService, String>();
+
+	/**
+	 * Spreadsheet entries by the cache keys of the logins.
+	 */
+	private final ConcurrentMap<String, Scope<SpreadsheetEntry>> spreadsheets =
+			new ConcurrentHashMap<String, Scope<SpreadsheetEntry>>();
+
+	/**
+	 * Worksheet entries by the cache keys of the logins and the worksheet feed
+	 * URLs of the spreadsheets.
+	 */
+	private final ConcurrentMap<String, Scope<WorksheetEntry>> worksheets =
+			new ConcurrentHashMap<String, Scope<WorksheetEntry>>();
+
+	/**
+	 * Time the idle scopes were last removed.
+	 */
+	private volatile long lastPruned = System.currentTimeMillis();
+
+	/**
+	 * Making the default constructor private since the cache is shared.
+	 */
+	private GoogleSpreadsheetMetadataCache() {
+	}
+
+	/**
+	 * Returns the cache instance.
+	 *
+	 * @return the cache
+	 */
+	public static GoogleSpreadsheetMetadataCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Associates a logged in service with the cache key of its login. Entries
+	 * are cached only for the services registered here.
+	 *
+	 * @param service
+	 *            the logged in service
+	 * @param cacheKey
+	 *            key identifying the login
+	 */
+	public void register(SpreadsheetService service, String cacheKey) {
+		synchronized (serviceKeys) {
+			serviceKeys.put(service, cacheKey);
+		}
+		pruneIdleScopes();
+	}
+
+	/**
+	 * Returns the cached spreadsheet entry with the given title.
+	 *
+	 * @param service
+	 *            the service of the login
+	 * @param title
+	 *            title of the spreadsheet, not case sensitive
+	 * @return the entry, or null if the entry is not cached or is no longer
+	 *         valid
+	 */
+	public SpreadsheetEntry getSpreadsheet(SpreadsheetService service, String title) {
+		String cacheKey = getCacheKey(service);
+		if (cacheKey == null) {
+			return null;
+		}
+		return get(service, spreadsheets, cacheKey, title, SpreadsheetEntry.class);
+	}
+
+	/**
+	 * Replaces the cached spreadsheet entries with the entries of a spreadsheet
+	 * feed.
+	 *
+	 * @param service
+	 *            the service of the login
+	 * @param entries
+	 *            all the entries of the spreadsheet feed
+	 */
+	public void putSpreadsheets(SpreadsheetService service, List<SpreadsheetEntry> entries) {
+		String cacheKey = getCacheKey(service);
+		if (cacheKey != null) {
+			put(spreadsheets, cacheKey, entries);
+		}
+	}
+
+	/**
+	 * Removes the cached spreadsheet entries of the login, so that spreadsheets
+	 * created since are found.
+	 *
+	 * @param service
+	 *            the service of the login
+	 */
+	public void invalidateSpreadsheets(SpreadsheetService service) {
+		String cacheKey = getCacheKey(service);
+		if (cacheKey != null) {
+			spreadsheets.remove(cacheKey);
+		}
+	}
+
+	/**
+	 * Returns the cached worksheet entry with the given title.
+	 *
+	 * @param service
+	 *            the service of the login
+	 * @param worksheetFeedUrl
+	 *            worksheet feed URL of the spreadsheet
+	 * @param title
+	 *            title of the worksheet, not case sensitive
+	 * @return the entry, or null if the entry is not cached or is no longer
+	 *         valid
+	 */
+	public WorksheetEntry getWorksheet(SpreadsheetService service, URL worksheetFeedUrl, String title) {
+		String cacheKey = getCacheKey(service);
+		if (cacheKey == null) {
+			return null;
+		}
+		return get(service, worksheets, cacheKey + " " + worksheetFeedUrl, title,
+		           WorksheetEntry.class);
+	}
+
+	/**
+	 * Replaces the cached worksheet entries of a spreadsheet with the entries
+	 * of its worksheet feed.
+	 *
+	 * @param service
+	 *            the service of the login
+	 * @param worksheetFeedUrl
+	 *            worksheet feed URL of the spreadsheet
+	 * @param entries
+	 *            all the entries of the worksheet feed
+	 */
+	public void putWorksheets(SpreadsheetService service, URL worksheetFeedUrl,
+	                          List<WorksheetEntry> entries) {
+		String cacheKey = getCacheKey(service);
+		if (cacheKey != null) {
+			put(worksheets, cacheKey + " " + worksheetFeedUrl, entries);
+		}
+	}
+
+	/**
+	 * Removes the cached worksheet entries of a spreadsheet after its
+	 * worksheets are created, deleted or updated.
+	 *
+	 * @param service
+	 *            the service of the login
+	 * @param worksheetFeedUrl
+	 *            worksheet feed URL of the spreadsheet
+	 */
+	public void invalidateWorksheets(SpreadsheetService service, URL worksheetFeedUrl) {
+		String cacheKey = getCacheKey(service);
+		if (cacheKey != null) {
+			worksheets.remove(cacheKey + " " + worksheetFeedUrl);
+		}
+	}
+
+	/**
+	 * Returns the hex encoded SHA-256 digest of a secret, so that the secrets
+	 * of the logins are not kept in the cache keys.
+	 *
+	 * @param value
+	 *            the secret
+	 * @return the digest
+	 */
+	public static String hash(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported", e);
+		}
+	}
+
+	private String getCacheKey(SpreadsheetService service) {
+		synchronized (serviceKeys) {
+			return serviceKeys.get(service);
+		}
+	}
+
+	/**
+	 * Returns a cached entry, validating it with its ETag once its time to live
+	 * has passed. An entry which has changed is replaced, and an entry which
+	 * cannot be validated is removed.
+	 */
+	private <E extends BaseEntry<E>> E get(SpreadsheetService service,
+	                                       ConcurrentMap<String, Scope<E>> scopes, String scopeKey,
+	                                       String title, Class<E> entryClass) {
+		Scope<E> scope = scopes.get(scopeKey);
+		if (scope == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		scope.lastUsed = now;
+		String titleKey = toTitleKey(title);
+		CachedEntry<E> cachedEntry = scope.entries.get(titleKey);
+		if (cachedEntry == null) {
+			return null;
+		}
+		if (now - cachedEntry.validated < GoogleSpreadsheetConstants.METADATA_CACHE_TTL) {
+			return cachedEntry.entry;
+		}
+
+		Link selfLink = cachedEntry.entry.getSelfLink();
+		if (selfLink == null) {
+			scope.entries.remove(titleKey, cachedEntry);
+			return null;
+		}
+		try {
+			E entry = service.getEntry(new URL(selfLink.getHref()), entryClass, cachedEntry.entry.getEtag());
+			if (!titleKey.equals(toTitleKey(entry.getTitle().getPlainText()))) {
+				scope.entries.remove(titleKey, cachedEntry);
+				return null;
+			}
+			scope.entries.replace(titleKey, cachedEntry, new CachedEntry<E>(entry, now));
+			return entry;
+		} catch (NotModifiedException e) {
+			cachedEntry.validated = now;
+			return cachedEntry.entry;
+		} catch (ServiceException e) {
+			log.debug("Unable to validate the cached entry of " + title + ": " + e.getMessage());
+		} catch (IOException e) {
+			log.debug("Unable to validate the cached entry of " + title + ": " + e.getMessage());
+		}
+		scope.entries.remove(titleKey, cachedEntry);
+		return null;
+	}
+
+	/**
+	 * Replaces the entries of a scope. Titles are not unique, so the first
+	 * entry of a title in the feed is kept, which is the entry a scan of the
+	 * feed finds.
+	 */
+	private <E extends BaseEntry<E>> void put(ConcurrentMap<String, Scope<E>> scopes, String scopeKey,
+	                                          List<E> entries) {
+		long now = System.currentTimeMillis();
+		Scope<E> scope = new Scope<E>(now);
+		for (E entry : entries) {
+			String titleKey = toTitleKey(entry.getTitle().getPlainText());
+			if (!scope.entries.containsKey(titleKey)) {
+				scope.entries.put(titleKey, new CachedEntry<E>(entry, now));
+			}
+		}
+		scopes.put(scopeKey, scope);
+	}
+
+	/**
+	 * Removes the scopes which have not been used for the idle timeout, at most
+	 * once in a time to live.
+	 */
+	private void pruneIdleScopes() {
+		long now = System.currentTimeMillis();
+		if (now - lastPruned < GoogleSpreadsheetConstants.METADATA_CACHE_TTL) {
+			return;
+		}
+		lastPruned = now;
+		long expiry = now - GoogleSpreadsheetConstants.METADATA_CACHE_IDLE_TIMEOUT;
+		Iterator<Scope<SpreadsheetEntry>> spreadsheetScopes = spreadsheets.values().iterator();
+		while (spreadsheetScopes.hasNext()) {
+			if (spreadsheetScopes.next().lastUsed < expiry) {
+				spreadsheetScopes.remove();
+			}
+		}
+		Iterator<Scope<WorksheetEntry>> worksheetScopes = worksheets.values().iterator();
+		while (worksheetScopes.hasNext()) {
+			if (worksheetScopes.next().lastUsed < expiry) {
+				worksheetScopes.remove();
+			}
+		}
+	}
+
+	private static String toTitleKey(String title) {
+		return title.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Cached entries of a spreadsheet feed or a worksheet feed by their lower
+	 * case titles.
+	 */
+	private static final class Scope<E> {
+
+		private final ConcurrentMap<String, CachedEntry<E>> entries =
+				new ConcurrentHashMap<String, CachedEntry<E>>();
+
+		/**
+		 * Time an entry was last looked up.
+		 */
+		private volatile long lastUsed;
+
+		private Scope(long lastUsed) {
+			this.lastUsed = lastUsed;
+		}
+	}
+
+	/**
+	 * A cached entry and the time it was last known to be current.
+	 */
+	private static final class CachedEntry<E> {
+
+		private final E entry;
+
+		private volatile long validated;
+
+		private CachedEntry(E entry, long validated) {
+			this.entry = entry;
+			this.validated = validated;
+		}
+	}
+}
@@ -118,7 +118,9 @@ public class GoogleSpreadsheetWorksheet {
 
 
     /**
-     * Get the worksheet by title in the loaded spreadsheet.
+     * Get the worksheet by title in the loaded spreadsheet. The entry is looked up in
+     * the metadata cache first, and the worksheet feed is only downloaded when it is
+     * not cached.
      *
      * @throws ServiceException when the request causes an error in the Google
      *         Spreadsheets service.
@@ -126,9 +128,14 @@ public class GoogleSpreadsheetWorksheet {
      *         Spreadsheets service.
      */
     public WorksheetEntry getWorksheetByTitle(String worksheetName) throws IOException, ServiceException {
+        GoogleSpreadsheetMetadataCache cache = GoogleSpreadsheetMetadataCache.getInstance();
+        WorksheetEntry worksheetResult = cache.getWorksheet(service, worksheetFeedUrl, worksheetName);
+        if (worksheetResult != null) {
+            return worksheetResult;
+        }
         WorksheetFeed worksheetFeed = service.getFeed(worksheetFeedUrl,
                 WorksheetFeed.class);
-        WorksheetEntry worksheetResult = null;
+        cache.putWorksheets(service, worksheetFeedUrl, worksheetFeed.getEntries());
         for (WorksheetEntry worksheet : worksheetFeed.getEntries()) {
             String title = worksheet.getTitle().getPlainText();
             int rowCount = worksheet.getRowCount();
@@ -163,6 +170,7 @@ public class GoogleSpreadsheetWorksheet {
 	      String currTitle = worksheet.getTitle().getPlainText();
 	      if (currTitle.equals(title)) {
 	        worksheet.delete();
+	        GoogleSpreadsheetMetadataCache.getInstance().invalidateWorksheets(service, worksheetFeedUrl);
 	        log.debug("Worksheet deleted.");
 	        return true;
 	      }
@@ -193,6 +201,7 @@ public class GoogleSpreadsheetWorksheet {
 	    worksheet.setRowCount(rowCount);
 	    worksheet.setColCount(colCount);
 	    service.insert(worksheetFeedUrl, worksheet);
+	    GoogleSpreadsheetMetadataCache.getInstance().invalidateWorksheets(service, worksheetFeedUrl);
 	  }
 
 	  /**
@@ -226,6 +235,7 @@ public class GoogleSpreadsheetWorksheet {
 	        worksheet.setColCount(colCount);
 	        }
 	        worksheet.update();
+	        GoogleSpreadsheetMetadataCache.getInstance().invalidateWorksheets(service, worksheetFeedUrl);
 	        log.debug("Worksheet updated.");
 	        return true;
 	      }
@@ -39,8 +39,42 @@ public class KafkaConnectConstants {
     public static final String REQUEST_TIMEOUT = "request.timeout.ms";
     public static final String ENQUEUE_TIMEOUT = "queue.enqueue.timeout.ms";
     public static final String CLIENT_ID = "client.id";
+    // Configuration properties keys of the async producer
+    public static final String BOOTSTRAP_SERVERS = "bootstrap.servers";
+    public static final String ACKS = "acks";
+    public static final String KEY_SERIALIZER = "key.serializer";
+    public static final String VALUE_SERIALIZER = "value.serializer";
+    public static final String ASYNC_COMPRESSION_TYPE = "compression.type";
+    public static final String RETRIES = "retries";
+    public static final String RETRY_BACKOFF = "retry.backoff.ms";
+    public static final String SEND_BUFFER = "send.buffer.bytes";
+    public static final String TIMEOUT = "timeout.ms";
+    public static final String BATCH_SIZE = "batch.size";
+    public static final String LINGER_TIME = "linger.ms";
+    public static final String BUFFER_MEMORY = "buffer.memory";
+    public static final String BLOCK_ON_BUFFER_FULL = "block.on.buffer.full";
+    public static final String STRING_SERIALIZER = "org.apache.kafka.common.serialization.StringSerializer";
+    public static final String BYTE_ARRAY_SERIALIZER =
+            "org.apache.kafka.common.serialization.ByteArraySerializer";
+    public static final String DEFAULT_ENCODER = "kafka.serializer.DefaultEncoder";
     // Configuration properties parameter
     public static final String PARAM_TOPIC = "topic";
     public static final String PARAM_KEY = "key";
+    // Send modes
+    public static final String SEND_MODE = "kafka.sendMode";
+    public static final String SEND_MODE_ASYNC = "async";
+    public static final String ASYNC_FAULT_SEQUENCE = "kafka.asyncFaultSequence";
+    public static final String ASYNC_RESULT_SEQUENCE = "kafka.asyncResultSequence";
+    // Delivery result of the async send mode
+    public static final String RESULT_PARTITION = "kafka.partition";
+    public static final String RESULT_OFFSET = "kafka.offset";
+    // Payload serialization
+    public static final String JSON_PASS_THROUGH = "kafka.jsonPassThrough";
+    public static final int PAYLOAD_BUFFER_INITIAL_SIZE = 8192;
+    public static final int PAYLOAD_BUFFER_MAX_RETAINED_SIZE = 1048576;
+    // Producer registry
+    public static final String PRODUCER_IDLE_TIMEOUT = "kafka.producerIdleTimeout";
+    public static final long DEFAULT_PRODUCER_IDLE_TIMEOUT = 300000;
+    public static final long EVICTION_INTERVAL = 30000;
 
 }
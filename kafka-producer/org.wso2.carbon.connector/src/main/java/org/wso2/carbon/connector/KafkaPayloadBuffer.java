@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2005-2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Reusable buffer the message formatter writes the payload into. One buffer is kept per mediation thread,
+ * so the backing array is allocated once and grows to the usual payload size instead of being allocated
+ * again for every message. Buffers which grew beyond the retained size are dropped after use so that a
+ * single large payload does not pin memory on the thread.
+ */
+public class KafkaPayloadBuffer extends ByteArrayOutputStream {
+
+    private static final ThreadLocal<KafkaPayloadBuffer> BUFFERS = new ThreadLocal<KafkaPayloadBuffer>() {
+        protected KafkaPayloadBuffer initialValue() {
+            return new KafkaPayloadBuffer();
+        }
+    };
+
+    private KafkaPayloadBuffer() {
+        super(KafkaConnectConstants.PAYLOAD_BUFFER_INITIAL_SIZE);
+    }
+
+    /**
+     * Get the empty buffer of the current thread
+     */
+    public static KafkaPayloadBuffer acquire() {
+        KafkaPayloadBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Hand the buffer of the current thread back once its content has been copied out
+     */
+    public static void release(KafkaPayloadBuffer buffer) {
+        if (buffer.buf.length > KafkaConnectConstants.PAYLOAD_BUFFER_MAX_RETAINED_SIZE) {
+            BUFFERS.remove();
+        } else {
+            buffer.reset();
+        }
+    }
+}
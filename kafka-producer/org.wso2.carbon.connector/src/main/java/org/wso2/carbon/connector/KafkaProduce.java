@@ -20,14 +20,19 @@ package org.wso2.carbon.connector;
 
 import kafka.javaapi.producer.Producer;
 import kafka.producer.KeyedMessage;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
 
 import org.apache.axis2.AxisFault;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.util.MessageHelper;
 import org.wso2.carbon.connector.core.*;
 
+import java.util.Properties;
+
 /**
  * Produce the messages to the kafka brokers
  */
@@ -36,19 +41,35 @@ public class KafkaProduce extends AbstractConnector {
 
         SynapseLog log = getLog(messageContext);
         log.auditLog("SEND : send message to  Broker lists");
-        //Get the producer with the configuration
-        Producer<String, String> producer = KafkaUtils.getProducer(messageContext);
         String topic = this.getTopic(messageContext);
         String key = this.getKey(messageContext);
+        //Get the pooled producer for the configuration. The producer stays open for the next messages
+        KafkaProducerRegistry registry = KafkaProducerRegistry.getInstance();
+        boolean async = KafkaUtils.isAsyncSendMode(messageContext);
+        Properties producerConfig = async ? KafkaUtils.getAsyncProducerConfig(messageContext)
+                : KafkaUtils.getProducerConfig(messageContext);
+        KafkaProducerRegistry.PooledProducer pooled = registry.acquire(producerConfig, async,
+                KafkaUtils.getProducerIdleTimeout(messageContext));
         try {
-            String message = this.getMessage(messageContext);
-            send(producer, topic, key, message);
+            Object message = this.getMessage(messageContext);
+            if (async) {
+                // Async sends are counted by the callback once the broker has acknowledged them
+                sendAsync(pooled.getAsyncProducer(), messageContext, topic, key, message);
+            } else {
+                try {
+                    send(pooled.getProducer(), topic, key, message);
+                } catch (RuntimeException e) {
+                    registry.recordFailure();
+                    throw e;
+                }
+                registry.recordSend();
+            }
         } catch (Exception e) {
             log.error("Kafka producer connector : Error sending the message to broker lists ");
             throw new ConnectException(e);
         } finally {
-            //Close the producer pool connections to all kafka brokers.Also closes the zookeeper client connection if any
-            producer.close();
+            //Hand the producer back to the registry, which closes it once it has been idle for too long
+            registry.release(pooled);
         }
     }
 
@@ -75,12 +96,17 @@ public class KafkaProduce extends AbstractConnector {
     }
 
     /**
-     * Get the messages from the message context and format the messages
+     * Get the messages from the message context and format the messages. The payload is kept as bytes
+     * when the producer sends bytes, so it is not decoded and encoded again.
      */
-    private String getMessage(MessageContext messageContext) throws AxisFault {
+    private Object getMessage(MessageContext messageContext) throws AxisFault {
         Axis2MessageContext axisMsgContext = (Axis2MessageContext) messageContext;
         org.apache.axis2.context.MessageContext msgContext = axisMsgContext
                 .getAxis2MessageContext();
+        if (KafkaUtils.isBytePayload(messageContext)) {
+            return KafkaUtils.formatMessageBytes(msgContext,
+                    KafkaUtils.isJsonPassThrough(messageContext));
+        }
         String messages = KafkaUtils
                 .formatMessage((org.apache.axis2.context.MessageContext) msgContext);
         return messages;
@@ -89,12 +115,45 @@ public class KafkaProduce extends AbstractConnector {
     /**
      * Send the messages to the kafka broker with topic and the key that is optional
      */
-    private void send(Producer<String, String> producer, String topic,
-                      String key, String message) {
+    private void send(Producer<String, Object> producer, String topic,
+                      String key, Object message) {
         if (key == null) {
-            producer.send(new KeyedMessage<String, String>(topic, message));
+            producer.send(new KeyedMessage<String, Object>(topic, message));
         } else {
-            producer.send(new KeyedMessage<String, String>(topic, key, message));
+            producer.send(new KeyedMessage<String, Object>(topic, key, message));
+        }
+    }
+
+    /**
+     * Hand the message to the async producer. The call returns as soon as the record is in the
+     * producer's accumulator, and the delivery result is reported to the callback. The message context
+     * is copied for the result and fault sequences before the call returns, as its mediation goes on
+     * meanwhile.
+     */
+    private void sendAsync(KafkaProducer<String, Object> producer, MessageContext messageContext,
+                           String topic, String key, Object message) throws AxisFault {
+        String resultSequence = trimToNull(KafkaUtils.getAsyncResultSequence(messageContext));
+        String faultSequence = trimToNull(KafkaUtils.getAsyncFaultSequence(messageContext));
+        MessageContext callbackContext = null;
+        if (resultSequence != null || faultSequence != null) {
+            callbackContext = MessageHelper.cloneMessageContext(messageContext);
+        }
+        KafkaSendCallback callback =
+                new KafkaSendCallback(callbackContext, topic, resultSequence, faultSequence);
+        ProducerRecord<String, Object> record =
+                new ProducerRecord<String, Object>(topic, key, message);
+        try {
+            producer.send(record, callback);
+        } catch (RuntimeException e) {
+            // The accumulator is full and the producer is configured not to block
+            callback.onFailure(e);
+        }
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null || value.trim().length() == 0) {
+            return null;
         }
+        return value.trim();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,306 @@
+/*
+ *  Copyright (c) 2005-2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector;
+
+import kafka.javaapi.producer.Producer;
+import kafka.producer.ProducerConfig;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.producer.KafkaProducer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the kafka producers alive across messages. The producers are thread safe, so one producer is
+ * shared by all the messages that are sent with the same producer configuration. Producers which are not
+ * used for longer than their idle timeout are closed by a background task, and the remaining producers
+ * are closed when the server shuts down.
+ */
+public class KafkaProducerRegistry implements KafkaProducerRegistryMBean {
+
+    private static final Log log = LogFactory.getLog(KafkaProducerRegistry.class);
+
+    private static final String MBEAN_NAME = "org.wso2.carbon.connector:type=KafkaProducerRegistry";
+
+    private static final KafkaProducerRegistry INSTANCE = new KafkaProducerRegistry();
+
+    private final ConcurrentMap<String, PooledProducer> producers =
+            new ConcurrentHashMap<String, PooledProducer>();
+
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicLong producersCreated = new AtomicLong();
+    private final AtomicLong producersEvicted = new AtomicLong();
+    private final AtomicLong totalSends = new AtomicLong();
+    private final AtomicLong failedSends = new AtomicLong();
+
+    private volatile double sendsPerSecond;
+    private long lastSampleSends;
+    private long lastSampleTime = System.currentTimeMillis();
+
+    private KafkaProducerRegistry() {
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "kafka-producer-registry-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    sample();
+                    evictIdleProducers();
+                } catch (Throwable t) {
+                    log.error("Kafka producer connector : Error while evicting idle producers", t);
+                }
+            }
+        }, KafkaConnectConstants.EVICTION_INTERVAL, KafkaConnectConstants.EVICTION_INTERVAL,
+                TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread("kafka-producer-registry-shutdown") {
+            public void run() {
+                evictor.shutdownNow();
+                closeAll();
+            }
+        });
+        registerMBean();
+    }
+
+    public static KafkaProducerRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a producer for the given configuration, creating it if there is no live producer for it yet.
+     * Async producers are built on the new producer API, which batches the records in the background.
+     * Every acquired producer must be handed back with {@link #release(PooledProducer)}.
+     */
+    public PooledProducer acquire(Properties producerConfig, boolean async, long idleTimeout) {
+        String key = (async ? "async" : "sync") + normalize(producerConfig);
+        while (true) {
+            PooledProducer pooled = producers.get(key);
+            if (pooled == null) {
+                PooledProducer created;
+                if (async) {
+                    created = new PooledProducer(key, null,
+                            new KafkaProducer<String, Object>(producerConfig), idleTimeout);
+                } else {
+                    created = new PooledProducer(key, new Producer<String, Object>(
+                            new ProducerConfig(producerConfig)), null, idleTimeout);
+                }
+                pooled = producers.putIfAbsent(key, created);
+                if (pooled == null) {
+                    producersCreated.incrementAndGet();
+                    if (log.isDebugEnabled()) {
+                        log.debug("Kafka producer connector : Created a new producer for " + key);
+                    }
+                    pooled = created;
+                } else {
+                    // Another thread registered a producer for the same configuration first
+                    created.close();
+                }
+            }
+            if (pooled.retain()) {
+                return pooled;
+            }
+            // The producer was evicted between the lookup and the retain, drop it and try again
+            producers.remove(key, pooled);
+        }
+    }
+
+    /**
+     * Hand back a producer obtained from {@link #acquire(Properties, boolean, long)}
+     */
+    public void release(PooledProducer pooled) {
+        pooled.release();
+    }
+
+    /**
+     * Count a message delivered through one of the pooled producers
+     */
+    public void recordSend() {
+        totalSends.incrementAndGet();
+    }
+
+    /**
+     * Count a message which could not be delivered by one of the pooled producers
+     */
+    public void recordFailure() {
+        failedSends.incrementAndGet();
+    }
+
+    public int getLiveProducers() {
+        return producers.size();
+    }
+
+    public long getProducersCreated() {
+        return producersCreated.get();
+    }
+
+    public long getProducersEvicted() {
+        return producersEvicted.get();
+    }
+
+    public long getTotalSends() {
+        return totalSends.get();
+    }
+
+    public long getFailedSends() {
+        return failedSends.get();
+    }
+
+    public double getSendsPerSecond() {
+        return sendsPerSecond;
+    }
+
+    public void closeAll() {
+        for (PooledProducer pooled : producers.values()) {
+            if (producers.remove(pooled.key, pooled)) {
+                pooled.close();
+            }
+        }
+    }
+
+    /**
+     * Close the producers that are not in use and have not been used for longer than their idle timeout
+     */
+    private void evictIdleProducers() {
+        long now = System.currentTimeMillis();
+        for (PooledProducer pooled : producers.values()) {
+            if (pooled.markEvicted(now)) {
+                producers.remove(pooled.key, pooled);
+                producersEvicted.incrementAndGet();
+                if (log.isDebugEnabled()) {
+                    log.debug("Kafka producer connector : Closing idle producer for " + pooled.key);
+                }
+                pooled.close();
+            }
+        }
+    }
+
+    private synchronized void sample() {
+        long now = System.currentTimeMillis();
+        long sends = totalSends.get();
+        if (now > lastSampleTime) {
+            sendsPerSecond = (sends - lastSampleSends) * 1000d / (now - lastSampleTime);
+        }
+        lastSampleSends = sends;
+        lastSampleTime = now;
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(this, name);
+            }
+        } catch (Exception e) {
+            log.warn("Kafka producer connector : Unable to register the producer registry MBean", e);
+        }
+    }
+
+    /**
+     * Build the registry key from the producer configuration. The properties are sorted so that the same
+     * configuration always maps to the same producer.
+     */
+    private static String normalize(Properties producerConfig) {
+        Map<String, String> sorted = new TreeMap<String, String>();
+        for (String name : producerConfig.stringPropertyNames()) {
+            sorted.put(name, producerConfig.getProperty(name).trim());
+        }
+        return sorted.toString();
+    }
+
+    /**
+     * A producer shared through the registry along with its usage bookkeeping. The values are either
+     * strings or bytes, depending on the serializer of the producer configuration.
+     */
+    public static class PooledProducer {
+
+        private final String key;
+        private final Producer<String, Object> producer;
+        private final KafkaProducer<String, Object> asyncProducer;
+        private final long idleTimeout;
+        private int inUse;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean evicted;
+
+        private PooledProducer(String key, Producer<String, Object> producer,
+                               KafkaProducer<String, Object> asyncProducer, long idleTimeout) {
+            this.key = key;
+            this.producer = producer;
+            this.asyncProducer = asyncProducer;
+            this.idleTimeout = idleTimeout;
+        }
+
+        public Producer<String, Object> getProducer() {
+            return producer;
+        }
+
+        public KafkaProducer<String, Object> getAsyncProducer() {
+            return asyncProducer;
+        }
+
+        private synchronized boolean retain() {
+            if (evicted) {
+                return false;
+            }
+            inUse++;
+            return true;
+        }
+
+        private synchronized void release() {
+            inUse--;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        private synchronized boolean markEvicted(long now) {
+            if (!evicted && inUse == 0 && idleTimeout >= 0 && now - lastUsed > idleTimeout) {
+                evicted = true;
+                return true;
+            }
+            return false;
+        }
+
+        private void close() {
+            synchronized (this) {
+                evicted = true;
+            }
+            // Closing the async producer sends the records still waiting in its accumulator
+            if (producer != null) {
+                producer.close();
+            } else {
+                asyncProducer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2005-2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector;
+
+/**
+ * JMX view of the kafka producer registry
+ */
+public interface KafkaProducerRegistryMBean {
+
+    /**
+     * Number of producers currently kept alive by the registry
+     */
+    int getLiveProducers();
+
+    /**
+     * Number of producers created since the registry was started
+     */
+    long getProducersCreated();
+
+    /**
+     * Number of producers closed because they were idle for longer than the idle timeout
+     */
+    long getProducersEvicted();
+
+    /**
+     * Number of messages delivered through the pooled producers since the registry was started
+     */
+    long getTotalSends();
+
+    /**
+     * Number of messages which the pooled producers failed to deliver
+     */
+    long getFailedSends();
+
+    /**
+     * Send rate measured over the last sampling interval
+     */
+    double getSendsPerSecond();
+
+    /**
+     * Close all the pooled producers. They are re-created on the next send
+     */
+    void closeAll();
+}
@@ -0,0 +1,111 @@
+/*
+ *  Copyright (c) 2005-2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.connector;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.synapse.Mediator;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.mediators.base.SequenceMediator;
+
+/**
+ * Receives the delivery result of a message sent in async mode. The callback runs on the producer I/O
+ * thread after the mediation of the message has moved on, so it never touches the message context of the
+ * send. The result is written to a copy of the message context taken when the message was sent: the
+ * partition and offset of a delivered message are set on the copy, which is mediated by the result
+ * sequence, and a failed message is handed to the fault sequence.
+ */
+public class KafkaSendCallback implements Callback {
+
+    private static final Log log = LogFactory.getLog(KafkaSendCallback.class);
+
+    private final MessageContext callbackContext;
+    private final String topic;
+    private final String resultSequence;
+    private final String faultSequence;
+
+    /**
+     * @param callbackContext the copy of the message context the result is written to, or null without a
+     *                        result or fault sequence
+     * @param resultSequence  the sequence mediating delivered messages, or null
+     * @param faultSequence   the sequence mediating failed messages, or null
+     */
+    public KafkaSendCallback(MessageContext callbackContext, String topic, String resultSequence,
+                             String faultSequence) {
+        this.callbackContext = callbackContext;
+        this.topic = topic;
+        this.resultSequence = resultSequence;
+        this.faultSequence = faultSequence;
+    }
+
+    public void onCompletion(RecordMetadata metadata, Exception exception) {
+        if (exception == null) {
+            onSuccess(metadata);
+        } else {
+            onFailure(exception);
+        }
+    }
+
+    /**
+     * Record the partition and offset in the copy of the message context and mediate the result sequence
+     * if there is one
+     */
+    public void onSuccess(RecordMetadata metadata) {
+        KafkaProducerRegistry.getInstance().recordSend();
+        if (log.isDebugEnabled()) {
+            log.debug("Kafka producer connector : Message sent to topic " + topic + ", partition "
+                    + metadata.partition() + ", offset " + metadata.offset());
+        }
+        if (callbackContext == null) {
+            return;
+        }
+        callbackContext.setProperty(KafkaConnectConstants.RESULT_PARTITION, metadata.partition());
+        callbackContext.setProperty(KafkaConnectConstants.RESULT_OFFSET, metadata.offset());
+        if (resultSequence != null) {
+            inject(resultSequence, "Message sent to topic " + topic, null);
+        }
+    }
+
+    /**
+     * Record the error in the copy of the message context and mediate the fault sequence if there is one
+     */
+    public void onFailure(Exception exception) {
+        KafkaProducerRegistry.getInstance().recordFailure();
+        if (callbackContext == null || faultSequence == null) {
+            log.error("Kafka producer connector : Error sending the message to topic " + topic, exception);
+            return;
+        }
+        callbackContext.setProperty(SynapseConstants.ERROR_EXCEPTION, exception);
+        callbackContext.setProperty(SynapseConstants.ERROR_MESSAGE, exception.getMessage());
+        inject(faultSequence, "Error sending the message to topic " + topic, exception);
+    }
+
+    private void inject(String sequenceName, String result, Exception exception) {
+        Mediator sequence = callbackContext.getSequence(sequenceName);
+        if (sequence instanceof SequenceMediator) {
+            callbackContext.getEnvironment().injectAsync(callbackContext, (SequenceMediator) sequence);
+        } else {
+            log.error("Kafka producer connector : Sequence " + sequenceName + " is not found. " + result,
+                    exception);
+        }
+    }
+}
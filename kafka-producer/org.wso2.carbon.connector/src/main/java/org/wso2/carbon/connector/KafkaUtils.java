@@ -18,22 +18,19 @@
 
 package org.wso2.carbon.connector;
 
-import kafka.javaapi.producer.Producer;
-import kafka.producer.ProducerConfig;
 import org.apache.axiom.om.OMOutputFormat;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.transport.MessageFormatter;
 import org.apache.axis2.transport.base.BaseUtils;
 import org.apache.axis2.util.MessageProcessorSelector;
-import org.apache.commons.io.output.WriterOutputStream;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.commons.json.JsonUtil;
+import org.apache.synapse.SynapseException;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.wso2.carbon.connector.core.util.ConnectorUtils;
 
-import java.io.IOException;
 import java.io.OutputStream;
-import java.io.StringWriter;
-import java.lang.Exception;
+import java.io.UnsupportedEncodingException;
 import java.util.Properties;
 
 public class KafkaUtils {
@@ -50,7 +47,7 @@ public class KafkaUtils {
      * The ProducerConfig class encapsulates the values required for establishing the connection with brokers such as the broker list, message
      * partition class, serializer class for the message, and partition key,etc.
      */
-    public static Producer<String, String> getProducer(MessageContext messageContext) {
+    public static Properties getProducerConfig(MessageContext messageContext) {
 
         Axis2MessageContext axis2mc = (Axis2MessageContext) messageContext;
         String brokers = (String) axis2mc.getAxis2MessageContext()
@@ -93,30 +90,152 @@ public class KafkaUtils {
                 .getOperationContext().getProperty("kafka.clientId");
 
         Properties producerConfigProperties = new Properties();
-        producerConfigProperties.put(KafkaConnectConstants.BROKER_LIST, brokers);
-        producerConfigProperties.put(KafkaConnectConstants.SERIALIZATION_CLASS, serializationClass);
-        producerConfigProperties.put(KafkaConnectConstants.REQUIRED_ACK, requiredAck);
-        producerConfigProperties.put(KafkaConnectConstants.PRODUCER_TYPE, producerType);
-        producerConfigProperties.put(KafkaConnectConstants.COMPRESSION_TYPE, compressionCodec);
-        producerConfigProperties.put(KafkaConnectConstants.KEY_SERIALIZER_CLASS, keySerializerClass);
-        producerConfigProperties.put(KafkaConnectConstants.PARTITION_CLASS, partitionClass);
-        producerConfigProperties.put(KafkaConnectConstants.COMPRESSED_TOPIC, compressedTopics);
-        producerConfigProperties.put(KafkaConnectConstants.MESSAGE_SEND_MAX_RETRIES,
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.BROKER_LIST, brokers);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.SERIALIZATION_CLASS,
+                serializationClass);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.REQUIRED_ACK, requiredAck);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.PRODUCER_TYPE, producerType);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.COMPRESSION_TYPE,
+                compressionCodec);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.KEY_SERIALIZER_CLASS,
+                keySerializerClass);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.PARTITION_CLASS,
+                partitionClass);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.COMPRESSED_TOPIC,
+                compressedTopics);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.MESSAGE_SEND_MAX_RETRIES,
                 messageSendMaxRetries);
-        producerConfigProperties.put(KafkaConnectConstants.TIME_REFRESH_METADATA, retryBackOff);
-        producerConfigProperties.put(KafkaConnectConstants.TIME_REFRESH_METADATA_AFTER_TOPIC,
-                refreshInterval);
-        producerConfigProperties.put(KafkaConnectConstants.BUFFER_MAX_MESSAGES,
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.TIME_REFRESH_METADATA,
+                retryBackOff);
+        putIfPresent(producerConfigProperties,
+                KafkaConnectConstants.TIME_REFRESH_METADATA_AFTER_TOPIC, refreshInterval);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.BUFFER_MAX_MESSAGES,
                 bufferingMaxMessages);
-        producerConfigProperties.put(KafkaConnectConstants.NO_MESSAGE_BATCHED_PRODUCER,
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.NO_MESSAGE_BATCHED_PRODUCER,
                 batchNoMessages);
-        producerConfigProperties.put(KafkaConnectConstants.BUFFER_SIZE, sendBufferSize);
-        producerConfigProperties.put(KafkaConnectConstants.REQUEST_TIMEOUT, requestTimeout);
-        producerConfigProperties.put(KafkaConnectConstants.BUFFER_MAX_TIME, bufferingMaxTime);
-        producerConfigProperties.put(KafkaConnectConstants.ENQUEUE_TIMEOUT, enqueueTimeout);
-        producerConfigProperties.put(KafkaConnectConstants.CLIENT_ID, clientId);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.BUFFER_SIZE, sendBufferSize);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.REQUEST_TIMEOUT,
+                requestTimeout);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.BUFFER_MAX_TIME,
+                bufferingMaxTime);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.ENQUEUE_TIMEOUT,
+                enqueueTimeout);
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.CLIENT_ID, clientId);
 
-        return new Producer<String, String>(new ProducerConfig(producerConfigProperties));
+        return producerConfigProperties;
+    }
+
+    /**
+     * Build the configuration of the new producer API used by the async send mode. The records are
+     * collected in a bounded accumulator and sent in batches once batch.size bytes are waiting or
+     * linger.ms has elapsed.
+     */
+    public static Properties getAsyncProducerConfig(MessageContext messageContext) {
+        Properties producerConfigProperties = new Properties();
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.BOOTSTRAP_SERVERS,
+                getOperationProperty(messageContext, "kafka.brokerList"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.ACKS,
+                getOperationProperty(messageContext, "kafka.requiredAck"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.ASYNC_COMPRESSION_TYPE,
+                getOperationProperty(messageContext, "kafka.compressionCodec"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.RETRIES,
+                getOperationProperty(messageContext, "kafka.messageSendMaxRetries"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.RETRY_BACKOFF,
+                getOperationProperty(messageContext, "kafka.retryBackOff"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.SEND_BUFFER,
+                getOperationProperty(messageContext, "kafka.sendBufferSize"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.TIMEOUT,
+                getOperationProperty(messageContext, "kafka.requestTimeout"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.BATCH_SIZE,
+                getOperationProperty(messageContext, "kafka.batchSize"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.LINGER_TIME,
+                getOperationProperty(messageContext, "kafka.lingerTime"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.BUFFER_MEMORY,
+                getOperationProperty(messageContext, "kafka.bufferMemory"));
+        putIfPresent(producerConfigProperties, KafkaConnectConstants.BLOCK_ON_BUFFER_FULL,
+                getOperationProperty(messageContext, "kafka.blockOnBufferFull"));
+        String clientId = getOperationProperty(messageContext, "kafka.clientId");
+        if (clientId != null && clientId.length() > 0) {
+            producerConfigProperties.put(KafkaConnectConstants.CLIENT_ID, clientId);
+        }
+        producerConfigProperties.put(KafkaConnectConstants.KEY_SERIALIZER,
+                KafkaConnectConstants.STRING_SERIALIZER);
+        producerConfigProperties.put(KafkaConnectConstants.VALUE_SERIALIZER,
+                isBytePayload(messageContext) ? KafkaConnectConstants.BYTE_ARRAY_SERIALIZER
+                        : KafkaConnectConstants.STRING_SERIALIZER);
+        return producerConfigProperties;
+    }
+
+    /**
+     * Check whether the messages are sent with the async producer
+     */
+    public static boolean isAsyncSendMode(MessageContext messageContext) {
+        return KafkaConnectConstants.SEND_MODE_ASYNC.equalsIgnoreCase(
+                getOperationProperty(messageContext, KafkaConnectConstants.SEND_MODE));
+    }
+
+    /**
+     * Read the name of the sequence which receives the messages the async producer failed to deliver
+     */
+    public static String getAsyncFaultSequence(MessageContext messageContext) {
+        return getOperationProperty(messageContext, KafkaConnectConstants.ASYNC_FAULT_SEQUENCE);
+    }
+
+    /**
+     * Read the name of the sequence which receives the messages the async producer has delivered
+     */
+    public static String getAsyncResultSequence(MessageContext messageContext) {
+        return getOperationProperty(messageContext, KafkaConnectConstants.ASYNC_RESULT_SEQUENCE);
+    }
+
+    /**
+     * Read how long a pooled producer can stay unused before the registry closes it
+     */
+    public static long getProducerIdleTimeout(MessageContext messageContext) {
+        String idleTimeout = getOperationProperty(messageContext,
+                KafkaConnectConstants.PRODUCER_IDLE_TIMEOUT);
+        if (idleTimeout == null || idleTimeout.trim().length() == 0) {
+            return KafkaConnectConstants.DEFAULT_PRODUCER_IDLE_TIMEOUT;
+        }
+        try {
+            return Long.parseLong(idleTimeout.trim());
+        } catch (NumberFormatException e) {
+            throw new SynapseException("Invalid producer idle timeout : " + idleTimeout, e);
+        }
+    }
+
+    /**
+     * Read a connector configuration property from the operation context
+     */
+    private static String getOperationProperty(MessageContext messageContext, String name) {
+        Axis2MessageContext axis2mc = (Axis2MessageContext) messageContext;
+        return (String) axis2mc.getAxis2MessageContext().getOperationContext().getProperty(name);
+    }
+
+    /**
+     * Add the property only when it has a value, since the properties do not accept null values
+     */
+    private static void putIfPresent(Properties properties, String name, String value) {
+        if (value != null) {
+            properties.put(name, value);
+        }
+    }
+
+    /**
+     * Check whether the payload is handed to the producer as bytes. This is the case when the producer
+     * uses the DefaultEncoder, which sends the bytes as they are.
+     */
+    public static boolean isBytePayload(MessageContext messageContext) {
+        return KafkaConnectConstants.DEFAULT_ENCODER.equals(
+                getOperationProperty(messageContext, "kafka.serializationClass"));
+    }
+
+    /**
+     * Check whether JSON payloads are sent as the original JSON stream instead of being formatted
+     */
+    public static boolean isJsonPassThrough(MessageContext messageContext) {
+        return Boolean.parseBoolean(getOperationProperty(messageContext,
+                KafkaConnectConstants.JSON_PASS_THROUGH));
     }
 
     /**
@@ -125,23 +244,45 @@ public class KafkaUtils {
     public static String formatMessage(
             org.apache.axis2.context.MessageContext messageContext) throws AxisFault {
         OMOutputFormat format = BaseUtils.getOMOutputFormat(messageContext);
-        MessageFormatter messageFormatter = MessageProcessorSelector.getMessageFormatter(messageContext);         ;
-        StringWriter stringWriter = new StringWriter();
-        OutputStream out = new WriterOutputStream(stringWriter, format.getCharSetEncoding());
+        KafkaPayloadBuffer buffer = KafkaPayloadBuffer.acquire();
         try {
-            if (out != null) {
-                messageFormatter.writeTo(messageContext, format, out, true);
-            }
-        } catch (IOException e) {
-            throw new AxisFault("The Error occurs while formatting the message",e);
+            writeMessage(messageContext, format, buffer, false);
+            // Decode straight from the buffer instead of transcoding through a writer
+            return buffer.toString(format.getCharSetEncoding());
+        } catch (UnsupportedEncodingException e) {
+            throw new AxisFault("The Error occurs while formatting the message", e);
         } finally {
-            try {
-                out.close();
-            }catch (Exception e) {
-                throw new AxisFault("The Error occurs while closing the output stream",e);
-            }
+            KafkaPayloadBuffer.release(buffer);
         }
+    }
 
-        return stringWriter.toString();
+    /**
+     * Format the messages into bytes, so that the payload is not decoded to a string and encoded back by
+     * the serializer. With the JSON pass through the original JSON stream is copied as it is.
+     */
+    public static byte[] formatMessageBytes(org.apache.axis2.context.MessageContext messageContext,
+                                            boolean jsonPassThrough) throws AxisFault {
+        OMOutputFormat format = BaseUtils.getOMOutputFormat(messageContext);
+        KafkaPayloadBuffer buffer = KafkaPayloadBuffer.acquire();
+        try {
+            writeMessage(messageContext, format, buffer, jsonPassThrough);
+            return buffer.toByteArray();
+        } finally {
+            KafkaPayloadBuffer.release(buffer);
+        }
+    }
+
+    /**
+     * Write the payload of the message into the given stream
+     */
+    private static void writeMessage(org.apache.axis2.context.MessageContext messageContext,
+                                     OMOutputFormat format, OutputStream out,
+                                     boolean jsonPassThrough) throws AxisFault {
+        if (jsonPassThrough && JsonUtil.hasAJsonPayload(messageContext)) {
+            JsonUtil.writeAsJson(messageContext, out);
+            return;
+        }
+        MessageFormatter messageFormatter = MessageProcessorSelector.getMessageFormatter(messageContext);
+        messageFormatter.writeTo(messageContext, format, out, true);
     }
 }